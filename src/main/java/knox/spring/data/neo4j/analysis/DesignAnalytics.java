@@ -0,0 +1,467 @@
+package knox.spring.data.neo4j.analysis;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+	Counts the designs of a design space by length and by the components, roles and orientations
+	that they use, without enumerating them. Designs are counted the same way that DesignSampler
+	enumerates them: one design for each path from a start node to an accept node and for each
+	choice of component ID on the edges of that path, where edges without component IDs do not
+	add to the length of a design.
+
+	Path counts are computed forward from the start nodes and backward from the accept nodes, one
+	layer per design length, so that the whole analysis is O(E x maxLength). The number of designs
+	that pass through an edge is then the sum over lengths of the forward count at its tail times
+	the backward count at its head.
+
+	Arguments:
+		- space [NodeSpace]: The design space to analyze.
+		- maxLength [int]: The maximum length of a counted design in components. If zero or less,
+						   cycles are not counted, in the same way that they are not enumerated.
+ */
+public class DesignAnalytics {
+
+	private NodeSpace space;
+
+	private int maxLength;
+
+	private List<Node> nodes;
+
+	private Map<Node, Integer> nodeToIndex;
+
+	private List<List<Edge>> componentEdges;
+
+	private List<List<Edge>> blankEdges;
+
+	private List<Integer> blankOrder;
+
+	private boolean hasCycles = false;
+
+	private BigInteger[][] forwardCounts;
+
+	private BigInteger[][] backwardCounts;
+
+	public DesignAnalytics(NodeSpace space, int maxLength) {
+		this.space = space;
+
+		this.maxLength = maxLength;
+
+		indexNodes();
+
+		indexEdges();
+
+		if (this.maxLength <= 0) {
+			this.maxLength = getLongestDesignLength();
+		}
+
+		countForward();
+
+		countBackward();
+	}
+
+	/*
+		Returns:
+			- Map<String, Object>: The maximum counted length, the total number of designs, the
+								   number of designs of each length and the number of times that
+								   each component ID, role and orientation occurs across designs.
+								   A component that occurs at most once per design occurs in
+								   exactly as many designs as its count.
+	 */
+	public Map<String, Object> analyze() {
+		Map<String, Object> analytics = new LinkedHashMap<String, Object>();
+
+		Map<Integer, BigInteger> lengthToCount = new TreeMap<Integer, BigInteger>();
+
+		BigInteger numDesigns = BigInteger.ZERO;
+
+		for (int l = 1; l <= maxLength; l++) {
+			BigInteger count = BigInteger.ZERO;
+
+			for (int i = 0; i < nodes.size(); i++) {
+				if (nodes.get(i).isAcceptNode()) {
+					count = count.add(forwardCounts[l][i]);
+				}
+			}
+
+			if (count.signum() > 0) {
+				lengthToCount.put(l, count);
+
+				numDesigns = numDesigns.add(count);
+			}
+		}
+
+		Map<String, BigInteger> compIDToCount = new TreeMap<String, BigInteger>();
+
+		Map<String, BigInteger> compRoleToCount = new TreeMap<String, BigInteger>();
+
+		Map<String, BigInteger> orientationToCount = new TreeMap<String, BigInteger>();
+
+		BigInteger[][] cumulativeCounts = accumulateBackwardCounts();
+
+		for (int i = 0; i < nodes.size(); i++) {
+			for (Edge edge : componentEdges.get(i)) {
+				int j = nodeToIndex.get(edge.getHead());
+
+				BigInteger edgeCount = BigInteger.ZERO;
+
+				for (int l = 0; l < maxLength; l++) {
+					if (forwardCounts[l][i].signum() > 0) {
+						edgeCount = edgeCount.add(forwardCounts[l][i].multiply(
+								cumulativeCounts[maxLength - 1 - l][j]));
+					}
+				}
+
+				if (edgeCount.signum() > 0) {
+					for (String compID : edge.getComponentIDs()) {
+						addCount(compIDToCount, compID, edgeCount);
+					}
+
+					BigInteger compCount = edgeCount.multiply(BigInteger.valueOf(edge.getComponentIDs().size()));
+
+					if (edge.hasComponentRoles()) {
+						for (String compRole : new HashSet<String>(edge.getComponentRoles())) {
+							addCount(compRoleToCount, compRole, compCount);
+						}
+					}
+
+					if (edge.getOrientation() != null) {
+						addCount(orientationToCount, edge.getOrientation().getValue(), compCount);
+					}
+				}
+			}
+		}
+
+		analytics.put("maxLength", maxLength);
+
+		analytics.put("hasCycles", hasCycles);
+
+		analytics.put("numDesigns", numDesigns);
+
+		analytics.put("lengths", lengthToCount);
+
+		analytics.put("componentIDs", compIDToCount);
+
+		analytics.put("componentRoles", compRoleToCount);
+
+		analytics.put("orientations", orientationToCount);
+
+		return analytics;
+	}
+
+	private void addCount(Map<String, BigInteger> keyToCount, String key, BigInteger count) {
+		if (keyToCount.containsKey(key)) {
+			keyToCount.put(key, keyToCount.get(key).add(count));
+		} else {
+			keyToCount.put(key, count);
+		}
+	}
+
+	private void indexNodes() {
+		nodes = new ArrayList<Node>(space.getNodes());
+
+		nodeToIndex = new HashMap<Node, Integer>();
+
+		for (int i = 0; i < nodes.size(); i++) {
+			nodeToIndex.put(nodes.get(i), i);
+		}
+	}
+
+	/*
+		Sorts edges into those that add a component to a design and blank ones that do not. Edges
+		that close a cycle are dropped if no maximum length was given, and so are blank edges that
+		close a cycle of blank edges in any case, since such cycles do not lengthen a design. The
+		remaining blank edges are put in topological order so that counts can be pushed across
+		them within a single layer.
+	 */
+	private void indexEdges() {
+		componentEdges = new ArrayList<List<Edge>>(nodes.size());
+
+		blankEdges = new ArrayList<List<Edge>>(nodes.size());
+
+		for (int i = 0; i < nodes.size(); i++) {
+			componentEdges.add(new ArrayList<Edge>());
+
+			blankEdges.add(new ArrayList<Edge>());
+		}
+
+		Set<Edge> feedbackEdges = findFeedbackEdges(false);
+
+		hasCycles = !feedbackEdges.isEmpty();
+
+		Set<Edge> blankFeedbackEdges = findFeedbackEdges(true);
+
+		for (int i = 0; i < nodes.size(); i++) {
+			if (nodes.get(i).hasEdges()) {
+				for (Edge edge : nodes.get(i).getEdges()) {
+					if (maxLength > 0 || !feedbackEdges.contains(edge)) {
+						if (edge.hasComponentIDs()) {
+							componentEdges.get(i).add(edge);
+						} else if (!blankFeedbackEdges.contains(edge)) {
+							blankEdges.get(i).add(edge);
+						}
+					}
+				}
+			}
+		}
+
+		blankOrder = sortTopologically(blankEdges);
+	}
+
+	private Set<Edge> findFeedbackEdges(boolean isBlankOnly) {
+		Set<Edge> feedbackEdges = new HashSet<Edge>();
+
+		int[] visitStates = new int[nodes.size()];
+
+		// Searching from start nodes first means that the edges dropped are those leading back to
+		// nodes nearer the start of a design, so each cycle is cut where it returns rather than
+		// where it is entered
+
+		List<Integer> roots = new ArrayList<Integer>(nodes.size());
+
+		for (int i = 0; i < nodes.size(); i++) {
+			if (nodes.get(i).isStartNode()) {
+				roots.add(i);
+			}
+		}
+
+		for (int i = 0; i < nodes.size(); i++) {
+			if (!nodes.get(i).isStartNode()) {
+				roots.add(i);
+			}
+		}
+
+		for (int i : roots) {
+			if (visitStates[i] == 0) {
+				List<Integer> nodeStack = new ArrayList<Integer>();
+
+				List<List<Edge>> edgeStack = new ArrayList<List<Edge>>();
+
+				nodeStack.add(i);
+
+				edgeStack.add(getOutgoingEdges(i, isBlankOnly));
+
+				visitStates[i] = 1;
+
+				while (!nodeStack.isEmpty()) {
+					List<Edge> edges = edgeStack.get(edgeStack.size() - 1);
+
+					if (edges.isEmpty()) {
+						visitStates[nodeStack.remove(nodeStack.size() - 1)] = 2;
+
+						edgeStack.remove(edgeStack.size() - 1);
+					} else {
+						Edge edge = edges.remove(edges.size() - 1);
+
+						int j = nodeToIndex.get(edge.getHead());
+
+						if (visitStates[j] == 1) {
+							feedbackEdges.add(edge);
+						} else if (visitStates[j] == 0) {
+							visitStates[j] = 1;
+
+							nodeStack.add(j);
+
+							edgeStack.add(getOutgoingEdges(j, isBlankOnly));
+						}
+					}
+				}
+			}
+		}
+
+		return feedbackEdges;
+	}
+
+	private List<Edge> getOutgoingEdges(int i, boolean isBlankOnly) {
+		List<Edge> edges = new ArrayList<Edge>();
+
+		if (nodes.get(i).hasEdges()) {
+			for (Edge edge : nodes.get(i).getEdges()) {
+				if (!isBlankOnly || !edge.hasComponentIDs()) {
+					edges.add(edge);
+				}
+			}
+		}
+
+		return edges;
+	}
+
+	private List<Integer> sortTopologically(List<List<Edge>> edges) {
+		int[] inDegrees = new int[nodes.size()];
+
+		for (int i = 0; i < nodes.size(); i++) {
+			for (Edge edge : edges.get(i)) {
+				inDegrees[nodeToIndex.get(edge.getHead())]++;
+			}
+		}
+
+		List<Integer> order = new ArrayList<Integer>(nodes.size());
+
+		for (int i = 0; i < nodes.size(); i++) {
+			if (inDegrees[i] == 0) {
+				order.add(i);
+			}
+		}
+
+		for (int k = 0; k < order.size(); k++) {
+			for (Edge edge : edges.get(order.get(k))) {
+				int j = nodeToIndex.get(edge.getHead());
+
+				inDegrees[j]--;
+
+				if (inDegrees[j] == 0) {
+					order.add(j);
+				}
+			}
+		}
+
+		return order;
+	}
+
+	/*
+		Only called once cycles have been dropped, so that every path is finite.
+	 */
+	private int getLongestDesignLength() {
+		List<List<Edge>> allEdges = new ArrayList<List<Edge>>(nodes.size());
+
+		for (int i = 0; i < nodes.size(); i++) {
+			List<Edge> edges = new ArrayList<Edge>(componentEdges.get(i));
+
+			edges.addAll(blankEdges.get(i));
+
+			allEdges.add(edges);
+		}
+
+		int[] lengths = new int[nodes.size()];
+
+		int longestLength = 0;
+
+		for (int i : sortTopologically(allEdges)) {
+			for (Edge edge : allEdges.get(i)) {
+				int j = nodeToIndex.get(edge.getHead());
+
+				int length = lengths[i] + (edge.hasComponentIDs() ? 1 : 0);
+
+				if (length > lengths[j]) {
+					lengths[j] = length;
+
+					longestLength = Math.max(longestLength, length);
+				}
+			}
+		}
+
+		return longestLength;
+	}
+
+	private void countForward() {
+		forwardCounts = createCounts();
+
+		for (int i = 0; i < nodes.size(); i++) {
+			if (nodes.get(i).isStartNode()) {
+				forwardCounts[0][i] = BigInteger.ONE;
+			}
+		}
+
+		for (int l = 0; l <= maxLength; l++) {
+			for (int i : blankOrder) {
+				if (forwardCounts[l][i].signum() > 0) {
+					for (Edge edge : blankEdges.get(i)) {
+						int j = nodeToIndex.get(edge.getHead());
+
+						forwardCounts[l][j] = forwardCounts[l][j].add(forwardCounts[l][i]);
+					}
+				}
+			}
+
+			if (l < maxLength) {
+				for (int i = 0; i < nodes.size(); i++) {
+					if (forwardCounts[l][i].signum() > 0) {
+						for (Edge edge : componentEdges.get(i)) {
+							int j = nodeToIndex.get(edge.getHead());
+
+							forwardCounts[l + 1][j] = forwardCounts[l + 1][j].add(forwardCounts[l][i].multiply(
+									BigInteger.valueOf(edge.getComponentIDs().size())));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void countBackward() {
+		backwardCounts = createCounts();
+
+		for (int i = 0; i < nodes.size(); i++) {
+			if (nodes.get(i).isAcceptNode()) {
+				backwardCounts[0][i] = BigInteger.ONE;
+			}
+		}
+
+		List<Integer> reverseBlankOrder = new ArrayList<Integer>(blankOrder);
+
+		Collections.reverse(reverseBlankOrder);
+
+		for (int l = 0; l <= maxLength; l++) {
+			if (l > 0) {
+				for (int i = 0; i < nodes.size(); i++) {
+					for (Edge edge : componentEdges.get(i)) {
+						int j = nodeToIndex.get(edge.getHead());
+
+						if (backwardCounts[l - 1][j].signum() > 0) {
+							backwardCounts[l][i] = backwardCounts[l][i].add(backwardCounts[l - 1][j].multiply(
+									BigInteger.valueOf(edge.getComponentIDs().size())));
+						}
+					}
+				}
+			}
+
+			for (int i : reverseBlankOrder) {
+				for (Edge edge : blankEdges.get(i)) {
+					int j = nodeToIndex.get(edge.getHead());
+
+					backwardCounts[l][i] = backwardCounts[l][i].add(backwardCounts[l][j]);
+				}
+			}
+		}
+	}
+
+	private BigInteger[][] accumulateBackwardCounts() {
+		BigInteger[][] cumulativeCounts = createCounts();
+
+		for (int l = 0; l <= maxLength; l++) {
+			for (int i = 0; i < nodes.size(); i++) {
+				if (l > 0) {
+					cumulativeCounts[l][i] = cumulativeCounts[l - 1][i].add(backwardCounts[l][i]);
+				} else {
+					cumulativeCounts[l][i] = backwardCounts[l][i];
+				}
+			}
+		}
+
+		return cumulativeCounts;
+	}
+
+	private BigInteger[][] createCounts() {
+		BigInteger[][] counts = new BigInteger[maxLength + 1][nodes.size()];
+
+		for (int l = 0; l <= maxLength; l++) {
+			for (int i = 0; i < nodes.size(); i++) {
+				counts[l][i] = BigInteger.ZERO;
+			}
+		}
+
+		return counts;
+	}
+}
@@ -0,0 +1,83 @@
+package knox.spring.data.neo4j.analysis;
+
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.sample.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+	Checks which of a batch of designs belong to a design space. Each design is run through the
+	space as an automaton while keeping only the set of active nodes, so the cost of a check is
+	linear in the length of the design and does not depend on how many designs the space has.
+
+	Designs are given in the same shape that DesignSampler enumerates them: as lists of components
+	with an "id" and an optional "orientation" (inline if omitted).
+ */
+public class DesignMatcher {
+
+	private SpaceAutomaton automaton;
+
+	public DesignMatcher(NodeSpace space) {
+		automaton = new SpaceAutomaton(space);
+	}
+
+	public boolean matches(List<Map<String, Object>> design) {
+		List<String> symbols = new ArrayList<String>(design.size());
+
+		for (Map<String, Object> comp : design) {
+			symbols.add(SpaceAutomaton.toSymbol(comp));
+		}
+
+		return automaton.accepts(symbols);
+	}
+
+	public List<Boolean> match(List<List<Map<String, Object>>> designs) {
+		return match(designs, 1);
+	}
+
+	/*
+		Returns:
+			- List<Boolean>: Whether or not each design belongs to the space, in the order that the
+							 designs were given.
+	 */
+	public List<Boolean> match(final List<List<Map<String, Object>>> designs, int parallelism) {
+		final Boolean[] isMatching = new Boolean[designs.size()];
+
+		int numWorkers = Math.min(WorkerPool.boundParallelism(parallelism), designs.size());
+
+		if (numWorkers <= 1) {
+			for (int i = 0; i < designs.size(); i++) {
+				isMatching[i] = matches(designs.get(i));
+			}
+		} else {
+			final AtomicInteger nextDesign = new AtomicInteger(0);
+
+			List<ForkJoinTask<?>> workers = new ArrayList<ForkJoinTask<?>>(numWorkers);
+
+			for (int k = 0; k < numWorkers; k++) {
+				workers.add(WorkerPool.getPool().submit(new Runnable() {
+					public void run() {
+						int i = nextDesign.getAndIncrement();
+
+						while (i < designs.size()) {
+							isMatching[i] = matches(designs.get(i));
+
+							i = nextDesign.getAndIncrement();
+						}
+					}
+				}));
+			}
+
+			for (ForkJoinTask<?> worker : workers) {
+				worker.join();
+			}
+		}
+
+		return Arrays.asList(isMatching);
+	}
+}
@@ -0,0 +1,254 @@
+package knox.spring.data.neo4j.analysis;
+
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+	Compares the sets of designs of two design spaces without enumerating either of them.
+
+	Inclusion of the first space in the second is checked with the antichain algorithm: the search
+	pairs each node of the first space with the set of nodes of the second that the same design
+	could have reached, and stops at a pair where the first space accepts the design but the second
+	does not. A pair is skipped if a pair with the same node and a subset of its nodes has already
+	been seen, since anything the larger set rejects is rejected by the smaller one. The search is
+	breadth-first, so the counterexample returned is one of the shortest.
+
+	Arguments:
+		- firstSpace [NodeSpace]: The first design space.
+		- secondSpace [NodeSpace]: The second design space.
+ */
+public class LanguageComparator {
+
+	private SpaceAutomaton firstAutomaton;
+
+	private SpaceAutomaton secondAutomaton;
+
+	public LanguageComparator(NodeSpace firstSpace, NodeSpace secondSpace) {
+		firstAutomaton = new SpaceAutomaton(firstSpace);
+
+		secondAutomaton = new SpaceAutomaton(secondSpace);
+	}
+
+	/*
+		Returns:
+			- Map<String, Object>: The relation of the first space to the second ("equal", "subset",
+								   "superset", "overlap" or "disjoint") and, unless they are equal,
+								   a counterexample design that belongs to only one of the spaces,
+								   along with which of the two ("first" or "second") it belongs to.
+	 */
+	public Map<String, Object> compare() {
+		Map<String, Object> comparison = new LinkedHashMap<String, Object>();
+
+		List<String> firstOnlyDesign = findUnincludedDesign(firstAutomaton, secondAutomaton);
+
+		List<String> secondOnlyDesign = findUnincludedDesign(secondAutomaton, firstAutomaton);
+
+		if (firstOnlyDesign == null && secondOnlyDesign == null) {
+			comparison.put("relation", "equal");
+		} else if (firstOnlyDesign == null) {
+			comparison.put("relation", "subset");
+		} else if (secondOnlyDesign == null) {
+			comparison.put("relation", "superset");
+		} else if (hasSharedDesign()) {
+			comparison.put("relation", "overlap");
+		} else {
+			comparison.put("relation", "disjoint");
+		}
+
+		if (firstOnlyDesign != null) {
+			comparison.put("counterexample", toDesign(firstOnlyDesign, firstAutomaton));
+
+			comparison.put("counterexampleSpace", "first");
+		} else if (secondOnlyDesign != null) {
+			comparison.put("counterexample", toDesign(secondOnlyDesign, secondAutomaton));
+
+			comparison.put("counterexampleSpace", "second");
+		}
+
+		return comparison;
+	}
+
+	/*
+		Returns a design accepted by the including automaton but not by the included automaton, or
+		null if there is no such design.
+	 */
+	private List<String> findUnincludedDesign(SpaceAutomaton includedAutomaton,
+			SpaceAutomaton includingAutomaton) {
+		Map<Integer, List<BitSet>> stateToAntichain = new HashMap<Integer, List<BitSet>>();
+
+		LinkedList<SearchPair> pairQueue = new LinkedList<SearchPair>();
+
+		BitSet startStates = includedAutomaton.getStartStates();
+
+		for (int i = startStates.nextSetBit(0); i >= 0; i = startStates.nextSetBit(i + 1)) {
+			SearchPair pair = new SearchPair(i, includingAutomaton.getStartStates(), null, null);
+
+			if (addToAntichain(stateToAntichain, pair)) {
+				pairQueue.add(pair);
+			}
+		}
+
+		while (!pairQueue.isEmpty()) {
+			SearchPair pair = pairQueue.removeFirst();
+
+			if (includedAutomaton.isAcceptState(pair.state)
+					&& !includingAutomaton.hasAcceptState(pair.otherStates)) {
+				return pair.getDesign();
+			}
+
+			for (String symbol : includedAutomaton.getSymbols(pair.state)) {
+				BitSet nextStates = includedAutomaton.step(pair.state, symbol);
+
+				BitSet nextOtherStates = includingAutomaton.step(pair.otherStates, symbol);
+
+				for (int j = nextStates.nextSetBit(0); j >= 0; j = nextStates.nextSetBit(j + 1)) {
+					SearchPair nextPair = new SearchPair(j, nextOtherStates, pair, symbol);
+
+					if (addToAntichain(stateToAntichain, nextPair)) {
+						pairQueue.add(nextPair);
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private boolean addToAntichain(Map<Integer, List<BitSet>> stateToAntichain, SearchPair pair) {
+		if (!stateToAntichain.containsKey(pair.state)) {
+			stateToAntichain.put(pair.state, new LinkedList<BitSet>());
+		}
+
+		List<BitSet> antichain = stateToAntichain.get(pair.state);
+
+		for (BitSet otherStates : antichain) {
+			if (isSubset(otherStates, pair.otherStates)) {
+				return false;
+			}
+		}
+
+		List<BitSet> supersets = new ArrayList<BitSet>();
+
+		for (BitSet otherStates : antichain) {
+			if (isSubset(pair.otherStates, otherStates)) {
+				supersets.add(otherStates);
+			}
+		}
+
+		antichain.removeAll(supersets);
+
+		antichain.add(pair.otherStates);
+
+		return true;
+	}
+
+	private boolean isSubset(BitSet states, BitSet otherStates) {
+		BitSet difference = (BitSet) states.clone();
+
+		difference.andNot(otherStates);
+
+		return difference.isEmpty();
+	}
+
+	/*
+		Searches the product of the two spaces for a design that both accept.
+	 */
+	private boolean hasSharedDesign() {
+		int numOtherStates = secondAutomaton.getNumStates();
+
+		Set<Long> visitedPairs = new HashSet<Long>();
+
+		LinkedList<int[]> pairQueue = new LinkedList<int[]>();
+
+		BitSet startStates = firstAutomaton.getStartStates();
+
+		BitSet otherStartStates = secondAutomaton.getStartStates();
+
+		for (int i = startStates.nextSetBit(0); i >= 0; i = startStates.nextSetBit(i + 1)) {
+			for (int j = otherStartStates.nextSetBit(0); j >= 0; j = otherStartStates.nextSetBit(j + 1)) {
+				if (visitedPairs.add(((long) i)*numOtherStates + j)) {
+					pairQueue.add(new int[] {i, j});
+				}
+			}
+		}
+
+		while (!pairQueue.isEmpty()) {
+			int[] pair = pairQueue.removeFirst();
+
+			if (firstAutomaton.isAcceptState(pair[0]) && secondAutomaton.isAcceptState(pair[1])) {
+				return true;
+			}
+
+			for (String symbol : firstAutomaton.getSymbols(pair[0])) {
+				BitSet otherNextStates = secondAutomaton.step(pair[1], symbol);
+
+				if (otherNextStates != null) {
+					BitSet nextStates = firstAutomaton.step(pair[0], symbol);
+
+					for (int i = nextStates.nextSetBit(0); i >= 0; i = nextStates.nextSetBit(i + 1)) {
+						for (int j = otherNextStates.nextSetBit(0); j >= 0; j = otherNextStates.nextSetBit(j + 1)) {
+							if (visitedPairs.add(((long) i)*numOtherStates + j)) {
+								pairQueue.add(new int[] {i, j});
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private List<Map<String, Object>> toDesign(List<String> symbols, SpaceAutomaton automaton) {
+		List<Map<String, Object>> design = new ArrayList<Map<String, Object>>(symbols.size());
+
+		for (String symbol : symbols) {
+			design.add(new HashMap<String, Object>(automaton.toComponent(symbol)));
+		}
+
+		return design;
+	}
+
+	private static class SearchPair {
+		private final int state;
+
+		private final BitSet otherStates;
+
+		private final SearchPair parent;
+
+		private final String symbol;
+
+		public SearchPair(int state, BitSet otherStates, SearchPair parent, String symbol) {
+			this.state = state;
+
+			this.otherStates = otherStates;
+
+			this.parent = parent;
+
+			this.symbol = symbol;
+		}
+
+		public List<String> getDesign() {
+			LinkedList<String> design = new LinkedList<String>();
+
+			SearchPair pair = this;
+
+			while (pair.parent != null) {
+				design.addFirst(pair.symbol);
+
+				pair = pair.parent;
+			}
+
+			return design;
+		}
+	}
+}
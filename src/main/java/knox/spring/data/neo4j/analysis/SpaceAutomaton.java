@@ -0,0 +1,265 @@
+package knox.spring.data.neo4j.analysis;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Edge.Orientation;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+	Read-only view of a NodeSpace as a nondeterministic finite automaton, with nodes as states and
+	one symbol for each component ID and orientation that an edge can be traversed with. Edges with
+	undeclared orientation are traversed with either orientation, and edges without component IDs
+	are treated as blank transitions. Sets of states are represented by bitsets over node indices,
+	and every set of states handed out is already closed over blank transitions.
+
+	The view must not be modified, so it can be shared between threads.
+ */
+public class SpaceAutomaton {
+
+	private List<Node> states;
+
+	private Map<Node, Integer> stateIndices;
+
+	private BitSet startStates;
+
+	private BitSet acceptStates;
+
+	private BitSet[] blankClosures;
+
+	private List<Map<String, BitSet>> transitions;
+
+	private Map<String, Map<String, Object>> symbolToComponent;
+
+	public SpaceAutomaton(NodeSpace space) {
+		states = new ArrayList<Node>(space.getNodes());
+
+		Collections.sort(states, new Comparator<Node>() {
+			public int compare(Node node, Node other) {
+				return node.getNodeID().compareTo(other.getNodeID());
+			}
+		});
+
+		stateIndices = new HashMap<Node, Integer>();
+
+		for (int i = 0; i < states.size(); i++) {
+			stateIndices.put(states.get(i), i);
+		}
+
+		closeBlankEdges();
+
+		indexTransitions();
+
+		startStates = new BitSet(states.size());
+
+		acceptStates = new BitSet(states.size());
+
+		for (int i = 0; i < states.size(); i++) {
+			if (states.get(i).isStartNode()) {
+				startStates.or(blankClosures[i]);
+			}
+
+			if (states.get(i).isAcceptNode()) {
+				acceptStates.set(i);
+			}
+		}
+	}
+
+	private void closeBlankEdges() {
+		blankClosures = new BitSet[states.size()];
+
+		for (int i = 0; i < states.size(); i++) {
+			BitSet closure = new BitSet(states.size());
+
+			closure.set(i);
+
+			List<Integer> stateStack = new ArrayList<Integer>();
+
+			stateStack.add(i);
+
+			while (!stateStack.isEmpty()) {
+				Node state = states.get(stateStack.remove(stateStack.size() - 1));
+
+				if (state.hasEdges()) {
+					for (Edge edge : state.getEdges()) {
+						if (!edge.hasComponentIDs()) {
+							int j = stateIndices.get(edge.getHead());
+
+							if (!closure.get(j)) {
+								closure.set(j);
+
+								stateStack.add(j);
+							}
+						}
+					}
+				}
+			}
+
+			blankClosures[i] = closure;
+		}
+	}
+
+	private void indexTransitions() {
+		transitions = new ArrayList<Map<String, BitSet>>(states.size());
+
+		symbolToComponent = new LinkedHashMap<String, Map<String, Object>>();
+
+		for (int i = 0; i < states.size(); i++) {
+			Map<String, BitSet> symbolToStates = new HashMap<String, BitSet>();
+
+			if (states.get(i).hasEdges()) {
+				for (Edge edge : states.get(i).getEdges()) {
+					if (edge.hasComponentIDs()) {
+						BitSet headClosure = blankClosures[stateIndices.get(edge.getHead())];
+
+						for (String symbol : getSymbols(edge)) {
+							if (!symbolToStates.containsKey(symbol)) {
+								symbolToStates.put(symbol, new BitSet(states.size()));
+							}
+
+							symbolToStates.get(symbol).or(headClosure);
+						}
+					}
+				}
+			}
+
+			transitions.add(symbolToStates);
+		}
+	}
+
+	private List<String> getSymbols(Edge edge) {
+		List<String> orientations = new ArrayList<String>(2);
+
+		if (edge.getOrientation() == Orientation.INLINE) {
+			orientations.add(Orientation.INLINE.getValue());
+		} else if (edge.getOrientation() == Orientation.REVERSE_COMPLEMENT) {
+			orientations.add(Orientation.REVERSE_COMPLEMENT.getValue());
+		} else {
+			orientations.add(Orientation.INLINE.getValue());
+
+			orientations.add(Orientation.REVERSE_COMPLEMENT.getValue());
+		}
+
+		List<String> symbols = new ArrayList<String>(edge.getComponentIDs().size()*orientations.size());
+
+		for (String compID : edge.getComponentIDs()) {
+			for (String orientation : orientations) {
+				String symbol = toSymbol(compID, orientation);
+
+				if (!symbolToComponent.containsKey(symbol)) {
+					Map<String, Object> comp = new HashMap<String, Object>();
+
+					comp.put("id", compID);
+
+					comp.put("roles", edge.getComponentRoles());
+
+					comp.put("orientation", orientation);
+
+					symbolToComponent.put(symbol, comp);
+				}
+
+				symbols.add(symbol);
+			}
+		}
+
+		return symbols;
+	}
+
+	/*
+		Orientation is given as in the designs returned by DesignSampler. Anything other than a
+		reverse complement orientation is read as inline.
+	 */
+	public static String toSymbol(String compID, String orientation) {
+		if (Orientation.REVERSE_COMPLEMENT.getValue().equals(orientation)
+				|| Orientation.REVERSE_COMPLEMENT.name().equals(orientation)) {
+			return Orientation.REVERSE_COMPLEMENT.getValue() + ":" + compID;
+		} else {
+			return Orientation.INLINE.getValue() + ":" + compID;
+		}
+	}
+
+	public static String toSymbol(Map<String, Object> comp) {
+		Object orientation = comp.get("orientation");
+
+		return toSymbol(String.valueOf(comp.get("id")), orientation != null ? orientation.toString() : null);
+	}
+
+	public Map<String, Object> toComponent(String symbol) {
+		return symbolToComponent.get(symbol);
+	}
+
+	public BitSet getStartStates() {
+		return (BitSet) startStates.clone();
+	}
+
+	public boolean hasAcceptState(BitSet activeStates) {
+		return activeStates.intersects(acceptStates);
+	}
+
+	public boolean isAcceptState(int i) {
+		return acceptStates.get(i);
+	}
+
+	public int getNumStates() {
+		return states.size();
+	}
+
+	public Set<String> getSymbols(int i) {
+		return transitions.get(i).keySet();
+	}
+
+	/*
+		Returns the sorted symbols on which any of the given states can transition.
+	 */
+	public Set<String> getSymbols(BitSet activeStates) {
+		Set<String> symbols = new TreeSet<String>();
+
+		for (int i = activeStates.nextSetBit(0); i >= 0; i = activeStates.nextSetBit(i + 1)) {
+			symbols.addAll(transitions.get(i).keySet());
+		}
+
+		return symbols;
+	}
+
+	public BitSet step(int i, String symbol) {
+		return transitions.get(i).get(symbol);
+	}
+
+	public BitSet step(BitSet activeStates, String symbol) {
+		BitSet nextStates = new BitSet(states.size());
+
+		for (int i = activeStates.nextSetBit(0); i >= 0; i = activeStates.nextSetBit(i + 1)) {
+			BitSet symbolStates = transitions.get(i).get(symbol);
+
+			if (symbolStates != null) {
+				nextStates.or(symbolStates);
+			}
+		}
+
+		return nextStates;
+	}
+
+	public boolean accepts(List<String> symbols) {
+		BitSet activeStates = getStartStates();
+
+		for (String symbol : symbols) {
+			if (activeStates.isEmpty()) {
+				return false;
+			}
+
+			activeStates = step(activeStates, symbol);
+		}
+
+		return hasAcceptState(activeStates);
+	}
+}
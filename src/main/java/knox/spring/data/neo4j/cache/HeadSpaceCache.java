@@ -0,0 +1,173 @@
+package knox.spring.data.neo4j.cache;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.sample.DesignSampler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Caches the head graphs of recently used design spaces, together with the samplers built from
+ * them, so that reading a design space does not reload its graph from storage every time.
+ *
+ * Entries are keyed by design space ID, a generation that is incremented whenever the design
+ * space is evicted, and the ID of the latest commit on its head branch, which changes whenever the
+ * head graph does. Callers take a key before loading a graph and put the graph under that key, so
+ * a graph loaded while the design space was being modified cannot be found after the eviction
+ * that follows the modification. Graphs are bounded by an estimate of the heap that they
+ * take up (knox.cache.heads.maxBytes) and samplers likewise (knox.cache.samplers.maxBytes).
+ * Cached graphs are shared, so callers that modify a graph must copy it first.
+ */
+@Component
+public class HeadSpaceCache {
+	@Value("${knox.cache.heads.maxBytes:268435456}") long maxHeadBytes;
+
+	@Value("${knox.cache.samplers.maxBytes:268435456}") long maxSamplerBytes;
+
+	/*
+	 * Rough sizes in bytes of a node, an edge and a string on a 64-bit JVM, including the sets,
+	 * lists and map entries that hold them.
+	 */
+	private static final int NODE_BYTES = 160;
+
+	private static final int EDGE_BYTES = 160;
+
+	private static final int STRING_BYTES = 56;
+
+	/*
+	 * Rough sizes in bytes of what a sampler adds for each node with edges, namely its sorted edges
+	 * and alias table and the map entries that hold them, and for each of their edges.
+	 */
+	private static final int SAMPLER_NODE_BYTES = 144;
+
+	private static final int SAMPLER_EDGE_BYTES = 20;
+
+	private WeightedLRUCache<String, NodeSpace> headCache;
+
+	private WeightedLRUCache<String, DesignSampler> samplerCache;
+
+	private final SpaceGenerations generations = new SpaceGenerations();
+
+	@PostConstruct
+	public void initialize() {
+		headCache = new WeightedLRUCache<String, NodeSpace>(maxHeadBytes);
+
+		samplerCache = new WeightedLRUCache<String, DesignSampler>(maxSamplerBytes);
+	}
+
+	public String getKey(String spaceID, Long commitID) {
+		return spaceID + "@" + generations.get(spaceID) + "@" + commitID;
+	}
+
+	public NodeSpace getHead(String key) {
+		return headCache.get(key);
+	}
+
+	public void putHead(String key, NodeSpace head) {
+		headCache.put(key, head, estimateSize(head));
+	}
+
+	public DesignSampler getSampler(String key) {
+		return samplerCache.get(key);
+	}
+
+	public void putSampler(String key, DesignSampler sampler) {
+		samplerCache.put(key, sampler, estimateSize(sampler));
+	}
+
+	/*
+	 * Drops every cached version of a design space, for when it is modified, and moves it on to a
+	 * new generation.
+	 */
+	public void evict(String spaceID) {
+		generations.increment(spaceID);
+
+		headCache.removeByPrefix(spaceID + "@");
+
+		samplerCache.removeByPrefix(spaceID + "@");
+	}
+
+	/*
+	 * Drops every cached version of a design space and its generation, for when it is deleted.
+	 */
+	public void forget(String spaceID) {
+		generations.remove(spaceID);
+
+		headCache.removeByPrefix(spaceID + "@");
+
+		samplerCache.removeByPrefix(spaceID + "@");
+	}
+
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+
+		stats.put("heads", headCache.getStats());
+
+		stats.put("samplers", samplerCache.getStats());
+
+		return stats;
+	}
+
+	public static long estimateSize(NodeSpace space) {
+		long size = 0;
+
+		if (space.hasNodes()) {
+			for (Node node : space.getNodes()) {
+				size += NODE_BYTES + estimateSize(node.getNodeID()) + estimateSize(node.getNodeTypes());
+
+				if (node.hasEdges()) {
+					for (Edge edge : node.getEdges()) {
+						size += EDGE_BYTES + estimateSize(edge.getComponentIDs())
+								+ estimateSize(edge.getComponentRoles());
+					}
+				}
+			}
+		}
+
+		return size;
+	}
+
+	/*
+	 * Includes the head graph that a sampler is built from, which the sampler keeps even once the
+	 * graph has been evicted from the head cache.
+	 */
+	public static long estimateSize(DesignSampler sampler) {
+		NodeSpace space = sampler.getSpace();
+
+		long size = estimateSize(space);
+
+		if (space.hasNodes()) {
+			for (Node node : space.getNodes()) {
+				if (node.hasEdges()) {
+					size += SAMPLER_NODE_BYTES + SAMPLER_EDGE_BYTES * node.getNumEdges();
+				}
+			}
+		}
+
+		return size;
+	}
+
+	private static long estimateSize(Collection<String> strings) {
+		long size = 0;
+
+		if (strings != null) {
+			for (String string : strings) {
+				size += estimateSize(string);
+			}
+		}
+
+		return size;
+	}
+
+	private static long estimateSize(String string) {
+		return string != null ? STRING_BYTES + 2 * string.length() : 0;
+	}
+}
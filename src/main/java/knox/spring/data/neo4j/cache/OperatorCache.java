@@ -0,0 +1,68 @@
+package knox.spring.data.neo4j.cache;
+
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Caches the output graphs of operators, so that applying an operator again to inputs that have
+ * not changed since reuses its earlier output. Outputs are bounded by an estimate of the heap that
+ * they take up (knox.cache.operators.maxBytes).
+ *
+ * A key is a fingerprint of the operator, its parameters and its inputs, each of which is given
+ * by its design space ID, the generation of the design space and the ID of its latest commit. An
+ * output can involve several design spaces, so evicting a design space only moves it on to a new
+ * generation and leaves its outputs to age out of the cache. Outputs are committed to stores that
+ * may keep them, so callers put and take copies rather than the graphs that they commit.
+ */
+@Component
+public class OperatorCache {
+	@Value("${knox.cache.operators.maxBytes:134217728}") long maxOperatorBytes;
+
+	private WeightedLRUCache<String, NodeSpace> operatorCache;
+
+	private final SpaceGenerations generations = new SpaceGenerations();
+
+	@PostConstruct
+	public void initialize() {
+		operatorCache = new WeightedLRUCache<String, NodeSpace>(maxOperatorBytes);
+	}
+
+	public String getInputKey(String spaceID, Long commitID) {
+		return spaceID + "@" + generations.get(spaceID) + "@" + commitID;
+	}
+
+	public String getKey(String operator, List<String> inputKeys, List<Object> params) {
+		return operator + inputKeys + params;
+	}
+
+	public NodeSpace get(String key) {
+		return operatorCache.get(key);
+	}
+
+	public void put(String key, NodeSpace output) {
+		operatorCache.put(key, output, HeadSpaceCache.estimateSize(output));
+	}
+
+	public void evict(String spaceID) {
+		generations.increment(spaceID);
+	}
+
+	/*
+	 * Drops the generation of a deleted design space. Its outputs are left to age out of the cache,
+	 * as on eviction.
+	 */
+	public void forget(String spaceID) {
+		generations.remove(spaceID);
+	}
+
+	public Map<String, Object> getStats() {
+		return operatorCache.getStats();
+	}
+}
@@ -0,0 +1,149 @@
+package knox.spring.data.neo4j.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/*
+ * Caches the responses of read endpoints whose output only depends on the latest commit on the
+ * head branch of a design space and on the request parameters. Responses are bounded by an
+ * estimate of the heap that they take up (knox.cache.responses.maxBytes).
+ *
+ * A key is made of the design space ID, a generation that is incremented whenever the design
+ * space is evicted, the commit ID, the endpoint and the parameters sorted by name. The generation
+ * covers changes that do not make new commits, such as creating a branch, and keeps responses that
+ * were computed while a design space was being modified from being found afterwards. The ETag of a
+ * response is a hash of its key, so that a client can be told its copy is still valid without the
+ * response being computed again, even if it has been evicted.
+ */
+@Component
+public class ResponseCache {
+	@Value("${knox.cache.responses.maxBytes:67108864}") long maxResponseBytes;
+
+	/*
+	 * Rough sizes in bytes of the maps, collections and values that responses are made of.
+	 */
+	private static final int CONTAINER_BYTES = 64;
+
+	private static final int ENTRY_BYTES = 32;
+
+	private static final int VALUE_BYTES = 24;
+
+	private static final int STRING_BYTES = 56;
+
+	private WeightedLRUCache<String, Object> responseCache;
+
+	private final SpaceGenerations generations = new SpaceGenerations();
+
+	/*
+	 * Distinguishes ETags from those handed out before a restart, when generations start over.
+	 */
+	private final long instanceID = new SplittableRandom().nextLong();
+
+	@PostConstruct
+	public void initialize() {
+		responseCache = new WeightedLRUCache<String, Object>(maxResponseBytes);
+	}
+
+	public String getKey(String spaceID, Long commitID, String endpoint, Map<String, Object> params) {
+		StringBuilder key = new StringBuilder();
+
+		key.append(spaceID).append("@").append(generations.get(spaceID))
+				.append("@").append(commitID).append(endpoint);
+
+		char separator = '?';
+
+		for (Map.Entry<String, Object> param : new TreeMap<String, Object>(params).entrySet()) {
+			key.append(separator).append(param.getKey()).append("=").append(param.getValue());
+
+			separator = '&';
+		}
+
+		return key.toString();
+	}
+
+	public String getETag(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+			digest.update(Long.toHexString(instanceID).getBytes(StandardCharsets.UTF_8));
+
+			byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder eTag = new StringBuilder("W/\"");
+
+			for (int i = 0; i < 16; i++) {
+				eTag.append(String.format("%02x", hash[i]));
+			}
+
+			return eTag.append("\"").toString();
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	public Object get(String key) {
+		return responseCache.get(key);
+	}
+
+	public void put(String key, Object response) {
+		responseCache.put(key, response, estimateSize(response));
+	}
+
+	/*
+	 * Drops the responses for a design space and moves it on to a new generation.
+	 */
+	public void evict(String spaceID) {
+		generations.increment(spaceID);
+
+		responseCache.removeByPrefix(spaceID + "@");
+	}
+
+	/*
+	 * Drops the responses for a design space and its generation, for when it is deleted.
+	 */
+	public void forget(String spaceID) {
+		generations.remove(spaceID);
+
+		responseCache.removeByPrefix(spaceID + "@");
+	}
+
+	public Map<String, Object> getStats() {
+		return responseCache.getStats();
+	}
+
+	public static long estimateSize(Object response) {
+		if (response instanceof Map) {
+			long size = CONTAINER_BYTES;
+
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) response).entrySet()) {
+				size += ENTRY_BYTES + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+			}
+
+			return size;
+		} else if (response instanceof Collection) {
+			long size = CONTAINER_BYTES;
+
+			for (Object element : (Collection<?>) response) {
+				size += ENTRY_BYTES + estimateSize(element);
+			}
+
+			return size;
+		} else if (response instanceof String) {
+			return STRING_BYTES + 2 * ((String) response).length();
+		} else if (response != null) {
+			return VALUE_BYTES;
+		} else {
+			return 0;
+		}
+	}
+}
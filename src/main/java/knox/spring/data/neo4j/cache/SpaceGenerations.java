@@ -0,0 +1,38 @@
+package knox.spring.data.neo4j.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Tracks the generation of each design space that has been evicted from a cache. Caches put the
+ * generation of a design space into their keys, so that entries computed before an eviction can
+ * no longer be found afterwards, even if they were put while the design space was being modified.
+ *
+ * Generations are drawn from one counter rather than counted per design space, so that the
+ * generation of a deleted design space can be removed. Creating a design space evicts it, so one
+ * that is created again after being deleted moves on to a generation that no earlier key has.
+ */
+public class SpaceGenerations {
+
+	private final Map<String, Long> spaceIDToGeneration = new HashMap<String, Long>();
+
+	private long lastGeneration = 0;
+
+	public synchronized long get(String spaceID) {
+		Long generation = spaceIDToGeneration.get(spaceID);
+
+		return generation != null ? generation : 0L;
+	}
+
+	public synchronized void increment(String spaceID) {
+		spaceIDToGeneration.put(spaceID, ++lastGeneration);
+	}
+
+	public synchronized void remove(String spaceID) {
+		spaceIDToGeneration.remove(spaceID);
+	}
+
+	synchronized int size() {
+		return spaceIDToGeneration.size();
+	}
+}
@@ -0,0 +1,134 @@
+package knox.spring.data.neo4j.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * A least recently used cache that is bounded by the total weight of its values rather than their
+ * number, so that a few large values cannot crowd the heap while many small ones still fit. The
+ * weight of a value is given when it is put, and is typically an estimate of its size in bytes.
+ * Values that weigh more than the whole cache are not cached at all.
+ *
+ * The cache counts hits, misses and evictions, which are reported by getStats. All methods are
+ * synchronized.
+ */
+public class WeightedLRUCache<K, V> {
+
+	private final long maxWeight;
+
+	private final LinkedHashMap<K, Entry<V>> keyToEntry = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+
+	private long weight = 0;
+
+	private long numHits = 0;
+
+	private long numMisses = 0;
+
+	private long numEvictions = 0;
+
+	public WeightedLRUCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	public synchronized V get(K key) {
+		Entry<V> entry = keyToEntry.get(key);
+
+		if (entry != null) {
+			numHits++;
+
+			return entry.value;
+		} else {
+			numMisses++;
+
+			return null;
+		}
+	}
+
+	public synchronized void put(K key, V value, long valueWeight) {
+		remove(key);
+
+		if (valueWeight > maxWeight) {
+			return;
+		}
+
+		keyToEntry.put(key, new Entry<V>(value, valueWeight));
+
+		weight += valueWeight;
+
+		Iterator<Entry<V>> entries = keyToEntry.values().iterator();
+
+		while (weight > maxWeight && entries.hasNext()) {
+			weight -= entries.next().weight;
+
+			entries.remove();
+
+			numEvictions++;
+		}
+	}
+
+	public synchronized void remove(K key) {
+		Entry<V> entry = keyToEntry.remove(key);
+
+		if (entry != null) {
+			weight -= entry.weight;
+		}
+	}
+
+	/*
+	 * Removes the values whose keys start with the given prefix, which is how callers that key
+	 * values by design space drop every version of a design space at once.
+	 */
+	public synchronized void removeByPrefix(String keyPrefix) {
+		Iterator<Map.Entry<K, Entry<V>>> entries = keyToEntry.entrySet().iterator();
+
+		while (entries.hasNext()) {
+			Map.Entry<K, Entry<V>> entry = entries.next();
+
+			if (entry.getKey().toString().startsWith(keyPrefix)) {
+				weight -= entry.getValue().weight;
+
+				entries.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		keyToEntry.clear();
+
+		weight = 0;
+	}
+
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+
+		stats.put("size", keyToEntry.size());
+
+		stats.put("weight", weight);
+
+		stats.put("maxWeight", maxWeight);
+
+		stats.put("hits", numHits);
+
+		stats.put("misses", numMisses);
+
+		stats.put("hitRate", numHits + numMisses > 0 ? ((double) numHits) / (numHits + numMisses) : 0.0);
+
+		stats.put("evictions", numEvictions);
+
+		return stats;
+	}
+
+	private static class Entry<V> {
+
+		private final V value;
+
+		private final long weight;
+
+		private Entry(V value, long weight) {
+			this.value = value;
+
+			this.weight = weight;
+		}
+	}
+}
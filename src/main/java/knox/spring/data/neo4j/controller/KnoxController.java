@@ -2,10 +2,14 @@ package knox.spring.data.neo4j.controller;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 import knox.spring.data.neo4j.domain.DesignSpace;
 import knox.spring.data.neo4j.exception.*;
+import knox.spring.data.neo4j.sample.DesignEnumerator;
 import knox.spring.data.neo4j.sample.DesignSampler.EnumerateType;
 import knox.spring.data.neo4j.sbol.SBOLConversion;
 import knox.spring.data.neo4j.services.DesignSpaceService;
@@ -14,16 +18,21 @@ import org.sbolstandard.core2.SBOLConversionException;
 import org.sbolstandard.core2.SBOLDocument;
 import org.sbolstandard.core2.SBOLReader;
 import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.SBOLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * @author Nicholas Roehner
@@ -34,6 +43,11 @@ public class KnoxController {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(KnoxController.class);
 
+	/*
+	 * Size in bytes of the buffer that CSV exports are compressed through.
+	 */
+	private static final int CSV_BUFFER_SIZE = 65536;
+
 	@Autowired
 	public KnoxController(DesignSpaceService designSpaceService) {
 		this.designSpaceService = designSpaceService;
@@ -57,6 +71,9 @@ public class KnoxController {
 	 * @apiParam {Boolean} isComplete=true If true, then only edges belonging to paths for designs common to all input design 
 	 * spaces are retained.
 	 * @apiParam {String[]} [roles] If specified, then only edges labeled with at least one of these roles will be AND-ed.
+	 * @apiParam {Boolean} subsumeRoles=false If true and tolerance >= 2, then edges also match when the role of one is a 
+	 * descendant of the role of the other in the Sequence Ontology, e.g. promoter and constitutive_promoter, and roles 
+	 * includes the descendants of the given roles. If labels are intersected, then the more specific roles are kept.
 	 * 
 	 * @apiDescription Intersects designs from input branches. Based on tensor product of graphs.
 	 */
@@ -67,17 +84,18 @@ public class KnoxController {
     		@RequestParam(value = "outputBranchID", required = false) String outputBranchID,
     		@RequestParam(value = "tolerance", required = false, defaultValue = "1") int tolerance,
     		@RequestParam(value = "isComplete", required = false, defaultValue = "true") boolean isComplete,
-    		@RequestParam(value = "roles", required = false, defaultValue = "") List<String> roles) {
+    		@RequestParam(value = "roles", required = false, defaultValue = "") List<String> roles,
+    		@RequestParam(value = "subsumeRoles", required = false, defaultValue = "false") boolean subsumeRoles) {
 		Set<String> uniqueRoles = new HashSet<String>(roles);
 		
 		long startTime = System.nanoTime();
 		
 		if (outputBranchID == null) {
     		designSpaceService.andBranches(targetSpaceID, inputBranchIDs, tolerance, isComplete,
-    				uniqueRoles);
+    				uniqueRoles, subsumeRoles);
 		} else {
 			designSpaceService.andBranches(targetSpaceID, inputBranchIDs, outputBranchID, tolerance,
-					isComplete, uniqueRoles);
+					isComplete, uniqueRoles, subsumeRoles);
 		}
     	
     	return new ResponseEntity<String>("{\"message\": \"Branches were successfully AND-ed after " + 
@@ -221,6 +239,9 @@ public class KnoxController {
 	 * labeled with the same orientation. If tolerance <= 1, then labels on matching edges are intersected; otherwise, they are 
 	 * unioned.
 	 * @apiParam {String[]} [roles] If specified, then only edges labeled with at least one of these roles will be merged.
+	 * @apiParam {Boolean} subsumeRoles=false If true and tolerance >= 2, then edges also match when the role of one is a 
+	 * descendant of the role of the other in the Sequence Ontology, e.g. promoter and constitutive_promoter, and roles 
+	 * includes the descendants of the given roles. If labels are intersected, then the more specific roles are kept.
 	 * 
 	 * @apiDescription Merges designs from input design spaces. Based on strong product of graphs.
 	 */
@@ -231,16 +252,18 @@ public class KnoxController {
     		@RequestParam(value = "outputBranchID", required = false) String outputBranchID,
     		@RequestParam(value = "tolerance", required = false, defaultValue = "2") int tolerance,
     		@RequestParam(value = "isComplete", required = false, defaultValue = "false") boolean isComplete,
-    		@RequestParam(value = "roles", required = false, defaultValue = "") List<String> roles) { 	
+    		@RequestParam(value = "roles", required = false, defaultValue = "") List<String> roles,
+    		@RequestParam(value = "subsumeRoles", required = false, defaultValue = "false") boolean subsumeRoles) { 	
 		Set<String> uniqueRoles = new HashSet<String>(roles);
 		
 		long startTime = System.nanoTime();
 		
 		if (outputBranchID == null) {
-    		designSpaceService.mergeBranches(targetSpaceID, inputBranchIDs, tolerance, uniqueRoles); 
+    		designSpaceService.mergeBranches(targetSpaceID, inputBranchIDs, tolerance, uniqueRoles, 
+    				subsumeRoles); 
     	} else {
     		designSpaceService.mergeBranches(targetSpaceID, inputBranchIDs, outputBranchID, tolerance, 
-    				uniqueRoles);
+    				uniqueRoles, subsumeRoles);
     	}
     	
     	return new ResponseEntity<String>("{\"message\": \"Branches were successfully merged after " + 
@@ -388,6 +411,9 @@ public class KnoxController {
 	 * @apiParam {Boolean} isComplete=true If true, then only the matching edges that belong to paths for designs common to all 
 	 * input design spaces are retained.
 	 * @apiParam {String[]} [roles] If specified, then only edges labeled with at least one of these roles will be AND-ed.
+	 * @apiParam {Boolean} subsumeRoles=false If true and tolerance >= 2, then edges also match when the role of one is a 
+	 * descendant of the role of the other in the Sequence Ontology, e.g. promoter and constitutive_promoter, and roles 
+	 * includes the descendants of the given roles. If labels are intersected, then the more specific roles are kept.
 	 * 
 	 * @apiDescription Intersects designs from input design spaces. Based on tensor product of graphs.
 	 */
@@ -397,17 +423,19 @@ public class KnoxController {
 			@RequestParam(value = "outputSpaceID", required = false) String outputSpaceID,
 			@RequestParam(value = "tolerance", required = false, defaultValue = "1") int tolerance,
 			@RequestParam(value = "isComplete", required = false, defaultValue = "true") boolean isComplete,
-			@RequestParam(value = "roles", required = false, defaultValue = "") List<String> roles) {
+			@RequestParam(value = "roles", required = false, defaultValue = "") List<String> roles,
+			@RequestParam(value = "subsumeRoles", required = false, defaultValue = "false") boolean subsumeRoles) {
 		Set<String> uniqueRoles = new HashSet<String>(roles);
 		
 		try {
 			long startTime = System.nanoTime();
 			
 			if (outputSpaceID == null) {
-				designSpaceService.andDesignSpaces(inputSpaceIDs, tolerance, isComplete, uniqueRoles);
+				designSpaceService.andDesignSpaces(inputSpaceIDs, tolerance, isComplete, uniqueRoles, 
+						subsumeRoles);
 			} else {
 				designSpaceService.andDesignSpaces(inputSpaceIDs, outputSpaceID, tolerance, 
-						isComplete, uniqueRoles);
+						isComplete, uniqueRoles, subsumeRoles);
 			}
 	
 			return new ResponseEntity<String>("{\"message\": \"Design spaces were successfully AND-ed after " +
@@ -426,7 +454,9 @@ public class KnoxController {
 	 * 
 	 * @apiParam {String} targetSpaceID ID for the target design space to be deleted.
 	 * 
-	 * @apiDescription Deletes the target design space.
+	 * @apiDescription Deletes the target design space. The design space disappears at once, while
+	 * its graph and version history are deleted in the background. Progress can be followed with
+	 * /designSpace/deletion.
 	 */
 
 	@RequestMapping(value = "/designSpace", method = RequestMethod.DELETE)
@@ -436,8 +466,8 @@ public class KnoxController {
 	    	
 	        designSpaceService.deleteDesignSpace(targetSpaceID);
 	        
-	        return new ResponseEntity<String>("{\"message\": \"Design space was deleted successfully after " +
-					(System.nanoTime() - startTime) + " ns.\"}", HttpStatus.NO_CONTENT);
+	        return new ResponseEntity<String>("{\"message\": \"Deletion of design space was started successfully after " +
+					(System.nanoTime() - startTime) + " ns.\"}", HttpStatus.ACCEPTED);
 	    } catch (DesignSpaceNotFoundException ex) {
 	        return new ResponseEntity<String>(
 	                "{\"message\": \"" + ex.getMessage() + "\"}",
@@ -445,6 +475,30 @@ public class KnoxController {
 	    }
 	}
 
+	/**
+	 * @api {get} /designSpace/deletion Deletion
+	 * @apiName getDeletionProgress
+	 * @apiGroup DesignSpace
+	 * 
+	 * @apiParam {String} targetSpaceID ID for the design space being deleted.
+	 * 
+	 * @apiDescription Returns the status of the latest deletion of the target design space
+	 * ("deleting", "deleted" or "failed") and the numbers of nodes, commits and snapshots deleted
+	 * so far.
+	 */
+
+	@RequestMapping(value = "/designSpace/deletion", method = RequestMethod.GET)
+	public ResponseEntity<?> getDeletionProgress(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID) {
+	    try {
+	        return new ResponseEntity<Map<String, Object>>(designSpaceService.getDeletionProgress(targetSpaceID),
+	        		HttpStatus.OK);
+	    } catch (DesignSpaceNotFoundException ex) {
+	        return new ResponseEntity<String>(
+	                "{\"message\": \"" + ex.getMessage() + "\"}",
+	                HttpStatus.NOT_FOUND);
+	    }
+	}
+
 	/**
 	 * @api {post} /designSpace/join Join
 	 * @apiName joinDesignSpaces
@@ -493,6 +547,9 @@ public class KnoxController {
 	 * labeled with the same orientation. If tolerance <= 1, then labels on matching edges are intersected; otherwise, they are 
 	 * unioned.
 	 * @apiParam {String[]} [roles] If specified, then only edges labeled with at least one of these roles will be AND-ed.
+	 * @apiParam {Boolean} subsumeRoles=false If true and tolerance >= 2, then edges also match when the role of one is a 
+	 * descendant of the role of the other in the Sequence Ontology, e.g. promoter and constitutive_promoter, and roles 
+	 * includes the descendants of the given roles. If labels are intersected, then the more specific roles are kept.
 	 * 
 	 * @apiDescription Merges designs from input design spaces. Based on strong product of graphs.
 	 */
@@ -501,16 +558,18 @@ public class KnoxController {
 	public ResponseEntity<String> mergeDesignSpaces(@RequestParam(value = "inputSpaceIDs", required = true) List<String> inputSpaceIDs,
 			@RequestParam(value = "outputSpaceID", required = false) String outputSpaceID,
 			@RequestParam(value = "tolerance", required = false, defaultValue = "2") int tolerance,
-			@RequestParam(value = "roles", required = false, defaultValue = "") List<String> roles) {
+			@RequestParam(value = "roles", required = false, defaultValue = "") List<String> roles,
+			@RequestParam(value = "subsumeRoles", required = false, defaultValue = "false") boolean subsumeRoles) {
 		Set<String> uniqueRoles = new HashSet<String>(roles);
 		
 		try {
 			long startTime = System.nanoTime();
 			
 			if (outputSpaceID == null) {
-				designSpaceService.mergeDesignSpaces(inputSpaceIDs, tolerance, uniqueRoles);
+				designSpaceService.mergeDesignSpaces(inputSpaceIDs, tolerance, uniqueRoles, subsumeRoles);
 			} else {
-				designSpaceService.mergeDesignSpaces(inputSpaceIDs, outputSpaceID, tolerance, uniqueRoles);
+				designSpaceService.mergeDesignSpaces(inputSpaceIDs, outputSpaceID, tolerance, uniqueRoles, 
+						subsumeRoles);
 			}
 			
 			return new ResponseEntity<String>("{\"message\": \"Design spaces were successfully merged after " +
@@ -591,9 +650,29 @@ public class KnoxController {
 	    }
 	}
 
+	/**
+	 * @api {post} /import/csv Import CSV
+	 * @apiName importCSV
+	 * @apiGroup Import
+	 * 
+	 * @apiParam {File[]} inputCSVFiles CSV files of designs, with one design per row, and of components. 
+	 * Components prefixed with "-" in a design are reverse complemented.
+	 * @apiParam {String} outputSpacePrefix Prefix for the IDs of the imported design spaces.
+	 * @apiParam {Boolean} isMerge=true If true, the designs are merged into one design space named after
+	 * the prefix. Otherwise each design becomes a design space of its own, numbered by its row.
+	 * @apiParam {Boolean} isExact=false If true, merged designs are built in linear time into a design space 
+	 * that accepts exactly the imported designs. Otherwise they are merged at tolerance 1, which can also 
+	 * recombine designs that share components.
+	 * 
+	 * @apiDescription Imports designs from CSV files. Designs are merged unless isMerge is false, in
+	 * which case they are written in batches and the progress of the import can be followed with
+	 * /import/csv/progress.
+	 */
 	@RequestMapping(value = "/import/csv", method = RequestMethod.POST)
     public ResponseEntity<String> importCSV(@RequestParam("inputCSVFiles[]") List<MultipartFile> inputCSVFiles,
-    		@RequestParam(value = "outputSpacePrefix", required = true) String outputSpacePrefix) {
+    		@RequestParam(value = "outputSpacePrefix", required = true) String outputSpacePrefix,
+    		@RequestParam(value = "isMerge", required = false, defaultValue = "true") boolean isMerge,
+    		@RequestParam(value = "isExact", required = false, defaultValue = "false") boolean isExact) {
     	List<InputStream> inputCSVStreams = new ArrayList<InputStream>();
     	
     	for (MultipartFile inputCSVFile : inputCSVFiles) {
@@ -607,14 +686,38 @@ public class KnoxController {
     		}
     	}
     	
-		designSpaceService.importCSV(inputCSVStreams, outputSpacePrefix, true);
+		designSpaceService.importCSV(inputCSVStreams, outputSpacePrefix, isMerge, isExact);
 		
         return new ResponseEntity<String>("No content", HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * @api {get} /import/csv/progress Import CSV Progress
+     * @apiName getImportProgress
+     * @apiGroup Import
+     * 
+     * @apiParam {String} outputSpacePrefix Prefix given to the import.
+     * 
+     * @apiDescription Reports the progress of the latest import with the given prefix: its status, the 
+     * numbers of designs read, design spaces created and skipped and batches written, the elapsed time 
+     * and the import rate, along with an error if the import failed.
+     */
+    @RequestMapping(value = "/import/csv/progress", method = RequestMethod.GET)
+    public ResponseEntity<?> getImportProgress(@RequestParam(value = "outputSpacePrefix", required = true) String outputSpacePrefix) {
+        Map<String, Object> progress = designSpaceService.getImportProgress(outputSpacePrefix);
+        
+        if (progress == null) {
+            return new ResponseEntity<String>("{\"message\": \"No import with prefix " + outputSpacePrefix 
+            		+ " was started.\"}", HttpStatus.NOT_FOUND);
+        }
+        
+        return new ResponseEntity<Map<String, Object>>(progress, HttpStatus.OK);
+    }
+
     @RequestMapping(value = "/merge/csv", method = RequestMethod.POST)
     public ResponseEntity<String> mergeCSV(@RequestParam("inputCSVFiles[]") List<MultipartFile> inputCSVFiles,
-            @RequestParam(value = "outputSpacePrefix", required = true) String outputSpacePrefix) {
+            @RequestParam(value = "outputSpacePrefix", required = true) String outputSpacePrefix,
+            @RequestParam(value = "isExact", required = false, defaultValue = "false") boolean isExact) {
         List<InputStream> inputCSVStreams = new ArrayList<InputStream>();
 
         for (MultipartFile inputCSVFile : inputCSVFiles) {
@@ -628,14 +731,15 @@ public class KnoxController {
             }
         }
 
-        designSpaceService.importCSV(inputCSVStreams, outputSpacePrefix, true);
+        designSpaceService.importCSV(inputCSVStreams, outputSpacePrefix, true, isExact);
 
         return new ResponseEntity<String>("No content", HttpStatus.NO_CONTENT);
     }
 
     @RequestMapping(value = "/sbol/import", method = RequestMethod.POST)
     public ResponseEntity<String> importSBOL(@RequestParam("inputSBOLFiles[]") List<MultipartFile> inputSBOLFiles,
-    		@RequestParam(value = "outputSpaceID", required = false) String outputSpaceID) {
+    		@RequestParam(value = "outputSpaceID", required = false) String outputSpaceID,
+    		@RequestParam(value = "parallelism", required = false, defaultValue = "1") int parallelism) {
     	List<SBOLDocument> sbolDocs = new ArrayList<SBOLDocument>();
     	
     	for (MultipartFile inputSBOLFile : inputSBOLFiles) {
@@ -650,7 +754,7 @@ public class KnoxController {
     	}
     	
     	try {
-			designSpaceService.importSBOL(sbolDocs, outputSpaceID);
+			designSpaceService.importSBOL(sbolDocs, outputSpaceID, parallelism);
 		} catch (IOException | SBOLValidationException | SBOLConversionException | SBOLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -659,9 +763,73 @@ public class KnoxController {
         return new ResponseEntity<String>("No content", HttpStatus.NO_CONTENT);
     }
     
+	/**
+	 * @api {get} /sbol/export Export SBOL
+	 * @apiName exportSBOL
+	 * @apiGroup Export
+	 * 
+	 * @apiParam {String} targetSpaceID ID for the design space to be exported.
+	 * 
+	 * @apiDescription Exports the head of the target design space as an SBOL document of 
+	 * CombinatorialDerivations, whose size grows with that of the design space rather than with its 
+	 * number of designs. The document is built in memory before the response starts, since it is 
+	 * serialized by SBOLWriter as a whole, and only its serialization is streamed to the response.
+	 */
+    @RequestMapping(value = "/sbol/export", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportSBOL(
+    		@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID) {
+    	final SBOLDocument sbolDoc;
+    	
+    	try {
+    		sbolDoc = designSpaceService.exportSBOL(targetSpaceID);
+    	} catch (DesignSpaceNotFoundException ex) {
+    		return new ResponseEntity<StreamingResponseBody>(
+    				createMessageBody(ex.getMessage()), HttpStatus.NOT_FOUND);
+    	} catch (SBOLValidationException ex) {
+    		return new ResponseEntity<StreamingResponseBody>(
+    				createMessageBody(ex.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
+    	}
+    	
+    	HttpHeaders headers = new HttpHeaders();
+    	
+    	headers.set(HttpHeaders.CONTENT_TYPE, "application/rdf+xml");
+    	
+    	headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + targetSpaceID + ".xml\"");
+    	
+    	StreamingResponseBody body = new StreamingResponseBody() {
+    		public void writeTo(OutputStream outputStream) throws IOException {
+    			try {
+    				SBOLWriter.write(sbolDoc, outputStream);
+    			} catch (SBOLConversionException ex) {
+    				throw new IOException(ex);
+    			}
+    		}
+    	};
+    	
+    	return new ResponseEntity<StreamingResponseBody>(body, headers, HttpStatus.OK);
+    }
+    
+    private StreamingResponseBody createMessageBody(final String message) {
+    	return new StreamingResponseBody() {
+    		public void writeTo(OutputStream outputStream) throws IOException {
+    			outputStream.write(("{\"message\": \"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+    		}
+    	};
+    }
+    
     @RequestMapping(value = "/branch/graph/d3", method = RequestMethod.GET)
-    public Map<String, Object> d3GraphBranches(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID) {
-        return designSpaceService.d3GraphBranches(targetSpaceID);
+    public ResponseEntity<Object> d3GraphBranches(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String responseKey = designSpaceService.getResponseKey(targetSpaceID, "/branch/graph/d3",
+                new HashMap<String, Object>());
+        
+        ResponseEntity<Object> cachedResponse = getCachedResponse(responseKey, ifNoneMatch);
+        
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        
+        return cacheResponse(responseKey, designSpaceService.d3GraphBranches(targetSpaceID));
     }
 
     @RequestMapping(value = "/designSpace", method = RequestMethod.POST)
@@ -695,14 +863,108 @@ public class KnoxController {
     }
 
     @RequestMapping(value = "/designSpace/graph/d3", method = RequestMethod.GET)
-    public Map<String, Object> d3GraphDesignSpace(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID) {
-        return designSpaceService.d3GraphDesignSpace(targetSpaceID);
+    public ResponseEntity<Object> d3GraphDesignSpace(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String responseKey = designSpaceService.getResponseKey(targetSpaceID, "/designSpace/graph/d3",
+                new HashMap<String, Object>());
+        
+        ResponseEntity<Object> cachedResponse = getCachedResponse(responseKey, ifNoneMatch);
+        
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        
+        return cacheResponse(responseKey, designSpaceService.d3GraphDesignSpace(targetSpaceID));
+    }
+
+    /**
+     * @api {get} /designSpace/export/csv Export CSV
+     * @apiName exportCSV
+     * @apiGroup Export
+     * 
+     * @apiParam {String} targetSpaceID ID for the design space to be exported.
+     * @apiParam {Integer} numDesigns=0 Maximum number of designs exported. If zero or less, all are exported.
+     * @apiParam {Integer} minLength=0 Minimum number of components in an exported design.
+     * @apiParam {Integer} maxLength=0 Maximum number of components in an exported design. If zero or less, 
+     * cycles are not followed.
+     * 
+     * @apiDescription Exports the designs of the target design space as a gzipped CSV file with one design 
+     * per row under a "design" header, as read by /import/csv. Components on reverse complement edges are 
+     * prefixed with "-". Designs are written to the response as they are enumerated.
+     */
+    @RequestMapping(value = "/designSpace/export/csv", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> exportCSV(
+    		@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
+            @RequestParam(value = "numDesigns", required = false, defaultValue = "0") int numDesigns,
+            @RequestParam(value = "minLength", required = false, defaultValue = "0") int minLength,
+            @RequestParam(value = "maxLength", required = false, defaultValue = "0") int maxLength) {
+    	final DesignEnumerator designEnumerator;
+    	
+    	try {
+    		designEnumerator = designSpaceService.enumerateDesignSpaceLazily(targetSpaceID, numDesigns, 
+    				minLength, maxLength);
+    	} catch (DesignSpaceNotFoundException ex) {
+    		return new ResponseEntity<StreamingResponseBody>(
+    				createMessageBody(ex.getMessage()), HttpStatus.NOT_FOUND);
+    	}
+    	
+    	HttpHeaders headers = new HttpHeaders();
+    	
+    	headers.set(HttpHeaders.CONTENT_TYPE, "application/gzip");
+    	
+    	headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + targetSpaceID + ".csv.gz\"");
+    	
+    	StreamingResponseBody body = new StreamingResponseBody() {
+    		public void writeTo(OutputStream outputStream) throws IOException {
+    			GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, CSV_BUFFER_SIZE);
+    			
+    			designSpaceService.writeCSVDesigns(designEnumerator, gzipStream);
+    			
+    			gzipStream.finish();
+    		}
+    	};
+    	
+    	return new ResponseEntity<StreamingResponseBody>(body, headers, HttpStatus.OK);
     }
 
+    /*
+     * Samples are only cached when they are seeded, since they are random otherwise. Samples with 
+     * sequences are not cached, since the sequences of components can be imported again without 
+     * a new commit. Seeded samples do not depend on parallelism, so it is left out of their keys.
+     */
     @RequestMapping(value = "/designSpace/sample", method = RequestMethod.GET)
-    public Set<List<String>> sample(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
-            @RequestParam(value = "numDesigns", required = false, defaultValue = "1") int numDesigns) {
-        return designSpaceService.sampleDesignSpace(targetSpaceID, numDesigns);
+    public ResponseEntity<Object> sample(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
+            @RequestParam(value = "numDesigns", required = false, defaultValue = "1") int numDesigns,
+            @RequestParam(value = "seed", required = false) Long seed,
+            @RequestParam(value = "parallelism", required = false, defaultValue = "1") int parallelism,
+            @RequestParam(value = "withSequence", required = false, defaultValue = "false") boolean withSequence,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        if (withSequence) {
+            return new ResponseEntity<Object>(designSpaceService.sampleDesignSequences(targetSpaceID, numDesigns, 
+            		seed, parallelism), HttpStatus.OK);
+        }
+        
+        if (seed == null) {
+            return new ResponseEntity<Object>(designSpaceService.sampleDesignSpace(targetSpaceID, numDesigns, 
+            		seed, parallelism), HttpStatus.OK);
+        }
+        
+        Map<String, Object> params = new HashMap<String, Object>();
+        
+        params.put("numDesigns", numDesigns);
+        
+        params.put("seed", seed);
+        
+        String responseKey = designSpaceService.getResponseKey(targetSpaceID, "/designSpace/sample", params);
+        
+        ResponseEntity<Object> cachedResponse = getCachedResponse(responseKey, ifNoneMatch);
+        
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        
+        return cacheResponse(responseKey, designSpaceService.sampleDesignSpace(targetSpaceID, numDesigns, 
+        		seed, parallelism));
     }
 
     @RequestMapping(value = "/designSpace/list", method = RequestMethod.GET)
@@ -710,15 +972,210 @@ public class KnoxController {
         return designSpaceService.listDesignSpaces();
     }
 
+    /*
+     * Designs with sequences are not cached, for the same reason as samples with sequences. BFS 
+     * and DFS enumerate the same designs in the same order regardless of parallelism, so neither 
+     * is part of the key.
+     */
     @RequestMapping(value = "/designSpace/enumerate", method = RequestMethod.GET)
-    public List<List<Map<String, Object>>> enumerate(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
+    public ResponseEntity<Object> enumerate(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
             @RequestParam(value = "numDesigns", required = false, defaultValue = "0") int numDesigns,
             @RequestParam(value = "minLength", required = false, defaultValue = "0") int minLength,
             @RequestParam(value = "maxLength", required = false, defaultValue = "0") int maxLength,
-            @RequestParam(value = "bfs", required = true, defaultValue = "true") boolean bfs) {
+            @RequestParam(value = "bfs", required = true, defaultValue = "true") boolean bfs,
+            @RequestParam(value = "parallelism", required = false, defaultValue = "1") int parallelism,
+            @RequestParam(value = "withSequence", required = false, defaultValue = "false") boolean withSequence,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         EnumerateType enumerateType = bfs ? EnumerateType.BFS : EnumerateType.DFS;  // BFS is default
         
-        return designSpaceService.enumerateDesignSpace(targetSpaceID, numDesigns, minLength, maxLength, 
-        		enumerateType);
+        if (withSequence) {
+            return new ResponseEntity<Object>(designSpaceService.enumerateDesignSequences(targetSpaceID, numDesigns, 
+            		minLength, maxLength, enumerateType, parallelism), HttpStatus.OK);
+        }
+        
+        Map<String, Object> params = new HashMap<String, Object>();
+        
+        params.put("numDesigns", numDesigns);
+        
+        params.put("minLength", minLength);
+        
+        params.put("maxLength", maxLength);
+        
+        String responseKey = designSpaceService.getResponseKey(targetSpaceID, "/designSpace/enumerate", params);
+        
+        ResponseEntity<Object> cachedResponse = getCachedResponse(responseKey, ifNoneMatch);
+        
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+        
+        return cacheResponse(responseKey, designSpaceService.enumerateDesignSpace(targetSpaceID, numDesigns, 
+        		minLength, maxLength, enumerateType, parallelism));
+    }
+
+    /**
+     * @api {post} /designSpace/contains Contains
+     * @apiName containsDesigns
+     * @apiGroup DesignSpace
+     * 
+     * @apiParam {String} targetSpaceID ID for the target design space.
+     * @apiParam {Integer} parallelism=1 Number of threads used to check designs.
+     * 
+     * @apiDescription Checks which of the designs in the request body belong to the target design space. Designs
+     * are given as lists of components with an id and an optional orientation, as returned by enumerate.
+     */
+    @RequestMapping(value = "/designSpace/contains", method = RequestMethod.POST)
+    public ResponseEntity<List<Boolean>> containsDesigns(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
+            @RequestParam(value = "parallelism", required = false, defaultValue = "1") int parallelism,
+            @RequestBody List<List<Map<String, Object>>> designs) {
+        return new ResponseEntity<List<Boolean>>(designSpaceService.matchDesigns(targetSpaceID, designs, parallelism),
+                HttpStatus.OK);
+    }
+
+    /**
+     * @api {post} /designSpace/contains/csv Contains CSV
+     * @apiName containsCSVDesigns
+     * @apiGroup DesignSpace
+     * 
+     * @apiParam {File[]} inputCSVFiles CSV files of designs, with one design per row, as written by /designSpace/export/csv.
+     * Components prefixed with "-" are reverse complemented.
+     * @apiParam {String} targetSpaceID ID for the target design space.
+     * @apiParam {Integer} parallelism=1 Number of threads used to check designs.
+     * 
+     * @apiDescription Checks which of the designs in the CSV files belong to the target design space, in the 
+     * order that they are read.
+     */
+    @RequestMapping(value = "/designSpace/contains/csv", method = RequestMethod.POST)
+    public ResponseEntity<List<Boolean>> containsCSVDesigns(@RequestParam("inputCSVFiles[]") List<MultipartFile> inputCSVFiles,
+            @RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
+            @RequestParam(value = "parallelism", required = false, defaultValue = "1") int parallelism) {
+        List<InputStream> inputCSVStreams = new ArrayList<InputStream>();
+
+        for (MultipartFile inputCSVFile : inputCSVFiles) {
+            if (!inputCSVFile.isEmpty()) {
+                try {
+                    inputCSVStreams.add(inputCSVFile.getInputStream());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        return new ResponseEntity<List<Boolean>>(designSpaceService.matchCSVDesigns(targetSpaceID, inputCSVStreams,
+                parallelism), HttpStatus.OK);
+    }
+
+    /**
+     * @api {get} /designSpace/compare Compare
+     * @apiName compareDesignSpaces
+     * @apiGroup DesignSpace
+     * 
+     * @apiParam {String} firstSpaceID ID for the first design space.
+     * @apiParam {String} [firstBranchID] ID for a branch of the first design space. If specified, then its latest commit is 
+     * compared instead of the head of the first design space.
+     * @apiParam {String} secondSpaceID ID for the second design space.
+     * @apiParam {String} [secondBranchID] ID for a branch of the second design space. If specified, then its latest commit is 
+     * compared instead of the head of the second design space.
+     * 
+     * @apiDescription Determines whether the designs of the first design space are equal to, a subset of, a superset of, overlap 
+     * with or are disjoint from those of the second, along with a counterexample design belonging to only one of them.
+     */
+    @RequestMapping(value = "/designSpace/compare", method = RequestMethod.GET)
+    public ResponseEntity<Object> compareDesignSpaces(@RequestParam(value = "firstSpaceID", required = true) String firstSpaceID,
+            @RequestParam(value = "firstBranchID", required = false) String firstBranchID,
+            @RequestParam(value = "secondSpaceID", required = true) String secondSpaceID,
+            @RequestParam(value = "secondBranchID", required = false) String secondBranchID) {
+        try {
+            return new ResponseEntity<Object>(designSpaceService.compareDesignSpaces(firstSpaceID, firstBranchID,
+                    secondSpaceID, secondBranchID), HttpStatus.OK);
+        } catch (DesignSpaceNotFoundException | BranchNotFoundException ex) {
+            return new ResponseEntity<Object>("{\"message\": \"" + ex.getMessage() + "\"}", 
+                    HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * @api {get} /designSpace/analytics Analytics
+     * @apiName analyzeDesignSpace
+     * @apiGroup DesignSpace
+     * 
+     * @apiParam {String} targetSpaceID ID for the design space to be analyzed.
+     * @apiParam {Integer} maxLength=0 Maximum number of components in a counted design. If zero or less, 
+     * cycles are not followed.
+     * 
+     * @apiDescription Counts the designs of the target design space without enumerating them: in total, by 
+     * length and by the component IDs, roles and orientations that they use, and reports whether the 
+     * design space has cycles.
+     */
+    @RequestMapping(value = "/designSpace/analytics", method = RequestMethod.GET)
+    public Map<String, Object> analyze(@RequestParam(value = "targetSpaceID", required = true) String targetSpaceID,
+            @RequestParam(value = "maxLength", required = false, defaultValue = "0") int maxLength) {
+        return designSpaceService.analyzeDesignSpace(targetSpaceID, maxLength);
+    }
+
+    /**
+     * @api {get} /cache/stats Cache Stats
+     * @apiName getCacheStats
+     * @apiGroup Cache
+     * 
+     * @apiDescription Reports the number of entries, the weight against its bound, the hits, misses, hit rate 
+     * and evictions of each of the caches of head graphs, samplers, responses and operator outputs.
+     */
+    @RequestMapping(value = "/cache/stats", method = RequestMethod.GET)
+    public Map<String, Object> getCacheStats() {
+        return designSpaceService.getCacheStats();
+    }
+
+    /*
+     * Answers a read request from the response cache: with Not Modified if the client already has 
+     * the response, or with the cached response if there is one. Returns null if the response has 
+     * to be computed, or if it cannot be cached because the response key is null.
+     */
+    private ResponseEntity<Object> getCachedResponse(String responseKey, String ifNoneMatch) {
+        if (responseKey == null) {
+            return null;
+        }
+        
+        HttpHeaders headers = new HttpHeaders();
+        
+        headers.setETag(designSpaceService.getResponseETag(responseKey));
+        
+        if (matchesETag(ifNoneMatch, headers.getETag())) {
+            return new ResponseEntity<Object>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        
+        Object response = designSpaceService.getCachedResponse(responseKey);
+        
+        if (response != null) {
+            return new ResponseEntity<Object>(response, headers, HttpStatus.OK);
+        }
+        
+        return null;
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch != null) {
+            for (String clientETag : ifNoneMatch.split(",")) {
+                if (clientETag.trim().equals(eTag) || clientETag.trim().equals("*")) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+
+    private ResponseEntity<Object> cacheResponse(String responseKey, Object response) {
+        if (responseKey == null) {
+            return new ResponseEntity<Object>(response, HttpStatus.OK);
+        }
+        
+        designSpaceService.cacheResponse(responseKey, response);
+        
+        HttpHeaders headers = new HttpHeaders();
+        
+        headers.setETag(designSpaceService.getResponseETag(responseKey));
+        
+        return new ResponseEntity<Object>(response, headers, HttpStatus.OK);
     }
 }
@@ -77,6 +77,10 @@ public class Branch {
     	this.commits = commits;
     }
     
+    public Long getGraphID() {
+    	return id;
+    }
+    
     public Commit getLatestCommit() { 
     	return latestCommit; 
     }
@@ -0,0 +1,141 @@
+package knox.spring.data.neo4j.domain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+	Changes made to a design space since its changes were last tracked, as computed by
+	ChangeTracker. Entities that already exist in the database are referred to by graph ID and new
+	ones by the objects themselves, whose graph IDs are only known once they have been written.
+ */
+public class ChangeSet {
+
+	private ChangeTracker tracker;
+
+	boolean isSpaceCreated;
+
+	boolean isSpaceModified;
+
+	List<Node> createdNodes = new ArrayList<Node>();
+
+	Map<Long, List<String>> modifiedNodeTypes = new HashMap<Long, List<String>>();
+
+	List<Long> deletedNodeGraphIDs = new ArrayList<Long>();
+
+	List<Edge> createdEdges = new ArrayList<Edge>();
+
+	List<Long> deletedEdgeGraphIDs = new ArrayList<Long>();
+
+	List<Branch> createdBranches = new ArrayList<Branch>();
+
+	List<Branch> modifiedLatestCommits = new ArrayList<Branch>();
+
+	Map<Branch, List<Commit>> addedBranchCommits = new IdentityHashMap<Branch, List<Commit>>();
+
+	Map<Branch, List<Commit>> removedBranchCommits = new IdentityHashMap<Branch, List<Commit>>();
+
+	List<Long> deletedBranchGraphIDs = new ArrayList<Long>();
+
+	List<Commit> createdCommits = new ArrayList<Commit>();
+
+	List<Long> deletedCommitGraphIDs = new ArrayList<Long>();
+
+	Branch selectedBranch;
+
+	ChangeSet(ChangeTracker tracker) {
+		this.tracker = tracker;
+	}
+
+	/*
+		Returns the graph ID of a design space, node, edge, branch, commit or snapshot, or null if
+		it has not been written yet.
+	 */
+	public Long getGraphID(Object entity) {
+		return tracker.getGraphID(entity);
+	}
+
+	public Long getNodeGraphID(String nodeID) {
+		return tracker.getNodeGraphID(nodeID);
+	}
+
+	public boolean isEmpty() {
+		return !isSpaceCreated && !isSpaceModified && createdNodes.isEmpty()
+				&& modifiedNodeTypes.isEmpty() && deletedNodeGraphIDs.isEmpty()
+				&& createdEdges.isEmpty() && deletedEdgeGraphIDs.isEmpty()
+				&& createdBranches.isEmpty() && modifiedLatestCommits.isEmpty()
+				&& addedBranchCommits.isEmpty() && removedBranchCommits.isEmpty()
+				&& deletedBranchGraphIDs.isEmpty() && createdCommits.isEmpty()
+				&& deletedCommitGraphIDs.isEmpty() && selectedBranch == null;
+	}
+
+	public boolean isSpaceCreated() {
+		return isSpaceCreated;
+	}
+
+	public boolean isSpaceModified() {
+		return isSpaceModified;
+	}
+
+	public List<Node> getCreatedNodes() {
+		return createdNodes;
+	}
+
+	public Map<Long, List<String>> getModifiedNodeTypes() {
+		return modifiedNodeTypes;
+	}
+
+	public List<Long> getDeletedNodeGraphIDs() {
+		return deletedNodeGraphIDs;
+	}
+
+	public List<Edge> getCreatedEdges() {
+		return createdEdges;
+	}
+
+	public List<Long> getDeletedEdgeGraphIDs() {
+		return deletedEdgeGraphIDs;
+	}
+
+	public List<Branch> getCreatedBranches() {
+		return createdBranches;
+	}
+
+	public List<Branch> getModifiedLatestCommits() {
+		return modifiedLatestCommits;
+	}
+
+	public Map<Branch, List<Commit>> getAddedBranchCommits() {
+		return addedBranchCommits;
+	}
+
+	public Map<Branch, List<Commit>> getRemovedBranchCommits() {
+		return removedBranchCommits;
+	}
+
+	public List<Long> getDeletedBranchGraphIDs() {
+		return deletedBranchGraphIDs;
+	}
+
+	public List<Commit> getCreatedCommits() {
+		return createdCommits;
+	}
+
+	public List<Long> getDeletedCommitGraphIDs() {
+		return deletedCommitGraphIDs;
+	}
+
+	public Branch getSelectedBranch() {
+		return selectedBranch;
+	}
+
+	public String toString() {
+		return "nodes +" + createdNodes.size() + " ~" + modifiedNodeTypes.size() + " -"
+				+ deletedNodeGraphIDs.size() + ", edges +" + createdEdges.size() + " -"
+				+ deletedEdgeGraphIDs.size() + ", branches +" + createdBranches.size() + " ~"
+				+ modifiedLatestCommits.size() + " -" + deletedBranchGraphIDs.size() + ", commits +"
+				+ createdCommits.size() + " -" + deletedCommitGraphIDs.size();
+	}
+}
@@ -0,0 +1,328 @@
+package knox.spring.data.neo4j.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+	Keeps a baseline of what a design space looked like when it was loaded or last saved, so that
+	saving it only has to write what has changed since.
+
+	Branches and commits are tracked by identity, since they stay the same objects while a design
+	space is in memory. Nodes of the head graph are tracked by node ID and edges by their tail and
+	head IDs and content, since operators routinely replace them with equal copies. Snapshots that
+	have been written are never modified, so only new snapshots are part of the changes.
+ */
+public class ChangeTracker {
+
+	private Map<Object, Long> writtenGraphIDs = new IdentityHashMap<Object, Long>();
+
+	private int nodeIndex;
+
+	private int commitIndex;
+
+	private Branch headBranch;
+
+	private Map<String, Long> nodeIDToGraphID = new HashMap<String, Long>();
+
+	private Map<String, Set<String>> nodeIDToTypes = new HashMap<String, Set<String>>();
+
+	private Map<List<Object>, LinkedList<Long>> edgeKeyToGraphIDs = new HashMap<List<Object>, LinkedList<Long>>();
+
+	private Map<Branch, Commit> branchToLatestCommit = new IdentityHashMap<Branch, Commit>();
+
+	private Map<Branch, Set<Commit>> branchToCommits = new IdentityHashMap<Branch, Set<Commit>>();
+
+	private Set<Commit> commits = newIdentitySet();
+
+	/*
+		Starts from an empty baseline, so that all of a new design space is written.
+	 */
+	public ChangeTracker() {
+
+	}
+
+	public ChangeTracker(DesignSpace space) {
+		capture(space);
+	}
+
+	public Long getGraphID(Object entity) {
+		if (writtenGraphIDs.containsKey(entity)) {
+			return writtenGraphIDs.get(entity);
+		} else if (entity instanceof NodeSpace) {
+			return ((NodeSpace) entity).getGraphID();
+		} else if (entity instanceof Node) {
+			return ((Node) entity).getGraphID();
+		} else if (entity instanceof Edge) {
+			return ((Edge) entity).getGraphID();
+		} else if (entity instanceof Branch) {
+			return ((Branch) entity).getGraphID();
+		} else if (entity instanceof Commit) {
+			return ((Commit) entity).getGraphID();
+		} else {
+			return null;
+		}
+	}
+
+	public Long getNodeGraphID(String nodeID) {
+		return nodeIDToGraphID.get(nodeID);
+	}
+
+	public ChangeSet diff(DesignSpace space) {
+		ChangeSet changes = new ChangeSet(this);
+
+		changes.isSpaceCreated = getGraphID(space) == null;
+
+		changes.isSpaceModified = !changes.isSpaceCreated && (space.getNodeIndex() != nodeIndex
+				|| space.getCommitIndex() != commitIndex);
+
+		diffNodes(space, changes);
+
+		diffBranches(space, changes);
+
+		if (space.getHeadBranch() != headBranch && space.getHeadBranch() != null) {
+			changes.selectedBranch = space.getHeadBranch();
+		}
+
+		return changes;
+	}
+
+	private void diffNodes(DesignSpace space, ChangeSet changes) {
+		Set<String> nodeIDs = new HashSet<String>();
+
+		Map<List<Object>, Integer> edgeKeyToCount = new HashMap<List<Object>, Integer>();
+
+		if (space.hasNodes()) {
+			for (Node node : space.getNodes()) {
+				nodeIDs.add(node.getNodeID());
+
+				if (!nodeIDToGraphID.containsKey(node.getNodeID())) {
+					changes.createdNodes.add(node);
+				} else if (!nodeIDToTypes.get(node.getNodeID()).equals(getNodeTypes(node))) {
+					changes.modifiedNodeTypes.put(nodeIDToGraphID.get(node.getNodeID()),
+							new ArrayList<String>(node.getNodeTypes()));
+				}
+
+				if (node.hasEdges()) {
+					for (Edge edge : node.getEdges()) {
+						List<Object> edgeKey = getEdgeKey(edge);
+
+						int count = edgeKeyToCount.containsKey(edgeKey) ? edgeKeyToCount.get(edgeKey) : 0;
+
+						if (edgeKeyToGraphIDs.containsKey(edgeKey)
+								&& count < edgeKeyToGraphIDs.get(edgeKey).size()) {
+							edgeKeyToCount.put(edgeKey, count + 1);
+						} else {
+							changes.createdEdges.add(edge);
+						}
+					}
+				}
+			}
+		}
+
+		for (String nodeID : nodeIDToGraphID.keySet()) {
+			if (!nodeIDs.contains(nodeID)) {
+				changes.deletedNodeGraphIDs.add(nodeIDToGraphID.get(nodeID));
+			}
+		}
+
+		for (List<Object> edgeKey : edgeKeyToGraphIDs.keySet()) {
+			List<Long> edgeGraphIDs = edgeKeyToGraphIDs.get(edgeKey);
+
+			int count = edgeKeyToCount.containsKey(edgeKey) ? edgeKeyToCount.get(edgeKey) : 0;
+
+			changes.deletedEdgeGraphIDs.addAll(edgeGraphIDs.subList(count, edgeGraphIDs.size()));
+		}
+	}
+
+	private void diffBranches(DesignSpace space, ChangeSet changes) {
+		Set<Branch> branches = getBranches(space);
+
+		Set<Commit> currentCommits = newIdentitySet();
+
+		for (Branch branch : branches) {
+			if (!branchToCommits.containsKey(branch) && getGraphID(branch) == null) {
+				changes.createdBranches.add(branch);
+			}
+
+			Set<Commit> branchCommits = getCommits(branch);
+
+			Set<Commit> baselineCommits = branchToCommits.containsKey(branch)
+					? branchToCommits.get(branch) : Collections.<Commit>emptySet();
+
+			List<Commit> addedCommits = new LinkedList<Commit>();
+
+			for (Commit commit : branchCommits) {
+				if (!baselineCommits.contains(commit)) {
+					addedCommits.add(commit);
+				}
+			}
+
+			List<Commit> removedCommits = new LinkedList<Commit>();
+
+			for (Commit commit : baselineCommits) {
+				if (!branchCommits.contains(commit)) {
+					removedCommits.add(commit);
+				}
+			}
+
+			if (!addedCommits.isEmpty()) {
+				changes.addedBranchCommits.put(branch, addedCommits);
+			}
+
+			if (!removedCommits.isEmpty()) {
+				changes.removedBranchCommits.put(branch, removedCommits);
+			}
+
+			if (branch.getLatestCommit() != branchToLatestCommit.get(branch)) {
+				changes.modifiedLatestCommits.add(branch);
+			}
+
+			currentCommits.addAll(branchCommits);
+		}
+
+		for (Branch branch : branchToCommits.keySet()) {
+			if (!branches.contains(branch) && getGraphID(branch) != null) {
+				changes.deletedBranchGraphIDs.add(getGraphID(branch));
+			}
+		}
+
+		for (Commit commit : currentCommits) {
+			if (!commits.contains(commit) && getGraphID(commit) == null) {
+				changes.createdCommits.add(commit);
+			}
+		}
+
+		for (Commit commit : commits) {
+			if (!currentCommits.contains(commit) && getGraphID(commit) != null) {
+				changes.deletedCommitGraphIDs.add(getGraphID(commit));
+			}
+		}
+	}
+
+	/*
+		Takes a new baseline once the changes to a design space have been written, along with the
+		graph IDs of the entities that were created.
+	 */
+	public void commit(DesignSpace space, Map<Object, Long> createdGraphIDs) {
+		writtenGraphIDs.putAll(createdGraphIDs);
+
+		capture(space);
+	}
+
+	private void capture(DesignSpace space) {
+		nodeIndex = space.getNodeIndex();
+
+		commitIndex = space.getCommitIndex();
+
+		headBranch = space.getHeadBranch();
+
+		Map<String, Long> nodeIDToGraphID = new HashMap<String, Long>();
+
+		Map<String, Set<String>> nodeIDToTypes = new HashMap<String, Set<String>>();
+
+		Map<List<Object>, LinkedList<Long>> edgeKeyToGraphIDs = new HashMap<List<Object>, LinkedList<Long>>();
+
+		if (space.hasNodes()) {
+			for (Node node : space.getNodes()) {
+				Long nodeGraphID = getGraphID(node);
+
+				if (nodeGraphID == null) {
+					nodeGraphID = this.nodeIDToGraphID.get(node.getNodeID());
+				}
+
+				nodeIDToGraphID.put(node.getNodeID(), nodeGraphID);
+
+				nodeIDToTypes.put(node.getNodeID(), getNodeTypes(node));
+			}
+
+			for (Node node : space.getNodes()) {
+				if (node.hasEdges()) {
+					for (Edge edge : node.getEdges()) {
+						List<Object> edgeKey = getEdgeKey(edge);
+
+						Long edgeGraphID = getGraphID(edge);
+
+						if (edgeGraphID == null && this.edgeKeyToGraphIDs.containsKey(edgeKey)) {
+							edgeGraphID = this.edgeKeyToGraphIDs.get(edgeKey).poll();
+						}
+
+						if (!edgeKeyToGraphIDs.containsKey(edgeKey)) {
+							edgeKeyToGraphIDs.put(edgeKey, new LinkedList<Long>());
+						}
+
+						edgeKeyToGraphIDs.get(edgeKey).add(edgeGraphID);
+					}
+				}
+			}
+		}
+
+		this.nodeIDToGraphID = nodeIDToGraphID;
+
+		this.nodeIDToTypes = nodeIDToTypes;
+
+		this.edgeKeyToGraphIDs = edgeKeyToGraphIDs;
+
+		branchToLatestCommit.clear();
+
+		branchToCommits.clear();
+
+		commits = newIdentitySet();
+
+		for (Branch branch : getBranches(space)) {
+			branchToLatestCommit.put(branch, branch.getLatestCommit());
+
+			branchToCommits.put(branch, getCommits(branch));
+
+			commits.addAll(branchToCommits.get(branch));
+		}
+	}
+
+	private static Set<Branch> getBranches(DesignSpace space) {
+		Set<Branch> branches = newIdentitySet();
+
+		if (space.hasBranches()) {
+			branches.addAll(space.getBranches());
+		}
+
+		return branches;
+	}
+
+	private static Set<Commit> getCommits(Branch branch) {
+		Set<Commit> commits = newIdentitySet();
+
+		if (branch.hasCommits()) {
+			commits.addAll(branch.getCommits());
+		}
+
+		if (branch.hasLatestCommit()) {
+			commits.add(branch.getLatestCommit());
+		}
+
+		return commits;
+	}
+
+	private static Set<String> getNodeTypes(Node node) {
+		if (node.getNodeTypes() != null) {
+			return new HashSet<String>(node.getNodeTypes());
+		} else {
+			return new HashSet<String>();
+		}
+	}
+
+	private static List<Object> getEdgeKey(Edge edge) {
+		return Arrays.<Object>asList(edge.getTailID(), edge.getHeadID(), edge.getComponentIDs(),
+				edge.getComponentRoles(), edge.getOrientation(), edge.getWeight());
+	}
+
+	private static <T> Set<T> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+	}
+}
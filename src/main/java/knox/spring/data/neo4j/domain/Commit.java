@@ -134,6 +134,18 @@ public class Commit {
     	this.commitID = commitID;
     }
     
+    public Long getGraphID() {
+    	return id;
+    }
+    
+    public void setGraphID(Long id) {
+    	this.id = id;
+    }
+    
+    public String getMergeID() {
+    	return mergeID;
+    }
+    
     public boolean hasMergeID() {
     	return mergeID != null;
     }
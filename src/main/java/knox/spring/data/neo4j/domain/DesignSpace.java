@@ -11,6 +11,7 @@ import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 
 import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.annotation.Transient;
 
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 public class DesignSpace extends NodeSpace {
@@ -22,6 +23,8 @@ public class DesignSpace extends NodeSpace {
 
     int commitIndex;
 
+    @Transient ChangeTracker changeTracker;
+
     public DesignSpace() {
     	
     }
@@ -154,6 +157,22 @@ public class DesignSpace extends NodeSpace {
         return commit;
     }
 
+    /*
+     * Takes the current state of this design space as the baseline against which changes are 
+     * computed when it is saved.
+     */
+    public void trackChanges() {
+    	changeTracker = new ChangeTracker(this);
+    }
+
+    public ChangeTracker getChangeTracker() {
+    	if (changeTracker == null) {
+    		changeTracker = new ChangeTracker();
+    	}
+
+    	return changeTracker;
+    }
+
     public Branch getBranch(String branchID) {
     	for (Branch branch : branches) {
     		if (branch.getBranchID().equals(branchID)) {
@@ -180,6 +199,14 @@ public class DesignSpace extends NodeSpace {
     	return headBranch.getLatestCommit().getSnapshot();
     }
 
+    public int getCommitIndex() {
+    	return commitIndex;
+    }
+
+    public void setCommitIndex(int commitIndex) {
+    	this.commitIndex = commitIndex;
+    }
+
     public String getSpaceID() { 
     	return spaceID; 
     }
@@ -287,6 +287,10 @@ public class Edge {
         return blankPaths;
     }
 
+    public Long getGraphID() {
+        return id;
+    }
+
     public Node getTail() {
         return tail; 
     }
@@ -108,6 +108,10 @@ public class Node {
         return edge;
     }
 
+    public Long getGraphID() {
+    	return id;
+    }
+
     public String getNodeID() { 
     	return nodeID; 
     }
@@ -1,7 +1,11 @@
 package knox.spring.data.neo4j.domain;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -272,9 +276,17 @@ public class NodeSpace {
 		return blankEdges;
 	}
 	
+	public Long getGraphID() {
+		return id;
+	}
+	
 	public int getNodeIndex() {
 		return nodeIndex;
 	}
+	
+	public void setNodes(Set<Node> nodes) {
+		this.nodes = nodes;
+	}
     
     public Set<Node> getNodes() {
     	return nodes;
@@ -884,6 +896,60 @@ public class NodeSpace {
     	}
     }
     
+    /*
+     * Returns a SHA-256 hash of the node index, nodes and edges of this space, taken over a sorted
+     * listing of them so that equal spaces hash the same no matter how their sets are ordered.
+     */
+    public String computeContentHash() {
+    	List<String> entries = new ArrayList<String>();
+    	
+    	if (hasNodes()) {
+    		for (Node node : nodes) {
+    			List<String> nodeTypes = new ArrayList<String>();
+    			
+    			if (node.getNodeTypes() != null) {
+    				nodeTypes.addAll(node.getNodeTypes());
+    			}
+    			
+    			Collections.sort(nodeTypes);
+    			
+    			entries.add("n\t" + node.getNodeID() + "\t" + nodeTypes);
+    			
+    			if (node.hasEdges()) {
+    				for (Edge edge : node.getEdges()) {
+    					entries.add("e\t" + edge.getTailID() + "\t" + edge.getHeadID() + "\t"
+    							+ edge.getComponentIDs() + "\t" + edge.getComponentRoles() + "\t"
+    							+ edge.getOrientation() + "\t" + edge.getWeight());
+    				}
+    			}
+    		}
+    	}
+    	
+    	Collections.sort(entries);
+    	
+    	MessageDigest digest;
+    	
+    	try {
+    		digest = MessageDigest.getInstance("SHA-256");
+    	} catch (NoSuchAlgorithmException ex) {
+    		throw new IllegalStateException(ex);
+    	}
+    	
+    	digest.update(("i\t" + nodeIndex + "\n").getBytes(StandardCharsets.UTF_8));
+    	
+    	for (String entry : entries) {
+    		digest.update((entry + "\n").getBytes(StandardCharsets.UTF_8));
+    	}
+    	
+    	StringBuilder contentHash = new StringBuilder();
+    	
+    	for (byte b : digest.digest()) {
+    		contentHash.append(String.format("%02x", b));
+    	}
+    	
+    	return contentHash.toString();
+    }
+    
     public String toString() {
     	String spaceMap = "";
     	
@@ -8,6 +8,8 @@ import org.neo4j.ogm.annotation.GraphId;
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 public class Snapshot extends NodeSpace {
     @GraphId Long id;
+    
+    String contentHash;
 
     public Snapshot() {
     	
@@ -28,4 +30,12 @@ public class Snapshot extends NodeSpace {
     public Long getGraphID() {
     	return id;
     }
+    
+    public String getContentHash() {
+    	return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+    	this.contentHash = contentHash;
+    }
 }
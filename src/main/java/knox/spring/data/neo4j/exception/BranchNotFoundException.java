@@ -0,0 +1,16 @@
+package knox.spring.data.neo4j.exception;
+
+public class BranchNotFoundException extends RuntimeException {
+    private static final long serialVersionUID = -3279146584407825963L;
+    String spaceID;
+    String branchID;
+
+    public BranchNotFoundException(String spaceID, String branchID) {
+        this.spaceID = spaceID;
+        this.branchID = branchID;
+    }
+
+    public String getMessage() {
+        return "Branch " + branchID + " not found in design space " + spaceID + ".";
+    }
+}
@@ -16,7 +16,21 @@ public class ANDOperator {
 	
 	public static void apply(List<NodeSpace> inputSpaces, NodeSpace outputSpace, 
 			int tolerance, boolean isComplete, Set<String> roles) {
-		Product product = new Product(inputSpaces.get(0));
+		apply(inputSpaces, outputSpace, tolerance, isComplete, roles, false);
+	}
+	
+	/*
+	 * If subsumeRoles is true, then roles are matched as by Product.crossSubsumedEdges.
+	 */
+	public static void apply(List<NodeSpace> inputSpaces, NodeSpace outputSpace, 
+			int tolerance, boolean isComplete, Set<String> roles, boolean subsumeRoles) {
+		Product product;
+		
+		if (subsumeRoles) {
+			product = new Product(inputSpaces.get(0), new RoleSubsumption(roles));
+		} else {
+			product = new Product(inputSpaces.get(0));
+		}
 
 		for (int i = 1; i < inputSpaces.size(); i++) {
 			List<Set<Edge>> blankEdges;
@@ -0,0 +1,161 @@
+package knox.spring.data.neo4j.operations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+/*
+ * Merges a list of linear designs into one design space without taking pairwise products. Designs
+ * are inserted into a prefix trie with one edge per component, keyed by component ID, role and
+ * orientation, and the trie is then minimised into a directed acyclic word graph by merging the
+ * nodes that have the same suffixes. Both steps take time linear in the total number of
+ * components.
+ *
+ * Designs share edges only where their components are identical. The resulting design space is
+ * the smallest deterministic one whose designs are exactly those inserted, so unlike merging at
+ * tolerance 1 it never recombines the prefix of one design with the suffix of another. CSV imports
+ * only build merged design spaces this way when asked to.
+ */
+public class DesignTrie {
+
+	private TrieNode root = new TrieNode();
+
+	private int numDesigns = 0;
+
+	public void insert(List<String> compIDs, List<String> compRoles) {
+		insert(compIDs, compRoles, Collections.nCopies(compIDs.size(), Edge.Orientation.INLINE));
+	}
+
+	public void insert(List<String> compIDs, List<String> compRoles, List<Edge.Orientation> orientations) {
+		TrieNode node = root;
+
+		for (int i = 0; i < compIDs.size(); i++) {
+			node = node.getChild(Arrays.asList(compIDs.get(i), compRoles.get(i), orientations.get(i).name()));
+		}
+
+		node.isAccept = true;
+
+		numDesigns++;
+	}
+
+	public boolean isEmpty() {
+		return numDesigns == 0;
+	}
+
+	public int getNumDesigns() {
+		return numDesigns;
+	}
+
+	public void apply(NodeSpace outputSpace) {
+		if (isEmpty()) {
+			return;
+		}
+
+		TrieNode dawgRoot = minimize(root, new HashMap<List<Object>, TrieNode>());
+
+		Map<TrieNode, Node> trieToNode = new HashMap<TrieNode, Node>();
+
+		if (dawgRoot.isAccept) {
+			trieToNode.put(dawgRoot, outputSpace.createStartAcceptNode());
+		} else {
+			trieToNode.put(dawgRoot, outputSpace.createStartNode());
+		}
+
+		LinkedList<TrieNode> trieNodes = new LinkedList<TrieNode>();
+
+		trieNodes.add(dawgRoot);
+
+		while (!trieNodes.isEmpty()) {
+			TrieNode trieNode = trieNodes.removeFirst();
+
+			Node node = trieToNode.get(trieNode);
+
+			for (Map.Entry<List<String>, TrieNode> child : trieNode.children.entrySet()) {
+				Node head = trieToNode.get(child.getValue());
+
+				if (head == null) {
+					if (child.getValue().isAccept) {
+						head = outputSpace.createAcceptNode();
+					} else {
+						head = outputSpace.createNode();
+					}
+
+					trieToNode.put(child.getValue(), head);
+
+					trieNodes.add(child.getValue());
+				}
+
+				ArrayList<String> compIDs = new ArrayList<String>(1);
+
+				compIDs.add(child.getKey().get(0));
+
+				ArrayList<String> compRoles = new ArrayList<String>(1);
+
+				compRoles.add(child.getKey().get(1));
+
+				node.createEdge(head, compIDs, compRoles, Edge.Orientation.valueOf(child.getKey().get(2)));
+			}
+		}
+	}
+
+	/*
+	 * Minimises the sub-trie below a node bottom up and returns the node that it is merged into. Two
+	 * nodes are equivalent when they are both accepting or both not and their children are
+	 * equivalent under the same keys, so a node is looked up by its acceptance and the IDs of its
+	 * already minimised children.
+	 */
+	private TrieNode minimize(TrieNode node, Map<List<Object>, TrieNode> register) {
+		Map<List<String>, Integer> childIDs = new HashMap<List<String>, Integer>();
+
+		for (Map.Entry<List<String>, TrieNode> child : node.children.entrySet()) {
+			TrieNode minChild = minimize(child.getValue(), register);
+
+			child.setValue(minChild);
+
+			childIDs.put(child.getKey(), minChild.id);
+		}
+
+		List<Object> signature = Arrays.<Object>asList(node.isAccept, childIDs);
+
+		TrieNode equivalent = register.get(signature);
+
+		if (equivalent == null) {
+			node.id = register.size();
+
+			register.put(signature, node);
+
+			return node;
+		} else {
+			return equivalent;
+		}
+	}
+
+	private static class TrieNode {
+
+		private Map<List<String>, TrieNode> children = new HashMap<List<String>, TrieNode>();
+
+		private boolean isAccept = false;
+
+		private int id = -1;
+
+		private TrieNode getChild(List<String> key) {
+			TrieNode child = children.get(key);
+
+			if (child == null) {
+				child = new TrieNode();
+
+				children.put(key, child);
+			}
+
+			return child;
+		}
+	}
+}
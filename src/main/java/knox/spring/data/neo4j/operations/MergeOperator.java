@@ -10,7 +10,21 @@ public class MergeOperator {
 	
 	public static void apply(List<NodeSpace> inputSpaces, NodeSpace outputSpace, 
 			int tolerance, Set<String> roles) {
-		Product product = new Product(inputSpaces.get(0));
+		apply(inputSpaces, outputSpace, tolerance, roles, false);
+	}
+	
+	/*
+	 * If subsumeRoles is true, then roles are matched as by Product.crossSubsumedEdges.
+	 */
+	public static void apply(List<NodeSpace> inputSpaces, NodeSpace outputSpace, 
+			int tolerance, Set<String> roles, boolean subsumeRoles) {
+		Product product;
+		
+		if (subsumeRoles) {
+			product = new Product(inputSpaces.get(0), new RoleSubsumption(roles));
+		} else {
+			product = new Product(inputSpaces.get(0));
+		}
 
 		for (int i = 1; i < inputSpaces.size(); i++) {
 			List<Set<Edge>> blankEdges = product.applyModifiedStrong(inputSpaces.get(i), tolerance, roles);
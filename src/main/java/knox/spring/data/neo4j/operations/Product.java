@@ -25,12 +25,24 @@ public class Product {
 	private HashMap<String, Node> rowIDToDiffNode;
 	private HashMap<String, Node> colIDToDiffNode;
 	
+	private RoleSubsumption roleSubsumption;
+	
 	private static final Logger LOG = LoggerFactory.getLogger(Product.class);
 	
 	public Product(NodeSpace productSpace) {
 		this.productSpace = productSpace;
 	}
 	
+	/*
+	 * If roleSubsumption is not null, then edges are matched by role through the hierarchy of the 
+	 * Sequence Ontology rather than by name.
+	 */
+	public Product(NodeSpace productSpace, RoleSubsumption roleSubsumption) {
+		this.productSpace = productSpace;
+		
+		this.roleSubsumption = roleSubsumption;
+	}
+	
     public NodeSpace getSpace() {
     	return productSpace;
     }
@@ -134,6 +146,12 @@ public class Product {
     
     private void crossEdges(Set<Edge> rowEdges, Set<Edge> colEdges, int tolerance, int degree, 
     		Set<String> roles) {
+    	if (roleSubsumption != null && tolerance >= 2) {
+    		crossSubsumedEdges(rowEdges, colEdges, tolerance, degree);
+    		
+    		return;
+    	}
+    	
     	for (Edge rowEdge : rowEdges) {
 			String rowIDs = rowEdge.getTailID() + rowEdge.getHeadID();
 			
@@ -160,6 +178,51 @@ public class Product {
     	}
     }
     
+    /*
+     * Same as crossEdges, but roles are matched through the hierarchy of the Sequence Ontology, which 
+     * operators do when asked to subsume roles and matching by role at all, at a tolerance of 2 or 
+     * more. Edges match by role when one role is the same as or a descendant of the other, and the 
+     * roles filter includes the descendants of its roles. The roles of each edge are profiled once, 
+     * so that matching a pair of edges by role is a single bitwise AND.
+     */
+    private void crossSubsumedEdges(Set<Edge> rowEdges, Set<Edge> colEdges, int tolerance, int degree) {
+    	HashMap<Edge, RoleSubsumption.Profile> colEdgeToProfile = new HashMap<Edge, RoleSubsumption.Profile>();
+    	
+    	for (Edge colEdge : colEdges) {
+    		colEdgeToProfile.put(colEdge, roleSubsumption.getProfile(colEdge));
+    	}
+    	
+    	for (Edge rowEdge : rowEdges) {
+			String rowIDs = rowEdge.getTailID() + rowEdge.getHeadID();
+			
+			RoleSubsumption.Profile rowProfile = roleSubsumption.getProfile(rowEdge);
+			
+			for (Edge colEdge : colEdges) {
+				String colIDs = colEdge.getTailID() + colEdge.getHeadID();
+				
+				RoleSubsumption.Profile colProfile = colEdgeToProfile.get(colEdge);
+				
+				if (rowEdge.hasSameOrientation(colEdge) && (rowEdge.hasSharedComponentIDs(colEdge)
+						|| roleSubsumption.isMatching(rowProfile, colProfile))) {
+					Node productTail = crossNodes(rowEdge.getTail(), colEdge.getTail(), degree);
+
+					Node productHead = crossNodes(rowEdge.getHead(), colEdge.getHead(), degree);
+
+					Edge productEdge = productTail.copyEdge(colEdge, productHead);
+
+					if (tolerance == 2) {
+						roleSubsumption.intersectWithEdge(productEdge, colProfile, rowEdge, rowProfile);
+					} else {
+						productEdge.unionWithEdge(rowEdge);
+					}
+					
+					rowIDsToProductEdges.get(rowIDs).add(productEdge);
+					colIDsToProductEdges.get(colIDs).add(productEdge);
+				}
+			}
+    	}
+    }
+    
     private void crossNodes(Set<Node> rowNodes, Set<Node> colNodes, int degree) {
     	for (Node rowNode : rowNodes) {
     		for (Node colNode : colNodes) {
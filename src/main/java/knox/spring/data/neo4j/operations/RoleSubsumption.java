@@ -0,0 +1,171 @@
+package knox.spring.data.neo4j.operations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.sbol.SequenceOntologyIndex;
+
+/*
+ * Matches the component roles of edges by the is_a hierarchy of the Sequence Ontology rather than
+ * by name, so that a role matches its ancestors and descendants as well as itself, e.g. promoter
+ * matches constitutive_promoter. If roles are given to filter by, then only roles that are the same
+ * as or more specific than one of them are matched.
+ *
+ * The roles of an edge are summarised once by a Profile, made of bitsets over the terms of the
+ * SequenceOntologyIndex, so that matching two edges takes a single bitwise AND. Roles that are not
+ * terms in the ontology are given bits of their own and only match themselves.
+ */
+public class RoleSubsumption {
+
+	private final SequenceOntologyIndex ontology = SequenceOntologyIndex.getInstance();
+
+	private final Set<String> roles;
+
+	private final BitSet roleBits = new BitSet();
+
+	private final Map<String, Integer> otherRoleToBit = new HashMap<String, Integer>();
+
+	public RoleSubsumption(Set<String> roles) {
+		this.roles = roles;
+
+		for (String role : roles) {
+			int bit = getBit(role);
+
+			if (bit < ontology.size()) {
+				ontology.addDescendantBits(bit, roleBits);
+			} else {
+				roleBits.set(bit);
+			}
+		}
+	}
+
+	public Profile getProfile(Edge edge) {
+		Profile profile = new Profile();
+
+		if (edge.hasComponentRoles()) {
+			for (String role : edge.getComponentRoles()) {
+				int bit = getBit(role);
+
+				if (roles.isEmpty() || roleBits.get(bit)) {
+					profile.roleBits.set(bit);
+
+					if (bit < ontology.size()) {
+						ontology.addAncestorBits(bit, profile.relatedBits);
+
+						ontology.addDescendantBits(bit, profile.descendantBits);
+					} else {
+						profile.descendantBits.set(bit);
+					}
+				}
+			}
+
+			profile.relatedBits.or(profile.descendantBits);
+		}
+
+		return profile;
+	}
+
+	/*
+	 * Returns whether a role of one edge is the same as, an ancestor of or a descendant of a role of
+	 * the other.
+	 */
+	public boolean isMatching(Profile profile, Profile otherProfile) {
+		return profile.relatedBits.intersects(otherProfile.roleBits);
+	}
+
+	/*
+	 * Intersects the labels of a product edge with those of another edge that it was matched with.
+	 * A label is kept if its component ID is shared with the other edge or its role is the same as or
+	 * more specific than one of the other edge's roles, and the labels of the other edge that meet
+	 * the same conditions are added, so that intersecting promoter with constitutive_promoter keeps
+	 * the constitutive promoters.
+	 */
+	public void intersectWithEdge(Edge productEdge, Profile productProfile, Edge edge, Profile profile) {
+		Set<String> productCompIDs = new HashSet<String>(productEdge.getComponentIDs());
+
+		Set<String> compIDs = new HashSet<String>(edge.getComponentIDs());
+
+		Set<List<String>> labels = new LinkedHashSet<List<String>>();
+
+		addSharedLabels(productEdge, compIDs, profile, labels);
+
+		addSharedLabels(edge, productCompIDs, productProfile, labels);
+
+		ArrayList<String> sharedCompIDs = productEdge.getComponentIDs();
+
+		ArrayList<String> sharedCompRoles = productEdge.getComponentRoles();
+
+		sharedCompIDs.clear();
+
+		sharedCompRoles.clear();
+
+		for (List<String> label : labels) {
+			if (label.get(0) != null) {
+				sharedCompIDs.add(label.get(0));
+
+				sharedCompRoles.add(label.get(1));
+			}
+		}
+
+		for (List<String> label : labels) {
+			if (label.get(0) == null) {
+				sharedCompRoles.add(label.get(1));
+			}
+		}
+	}
+
+	private void addSharedLabels(Edge edge, Set<String> otherCompIDs, Profile otherProfile,
+			Set<List<String>> labels) {
+		ArrayList<String> compIDs = edge.getComponentIDs();
+
+		ArrayList<String> compRoles = edge.getComponentRoles();
+
+		for (int i = 0; i < compRoles.size(); i++) {
+			String compID = i < compIDs.size() ? compIDs.get(i) : null;
+
+			if (compID != null && otherCompIDs.contains(compID)
+					|| otherProfile.descendantBits.get(getBit(compRoles.get(i)))) {
+				labels.add(Arrays.asList(compID, compRoles.get(i)));
+			}
+		}
+	}
+
+	private int getBit(String role) {
+		int bit = ontology.getTermIndex(role);
+
+		if (bit >= 0) {
+			return bit;
+		}
+
+		Integer otherBit = otherRoleToBit.get(role);
+
+		if (otherBit == null) {
+			otherBit = ontology.size() + otherRoleToBit.size();
+
+			otherRoleToBit.put(role, otherBit);
+		}
+
+		return otherBit;
+	}
+
+	/*
+	 * The roles of an edge that pass the filter, the closure of their descendants and the closure of
+	 * both their ancestors and descendants.
+	 */
+	public static class Profile {
+
+		private final BitSet roleBits = new BitSet();
+
+		private final BitSet descendantBits = new BitSet();
+
+		private final BitSet relatedBits = new BitSet();
+	}
+}
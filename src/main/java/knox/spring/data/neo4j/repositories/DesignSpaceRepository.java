@@ -37,25 +37,24 @@ public interface DesignSpaceRepository extends GraphRepository<DesignSpace> {
     		@Param("componentIDs") ArrayList<String> componentIDs, 
     		@Param("componentRoles") ArrayList<String> componentRoles);
 
+    @Query(
+        "MATCH (target:DesignSpace {spaceID: {targetSpaceID}})-[:SELECTS]->(hb:Branch) "
+        + "CREATE (target)-[:ARCHIVES]->(b:Branch {branchID: {outputBranchID}}) "
+        + "WITH hb, b "
+        + "OPTIONAL MATCH (hb)-[:CONTAINS]->(c:Commit) "
+        + "FOREACH (x IN CASE WHEN c IS NULL THEN [] ELSE [c] END | CREATE (b)-[:CONTAINS]->(x)) "
+        + "WITH DISTINCT hb, b "
+        + "OPTIONAL MATCH (hb)-[:LATEST]->(lc:Commit) "
+        + "FOREACH (x IN CASE WHEN lc IS NULL THEN [] ELSE [lc] END | CREATE (b)-[:LATEST]->(x))")
+    void copyHeadBranch(@Param("targetSpaceID") String targetSpaceID, 
+    		@Param("outputBranchID") String outputBranchID);
+
     @Query(
         "MATCH (target:DesignSpace {spaceID: {targetSpaceID}})-[:ARCHIVES]->(b:Branch {branchID: {targetBranchID}}) "
         + "DETACH DELETE b")
     void deleteBranch(@Param("targetSpaceID") String targetSpaceID, 
     		@Param("targetBranchID") String targetBranchID);
 
-    @Query(
-        "MATCH (target:DesignSpace {spaceID: {targetSpaceID}}) "
-        + "OPTIONAL MATCH (target)-[:CONTAINS]->(n:Node) "
-        + "OPTIONAL MATCH (target)-[:ARCHIVES]->(b:Branch)-[:CONTAINS]->(c:Commit)-[:CONTAINS]->(s:Snapshot) "
-        + "OPTIONAL MATCH (s)-[:CONTAINS]->(sn:Node) "
-        + "DETACH DELETE target "
-        + "DETACH DELETE n "
-        + "DETACH DELETE b "
-        + "DETACH DELETE c "
-        + "DETACH DELETE s "
-        + "DETACH DELETE sn")
-    void deleteDesignSpace(@Param("targetSpaceID") String targetSpaceID);
-
     @Query(
         "MATCH (:DesignSpace {spaceID: {targetSpaceID}})-[:ARCHIVES]->(b:Branch {branchID: {targetBranchID}}) "
         + "RETURN b")
@@ -69,16 +68,29 @@ public interface DesignSpaceRepository extends GraphRepository<DesignSpace> {
         + "RETURN b.branchID as branchID")
     Set<String> getBranchIDs(@Param("targetSpaceID") String targetSpaceID);
 
+    @Query("MATCH (:DesignSpace {spaceID: {targetSpaceID}})-[:SELECTS]->(hb:Branch) "
+           + "RETURN hb.branchID as branchID")
+    Set<String> getHeadBranchID(@Param("targetSpaceID") String targetSpaceID);
+
     @Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}}) "
            + "RETURN ID(target) as graphID")
     Set<Integer> getDesignSpaceGraphID(@Param("targetSpaceID") String targetSpaceID);
 
+    @Query("MATCH (:DesignSpace {spaceID: {targetSpaceID}})-[:SELECTS]->(:Branch)-[:LATEST]->(lc:Commit) "
+           + "RETURN ID(lc) as graphID")
+    Set<Integer> getLatestCommitGraphID(@Param("targetSpaceID") String targetSpaceID);
+
+    @Query("MATCH (:DesignSpace {spaceID: {targetSpaceID}})-[:ARCHIVES]->(:Branch {branchID: {targetBranchID}})-[:LATEST]->(lc:Commit) "
+           + "RETURN ID(lc) as graphID")
+    Set<Integer> getLatestCommitGraphID(@Param("targetSpaceID") String targetSpaceID, 
+    		@Param("targetBranchID") String targetBranchID);
+
     @Query(
         "MATCH (b:Branch)<-[:ARCHIVES]-(target:DesignSpace {spaceID: {targetSpaceID}})-[:SELECTS]->(hb:Branch) "
         + "OPTIONAL MATCH (b)-[:LATEST]->(lc:Commit) "
         + "WHERE NOT exists(lc.mergeID) "
         +
-        "OPTIONAL MATCH (b)-[:CONTAINS]->(c:Commit)-[:SUCCEEDS]->(d:Commit)<-[:CONTAINS]-(b) "
+        "OPTIONAL MATCH (b)-[:CONTAINS]->(c:Commit)-[:SUCCEEDS]->(d:Commit)<-[:CONTAINS]-(:Branch)<-[:ARCHIVES]-(target) "
         + "WHERE NOT exists(c.mergeID) AND NOT exists(d.mergeID) "
         +
         "RETURN target.spaceID as spaceID, hb.branchID as headBranchID, lc.commitID as latestCommitID, ID(lc) as latestCopyIndex, b.branchID as branchID, "
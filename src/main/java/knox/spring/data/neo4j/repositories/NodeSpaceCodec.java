@@ -0,0 +1,258 @@
+package knox.spring.data.neo4j.repositories;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Edge.Orientation;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * Encodes the nodes and edges of a graph into one compressed byte array, so that a snapshot can be
+ * stored as a single property instead of a subgraph of Node entities. Every string is written once
+ * to a string table and referred to by its position in the table from then on, and the whole
+ * encoding is deflated.
+ *
+ * The format is a version byte, the node index, the string table, the nodes with their types and
+ * the edges with their component IDs, roles, orientation and weight. Counts and references are
+ * written as variable-length integers, since most of them are small.
+ */
+public class NodeSpaceCodec {
+
+	private static final int VERSION = 1;
+
+	public static byte[] encode(NodeSpace space) {
+		List<Node> nodes = new ArrayList<Node>();
+
+		List<Edge> edges = new LinkedList<Edge>();
+
+		if (space.hasNodes()) {
+			for (Node node : space.getNodes()) {
+				nodes.add(node);
+
+				if (node.hasEdges()) {
+					edges.addAll(node.getEdges());
+				}
+			}
+		}
+
+		Map<String, Integer> stringToRef = new HashMap<String, Integer>();
+
+		List<String> strings = new ArrayList<String>();
+
+		Map<String, Integer> nodeIDToRef = new HashMap<String, Integer>();
+
+		for (Node node : nodes) {
+			nodeIDToRef.put(node.getNodeID(), nodeIDToRef.size());
+
+			internString(node.getNodeID(), stringToRef, strings);
+
+			internStrings(node.getNodeTypes(), stringToRef, strings);
+		}
+
+		for (Edge edge : edges) {
+			internStrings(edge.getComponentIDs(), stringToRef, strings);
+
+			internStrings(edge.getComponentRoles(), stringToRef, strings);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try {
+			DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(bytes));
+
+			output.writeByte(VERSION);
+
+			writeVarInt(output, space.getNodeIndex());
+
+			writeVarInt(output, strings.size());
+
+			for (String string : strings) {
+				byte[] stringBytes = string.getBytes(StandardCharsets.UTF_8);
+
+				writeVarInt(output, stringBytes.length);
+
+				output.write(stringBytes);
+			}
+
+			writeVarInt(output, nodes.size());
+
+			for (Node node : nodes) {
+				writeVarInt(output, stringToRef.get(node.getNodeID()));
+
+				writeStringRefs(output, node.getNodeTypes(), stringToRef);
+			}
+
+			writeVarInt(output, edges.size());
+
+			for (Edge edge : edges) {
+				writeVarInt(output, nodeIDToRef.get(edge.getTailID()));
+
+				writeVarInt(output, nodeIDToRef.get(edge.getHeadID()));
+
+				writeStringRefs(output, edge.getComponentIDs(), stringToRef);
+
+				writeStringRefs(output, edge.getComponentRoles(), stringToRef);
+
+				output.writeByte(edge.getOrientation() != null ? edge.getOrientation().ordinal() + 1 : 0);
+
+				if (edge.getWeight() == 1.0) {
+					output.writeByte(0);
+				} else {
+					output.writeByte(1);
+
+					output.writeDouble(edge.getWeight());
+				}
+			}
+
+			output.close();
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	public static NodeSpace decode(byte[] blob) {
+		try {
+			DataInputStream input = new DataInputStream(new InflaterInputStream(
+					new ByteArrayInputStream(blob)));
+
+			int version = input.readUnsignedByte();
+
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unknown snapshot encoding version " + version + ".");
+			}
+
+			NodeSpace space = new NodeSpace(readVarInt(input));
+
+			String[] strings = new String[readVarInt(input)];
+
+			for (int i = 0; i < strings.length; i++) {
+				byte[] stringBytes = new byte[readVarInt(input)];
+
+				input.readFully(stringBytes);
+
+				strings[i] = new String(stringBytes, StandardCharsets.UTF_8);
+			}
+
+			Node[] nodes = new Node[readVarInt(input)];
+
+			for (int i = 0; i < nodes.length; i++) {
+				String nodeID = strings[readVarInt(input)];
+
+				nodes[i] = new Node(nodeID, readStrings(input, strings));
+
+				space.addNode(nodes[i]);
+			}
+
+			int numEdges = readVarInt(input);
+
+			Orientation[] orientations = Orientation.values();
+
+			for (int i = 0; i < numEdges; i++) {
+				Node tail = nodes[readVarInt(input)];
+
+				Node head = nodes[readVarInt(input)];
+
+				ArrayList<String> componentIDs = readStrings(input, strings);
+
+				ArrayList<String> componentRoles = readStrings(input, strings);
+
+				int orientation = input.readUnsignedByte();
+
+				double weight = input.readUnsignedByte() == 0 ? 1.0 : input.readDouble();
+
+				tail.addEdge(new Edge(tail, head, componentIDs, componentRoles,
+						orientation > 0 ? orientations[orientation - 1] : null, weight));
+			}
+
+			return space;
+		} catch (IOException ex) {
+			throw new IllegalArgumentException("Snapshot encoding is corrupt.", ex);
+		}
+	}
+
+	private static void internString(String string, Map<String, Integer> stringToRef,
+			List<String> strings) {
+		if (!stringToRef.containsKey(string)) {
+			stringToRef.put(string, strings.size());
+
+			strings.add(string);
+		}
+	}
+
+	private static void internStrings(Collection<String> strings, Map<String, Integer> stringToRef,
+			List<String> stringTable) {
+		if (strings != null) {
+			for (String string : strings) {
+				internString(string, stringToRef, stringTable);
+			}
+		}
+	}
+
+	private static void writeStringRefs(DataOutputStream output, Collection<String> strings,
+			Map<String, Integer> stringToRef) throws IOException {
+		if (strings == null) {
+			writeVarInt(output, 0);
+		} else {
+			writeVarInt(output, strings.size());
+
+			for (String string : strings) {
+				writeVarInt(output, stringToRef.get(string));
+			}
+		}
+	}
+
+	private static ArrayList<String> readStrings(DataInputStream input, String[] strings)
+			throws IOException {
+		int numStrings = readVarInt(input);
+
+		ArrayList<String> stringList = new ArrayList<String>(numStrings);
+
+		for (int i = 0; i < numStrings; i++) {
+			stringList.add(strings[readVarInt(input)]);
+		}
+
+		return stringList;
+	}
+
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+
+			value >>>= 7;
+		}
+
+		output.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream input) throws IOException {
+		int value = 0;
+
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = input.readUnsignedByte();
+
+			value |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Variable-length integer is too long.");
+	}
+}
@@ -0,0 +1,224 @@
+package knox.spring.data.neo4j.repositories;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Edge.Orientation;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Reads the graphs of design spaces and snapshots with flat Cypher projections, one row per node
+ * and outgoing edge, and builds their nodes and edges directly from the rows. This takes one round
+ * trip per graph or set of graphs rather than an OGM load per snapshot, and leaves version history
+ * unloaded for operations that only read graphs. Snapshots stored as blobs come back as a single
+ * row and are decoded by NodeSpaceCodec.
+ */
+@Repository
+public class NodeSpaceLoader {
+	@Autowired Session session;
+
+	private static final String GRAPH_PROJECTION =
+			"OPTIONAL MATCH (s)-[:CONTAINS]->(m:Node) "
+			+ "OPTIONAL MATCH (m)-[e:PRECEDES]->(n:Node) "
+			+ "RETURN ID(s) as graphID, s.nodeIndex as nodeIndex, s.edgeBlob as edgeBlob, "
+			+ "m.nodeID as tailID, m.nodeTypes as tailTypes, e.componentIDs as componentIDs, "
+			+ "e.componentRoles as componentRoles, e.orientation as orientation, e.weight as weight, "
+			+ "n.nodeID as headID, n.nodeTypes as headTypes";
+
+	/*
+	 * Returns the head graph of a design space, or null if there is no such design space.
+	 */
+	public NodeSpace loadHead(String targetSpaceID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("targetSpaceID", targetSpaceID);
+
+		Map<Long, NodeSpace> graphIDToSpace = readGraphs(session.query(
+				"MATCH (s:DesignSpace {spaceID: {targetSpaceID}}) " + GRAPH_PROJECTION, params));
+
+		return graphIDToSpace.isEmpty() ? null : graphIDToSpace.values().iterator().next();
+	}
+
+	/*
+	 * Returns the graph of the latest commit on a branch, which is empty if the branch has no
+	 * commits, or null if there is no such branch.
+	 */
+	public NodeSpace loadBranchHead(String targetSpaceID, String targetBranchID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("targetSpaceID", targetSpaceID);
+
+		params.put("targetBranchID", targetBranchID);
+
+		Result result = session.query(
+				"MATCH (:DesignSpace {spaceID: {targetSpaceID}})-[:ARCHIVES]->(b:Branch {branchID: {targetBranchID}}) "
+				+ "OPTIONAL MATCH (b)-[:LATEST]->(:Commit)-[:CONTAINS]->(s:Snapshot) "
+				+ "RETURN ID(b) as branchGraphID, ID(s) as graphID", params);
+
+		Long snapshotGraphID = null;
+
+		boolean hasBranch = false;
+
+		for (Map<String, Object> row : result.queryResults()) {
+			hasBranch = true;
+
+			if (row.get("graphID") != null) {
+				snapshotGraphID = ((Number) row.get("graphID")).longValue();
+			}
+		}
+
+		if (!hasBranch) {
+			return null;
+		} else if (snapshotGraphID == null) {
+			return new NodeSpace(0);
+		} else {
+			params.clear();
+
+			params.put("snapshotGraphID", snapshotGraphID);
+
+			Map<Long, NodeSpace> graphIDToSpace = readGraphs(session.query(
+					"MATCH (s:Snapshot) WHERE ID(s) = {snapshotGraphID} " + GRAPH_PROJECTION, params));
+
+			return graphIDToSpace.get(snapshotGraphID);
+		}
+	}
+
+	/*
+	 * Returns the graphs of all snapshots committed to a design space, keyed by their graph IDs.
+	 */
+	public Map<Long, NodeSpace> loadSnapshots(Long spaceGraphID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceGraphID", spaceGraphID);
+
+		return readGraphs(session.query(
+				"MATCH (target:DesignSpace)-[:ARCHIVES]->(:Branch)-[:CONTAINS]->(:Commit)-[:CONTAINS]->(s:Snapshot) "
+				+ "WHERE ID(target) = {spaceGraphID} "
+				+ "WITH DISTINCT s " + GRAPH_PROJECTION, params));
+	}
+
+	private Map<Long, NodeSpace> readGraphs(Result result) {
+		Map<Long, NodeSpace> graphIDToSpace = new HashMap<Long, NodeSpace>();
+
+		Map<Long, Map<String, Node>> graphIDToNodes = new HashMap<Long, Map<String, Node>>();
+
+		for (Map<String, Object> row : result.queryResults()) {
+			Long graphID = ((Number) row.get("graphID")).longValue();
+
+			if (!graphIDToSpace.containsKey(graphID)) {
+				Number nodeIndex = (Number) row.get("nodeIndex");
+
+				if (row.get("edgeBlob") != null) {
+					graphIDToSpace.put(graphID, NodeSpaceCodec.decode(toBytes(row.get("edgeBlob"))));
+				} else {
+					graphIDToSpace.put(graphID, new NodeSpace(nodeIndex != null ? nodeIndex.intValue() : 0));
+				}
+
+				graphIDToNodes.put(graphID, new HashMap<String, Node>());
+			}
+
+			NodeSpace space = graphIDToSpace.get(graphID);
+
+			Map<String, Node> idToNode = graphIDToNodes.get(graphID);
+
+			if (row.get("tailID") != null) {
+				Node tail = readNode(space, idToNode, (String) row.get("tailID"), row.get("tailTypes"));
+
+				if (row.get("headID") != null) {
+					Node head = readNode(space, idToNode, (String) row.get("headID"), row.get("headTypes"));
+
+					tail.addEdge(new Edge(tail, head, toStringList(row.get("componentIDs")),
+							toStringList(row.get("componentRoles")), toOrientation(row.get("orientation")),
+							row.get("weight") != null ? ((Number) row.get("weight")).doubleValue() : 1.0));
+				}
+			}
+		}
+
+		return graphIDToSpace;
+	}
+
+	private Node readNode(NodeSpace space, Map<String, Node> idToNode, String nodeID, Object nodeTypes) {
+		if (!idToNode.containsKey(nodeID)) {
+			Node node = new Node(nodeID, toStringList(nodeTypes));
+
+			space.addNode(node);
+
+			idToNode.put(nodeID, node);
+		}
+
+		return idToNode.get(nodeID);
+	}
+
+	/*
+	 * List properties come back as arrays or collections depending on the driver.
+	 */
+	private static ArrayList<String> toStringList(Object value) {
+		ArrayList<String> strings = new ArrayList<String>();
+
+		if (value instanceof Collection) {
+			for (Object element : (Collection<?>) value) {
+				strings.add(String.valueOf(element));
+			}
+		} else if (value instanceof Object[]) {
+			for (Object element : (Object[]) value) {
+				strings.add(String.valueOf(element));
+			}
+		} else if (value != null) {
+			strings.add(String.valueOf(value));
+		}
+
+		return strings;
+	}
+
+	/*
+	 * Byte arrays come back as they are over Bolt and as lists of numbers over HTTP.
+	 */
+	private static byte[] toBytes(Object value) {
+		if (value instanceof byte[]) {
+			return (byte[]) value;
+		} else if (value instanceof Collection) {
+			byte[] bytes = new byte[((Collection<?>) value).size()];
+
+			int i = 0;
+
+			for (Object element : (Collection<?>) value) {
+				bytes[i++] = ((Number) element).byteValue();
+			}
+
+			return bytes;
+		} else {
+			Object[] elements = (Object[]) value;
+
+			byte[] bytes = new byte[elements.length];
+
+			for (int i = 0; i < elements.length; i++) {
+				bytes[i] = ((Number) elements[i]).byteValue();
+			}
+
+			return bytes;
+		}
+	}
+
+	private static Orientation toOrientation(Object value) {
+		if (value == null) {
+			return null;
+		}
+
+		for (Orientation orientation : Orientation.values()) {
+			if (orientation.name().equals(value) || orientation.getValue().equals(value)) {
+				return orientation;
+			}
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,1421 @@
+package knox.spring.data.neo4j.repositories;
+
+import knox.spring.data.neo4j.domain.Branch;
+import knox.spring.data.neo4j.domain.ChangeSet;
+import knox.spring.data.neo4j.domain.ChangeTracker;
+import knox.spring.data.neo4j.domain.Commit;
+import knox.spring.data.neo4j.domain.DesignSpace;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.domain.Snapshot;
+
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Writes design spaces with Cypher rather than through OGM, which saves a graph one entity at a
+ * time and has to be run twice to get edges right. Graphs are written with batched UNWIND
+ * statements, and saving a loaded design space only writes the changes recorded by its
+ * ChangeTracker.
+ */
+@Repository
+public class NodeSpaceWriter {
+	@Autowired Session session;
+
+	/*
+	 * Snapshots are stored as subgraphs of nodes and edges like the head graph ("graph"), or as a
+	 * single compressed property that is only ever read whole ("blob").
+	 */
+	@Value("${knox.snapshot.storage:graph}") String snapshotStorage;
+
+	public static final int BATCH_SIZE = 10000;
+
+	public static final String SNAPSHOT_BLOB_STORAGE = "blob";
+
+	private static final Logger LOG = LoggerFactory.getLogger(NodeSpaceWriter.class);
+
+	/*
+	 * Snapshots are looked up by content hash every time one is written, so the hash is indexed,
+	 * and so is the ID of a design space, which nearly every query starts from.
+	 */
+	public void createIndexes() {
+		try {
+			session.query("CREATE INDEX ON :Snapshot(contentHash)", Collections.<String, Object>emptyMap());
+		} catch (RuntimeException ex) {
+			LOG.warn("could not create index on snapshot content hash: {}", ex.getMessage());
+		}
+
+		try {
+			session.query("CREATE INDEX ON :DesignSpace(spaceID)", Collections.<String, Object>emptyMap());
+		} catch (RuntimeException ex) {
+			LOG.warn("could not create index on design space ID: {}", ex.getMessage());
+		}
+	}
+
+	/*
+	 * Saves a design space in one transaction by writing only what has changed since it was
+	 * loaded or last saved, as computed by its change tracker. A design space that was never
+	 * loaded is written in full.
+	 */
+	@Transactional
+	public void saveDesignSpace(DesignSpace space) {
+		ChangeTracker tracker = space.getChangeTracker();
+
+		ChangeSet changes = tracker.diff(space);
+
+		LOG.debug("saving {}: {}", space.getSpaceID(), changes);
+
+		Map<Object, Long> createdGraphIDs = new IdentityHashMap<Object, Long>();
+
+		writeChanges(space, changes, createdGraphIDs);
+
+		tracker.commit(space, createdGraphIDs);
+	}
+
+	private void writeChanges(DesignSpace space, ChangeSet changes, Map<Object, Long> createdGraphIDs) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceID", space.getSpaceID());
+
+		params.put("nodeIndex", space.getNodeIndex());
+
+		params.put("commitIndex", space.getCommitIndex());
+
+		Long spaceGraphID;
+
+		if (changes.isSpaceCreated()) {
+			spaceGraphID = readGraphID(session.query(
+					"CREATE (target:DesignSpace:NodeSpace {spaceID: {spaceID}, nodeIndex: {nodeIndex}, "
+					+ "commitIndex: {commitIndex}}) "
+					+ "RETURN ID(target) as graphID", params));
+
+			createdGraphIDs.put(space, spaceGraphID);
+		} else {
+			spaceGraphID = changes.getGraphID(space);
+
+			if (changes.isSpaceModified()) {
+				params.put("spaceGraphID", spaceGraphID);
+
+				session.query("MATCH (target) WHERE ID(target) = {spaceGraphID} "
+						+ "SET target.nodeIndex = {nodeIndex}, target.commitIndex = {commitIndex}", params);
+			}
+		}
+
+		deleteEdges(changes.getDeletedEdgeGraphIDs());
+
+		deleteNodes(changes.getDeletedNodeGraphIDs());
+
+		Map<String, Long> nodeIDToGraphID = createNodes(spaceGraphID, changes.getCreatedNodes(),
+				createdGraphIDs);
+
+		setNodeTypes(changes.getModifiedNodeTypes());
+
+		for (Edge edge : changes.getCreatedEdges()) {
+			for (String nodeID : Arrays.asList(edge.getTailID(), edge.getHeadID())) {
+				if (!nodeIDToGraphID.containsKey(nodeID)) {
+					nodeIDToGraphID.put(nodeID, changes.getNodeGraphID(nodeID));
+				}
+			}
+		}
+
+		createEdges(changes.getCreatedEdges(), nodeIDToGraphID, createdGraphIDs);
+
+		for (Branch branch : changes.getCreatedBranches()) {
+			createdGraphIDs.put(branch, createBranch(spaceGraphID, branch.getBranchID()));
+		}
+
+		for (Commit commit : changes.getCreatedCommits()) {
+			createdGraphIDs.put(commit, createCommit(commit, changes, createdGraphIDs));
+		}
+
+		for (Commit commit : changes.getCreatedCommits()) {
+			if (commit.hasPredecessors()) {
+				for (Commit predecessor : commit.getPredecessors()) {
+					Long predecessorGraphID = getGraphID(predecessor, changes, createdGraphIDs);
+
+					if (predecessorGraphID != null) {
+						linkEntities(createdGraphIDs.get(commit), "SUCCEEDS", predecessorGraphID);
+					}
+				}
+			}
+		}
+
+		for (Branch branch : changes.getRemovedBranchCommits().keySet()) {
+			for (Commit commit : changes.getRemovedBranchCommits().get(branch)) {
+				unlinkEntities(getGraphID(branch, changes, createdGraphIDs), "CONTAINS",
+						getGraphID(commit, changes, createdGraphIDs));
+			}
+		}
+
+		for (Branch branch : changes.getAddedBranchCommits().keySet()) {
+			for (Commit commit : changes.getAddedBranchCommits().get(branch)) {
+				linkEntities(getGraphID(branch, changes, createdGraphIDs), "CONTAINS",
+						getGraphID(commit, changes, createdGraphIDs));
+			}
+		}
+
+		for (Branch branch : changes.getModifiedLatestCommits()) {
+			Long branchGraphID = getGraphID(branch, changes, createdGraphIDs);
+
+			unlinkEntities(branchGraphID, "LATEST", null);
+
+			if (branch.hasLatestCommit()) {
+				linkEntities(branchGraphID, "LATEST",
+						getGraphID(branch.getLatestCommit(), changes, createdGraphIDs));
+			}
+		}
+
+		deleteEntities(changes.getDeletedBranchGraphIDs());
+
+		deleteCommits(changes.getDeletedCommitGraphIDs());
+
+		if (changes.getSelectedBranch() != null) {
+			selectBranch(spaceGraphID, getGraphID(changes.getSelectedBranch(), changes, createdGraphIDs));
+		}
+	}
+
+	private Long createCommit(Commit commit, ChangeSet changes, Map<Object, Long> createdGraphIDs) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("commitID", commit.getCommitID());
+
+		params.put("mergeID", commit.getMergeID());
+
+		Long commitGraphID = readGraphID(session.query(
+				"CREATE (c:Commit {commitID: {commitID}}) "
+				+ "SET c.mergeID = {mergeID} "
+				+ "RETURN ID(c) as graphID", params));
+
+		Snapshot snapshot = commit.getSnapshot();
+
+		if (snapshot != null) {
+			Long snapshotGraphID = getGraphID(snapshot, changes, createdGraphIDs);
+
+			if (snapshotGraphID == null) {
+				snapshotGraphID = writeSnapshot(snapshot);
+
+				createdGraphIDs.put(snapshot, snapshotGraphID);
+			}
+
+			linkEntities(commitGraphID, "CONTAINS", snapshotGraphID);
+		}
+
+		return commitGraphID;
+	}
+
+	/*
+	 * Returns the graph ID of a snapshot with the same content hash as the given graph, or writes
+	 * a new snapshot if there is none, so that identical snapshots are stored once and shared by
+	 * all commits that contain them. In blob storage, the graph of a new snapshot is encoded into
+	 * its edgeBlob property rather than written as nodes.
+	 *
+	 * A snapshot that is shared is write locked until the end of the transaction, in which the
+	 * caller links it to a commit, so that deleteSnapshots cannot find it unreferenced meanwhile.
+	 */
+	private Long writeSnapshot(NodeSpace snapshotSpace) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("contentHash", snapshotSpace.computeContentHash());
+
+		Map<String, Object> snapshot = readRow(session.query(
+				"MATCH (s:Snapshot {contentHash: {contentHash}}) "
+				+ "WITH s LIMIT 1 "
+				+ "SET s._LOCK_ = true "
+				+ "REMOVE s._LOCK_ "
+				+ "RETURN ID(s) as graphID", params));
+
+		if (!snapshot.isEmpty()) {
+			return ((Number) snapshot.get("graphID")).longValue();
+		}
+
+		params.put("nodeIndex", snapshotSpace.getNodeIndex());
+
+		if (SNAPSHOT_BLOB_STORAGE.equals(snapshotStorage)) {
+			params.put("edgeBlob", NodeSpaceCodec.encode(snapshotSpace));
+
+			return readGraphID(session.query(
+					"CREATE (s:Snapshot:NodeSpace {nodeIndex: {nodeIndex}, contentHash: {contentHash}, "
+					+ "edgeBlob: {edgeBlob}}) "
+					+ "RETURN ID(s) as graphID", params));
+		}
+
+		Long snapshotGraphID = readGraphID(session.query(
+				"CREATE (s:Snapshot:NodeSpace {nodeIndex: {nodeIndex}, contentHash: {contentHash}}) "
+				+ "RETURN ID(s) as graphID", params));
+
+		writeNodes(snapshotGraphID, snapshotSpace.getNodes());
+
+		return snapshotGraphID;
+	}
+
+	private Long getGraphID(Object entity, ChangeSet changes, Map<Object, Long> createdGraphIDs) {
+		if (createdGraphIDs.containsKey(entity)) {
+			return createdGraphIDs.get(entity);
+		} else {
+			return changes.getGraphID(entity);
+		}
+	}
+
+	/*
+	 * Replaces the head graph of a design space with the output of an operator and commits a
+	 * snapshot of it to the head branch. The new commit succeeds the given commits, which may
+	 * belong to other design spaces, so the version histories of the inputs are referenced rather
+	 * than copied. A design space or head branch that does not exist yet is created, with a head
+	 * branch named after the given branch ID.
+	 */
+	@Transactional
+	public void commitHead(String targetSpaceID, String headBranchID, NodeSpace head,
+			Collection<Long> predecessorGraphIDs) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("targetSpaceID", targetSpaceID);
+
+		params.put("headBranchID", headBranchID);
+
+		Map<String, Object> graphIDs = readRow(session.query(
+				"MERGE (target:DesignSpace {spaceID: {targetSpaceID}}) "
+				+ "ON CREATE SET target:NodeSpace, target.nodeIndex = 0, target.commitIndex = 0 "
+				+ "WITH target "
+				+ "OPTIONAL MATCH (target)-[:SELECTS]->(hb:Branch) "
+				+ "RETURN ID(target) as spaceGraphID, ID(hb) as branchGraphID", params));
+
+		Long spaceGraphID = ((Number) graphIDs.get("spaceGraphID")).longValue();
+
+		Long branchGraphID;
+
+		if (graphIDs.get("branchGraphID") != null) {
+			branchGraphID = ((Number) graphIDs.get("branchGraphID")).longValue();
+		} else {
+			branchGraphID = createBranch(spaceGraphID, headBranchID);
+
+			selectBranch(spaceGraphID, branchGraphID);
+		}
+
+		clearNodes(spaceGraphID);
+
+		setNodeIndex(spaceGraphID, head.getNodeIndex());
+
+		writeNodes(spaceGraphID, head.getNodes());
+
+		writeCommit(branchGraphID, head, predecessorGraphIDs);
+	}
+
+	/*
+	 * Commits the output of an operator to a branch, which is created if it does not exist yet,
+	 * and selects the branch as head. The head graph itself is left as it is.
+	 */
+	@Transactional
+	public void commitBranch(String targetSpaceID, String targetBranchID, NodeSpace snapshotSpace,
+			Collection<Long> predecessorGraphIDs) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("targetSpaceID", targetSpaceID);
+
+		params.put("targetBranchID", targetBranchID);
+
+		Map<String, Object> graphIDs = readRow(session.query(
+				"MATCH (target:DesignSpace {spaceID: {targetSpaceID}}) "
+				+ "OPTIONAL MATCH (target)-[:ARCHIVES]->(b:Branch {branchID: {targetBranchID}}) "
+				+ "RETURN ID(target) as spaceGraphID, ID(b) as branchGraphID", params));
+
+		Long spaceGraphID = ((Number) graphIDs.get("spaceGraphID")).longValue();
+
+		Long branchGraphID;
+
+		if (graphIDs.get("branchGraphID") != null) {
+			branchGraphID = ((Number) graphIDs.get("branchGraphID")).longValue();
+		} else {
+			branchGraphID = createBranch(spaceGraphID, targetBranchID);
+		}
+
+		writeCommit(branchGraphID, snapshotSpace, predecessorGraphIDs);
+
+		selectBranch(spaceGraphID, branchGraphID);
+	}
+
+	/*
+	 * Selects a branch as head and replaces the head graph of its design space with the graph of
+	 * the latest commit on the branch.
+	 */
+	@Transactional
+	public void checkoutBranch(String targetSpaceID, String targetBranchID, NodeSpace branchHead) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("targetSpaceID", targetSpaceID);
+
+		params.put("targetBranchID", targetBranchID);
+
+		Map<String, Object> graphIDs = readRow(session.query(
+				"MATCH (target:DesignSpace {spaceID: {targetSpaceID}})-[:ARCHIVES]->(b:Branch {branchID: {targetBranchID}}) "
+				+ "RETURN ID(target) as spaceGraphID, ID(b) as branchGraphID", params));
+
+		if (graphIDs.isEmpty()) {
+			return;
+		}
+
+		Long spaceGraphID = ((Number) graphIDs.get("spaceGraphID")).longValue();
+
+		selectBranch(spaceGraphID, ((Number) graphIDs.get("branchGraphID")).longValue());
+
+		clearNodes(spaceGraphID);
+
+		setNodeIndex(spaceGraphID, branchHead.getNodeIndex());
+
+		writeNodes(spaceGraphID, branchHead.getNodes());
+	}
+
+	/*
+	 * Moves the latest commit on a branch back along the given path of commit IDs, which starts
+	 * at the current latest commit, and drops the commits that are no longer in its history from
+	 * the branch. Dropped commits that no other branch contains are deleted. Nothing is changed
+	 * if the path cannot be followed. The path may only pass through commits of the design space
+	 * itself, since a commit of an operator output succeeds the commits of its inputs directly,
+	 * and resetting a branch onto another design space would drop all of its own commits.
+	 */
+	@Transactional
+	public void resetBranch(String targetSpaceID, String targetBranchID, List<String> commitPath) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("targetSpaceID", targetSpaceID);
+
+		params.put("targetBranchID", targetBranchID);
+
+		Map<String, Object> latestCommit = readRow(session.query(
+				"MATCH (:DesignSpace {spaceID: {targetSpaceID}})-[:ARCHIVES]->(b:Branch {branchID: {targetBranchID}})"
+				+ "-[:LATEST]->(lc:Commit) "
+				+ "RETURN ID(b) as branchGraphID, ID(lc) as graphID, lc.commitID as commitID, "
+				+ "size((b)-[:CONTAINS]->(:Commit)) as numCommits", params));
+
+		if (latestCommit.isEmpty() || ((Number) latestCommit.get("numCommits")).intValue() <= 1
+				|| commitPath.isEmpty() || !commitPath.get(0).equals(latestCommit.get("commitID"))) {
+			return;
+		}
+
+		Long branchGraphID = ((Number) latestCommit.get("branchGraphID")).longValue();
+
+		Long commitGraphID = ((Number) latestCommit.get("graphID")).longValue();
+
+		for (int i = 1; i < commitPath.size(); i++) {
+			params.clear();
+
+			params.put("branchGraphID", branchGraphID);
+
+			params.put("graphID", commitGraphID);
+
+			params.put("commitID", commitPath.get(i));
+
+			Map<String, Object> predecessor = readRow(session.query(
+					"MATCH (c:Commit)-[:SUCCEEDS]->(p:Commit {commitID: {commitID}}) WHERE ID(c) = {graphID} "
+					+ "MATCH (b:Branch)<-[:ARCHIVES]-(:DesignSpace)-[:ARCHIVES]->(:Branch)-[:CONTAINS]->(p) "
+					+ "WHERE ID(b) = {branchGraphID} "
+					+ "RETURN ID(p) as graphID LIMIT 1", params));
+
+			if (predecessor.isEmpty()) {
+				return;
+			}
+
+			commitGraphID = ((Number) predecessor.get("graphID")).longValue();
+		}
+
+		unlinkEntities(branchGraphID, "LATEST", null);
+
+		linkEntities(branchGraphID, "LATEST", commitGraphID);
+
+		params.clear();
+
+		params.put("branchGraphID", branchGraphID);
+
+		params.put("commitGraphID", commitGraphID);
+
+		Result result = session.query(
+				"MATCH (c:Commit) WHERE ID(c) = {commitGraphID} "
+				+ "MATCH (b:Branch)-[r:CONTAINS]->(x:Commit) "
+				+ "WHERE ID(b) = {branchGraphID} AND NOT (c)-[:SUCCEEDS*0..]->(x) "
+				+ "DELETE r "
+				+ "WITH x "
+				+ "WHERE NOT (x)<-[:CONTAINS]-(:Branch) "
+				+ "RETURN ID(x) as graphID", params);
+
+		List<Long> droppedGraphIDs = new LinkedList<Long>();
+
+		for (Map<String, Object> row : result.queryResults()) {
+			droppedGraphIDs.add(((Number) row.get("graphID")).longValue());
+		}
+
+		deleteCommits(droppedGraphIDs);
+	}
+
+	/*
+	 * Creates a commit that contains a snapshot of the given graph and makes it the latest commit
+	 * on a branch. Commit IDs are drawn from the commit index of the design space, as in
+	 * DesignSpace.createCommit.
+	 */
+	public Long writeCommit(Long branchGraphID, NodeSpace snapshotSpace,
+			Collection<Long> predecessorGraphIDs) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("branchGraphID", branchGraphID);
+
+		Long commitGraphID = readGraphID(session.query(
+				"MATCH (target:DesignSpace)-[:ARCHIVES]->(b:Branch) WHERE ID(b) = {branchGraphID} "
+				+ "SET target.commitIndex = coalesce(target.commitIndex, 0) + 1 "
+				+ "WITH target, b "
+				+ "OPTIONAL MATCH (b)-[l:LATEST]->(:Commit) "
+				+ "DELETE l "
+				+ "WITH DISTINCT target, b "
+				+ "CREATE (b)-[:CONTAINS]->(c:Commit {commitID: 'c' + (target.commitIndex - 1)}) "
+				+ "CREATE (b)-[:LATEST]->(c) "
+				+ "RETURN ID(c) as graphID", params));
+
+		linkEntities(commitGraphID, "CONTAINS", writeSnapshot(snapshotSpace));
+
+		if (!predecessorGraphIDs.isEmpty()) {
+			params.clear();
+
+			params.put("commitGraphID", commitGraphID);
+
+			params.put("predecessorGraphIDs", new ArrayList<Long>(predecessorGraphIDs));
+
+			session.query(
+					"MATCH (c:Commit) WHERE ID(c) = {commitGraphID} "
+					+ "MATCH (p:Commit) WHERE ID(p) IN {predecessorGraphIDs} "
+					+ "CREATE (c)-[:SUCCEEDS]->(p)", params);
+		}
+
+		return commitGraphID;
+	}
+
+	private Long createBranch(Long spaceGraphID, String branchID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceGraphID", spaceGraphID);
+
+		params.put("branchID", branchID);
+
+		return ((Number) readRow(session.query(
+				"MATCH (target:DesignSpace) WHERE ID(target) = {spaceGraphID} "
+				+ "CREATE (target)-[:ARCHIVES]->(b:Branch {branchID: {branchID}}) "
+				+ "RETURN ID(b) as branchGraphID", params)).get("branchGraphID")).longValue();
+	}
+
+	private void selectBranch(Long spaceGraphID, Long branchGraphID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceGraphID", spaceGraphID);
+
+		params.put("branchGraphID", branchGraphID);
+
+		session.query(
+				"MATCH (target:DesignSpace)-[:ARCHIVES]->(b:Branch) "
+				+ "WHERE ID(target) = {spaceGraphID} AND ID(b) = {branchGraphID} "
+				+ "OPTIONAL MATCH (target)-[s:SELECTS]->(:Branch) "
+				+ "DELETE s "
+				+ "WITH DISTINCT target, b "
+				+ "CREATE (target)-[:SELECTS]->(b)", params);
+	}
+
+	private void setNodeIndex(Long spaceGraphID, int nodeIndex) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceGraphID", spaceGraphID);
+
+		params.put("nodeIndex", nodeIndex);
+
+		session.query("MATCH (s) WHERE ID(s) = {spaceGraphID} SET s.nodeIndex = {nodeIndex}", params);
+	}
+
+	/*
+	 * Deletes the nodes of a design space or snapshot in batches and returns how many there were.
+	 */
+	public int clearNodes(Long spaceGraphID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceGraphID", spaceGraphID);
+
+		params.put("batchSize", BATCH_SIZE);
+
+		int numDeleted;
+
+		int totalDeleted = 0;
+
+		do {
+			numDeleted = readCount(session.query(
+					"MATCH (s)-[:CONTAINS]->(n:Node) WHERE ID(s) = {spaceGraphID} "
+					+ "WITH n LIMIT {batchSize} "
+					+ "DETACH DELETE n "
+					+ "RETURN count(*) as count", params));
+
+			totalDeleted += numDeleted;
+		} while (numDeleted >= BATCH_SIZE);
+
+		return totalDeleted;
+	}
+
+	/*
+	 * Creates the given nodes in the design space or snapshot with the given graph ID, followed by
+	 * their edges.
+	 */
+	public void writeNodes(Long spaceGraphID, Set<Node> nodes) {
+		if (nodes == null || nodes.isEmpty()) {
+			return;
+		}
+
+		Map<String, Long> nodeIDToGraphID = createNodes(spaceGraphID, nodes, null);
+
+		List<Edge> edges = new LinkedList<Edge>();
+
+		for (Node node : nodes) {
+			if (node.hasEdges()) {
+				edges.addAll(node.getEdges());
+			}
+		}
+
+		createEdges(edges, nodeIDToGraphID, null);
+
+		LOG.debug("wrote {} nodes and {} edges", nodes.size(), edges.size());
+	}
+
+	/*
+	 * Returns the graph IDs of the created nodes by node ID, and records them by node if a map of
+	 * created graph IDs is given.
+	 */
+	private Map<String, Long> createNodes(Long spaceGraphID, Collection<Node> nodes,
+			Map<Object, Long> createdGraphIDs) {
+		Map<String, Node> nodeIDToNode = new HashMap<String, Node>();
+
+		List<Map<String, Object>> nodeRows = new ArrayList<Map<String, Object>>(nodes.size());
+
+		for (Node node : nodes) {
+			Map<String, Object> nodeRow = new HashMap<String, Object>();
+
+			nodeRow.put("nodeID", node.getNodeID());
+
+			nodeRow.put("nodeTypes", node.getNodeTypes());
+
+			nodeRows.add(nodeRow);
+
+			nodeIDToNode.put(node.getNodeID(), node);
+		}
+
+		Map<String, Long> nodeIDToGraphID = new HashMap<String, Long>();
+
+		for (List<Map<String, Object>> nodeBatch : partition(nodeRows)) {
+			Map<String, Object> params = new HashMap<String, Object>();
+
+			params.put("spaceGraphID", spaceGraphID);
+
+			params.put("rows", nodeBatch);
+
+			Result result = session.query(
+					"MATCH (s) WHERE ID(s) = {spaceGraphID} "
+					+ "UNWIND {rows} AS row "
+					+ "CREATE (s)-[:CONTAINS]->(n:Node {nodeID: row.nodeID, nodeTypes: row.nodeTypes}) "
+					+ "RETURN row.nodeID as nodeID, ID(n) as graphID", params);
+
+			for (Map<String, Object> row : result.queryResults()) {
+				String nodeID = (String) row.get("nodeID");
+
+				Long nodeGraphID = ((Number) row.get("graphID")).longValue();
+
+				nodeIDToGraphID.put(nodeID, nodeGraphID);
+
+				if (createdGraphIDs != null) {
+					createdGraphIDs.put(nodeIDToNode.get(nodeID), nodeGraphID);
+				}
+			}
+		}
+
+		return nodeIDToGraphID;
+	}
+
+	/*
+	 * Creates the given edges between the nodes with the given graph IDs, and records their graph
+	 * IDs by edge if a map of created graph IDs is given.
+	 */
+	private void createEdges(List<Edge> edges, Map<String, Long> nodeIDToGraphID,
+			Map<Object, Long> createdGraphIDs) {
+		List<Map<String, Object>> edgeRows = new ArrayList<Map<String, Object>>(edges.size());
+
+		for (Edge edge : edges) {
+			edgeRows.add(createEdgeRow(edgeRows.size(), edge, nodeIDToGraphID.get(edge.getTailID()),
+					nodeIDToGraphID.get(edge.getHeadID())));
+		}
+
+		for (List<Map<String, Object>> edgeBatch : partition(edgeRows)) {
+			Result result = writeEdgeRows(edgeBatch);
+
+			if (createdGraphIDs != null) {
+				for (Map<String, Object> row : result.queryResults()) {
+					createdGraphIDs.put(edges.get(((Number) row.get("index")).intValue()),
+							((Number) row.get("graphID")).longValue());
+				}
+			}
+		}
+	}
+
+	private static Map<String, Object> createEdgeRow(int index, Edge edge, Long tailGraphID,
+			Long headGraphID) {
+		Map<String, Object> edgeRow = new HashMap<String, Object>();
+
+		edgeRow.put("index", index);
+
+		edgeRow.put("tailID", tailGraphID);
+
+		edgeRow.put("headID", headGraphID);
+
+		edgeRow.put("componentIDs", edge.getComponentIDs());
+
+		edgeRow.put("componentRoles", edge.getComponentRoles());
+
+		if (edge.getOrientation() != null) {
+			edgeRow.put("orientation", edge.getOrientation().name());
+		}
+
+		edgeRow.put("weight", edge.getWeight());
+
+		return edgeRow;
+	}
+
+	private Result writeEdgeRows(List<Map<String, Object>> edgeRows) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("rows", edgeRows);
+
+		return session.query(
+				"UNWIND {rows} AS row "
+				+ "MATCH (m:Node) WHERE ID(m) = row.tailID "
+				+ "MATCH (n:Node) WHERE ID(n) = row.headID "
+				+ "CREATE (m)-[e:PRECEDES {componentIDs: row.componentIDs, componentRoles: row.componentRoles, "
+				+ "orientation: row.orientation, weight: row.weight}]->(n) "
+				+ "RETURN row.index as index, ID(e) as graphID", params);
+	}
+
+	private void setNodeTypes(Map<Long, List<String>> nodeGraphIDToTypes) {
+		List<Map<String, Object>> nodeRows = new ArrayList<Map<String, Object>>(nodeGraphIDToTypes.size());
+
+		for (Long nodeGraphID : nodeGraphIDToTypes.keySet()) {
+			Map<String, Object> nodeRow = new HashMap<String, Object>();
+
+			nodeRow.put("graphID", nodeGraphID);
+
+			nodeRow.put("nodeTypes", nodeGraphIDToTypes.get(nodeGraphID));
+
+			nodeRows.add(nodeRow);
+		}
+
+		for (List<Map<String, Object>> nodeBatch : partition(nodeRows)) {
+			Map<String, Object> params = new HashMap<String, Object>();
+
+			params.put("rows", nodeBatch);
+
+			session.query(
+					"UNWIND {rows} AS row "
+					+ "MATCH (n:Node) WHERE ID(n) = row.graphID "
+					+ "SET n.nodeTypes = row.nodeTypes", params);
+		}
+	}
+
+	private void deleteNodes(List<Long> nodeGraphIDs) {
+		for (List<Long> nodeBatch : partition(nodeGraphIDs)) {
+			Map<String, Object> params = new HashMap<String, Object>();
+
+			params.put("graphIDs", nodeBatch);
+
+			session.query(
+					"UNWIND {graphIDs} AS graphID "
+					+ "MATCH (n:Node) WHERE ID(n) = graphID "
+					+ "DETACH DELETE n", params);
+		}
+	}
+
+	private void deleteEdges(List<Long> edgeGraphIDs) {
+		for (List<Long> edgeBatch : partition(edgeGraphIDs)) {
+			Map<String, Object> params = new HashMap<String, Object>();
+
+			params.put("graphIDs", edgeBatch);
+
+			session.query(
+					"UNWIND {graphIDs} AS graphID "
+					+ "MATCH ()-[e:PRECEDES]->() WHERE ID(e) = graphID "
+					+ "DELETE e", params);
+		}
+	}
+
+	/*
+	 * Creates design spaces in bulk, each with a head branch named after it and one commit of its
+	 * head graph, which is what importing them one at a time through saveDesignSpace and a commit
+	 * to the head branch amounts to. The design spaces, commits, snapshots, nodes and edges of the
+	 * whole batch are each created with a few UNWIND statements in one transaction. Design spaces
+	 * whose IDs are already taken are skipped. Returns the IDs of the design spaces created.
+	 */
+	@Transactional
+	public List<String> importDesignSpaces(List<DesignSpace> spaces) {
+		Set<String> spaceIDs = new HashSet<String>();
+
+		List<Map<String, Object>> spaceRows = new ArrayList<Map<String, Object>>(spaces.size());
+
+		for (int i = 0; i < spaces.size(); i++) {
+			if (spaceIDs.add(spaces.get(i).getSpaceID())) {
+				Map<String, Object> spaceRow = new HashMap<String, Object>();
+
+				spaceRow.put("index", i);
+
+				spaceRow.put("spaceID", spaces.get(i).getSpaceID());
+
+				spaceRow.put("nodeIndex", spaces.get(i).getNodeIndex());
+
+				spaceRows.add(spaceRow);
+			}
+		}
+
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("rows", spaceRows);
+
+		Result result = session.query(
+				"UNWIND {rows} AS row "
+				+ "OPTIONAL MATCH (existing:DesignSpace {spaceID: row.spaceID}) "
+				+ "WITH row, existing WHERE existing IS NULL "
+				+ "CREATE (target:DesignSpace:NodeSpace {spaceID: row.spaceID, nodeIndex: row.nodeIndex, "
+				+ "commitIndex: 1}) "
+				+ "CREATE (target)-[:ARCHIVES]->(b:Branch {branchID: row.spaceID}) "
+				+ "CREATE (target)-[:SELECTS]->(b) "
+				+ "CREATE (b)-[:CONTAINS]->(c:Commit {commitID: 'c0'}) "
+				+ "CREATE (b)-[:LATEST]->(c) "
+				+ "RETURN row.index as index, ID(target) as spaceGraphID, ID(c) as commitGraphID", params);
+
+		List<DesignSpace> createdSpaces = new ArrayList<DesignSpace>(spaceRows.size());
+
+		List<Long> spaceGraphIDs = new ArrayList<Long>(spaceRows.size());
+
+		List<Long> commitGraphIDs = new ArrayList<Long>(spaceRows.size());
+
+		for (Map<String, Object> row : result.queryResults()) {
+			createdSpaces.add(spaces.get(((Number) row.get("index")).intValue()));
+
+			spaceGraphIDs.add(((Number) row.get("spaceGraphID")).longValue());
+
+			commitGraphIDs.add(((Number) row.get("commitGraphID")).longValue());
+		}
+
+		writeGraphs(spaceGraphIDs, createdSpaces);
+
+		writeSnapshots(commitGraphIDs, createdSpaces);
+
+		List<String> createdSpaceIDs = new ArrayList<String>(createdSpaces.size());
+
+		for (DesignSpace createdSpace : createdSpaces) {
+			createdSpaceIDs.add(createdSpace.getSpaceID());
+		}
+
+		return createdSpaceIDs;
+	}
+
+	/*
+	 * Links each of the given commits to a snapshot of the corresponding graph, as writeSnapshot
+	 * does for one commit. Existing snapshots are looked up and locked by content hash for all
+	 * graphs at once, and the missing ones are created together.
+	 */
+	private void writeSnapshots(List<Long> commitGraphIDs, List<? extends NodeSpace> snapshotSpaces) {
+		List<String> contentHashes = new ArrayList<String>(snapshotSpaces.size());
+
+		Map<String, NodeSpace> hashToSpace = new HashMap<String, NodeSpace>();
+
+		for (NodeSpace snapshotSpace : snapshotSpaces) {
+			String contentHash = snapshotSpace.computeContentHash();
+
+			contentHashes.add(contentHash);
+
+			hashToSpace.put(contentHash, snapshotSpace);
+		}
+
+		Map<String, Long> hashToGraphID = new HashMap<String, Long>();
+
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("contentHashes", new ArrayList<String>(hashToSpace.keySet()));
+
+		Result result = session.query(
+				"UNWIND {contentHashes} AS contentHash "
+				+ "MATCH (s:Snapshot {contentHash: contentHash}) "
+				+ "WITH contentHash, min(ID(s)) as graphID "
+				+ "MATCH (s:Snapshot) WHERE ID(s) = graphID "
+				+ "SET s._LOCK_ = true "
+				+ "REMOVE s._LOCK_ "
+				+ "RETURN contentHash, graphID", params);
+
+		for (Map<String, Object> row : result.queryResults()) {
+			hashToGraphID.put((String) row.get("contentHash"), ((Number) row.get("graphID")).longValue());
+		}
+
+		List<Map<String, Object>> snapshotRows = new ArrayList<Map<String, Object>>();
+
+		for (Map.Entry<String, NodeSpace> hashAndSpace : hashToSpace.entrySet()) {
+			if (!hashToGraphID.containsKey(hashAndSpace.getKey())) {
+				Map<String, Object> snapshotRow = new HashMap<String, Object>();
+
+				snapshotRow.put("contentHash", hashAndSpace.getKey());
+
+				snapshotRow.put("nodeIndex", hashAndSpace.getValue().getNodeIndex());
+
+				if (SNAPSHOT_BLOB_STORAGE.equals(snapshotStorage)) {
+					snapshotRow.put("edgeBlob", NodeSpaceCodec.encode(hashAndSpace.getValue()));
+				}
+
+				snapshotRows.add(snapshotRow);
+			}
+		}
+
+		List<Long> snapshotGraphIDs = new ArrayList<Long>(snapshotRows.size());
+
+		List<NodeSpace> createdSnapshots = new ArrayList<NodeSpace>(snapshotRows.size());
+
+		for (List<Map<String, Object>> snapshotBatch : partition(snapshotRows)) {
+			params.clear();
+
+			params.put("rows", snapshotBatch);
+
+			result = session.query(
+					"UNWIND {rows} AS row "
+					+ "CREATE (s:Snapshot:NodeSpace {nodeIndex: row.nodeIndex, contentHash: row.contentHash}) "
+					+ "SET s.edgeBlob = row.edgeBlob "
+					+ "RETURN row.contentHash as contentHash, ID(s) as graphID", params);
+
+			for (Map<String, Object> row : result.queryResults()) {
+				String contentHash = (String) row.get("contentHash");
+
+				Long snapshotGraphID = ((Number) row.get("graphID")).longValue();
+
+				hashToGraphID.put(contentHash, snapshotGraphID);
+
+				snapshotGraphIDs.add(snapshotGraphID);
+
+				createdSnapshots.add(hashToSpace.get(contentHash));
+			}
+		}
+
+		if (!SNAPSHOT_BLOB_STORAGE.equals(snapshotStorage)) {
+			writeGraphs(snapshotGraphIDs, createdSnapshots);
+		}
+
+		List<Map<String, Object>> linkRows = new ArrayList<Map<String, Object>>(commitGraphIDs.size());
+
+		for (int i = 0; i < commitGraphIDs.size(); i++) {
+			Map<String, Object> linkRow = new HashMap<String, Object>();
+
+			linkRow.put("commitGraphID", commitGraphIDs.get(i));
+
+			linkRow.put("snapshotGraphID", hashToGraphID.get(contentHashes.get(i)));
+
+			linkRows.add(linkRow);
+		}
+
+		for (List<Map<String, Object>> linkBatch : partition(linkRows)) {
+			params.clear();
+
+			params.put("rows", linkBatch);
+
+			session.query(
+					"UNWIND {rows} AS row "
+					+ "MATCH (c:Commit) WHERE ID(c) = row.commitGraphID "
+					+ "MATCH (s:Snapshot) WHERE ID(s) = row.snapshotGraphID "
+					+ "CREATE (c)-[:CONTAINS]->(s)", params);
+		}
+	}
+
+	/*
+	 * Creates the nodes and edges of several graphs at once, each in the design space or snapshot
+	 * with the corresponding graph ID, so that many small graphs take as few statements as one
+	 * large graph.
+	 */
+	private void writeGraphs(List<Long> ownerGraphIDs, List<? extends NodeSpace> graphs) {
+		List<Map<String, Object>> nodeRows = new ArrayList<Map<String, Object>>();
+
+		List<Map<String, Integer>> nodeIDToIndices = new ArrayList<Map<String, Integer>>(graphs.size());
+
+		for (int i = 0; i < graphs.size(); i++) {
+			Map<String, Integer> nodeIDToIndex = new HashMap<String, Integer>();
+
+			if (graphs.get(i).hasNodes()) {
+				for (Node node : graphs.get(i).getNodes()) {
+					Map<String, Object> nodeRow = new HashMap<String, Object>();
+
+					nodeRow.put("index", nodeRows.size());
+
+					nodeRow.put("ownerGraphID", ownerGraphIDs.get(i));
+
+					nodeRow.put("nodeID", node.getNodeID());
+
+					nodeRow.put("nodeTypes", node.getNodeTypes());
+
+					nodeIDToIndex.put(node.getNodeID(), nodeRows.size());
+
+					nodeRows.add(nodeRow);
+				}
+			}
+
+			nodeIDToIndices.add(nodeIDToIndex);
+		}
+
+		long[] nodeGraphIDs = new long[nodeRows.size()];
+
+		for (List<Map<String, Object>> nodeBatch : partition(nodeRows)) {
+			Map<String, Object> params = new HashMap<String, Object>();
+
+			params.put("rows", nodeBatch);
+
+			Result result = session.query(
+					"UNWIND {rows} AS row "
+					+ "MATCH (s) WHERE ID(s) = row.ownerGraphID "
+					+ "CREATE (s)-[:CONTAINS]->(n:Node {nodeID: row.nodeID, nodeTypes: row.nodeTypes}) "
+					+ "RETURN row.index as index, ID(n) as graphID", params);
+
+			for (Map<String, Object> row : result.queryResults()) {
+				nodeGraphIDs[((Number) row.get("index")).intValue()] = ((Number) row.get("graphID")).longValue();
+			}
+		}
+
+		List<Map<String, Object>> edgeRows = new ArrayList<Map<String, Object>>();
+
+		for (int i = 0; i < graphs.size(); i++) {
+			if (graphs.get(i).hasNodes()) {
+				Map<String, Integer> nodeIDToIndex = nodeIDToIndices.get(i);
+
+				for (Node node : graphs.get(i).getNodes()) {
+					if (node.hasEdges()) {
+						for (Edge edge : node.getEdges()) {
+							edgeRows.add(createEdgeRow(edgeRows.size(), edge,
+									nodeGraphIDs[nodeIDToIndex.get(edge.getTailID())],
+									nodeGraphIDs[nodeIDToIndex.get(edge.getHeadID())]));
+						}
+					}
+				}
+			}
+		}
+
+		for (List<Map<String, Object>> edgeBatch : partition(edgeRows)) {
+			writeEdgeRows(edgeBatch);
+		}
+
+		LOG.debug("wrote {} nodes and {} edges of {} graphs", nodeRows.size(), edgeRows.size(),
+				graphs.size());
+	}
+
+	/*
+	 * Hides a design space from listing and lookup by relabelling it, so that it can be deleted in
+	 * batches afterwards. Returns the graph ID of the design space, or null if there is none.
+	 */
+	public Long markDesignSpaceDeleted(String targetSpaceID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("targetSpaceID", targetSpaceID);
+
+		Map<String, Object> row = readRow(session.query(
+				"MATCH (target:DesignSpace {spaceID: {targetSpaceID}}) "
+				+ "REMOVE target:DesignSpace SET target:DeletedDesignSpace "
+				+ "RETURN ID(target) as graphID", params));
+
+		return row.containsKey("graphID") ? ((Number) row.get("graphID")).longValue() : null;
+	}
+
+	/*
+	 * Returns the graph IDs of the design spaces that were marked deleted but not yet deleted, by
+	 * their space IDs.
+	 */
+	public Map<String, Long> findDeletedDesignSpaces() {
+		Result result = session.query(
+				"MATCH (target:DeletedDesignSpace) "
+				+ "RETURN target.spaceID as spaceID, ID(target) as graphID",
+				Collections.<String, Object>emptyMap());
+
+		Map<String, Long> spaceIDToGraphID = new HashMap<String, Long>();
+
+		for (Map<String, Object> row : result.queryResults()) {
+			spaceIDToGraphID.put((String) row.get("spaceID"), ((Number) row.get("graphID")).longValue());
+		}
+
+		return spaceIDToGraphID;
+	}
+
+	/*
+	 * Returns the graph IDs of the commits of a design space that commits of other design spaces
+	 * succeed, directly or through other commits of the design space. Operator outputs succeed the
+	 * commits of their inputs rather than copies of them, so these commits are part of the version
+	 * histories of other design spaces and are kept when the design space is deleted.
+	 */
+	public Set<Long> findReferencedCommits(Long spaceGraphID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceGraphID", spaceGraphID);
+
+		Result result = session.query(
+				"MATCH (target)-[:ARCHIVES]->(:Branch)-[:CONTAINS|LATEST]->(c:Commit) "
+				+ "WHERE ID(target) = {spaceGraphID} "
+				+ "RETURN DISTINCT ID(c) as graphID", params);
+
+		List<Long> commitGraphIDs = new ArrayList<Long>();
+
+		for (Map<String, Object> row : result.queryResults()) {
+			commitGraphIDs.add(((Number) row.get("graphID")).longValue());
+		}
+
+		return findReferencedCommits(commitGraphIDs);
+	}
+
+	/*
+	 * Returns those of the given commits that a commit not among them succeeds, directly or
+	 * through other given commits. The succession between the given commits is read in one query
+	 * and followed here, since a variable-length Cypher path would be matched once for every path
+	 * through merged histories.
+	 */
+	private Set<Long> findReferencedCommits(List<Long> commitGraphIDs) {
+		Set<Long> referencedGraphIDs = new HashSet<Long>();
+
+		if (commitGraphIDs.isEmpty()) {
+			return referencedGraphIDs;
+		}
+
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("graphIDs", commitGraphIDs);
+
+		Result result = session.query(
+				"MATCH (x:Commit)-[:SUCCEEDS]->(c:Commit) "
+				+ "WHERE ID(c) IN {graphIDs} AND NOT ID(x) IN {graphIDs} "
+				+ "RETURN DISTINCT ID(c) as graphID", params);
+
+		LinkedList<Long> referencedStack = new LinkedList<Long>();
+
+		for (Map<String, Object> row : result.queryResults()) {
+			referencedStack.push(((Number) row.get("graphID")).longValue());
+		}
+
+		if (referencedStack.isEmpty()) {
+			return referencedGraphIDs;
+		}
+
+		result = session.query(
+				"MATCH (c:Commit)-[:SUCCEEDS]->(p:Commit) "
+				+ "WHERE ID(c) IN {graphIDs} AND ID(p) IN {graphIDs} "
+				+ "RETURN ID(c) as graphID, collect(ID(p)) as predecessorGraphIDs", params);
+
+		Map<Long, List<Long>> graphIDToPredecessors = new HashMap<Long, List<Long>>();
+
+		for (Map<String, Object> row : result.queryResults()) {
+			graphIDToPredecessors.put(((Number) row.get("graphID")).longValue(),
+					toGraphIDs(row.get("predecessorGraphIDs")));
+		}
+
+		while (!referencedStack.isEmpty()) {
+			Long graphID = referencedStack.pop();
+
+			if (referencedGraphIDs.add(graphID) && graphIDToPredecessors.containsKey(graphID)) {
+				referencedStack.addAll(graphIDToPredecessors.get(graphID));
+			}
+		}
+
+		return referencedGraphIDs;
+	}
+
+	/*
+	 * Returns the graph IDs of up to a given number of commits on the branches of a design space,
+	 * other than the given ones.
+	 */
+	public List<Long> findArchivedCommits(Long spaceGraphID, Collection<Long> excludedGraphIDs,
+			int limit) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceGraphID", spaceGraphID);
+
+		params.put("excludedGraphIDs", new ArrayList<Long>(excludedGraphIDs));
+
+		params.put("limit", limit);
+
+		Result result = session.query(
+				"MATCH (target)-[:ARCHIVES]->(:Branch)-[:CONTAINS|LATEST]->(c:Commit) "
+				+ "WHERE ID(target) = {spaceGraphID} AND NOT ID(c) IN {excludedGraphIDs} "
+				+ "WITH DISTINCT c LIMIT {limit} "
+				+ "RETURN ID(c) as graphID", params);
+
+		List<Long> commitGraphIDs = new LinkedList<Long>();
+
+		for (Map<String, Object> row : result.queryResults()) {
+			commitGraphIDs.add(((Number) row.get("graphID")).longValue());
+		}
+
+		return commitGraphIDs;
+	}
+
+	/*
+	 * Deletes a design space along with its branches, which is the last step of deleting it once
+	 * its nodes and commits are gone. Commits that were kept for the histories of other design
+	 * spaces stay behind without a branch.
+	 */
+	@Transactional
+	public void deleteArchive(Long spaceGraphID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("spaceGraphID", spaceGraphID);
+
+		session.query(
+				"MATCH (target) WHERE ID(target) = {spaceGraphID} "
+				+ "OPTIONAL MATCH (target)-[:ARCHIVES]->(b:Branch) "
+				+ "DETACH DELETE b, target", params);
+	}
+
+	/*
+	 * Deletes the given commits, except those that other commits still succeed, along with the
+	 * snapshots that they were the last to contain. Returns the number of snapshots deleted.
+	 */
+	@Transactional
+	public int deleteCommits(List<Long> commitGraphIDs) {
+		Set<Long> referencedGraphIDs = findReferencedCommits(commitGraphIDs);
+
+		List<Long> unreferencedGraphIDs = new LinkedList<Long>();
+
+		for (Long commitGraphID : commitGraphIDs) {
+			if (!referencedGraphIDs.contains(commitGraphID)) {
+				unreferencedGraphIDs.add(commitGraphID);
+			}
+		}
+
+		return removeCommits(unreferencedGraphIDs);
+	}
+
+	/*
+	 * Deletes commits of a design space that is being deleted, which the caller has checked are
+	 * not part of the history of any other design space, in one transaction together with the
+	 * snapshots that they were the last to contain. Returns the number of snapshots deleted.
+	 */
+	@Transactional
+	public int deleteArchivedCommits(List<Long> commitGraphIDs) {
+		return removeCommits(commitGraphIDs);
+	}
+
+	/*
+	 * Deletes commits and the snapshots that they were the last to contain. A commit that was kept
+	 * without a branch because another commit succeeded it is deleted too once the last such
+	 * commit is gone. Returns the number of snapshots deleted.
+	 */
+	private int removeCommits(List<Long> commitGraphIDs) {
+		int numDeleted = 0;
+
+		while (!commitGraphIDs.isEmpty()) {
+			Map<String, Object> params = new HashMap<String, Object>();
+
+			params.put("graphIDs", commitGraphIDs);
+
+			Result result = session.query(
+					"MATCH (c:Commit)-[:SUCCEEDS]->(p:Commit) "
+					+ "WHERE ID(c) IN {graphIDs} AND NOT ID(p) IN {graphIDs} "
+					+ "RETURN DISTINCT ID(p) as graphID", params);
+
+			List<Long> predecessorGraphIDs = new ArrayList<Long>();
+
+			for (Map<String, Object> row : result.queryResults()) {
+				predecessorGraphIDs.add(((Number) row.get("graphID")).longValue());
+			}
+
+			result = session.query(
+					"MATCH (c:Commit) WHERE ID(c) IN {graphIDs} "
+					+ "OPTIONAL MATCH (c)-[:CONTAINS]->(s:Snapshot) "
+					+ "DETACH DELETE c "
+					+ "RETURN DISTINCT ID(s) as graphID", params);
+
+			List<Long> snapshotGraphIDs = new LinkedList<Long>();
+
+			for (Map<String, Object> row : result.queryResults()) {
+				if (row.get("graphID") != null) {
+					snapshotGraphIDs.add(((Number) row.get("graphID")).longValue());
+				}
+			}
+
+			numDeleted += deleteSnapshots(snapshotGraphIDs);
+
+			commitGraphIDs = new LinkedList<Long>();
+
+			if (!predecessorGraphIDs.isEmpty()) {
+				params.put("graphIDs", predecessorGraphIDs);
+
+				result = session.query(
+						"MATCH (p:Commit) WHERE ID(p) IN {graphIDs} "
+						+ "AND NOT (p)<-[:CONTAINS|LATEST]-(:Branch) AND NOT (p)<-[:SUCCEEDS]-(:Commit) "
+						+ "RETURN ID(p) as graphID", params);
+
+				for (Map<String, Object> row : result.queryResults()) {
+					commitGraphIDs.add(((Number) row.get("graphID")).longValue());
+				}
+			}
+		}
+
+		return numDeleted;
+	}
+
+	/*
+	 * Deletes the given snapshots that are no longer referenced, which is when no commit contains
+	 * them. Snapshots are shared by every commit with the same content, so the number of commits
+	 * that contain a snapshot is its reference count. Returns the number of snapshots deleted.
+	 *
+	 * Each snapshot is write locked before its references are counted, as writeSnapshot locks a
+	 * snapshot before sharing it, and stays locked until the end of the transaction. A commit
+	 * written meanwhile therefore either links to the snapshot before it is counted, in which case
+	 * it is kept, or waits until it is deleted and then writes a snapshot of its own.
+	 */
+	@Transactional
+	public int deleteSnapshots(List<Long> snapshotGraphIDs) {
+		if (snapshotGraphIDs.isEmpty()) {
+			return 0;
+		}
+
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("graphIDs", snapshotGraphIDs);
+
+		Result result = session.query(
+				"MATCH (s:Snapshot) WHERE ID(s) IN {graphIDs} "
+				+ "SET s._LOCK_ = true "
+				+ "REMOVE s._LOCK_ "
+				+ "WITH s WHERE NOT ()-[:CONTAINS]->(s) "
+				+ "RETURN ID(s) as graphID", params);
+
+		List<Long> unreferencedGraphIDs = new LinkedList<Long>();
+
+		for (Map<String, Object> row : result.queryResults()) {
+			unreferencedGraphIDs.add(((Number) row.get("graphID")).longValue());
+		}
+
+		for (Long snapshotGraphID : unreferencedGraphIDs) {
+			clearNodes(snapshotGraphID);
+		}
+
+		if (!unreferencedGraphIDs.isEmpty()) {
+			params.put("graphIDs", unreferencedGraphIDs);
+
+			session.query(
+					"MATCH (s:Snapshot) WHERE ID(s) IN {graphIDs} AND NOT ()-[:CONTAINS]->(s) "
+					+ "DETACH DELETE s", params);
+		}
+
+		return unreferencedGraphIDs.size();
+	}
+
+	private void deleteEntities(List<Long> graphIDs) {
+		if (!graphIDs.isEmpty()) {
+			Map<String, Object> params = new HashMap<String, Object>();
+
+			params.put("graphIDs", graphIDs);
+
+			session.query("MATCH (x) WHERE ID(x) IN {graphIDs} DETACH DELETE x", params);
+		}
+	}
+
+	private void linkEntities(Long tailGraphID, String relationshipType, Long headGraphID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("tailGraphID", tailGraphID);
+
+		params.put("headGraphID", headGraphID);
+
+		session.query(
+				"MATCH (m) WHERE ID(m) = {tailGraphID} "
+				+ "MATCH (n) WHERE ID(n) = {headGraphID} "
+				+ "CREATE (m)-[:" + relationshipType + "]->(n)", params);
+	}
+
+	/*
+	 * Deletes the relationships of the given type from one entity to another, or to any entity if
+	 * the graph ID of the other is null.
+	 */
+	private void unlinkEntities(Long tailGraphID, String relationshipType, Long headGraphID) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		params.put("tailGraphID", tailGraphID);
+
+		params.put("headGraphID", headGraphID);
+
+		session.query(
+				"MATCH (m)-[r:" + relationshipType + "]->(n) WHERE ID(m) = {tailGraphID} "
+				+ "AND ({headGraphID} IS NULL OR ID(n) = {headGraphID}) "
+				+ "DELETE r", params);
+	}
+
+	/*
+	 * Lists come back as arrays or collections depending on the driver.
+	 */
+	private static List<Long> toGraphIDs(Object value) {
+		List<Long> graphIDs = new ArrayList<Long>();
+
+		if (value instanceof Collection) {
+			for (Object element : (Collection<?>) value) {
+				graphIDs.add(((Number) element).longValue());
+			}
+		} else if (value instanceof Object[]) {
+			for (Object element : (Object[]) value) {
+				graphIDs.add(((Number) element).longValue());
+			}
+		}
+
+		return graphIDs;
+	}
+
+	private Long readGraphID(Result result) {
+		return ((Number) readRow(result).get("graphID")).longValue();
+	}
+
+	private int readCount(Result result) {
+		for (Map<String, Object> row : result.queryResults()) {
+			return ((Number) row.get("count")).intValue();
+		}
+
+		return 0;
+	}
+
+	private Map<String, Object> readRow(Result result) {
+		for (Map<String, Object> row : result.queryResults()) {
+			return row;
+		}
+
+		return new HashMap<String, Object>();
+	}
+
+	private static <T> List<List<T>> partition(List<T> rows) {
+		List<List<T>> batches = new LinkedList<List<T>>();
+
+		List<T> batch = new ArrayList<T>(Math.min(rows.size(), BATCH_SIZE));
+
+		for (T row : rows) {
+			batch.add(row);
+
+			if (batch.size() == BATCH_SIZE) {
+				batches.add(batch);
+
+				batch = new ArrayList<T>(BATCH_SIZE);
+			}
+		}
+
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+
+		return batches;
+	}
+}
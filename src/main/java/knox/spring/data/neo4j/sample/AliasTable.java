@@ -0,0 +1,110 @@
+package knox.spring.data.neo4j.sample;
+
+import java.util.SplittableRandom;
+
+/*
+	Walker's alias method (Vose's variant) for drawing from a discrete distribution. Construction
+	is O(n) in the number of outcomes and each draw is O(1), independent of how many outcomes
+	there are.
+
+	Arguments:
+		- weights [double[]]: Non-negative, unnormalized weights. If every weight is zero, then
+							  outcomes are drawn uniformly.
+ */
+public class AliasTable {
+
+	private final double[] probabilities;
+
+	private final int[] aliases;
+
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+
+		probabilities = new double[n];
+
+		aliases = new int[n];
+
+		double totalWeight = 0.0;
+
+		for (double weight : weights) {
+			if (weight > 0.0) {
+				totalWeight += weight;
+			}
+		}
+
+		if (totalWeight <= 0.0) {
+			for (int i = 0; i < n; i++) {
+				probabilities[i] = 1.0;
+
+				aliases[i] = i;
+			}
+		} else {
+			double[] scaledWeights = new double[n];
+
+			int[] small = new int[n];
+			int[] large = new int[n];
+
+			int numSmall = 0;
+			int numLarge = 0;
+
+			for (int i = 0; i < n; i++) {
+				scaledWeights[i] = Math.max(weights[i], 0.0) * n / totalWeight;
+
+				if (scaledWeights[i] < 1.0) {
+					small[numSmall++] = i;
+				} else {
+					large[numLarge++] = i;
+				}
+			}
+
+			while (numSmall > 0 && numLarge > 0) {
+				int l = small[--numSmall];
+				int g = large[--numLarge];
+
+				probabilities[l] = scaledWeights[l];
+
+				aliases[l] = g;
+
+				scaledWeights[g] = (scaledWeights[g] + scaledWeights[l]) - 1.0;
+
+				if (scaledWeights[g] < 1.0) {
+					small[numSmall++] = g;
+				} else {
+					large[numLarge++] = g;
+				}
+			}
+
+			// Leftovers are only off from 1.0 by rounding error
+
+			while (numLarge > 0) {
+				int g = large[--numLarge];
+
+				probabilities[g] = 1.0;
+
+				aliases[g] = g;
+			}
+
+			while (numSmall > 0) {
+				int l = small[--numSmall];
+
+				probabilities[l] = 1.0;
+
+				aliases[l] = l;
+			}
+		}
+	}
+
+	public int sample(SplittableRandom rand) {
+		int i = rand.nextInt(probabilities.length);
+
+		if (rand.nextDouble() < probabilities[i]) {
+			return i;
+		} else {
+			return aliases[i];
+		}
+	}
+
+	public int size() {
+		return probabilities.length;
+	}
+}
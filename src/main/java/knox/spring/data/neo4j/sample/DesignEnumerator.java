@@ -0,0 +1,236 @@
+package knox.spring.data.neo4j.sample;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+
+/*
+ * Enumerates the designs of a design space one at a time by a depth-first search, so that designs
+ * can be written out as they are found rather than collected first. Only the path to the current
+ * design is held in memory, and the current design is read from it in place, so enumerating does
+ * not take more memory as more designs are enumerated.
+ *
+ * DesignSampler.enumerate collects the designs of each subtree of its search with one of these, so
+ * designs are found in the same order either way. Designs with fewer than minLength
+ * components are skipped, paths with more than maxLength components are not followed if
+ * maxLength is positive and no more than numDesigns designs are enumerated if numDesigns is
+ * positive. Cycles are only followed if maxLength is positive, since the search would not end
+ * otherwise, and never along blank edges alone.
+ */
+public class DesignEnumerator {
+
+	private final List<Node> startNodes;
+
+	private final Map<Node, Edge[]> nodeToSortedEdges;
+
+	private final Edge[] startEdges;
+
+	private final int numDesigns;
+
+	private final int minLength;
+
+	private final int maxLength;
+
+	private int numStartNodes = 0;
+
+	private int numEnumerated = 0;
+
+	private final List<Frame> frames = new ArrayList<Frame>();
+
+	private final Map<Node, Integer> nodeToFrames = new HashMap<Node, Integer>();
+
+	private final List<Edge> compEdges = new ArrayList<Edge>();
+
+	private final List<String> compIDs = new ArrayList<String>();
+
+	DesignEnumerator(List<Node> startNodes, Map<Node, Edge[]> nodeToSortedEdges, int numDesigns,
+			int minLength, int maxLength) {
+		this.startNodes = startNodes;
+
+		this.nodeToSortedEdges = nodeToSortedEdges;
+
+		this.startEdges = null;
+
+		this.numDesigns = numDesigns;
+
+		this.minLength = minLength;
+
+		this.maxLength = maxLength;
+	}
+
+	/*
+	 * Enumerates only the designs that begin with the given edge from the given start node, which
+	 * are the designs of one subtree of the search.
+	 */
+	DesignEnumerator(Node startNode, Edge startEdge, Map<Node, Edge[]> nodeToSortedEdges, int numDesigns,
+			int minLength, int maxLength) {
+		this.startNodes = Collections.singletonList(startNode);
+
+		this.nodeToSortedEdges = nodeToSortedEdges;
+
+		this.startEdges = new Edge[] {startEdge};
+
+		this.numDesigns = numDesigns;
+
+		this.minLength = minLength;
+
+		this.maxLength = maxLength;
+	}
+
+	/*
+	 * Moves on to the next design and returns true, or returns false once there are no more.
+	 */
+	public boolean next() {
+		if (numDesigns > 0 && numEnumerated >= numDesigns) {
+			return false;
+		}
+
+		while (true) {
+			if (frames.isEmpty()) {
+				if (numStartNodes < startNodes.size()) {
+					enterNode(startNodes.get(numStartNodes++), 0);
+				} else {
+					return false;
+				}
+			} else {
+				Frame frame = frames.get(frames.size() - 1);
+
+				if (frame.edgeIndex >= frame.edges.length) {
+					exitNode();
+				} else {
+					Edge edge = frame.edges[frame.edgeIndex];
+
+					int numChoices = edge.hasComponentIDs() ? edge.getComponentIDs().size() : 1;
+
+					if (frame.compIndex >= numChoices) {
+						frame.edgeIndex++;
+
+						frame.compIndex = 0;
+					} else {
+						truncatePath(frame.length);
+
+						if (edge.hasComponentIDs()) {
+							compEdges.add(edge);
+
+							compIDs.add(edge.getComponentIDs().get(frame.compIndex));
+						}
+
+						frame.compIndex++;
+
+						int length = compIDs.size();
+
+						if (maxLength <= 0 || length <= maxLength) {
+							Node head = edge.getHead();
+
+							boolean isBlankCycle = isOnPath(head, length);
+
+							if (head.hasEdges() && !isBlankCycle
+									&& (maxLength > 0 || !nodeToFrames.containsKey(head))) {
+								enterNode(head, length);
+							}
+
+							if (head.isAcceptNode() && !isBlankCycle && length > 0 && length >= minLength) {
+								numEnumerated++;
+
+								return true;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public int getLength() {
+		return compIDs.size();
+	}
+
+	public String getComponentID(int i) {
+		return compIDs.get(i);
+	}
+
+	public Edge getEdge(int i) {
+		return compEdges.get(i);
+	}
+
+	public int getNumEnumerated() {
+		return numEnumerated;
+	}
+
+	/*
+	 * Returns whether a node was entered on the current path without any component having been
+	 * added since, in which case the path has come back to it along blank edges and would only
+	 * repeat the designs that were found from it before.
+	 */
+	private boolean isOnPath(Node node, int length) {
+		if (nodeToFrames.containsKey(node)) {
+			for (int i = frames.size() - 1; i >= 0 && frames.get(i).length == length; i--) {
+				if (frames.get(i).node == node) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private void enterNode(Node node, int length) {
+		Edge[] edges = frames.isEmpty() && startEdges != null ? startEdges : nodeToSortedEdges.get(node);
+
+		frames.add(new Frame(node, edges != null ? edges : new Edge[0], length));
+
+		Integer count = nodeToFrames.get(node);
+
+		nodeToFrames.put(node, count == null ? 1 : count + 1);
+	}
+
+	private void exitNode() {
+		Frame frame = frames.remove(frames.size() - 1);
+
+		int count = nodeToFrames.get(frame.node);
+
+		if (count == 1) {
+			nodeToFrames.remove(frame.node);
+		} else {
+			nodeToFrames.put(frame.node, count - 1);
+		}
+	}
+
+	private void truncatePath(int length) {
+		while (compIDs.size() > length) {
+			compIDs.remove(compIDs.size() - 1);
+
+			compEdges.remove(compEdges.size() - 1);
+		}
+	}
+
+	/*
+	 * A node on the current path, with the edge and component ID to be taken from it next and the
+	 * number of components on the path before it.
+	 */
+	private static class Frame {
+
+		private final Node node;
+
+		private final Edge[] edges;
+
+		private final int length;
+
+		private int edgeIndex = 0;
+
+		private int compIndex = 0;
+
+		private Frame(Node node, Edge[] edges, int length) {
+			this.node = node;
+
+			this.edges = edges;
+
+			this.length = length;
+		}
+	}
+}
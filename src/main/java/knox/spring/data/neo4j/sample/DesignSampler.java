@@ -3,23 +3,71 @@ package knox.spring.data.neo4j.sample;
 import knox.spring.data.neo4j.domain.NodeSpace;
 import knox.spring.data.neo4j.domain.Edge;
 import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.sequence.ComponentSequenceStore;
+import knox.spring.data.neo4j.sequence.SequenceRope;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DesignSampler {
 	private static final Logger LOG = LoggerFactory.getLogger(DesignSampler.class);
 	
+	private static final int SAMPLE_CHUNK_SIZE = 64;
+	
 	private NodeSpace space;
 	
 	private List<Node> startNodes;
 	
+	private Map<Node, Edge[]> nodeToSortedEdges;
+	
+	private Map<Node, AliasTable> nodeToAliasTable;
+	
 	public DesignSampler(NodeSpace space) {
 		this.space = space;
 		
-		startNodes = new LinkedList<Node>(space.getStartNodes());
+		startNodes = new ArrayList<Node>(space.getStartNodes());
+		
+		Collections.sort(startNodes, NODE_ORDER);
+		
+		buildAliasTables();
+	}
+	
+	public NodeSpace getSpace() {
+		return space;
+	}
+	
+	/*
+		Precomputes one alias table per node over the weights of its outgoing edges, so that each
+		step of a random walk is O(1) instead of two linear scans over the edges of the node. Edges
+		are put in a fixed order first so that a given seed reproduces the same designs.
+	 */
+	private void buildAliasTables() {
+		nodeToSortedEdges = new HashMap<Node, Edge[]>();
+		
+		nodeToAliasTable = new HashMap<Node, AliasTable>();
+		
+		for (Node node : space.getNodes()) {
+			if (node.hasEdges()) {
+				Edge[] edges = node.getEdges().toArray(new Edge[node.getNumEdges()]);
+				
+				Arrays.sort(edges, EDGE_ORDER);
+				
+				double[] weights = new double[edges.length];
+				
+				for (int i = 0; i < edges.length; i++) {
+					weights[i] = edges[i].getWeight();
+				}
+				
+				nodeToSortedEdges.put(node, edges);
+				
+				nodeToAliasTable.put(node, new AliasTable(weights));
+			}
+		}
 	}
 
     /*
@@ -34,46 +82,156 @@ public class DesignSampler {
 	 */
 	
 	public Set<List<String>> sample(int numberOfDesigns) {
-		Set<List<String>> designs = new HashSet<List<String>>();
+		return sample(numberOfDesigns, new SplittableRandom(), roleDrawer).keySet();
+	}
+	
+	/*
+		Same as sample(int), but draws from a generator seeded with the given value, so that repeated
+		calls on the same design space return the same designs.
+	 */
+	public Set<List<String>> sample(int numberOfDesigns, long seed) {
+		return sample(numberOfDesigns, new SplittableRandom(seed), roleDrawer).keySet();
+	}
+	
+	/*
+		Same as sample(int, long), but splits the requested designs into chunks of a fixed size and
+		the chunks between the given number of workers. Each chunk draws from its own generator split
+		off from the seeded one, and their designs are merged in chunk order, so the result only
+		depends on the seed and not on parallelism.
+	 */
+	public Set<List<String>> sample(int numberOfDesigns, long seed, int parallelism) {
+		return sample(numberOfDesigns, new SplittableRandom(seed), parallelism, roleDrawer).keySet();
+	}
+	
+	public Set<List<String>> sample(int numberOfDesigns, int parallelism) {
+		return sample(numberOfDesigns, new SplittableRandom(), parallelism, roleDrawer).keySet();
+	}
+	
+	/*
+		Same as sample(int, long, int) or sample(int, int) if seed is null, but draws a component ID
+		rather than a role from each edge and assembles the sequence of each design from the 
+		components drawn. Designs are given as lists of components with an "id" and an "orientation",
+		as DesignMatcher takes them, and two walks that draw the same components in the same 
+		orientations give the same design.
+	 */
+	public Map<List<Map<String, Object>>, SequenceRope> sampleSequences(int numberOfDesigns, Long seed, 
+			int parallelism, ComponentSequenceStore sequences) {
+		SplittableRandom rand = seed != null ? new SplittableRandom(seed.longValue()) : new SplittableRandom();
 		
-		Random rand = new Random();
+		return sample(numberOfDesigns, rand, parallelism, new ComponentDrawer(sequences));
+	}
+	
+	private <K> Map<K, SequenceRope> sample(int numberOfDesigns, SplittableRandom rand, 
+			DesignDrawer<K> drawer) {
+		Map<K, SequenceRope> designs = new LinkedHashMap<K, SequenceRope>();
 
 		while (designs.size() < numberOfDesigns) {
-			List<String> design = new LinkedList<String>();
+			drawer.draw(rand, designs);
+		}
+		
+		return designs;
+	}
+	
+	private <K> Map<K, SequenceRope> sample(final int numberOfDesigns, SplittableRandom rand, 
+			int parallelism, final DesignDrawer<K> drawer) {
+		int numChunks = Math.max((numberOfDesigns + SAMPLE_CHUNK_SIZE - 1)/SAMPLE_CHUNK_SIZE, 1);
+		
+		final List<SplittableRandom> chunkRands = new ArrayList<SplittableRandom>(numChunks);
+		
+		for (int c = 0; c < numChunks; c++) {
+			chunkRands.add(rand.split());
+		}
+		
+		final int numWorkers = Math.min(WorkerPool.boundParallelism(parallelism), numChunks);
+		
+		List<Map<K, SequenceRope>> chunks;
+		
+		if (numWorkers <= 1) {
+			chunks = sampleChunks(numberOfDesigns, chunkRands, 0, 1, drawer);
+		} else {
+			List<ForkJoinTask<List<Map<K, SequenceRope>>>> workers = 
+					new ArrayList<ForkJoinTask<List<Map<K, SequenceRope>>>>(numWorkers);
 			
-			Node node = startNodes.get(rand.nextInt(startNodes.size()));
+			for (int k = 0; k < numWorkers; k++) {
+				final int worker = k;
+				
+				workers.add(WorkerPool.getPool().submit(new Callable<List<Map<K, SequenceRope>>>() {
+					public List<Map<K, SequenceRope>> call() {
+						return sampleChunks(numberOfDesigns, chunkRands, worker, numWorkers, drawer);
+					}
+				}));
+			}
 			
-            Edge edge = new Edge();
-
-            while (node.hasEdges() && (!node.isAcceptNode() || rand.nextInt(2) == 1)) {
-				// Get the number of edges w no probability
-//				int numZero = 0; 
-//				for (Edge e : node.getEdges()) {
-//					if (e.getWeight() == 0.0)
-//						numZero += 1;
-//				}
-
-				// Add up the total weights
-				double totalWeights = 0.0;
-				for (Edge e: node.getEdges()) {
-//					if (e.getWeight() == 0.0)
-//						e.setProbability(1.0/numZero);
-
-					totalWeights += e.getWeight();
+			chunks = new ArrayList<Map<K, SequenceRope>>(numChunks);
+			
+			for (int c = 0; c < numChunks; c++) {
+				chunks.add(null);
+			}
+			
+			for (int k = 0; k < numWorkers; k++) {
+				List<Map<K, SequenceRope>> workerChunks = workers.get(k).join();
+				
+				for (int c = k; c < numChunks; c += numWorkers) {
+					chunks.set(c, workerChunks.get(c/numWorkers));
 				}
-
-				// Choose edge based on weight
-				double rWeight = rand.nextDouble() * totalWeights;
-
-				double countWeights = 0.0;
-				for (Edge e: node.getEdges()) {
-					countWeights += e.getWeight();
-					if (countWeights >= rWeight) {
-						edge = e;
-						break;
-					}
+			}
+		}
+		
+		Map<K, SequenceRope> designs = new LinkedHashMap<K, SequenceRope>();
+		
+		for (Map<K, SequenceRope> chunk : chunks) {
+			for (Map.Entry<K, SequenceRope> design : chunk.entrySet()) {
+				if (!designs.containsKey(design.getKey())) {
+					designs.put(design.getKey(), design.getValue());
 				}
+			}
+		}
+		
+		// Make up for designs that were drawn in more than one chunk
+		
+		while (designs.size() < numberOfDesigns) {
+			drawer.draw(rand, designs);
+		}
+		
+		return designs;
+	}
+	
+	/*
+		Samples every chunk from the given one on that is a multiple of the given stride away from 
+		it, in order.
+	 */
+	private <K> List<Map<K, SequenceRope>> sampleChunks(int numberOfDesigns, 
+			List<SplittableRandom> chunkRands, int firstChunk, int stride, DesignDrawer<K> drawer) {
+		List<Map<K, SequenceRope>> chunks = new ArrayList<Map<K, SequenceRope>>();
+		
+		for (int c = firstChunk; c < chunkRands.size(); c += stride) {
+			int chunkDesigns = Math.min(SAMPLE_CHUNK_SIZE, numberOfDesigns - c*SAMPLE_CHUNK_SIZE);
+			
+			chunks.add(sample(Math.max(chunkDesigns, 0), chunkRands.get(c), drawer));
+		}
+		
+		return chunks;
+	}
+	
+	/*
+		Draws a design by a random walk and adds it to the given designs if it was not drawn before,
+		under a key that identifies it.
+	 */
+	private interface DesignDrawer<K> {
+		void draw(SplittableRandom rand, Map<K, SequenceRope> designs);
+	}
+	
+	/*
+		Draws a role from each edge, so that a design is identified by its roles.
+	 */
+	private final DesignDrawer<List<String>> roleDrawer = new DesignDrawer<List<String>>() {
+		public void draw(SplittableRandom rand, Map<List<String>, SequenceRope> designs) {
+			List<String> design = new LinkedList<String>();
+			
+			Node node = startNodes.get(rand.nextInt(startNodes.size()));
 
+			while (node.hasEdges() && (!node.isAcceptNode() || rand.nextInt(2) == 1)) {
+				Edge edge = nodeToSortedEdges.get(node)[nodeToAliasTable.get(node).sample(rand)];
 				
 				if (edge.hasComponentRoles()) {
 					design.add(edge.getComponentRoles().get(rand.nextInt(edge.getComponentRoles().size())));
@@ -82,10 +240,58 @@ public class DesignSampler {
 				node = edge.getHead();
 			}
 			
-			designs.add(design);
+			if (!designs.containsKey(design)) {
+				designs.put(design, SequenceRope.EMPTY);
+			}
 		}
+	};
+	
+	/*
+		Draws a component ID from each edge that has any, so that a design is identified by its 
+		components and their orientations, and appends the sequence of each component drawn. An edge
+		with roles but no component IDs leaves the sequence of the design incomplete.
+	 */
+	private class ComponentDrawer implements DesignDrawer<List<Map<String, Object>>> {
 		
-		return designs;
+		private final ComponentSequenceStore sequences;
+		
+		private ComponentDrawer(ComponentSequenceStore sequences) {
+			this.sequences = sequences;
+		}
+		
+		public void draw(SplittableRandom rand, Map<List<Map<String, Object>>, SequenceRope> designs) {
+			List<Map<String, Object>> design = new ArrayList<Map<String, Object>>();
+			
+			SequenceRope sequence = SequenceRope.EMPTY;
+			
+			Node node = startNodes.get(rand.nextInt(startNodes.size()));
+
+			while (node.hasEdges() && (!node.isAcceptNode() || rand.nextInt(2) == 1)) {
+				Edge edge = nodeToSortedEdges.get(node)[nodeToAliasTable.get(node).sample(rand)];
+				
+				if (edge.hasComponentIDs()) {
+					String compID = edge.getComponentIDs().get(rand.nextInt(edge.getComponentIDs().size()));
+					
+					Map<String, Object> comp = new LinkedHashMap<String, Object>();
+					
+					comp.put("id", compID);
+					
+					comp.put("orientation", edge.getOrientation().getValue());
+					
+					design.add(comp);
+					
+					sequence = sequence.append(sequences.getSequence(compID), edge.isReverseComplement());
+				} else if (edge.hasComponentRoles()) {
+					sequence = SequenceRope.INCOMPLETE;
+				}
+				
+				node = edge.getHead();
+			}
+			
+			if (!designs.containsKey(design)) {
+				designs.put(design, sequence);
+			}
+		}
 	}
 
 	/*
@@ -104,13 +310,31 @@ public class DesignSampler {
 	 */
 	public List<List<Map<String, Object>>> enumerate(int numDesigns, int minLength, 
 			int maxLength, EnumerateType type) {
+		return enumerate(numDesigns, minLength, maxLength, type, 1);
+	}
+	
+	/*
+		Same as enumerate(int, int, int, EnumerateType), but each edge leaving a start node roots an
+		independent subtree of the search, and subtrees are enumerated by up to the given number of 
+		workers. Designs are merged in subtree order, so the result does not depend on parallelism.
+	 */
+	public List<List<Map<String, Object>>> enumerate(int numDesigns, int minLength, 
+			int maxLength, EnumerateType type, int parallelism) {
 		if (type == EnumerateType.BFS) {
-			return bfsEnumerate(numDesigns, minLength, maxLength);
+			return bfsEnumerate(numDesigns, minLength, maxLength, parallelism);
 		} else {
-			return dfsEnumerate(numDesigns, minLength, maxLength);
+			return dfsEnumerate(numDesigns, minLength, maxLength, parallelism);
 		}
 	}
 
+	/*
+		Same as enumerate(int, int, int, EnumerateType), but designs are found one at a time in 
+		depth-first order as the returned DesignEnumerator is advanced, rather than being collected.
+	 */
+	public DesignEnumerator enumerateLazily(int numDesigns, int minLength, int maxLength) {
+		return new DesignEnumerator(startNodes, nodeToSortedEdges, numDesigns, minLength, maxLength);
+	}
+
 	/*
 		This method will enumerate the graph using a DFS method. If the number of designs requested is
 		less than the total possible number of designs, it will only return the first x designs requested,
@@ -220,239 +444,160 @@ public class DesignSampler {
 //		return allVisitedDesigns;
 //	}
 	
-	private List<List<Map<String, Object>>> multiplyDesigns(List<List<Map<String, Object>>> designs,
-			Edge edge) {
-		List<List<Map<String, Object>>> comboDesigns = new LinkedList<List<Map<String, Object>>>();
+	private List<List<Map<String, Object>>> bfsEnumerate(int numDesigns, int minLength, int maxLength,
+			int parallelism) {
+		return enumerateSubtrees(numDesigns, minLength, maxLength, parallelism);
+	}
+	
+	private List<List<Map<String, Object>>> dfsEnumerate(int numDesigns, int minLength, int maxLength,
+			int parallelism) {
+		return enumerateSubtrees(numDesigns, minLength, maxLength, parallelism);
+	}
+	
+	private List<List<Map<String, Object>>> enumerateSubtrees(final int numDesigns, final int minLength, 
+			final int maxLength, int parallelism) {
+		final List<Node> subtreeRoots = new ArrayList<Node>();
 		
-		if (!edge.hasComponentIDs()) {
-			for (List<Map<String, Object>> design : designs) {
-				List<Map<String, Object>> comboDesign = new ArrayList<Map<String, Object>>(design);
-
-				comboDesigns.add(comboDesign);
-			}
-		} else {
-			for (String compID : edge.getComponentIDs()) {
-				Map<String, Object> comp = new HashMap<String, Object>();
-
-				comp.put("id", compID);
-
-				comp.put("roles", edge.getComponentRoles());
-
-//				comp.put("orientation", edge.getOrientation());
-				comp.put("orientation", edge.getOrientation().getValue()); //does this need to be string?
-
-				if (!designs.isEmpty()) {
-					for (List<Map<String, Object>> design : designs) {
-						List<Map<String, Object>> comboDesign = new ArrayList<Map<String, Object>>(design);
-
-						comboDesign.add(comp);
-
-						comboDesigns.add(comboDesign);
-					}
-				} else {
-					List<Map<String, Object>> comboDesign = new ArrayList<Map<String, Object>>();
-
-					comboDesign.add(comp);
-
-					comboDesigns.add(comboDesign);
+		final List<Edge> subtreeEdges = new ArrayList<Edge>();
+		
+		for (Node startNode : startNodes) {
+			if (startNode.hasEdges()) {
+				for (Edge edge : nodeToSortedEdges.get(startNode)) {
+					subtreeRoots.add(startNode);
+					
+					subtreeEdges.add(edge);
 				}
 			}
 		}
 		
-		return comboDesigns;
-	}
-	
-	private List<List<Map<String, Object>>> bfsEnumerate(int numDesigns, int minLength, int maxLength) {
-		List<List<Map<String, Object>>> allDesigns = new LinkedList<List<Map<String, Object>>>();
-	
-		for (Node startNode : startNodes) {
-			List<List<Map<String, Object>>> designs = new LinkedList<List<Map<String, Object>>>();
-			
-			Set<Node> localNodes = new HashSet<Node>();
-			
-			localNodes.add(startNode);
-			
-			Stack<Set<Node>> localNodeStack = new Stack<Set<Node>>();
-			
-			for (int i = 0; i < startNode.getNumEdges() - 1; i++) {
-				localNodeStack.push(new HashSet<Node>(localNodes));
+		final SubtreeResults results = new SubtreeResults(subtreeEdges.size(), numDesigns);
+		
+		int numWorkers = Math.min(WorkerPool.boundParallelism(parallelism), subtreeEdges.size());
+		
+		if (numWorkers <= 1) {
+			for (int i = 0; i < subtreeEdges.size() && !results.isCutOff(i); i++) {
+				results.complete(i, enumerateSubtree(subtreeRoots.get(i), subtreeEdges.get(i), i, 
+						numDesigns, minLength, maxLength, results));
 			}
+		} else {
+			final AtomicInteger nextSubtree = new AtomicInteger(0);
 			
-			Stack<Edge> edgeStack = new Stack<Edge>();
+			List<ForkJoinTask<?>> workers = new ArrayList<ForkJoinTask<?>>(numWorkers);
 			
-			if (startNode.hasEdges()) {
-				for (Edge edge : startNode.getEdges()) {
-					edgeStack.push(edge);
-				}
+			for (int k = 0; k < numWorkers; k++) {
+				workers.add(WorkerPool.getPool().submit(new Runnable() {
+					public void run() {
+						int i = nextSubtree.getAndIncrement();
+						
+						while (i < subtreeEdges.size() && !results.isCutOff(i)) {
+							results.complete(i, enumerateSubtree(subtreeRoots.get(i), subtreeEdges.get(i),
+									i, numDesigns, minLength, maxLength, results));
+							
+							i = nextSubtree.getAndIncrement();
+						}
+					}
+				}));
 			}
 			
-			Stack<List<List<Map<String, Object>>>> designStack = new Stack<List<List<Map<String, Object>>>>();
-			
-			for (int i = 0; i < startNode.getNumEdges() - 1; i++) {
-				designStack.push(designs);
+			for (ForkJoinTask<?> worker : workers) {
+				worker.join();
 			}
+		}
+		
+		return results.merge();
+	}
+	
+	private List<List<Map<String, Object>>> enumerateSubtree(Node startNode, Edge startEdge, 
+			int subtreeIndex, int numDesigns, int minLength, int maxLength, SubtreeResults results) {
+		List<List<Map<String, Object>>> allDesigns = new LinkedList<List<Map<String, Object>>>();
+		
+		DesignEnumerator designEnumerator = new DesignEnumerator(startNode, startEdge, nodeToSortedEdges, 
+				numDesigns, minLength, maxLength);
+		
+		while (!results.isCutOff(subtreeIndex) && designEnumerator.next()) {
+			List<Map<String, Object>> design = new ArrayList<Map<String, Object>>(designEnumerator.getLength());
 			
-			while (!edgeStack.isEmpty()) {
-				Edge edge = edgeStack.pop();
-				
-				designs = multiplyDesigns(designs, edge);
+			for (int i = 0; i < designEnumerator.getLength(); i++) {
+				Edge edge = designEnumerator.getEdge(i);
 				
-				if (!designs.isEmpty() && maxLength > 0 && designs.get(0).size() > maxLength) {
-					if (!designStack.isEmpty()) {
-						localNodes = localNodeStack.pop();
-						
-						designs = designStack.pop();
-					}
-				} else { 
-					if (edge.getHead().isAcceptNode()) {
-						List<List<Map<String, Object>>> atLeastMinDesigns = filterUnderMinDesigns(designs,
-								minLength);
-						
-						if (numDesigns < 1 || allDesigns.size() + atLeastMinDesigns.size() < numDesigns) {
-							allDesigns.addAll(atLeastMinDesigns);
-						} else {
-							int diffDesignCount = numDesigns - allDesigns.size();
-
-							Iterator<List<Map<String, Object>>> designerator = atLeastMinDesigns.iterator();
-
-							for (int i = 0; i < diffDesignCount; i++) {
-								allDesigns.add(designerator.next());
-							}
+				Map<String, Object> comp = new HashMap<String, Object>();
 
-							return allDesigns;
-						}
-					} 
+				comp.put("id", designEnumerator.getComponentID(i));
 
-					if (edge.getHead().hasEdges() 
-							&& (!localNodes.contains(edge.getHead()) || numDesigns > 0 
-									|| maxLength > 0)) {
-						localNodes.add(edge.getHead());
-						
-						for (int i = 0; i < edge.getHead().getNumEdges() - 1; i++) {
-							localNodeStack.push(new HashSet<Node>(localNodes));
-						}
-						
-						for (Edge headEdge : edge.getHead().getEdges()) {
-							edgeStack.push(headEdge);
-						}
+				comp.put("roles", edge.getComponentRoles());
 
-						for (int i = 0; i < edge.getHead().getNumEdges() - 1; i++) {
-							designStack.push(designs);
-						}
-					} else if (!designStack.isEmpty()) {
-						localNodes = localNodeStack.pop();
-						
-						designs = designStack.pop();
-					}
-				}
+				comp.put("orientation", edge.getOrientation().getValue());
+				
+				design.add(comp);
 			}
+			
+			allDesigns.add(design);
 		}
 		
 		return allDesigns;
 	}
 	
-	private List<List<Map<String, Object>>> dfsEnumerate(int numDesigns, int minLength, int maxLength) {
-		List<List<Map<String, Object>>> allDesigns = new LinkedList<List<Map<String, Object>>>();
-	
-		for (Node startNode : startNodes) {
-			List<List<Map<String, Object>>> designs = new LinkedList<List<Map<String, Object>>>();
-			
-			Set<Node> localNodes = new HashSet<Node>();
-			
-			localNodes.add(startNode);
-			
-			Stack<Set<Node>> localNodeStack = new Stack<Set<Node>>();
+	/*
+		Collects the designs of each subtree by index. Once the subtrees before some index have 
+		produced the requested number of designs, every later subtree is cut off, since none of its
+		designs could make it into the merged result.
+	 */
+	private static class SubtreeResults {
+		private final List<List<List<Map<String, Object>>>> subtreeDesigns;
+		
+		private final int numDesigns;
+		
+		private int numMerged = 0;
+		
+		private int numMergedDesigns = 0;
+		
+		private volatile int cutOffIndex = Integer.MAX_VALUE;
+		
+		public SubtreeResults(int numSubtrees, int numDesigns) {
+			subtreeDesigns = new ArrayList<List<List<Map<String, Object>>>>(numSubtrees);
 			
-			for (int i = 0; i < startNode.getNumEdges() - 1; i++) {
-				localNodeStack.push(new HashSet<Node>(localNodes));
+			for (int i = 0; i < numSubtrees; i++) {
+				subtreeDesigns.add(null);
 			}
 			
-			Stack<Edge> edgeStack = new Stack<Edge>();
+			this.numDesigns = numDesigns;
+		}
+		
+		public boolean isCutOff(int subtreeIndex) {
+			return subtreeIndex > cutOffIndex;
+		}
+		
+		public synchronized void complete(int subtreeIndex, List<List<Map<String, Object>>> designs) {
+			subtreeDesigns.set(subtreeIndex, designs);
 			
-			if (startNode.hasEdges()) {
-				for (Edge edge : startNode.getEdges()) {
-					edgeStack.push(edge);
+			while (numMerged < subtreeDesigns.size() && subtreeDesigns.get(numMerged) != null) {
+				numMergedDesigns += subtreeDesigns.get(numMerged).size();
+				
+				if (numDesigns > 0 && numMergedDesigns >= numDesigns) {
+					cutOffIndex = numMerged;
 				}
+				
+				numMerged++;
 			}
+		}
+		
+		public synchronized List<List<Map<String, Object>>> merge() {
+			List<List<Map<String, Object>>> allDesigns = new LinkedList<List<Map<String, Object>>>();
 			
-			Stack<List<List<Map<String, Object>>>> designStack = new Stack<List<List<Map<String, Object>>>>();
-			
-			for (int i = 0; i < startNode.getNumEdges() - 1; i++) {
-				designStack.push(designs);
-			}
-			
-			while (!edgeStack.isEmpty()) {
-				Edge edge = edgeStack.pop();
-				
-				designs = multiplyDesigns(designs, edge);
-				
-				if (!designs.isEmpty() && maxLength > 0 && designs.get(0).size() > maxLength) {
-					if (!designStack.isEmpty()) {
-						localNodes = localNodeStack.pop();
-						
-						designs = designStack.pop();
-					}
-				} else { 
-					if (edge.getHead().isAcceptNode()) {
-						List<List<Map<String, Object>>> atLeastMinDesigns = filterUnderMinDesigns(designs,
-								minLength);
-						
-						if (numDesigns < 1 || allDesigns.size() + atLeastMinDesigns.size() < numDesigns) {
-							allDesigns.addAll(atLeastMinDesigns);
-						} else {
-							int diffDesignCount = numDesigns - allDesigns.size();
-
-							Iterator<List<Map<String, Object>>> designerator = atLeastMinDesigns.iterator();
-
-							for (int i = 0; i < diffDesignCount; i++) {
-								allDesigns.add(designerator.next());
-							}
-
-							return allDesigns;
-						}
-					} 
-
-					if (edge.getHead().hasEdges() 
-							&& (!localNodes.contains(edge.getHead()) || numDesigns > 0 
-									|| maxLength > 0)) {
-						localNodes.add(edge.getHead());
-						
-						for (int i = 0; i < edge.getHead().getNumEdges() - 1; i++) {
-							localNodeStack.push(new HashSet<Node>(localNodes));
-						}
-						
-						for (Edge headEdge : edge.getHead().getEdges()) {
-							edgeStack.push(headEdge);
-						}
-
-						for (int i = 0; i < edge.getHead().getNumEdges() - 1; i++) {
-							designStack.push(designs);
-						}
-					} else if (!designStack.isEmpty()) {
-						localNodes = localNodeStack.pop();
-						
-						designs = designStack.pop();
+			for (int i = 0; i < subtreeDesigns.size() && !isCutOff(i); i++) {
+				for (List<Map<String, Object>> design : subtreeDesigns.get(i)) {
+					if (numDesigns > 0 && allDesigns.size() >= numDesigns) {
+						return allDesigns;
 					}
+					
+					allDesigns.add(design);
 				}
 			}
+			
+			return allDesigns;
 		}
-		
-		return allDesigns;
 	}
 	
-	private List<List<Map<String, Object>>> filterUnderMinDesigns(List<List<Map<String, Object>>> designs,
-			int minLength) {
-		List<List<Map<String, Object>>> atLeastMinDesigns = new LinkedList<List<Map<String, Object>>>();
-		
-		for (List<Map<String, Object>> design : designs) {
-			if (design.size() >= minLength) {
-				atLeastMinDesigns.add(design);
-			}
-		}
-		
-		return atLeastMinDesigns;
-	}
-
     /*
         This method is responsible for creating an adjacency matrix from a given graph.
         It does so by looping over each of the nodes in a design space and assigning them
@@ -604,5 +749,32 @@ public class DesignSampler {
     }
     
     public enum EnumerateType { BFS, DFS }
+    
+    private static final Comparator<Node> NODE_ORDER = new Comparator<Node>() {
+    	public int compare(Node node, Node other) {
+    		return node.getNodeID().compareTo(other.getNodeID());
+    	}
+    };
+    
+    private static final Comparator<Edge> EDGE_ORDER = new Comparator<Edge>() {
+    	public int compare(Edge edge, Edge other) {
+    		int order = edge.getHead().getNodeID().compareTo(other.getHead().getNodeID());
+    		
+    		if (order == 0) {
+    			order = String.valueOf(edge.getOrientation()).compareTo(String.valueOf(other.getOrientation()));
+    		}
+    		
+    		if (order == 0) {
+    			order = String.valueOf(edge.getComponentIDs()).compareTo(String.valueOf(other.getComponentIDs()));
+    		}
+    		
+    		if (order == 0) {
+    			order = String.valueOf(edge.getComponentRoles()).compareTo(
+    					String.valueOf(other.getComponentRoles()));
+    		}
+    		
+    		return order;
+    	}
+    };
 
 }
@@ -0,0 +1,26 @@
+package knox.spring.data.neo4j.sample;
+
+import java.util.concurrent.ForkJoinPool;
+
+/*
+	Shared fork/join pool for splitting the work of a single request across threads. It is sized
+	to the number of available processors, so that concurrent requests cannot add up to more 
+	threads than that.
+ */
+public final class WorkerPool {
+	
+	private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	
+	private WorkerPool() {}
+	
+	public static ForkJoinPool getPool() {
+		return POOL;
+	}
+	
+	/*
+		Clamps requested parallelism to between one and the size of the pool.
+	 */
+	public static int boundParallelism(int parallelism) {
+		return Math.max(1, Math.min(parallelism, POOL.getParallelism()));
+	}
+}
@@ -1,8 +1,9 @@
 package knox.spring.data.neo4j.sbol;
 
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import knox.spring.data.neo4j.domain.Edge;
 import org.sbolstandard.core2.*;
@@ -16,6 +17,7 @@ import knox.spring.data.neo4j.domain.NodeSpace;
 import knox.spring.data.neo4j.operations.JoinOperator;
 import knox.spring.data.neo4j.operations.OROperator;
 import knox.spring.data.neo4j.operations.RepeatOperator;
+import knox.spring.data.neo4j.sample.WorkerPool;
 import knox.spring.data.neo4j.exception.SBOLException;
 
 public class SBOLConversion {
@@ -24,6 +26,8 @@ public class SBOLConversion {
 
 	private static final Logger LOG = LoggerFactory.getLogger(SBOLConversion.class);
 
+	private final SequenceOntologyIndex ontology = SequenceOntologyIndex.getInstance();
+
 	public List<SBOLDocument> getSbolDoc() {
 		return sbolDocs;
 	}
@@ -38,21 +42,72 @@ public class SBOLConversion {
 	 * @return
 	 */
 	public List<DesignSpace> convertSBOLsToSpaces() throws SBOLException{
+		return convertSBOLsToSpaces(1);
+	}
 
-		List<DesignSpace> allOutputSpaces = new ArrayList<>();
+	/**
+	 * Same as convertSBOLsToSpaces(), but documents are converted independently of each other by up
+	 * to the given number of workers. Design spaces are returned in the order of their documents, so
+	 * the result does not depend on parallelism.
+	 * @param parallelism
+	 * @return list of design spaces
+	 */
+	@SuppressWarnings("unchecked")
+	public List<DesignSpace> convertSBOLsToSpaces(int parallelism) throws SBOLException{
+		final List<DesignSpace>[] docOutputSpaces = new List[sbolDocs.size()];
 
-		for(SBOLDocument sbolDoc: sbolDocs){
-			Set<CombinatorialDerivation> derivations = sbolDoc.getCombinatorialDerivations();
-			if (derivations.isEmpty()){
-				allOutputSpaces.addAll(convertSBOL(sbolDoc));
+		int numWorkers = Math.min(WorkerPool.boundParallelism(parallelism), sbolDocs.size());
+
+		if (numWorkers <= 1) {
+			for (int i = 0; i < sbolDocs.size(); i++) {
+				docOutputSpaces[i] = convertSBOLToSpaces(sbolDocs.get(i));
+			}
+		} else {
+			final AtomicInteger nextDoc = new AtomicInteger(0);
+
+			List<ForkJoinTask<?>> workers = new ArrayList<ForkJoinTask<?>>(numWorkers);
+
+			for (int k = 0; k < numWorkers; k++) {
+				workers.add(WorkerPool.getPool().submit(new Runnable() {
+					public void run() {
+						int i = nextDoc.getAndIncrement();
+
+						while (i < sbolDocs.size()) {
+							docOutputSpaces[i] = convertSBOLToSpaces(sbolDocs.get(i));
+
+							i = nextDoc.getAndIncrement();
+						}
+					}
+				}));
 			}
 
-			allOutputSpaces.addAll(convertCombinatorialSBOL(sbolDoc));
+			for (ForkJoinTask<?> worker : workers) {
+				worker.join();
+			}
+		}
+
+		List<DesignSpace> allOutputSpaces = new ArrayList<>();
+
+		for (List<DesignSpace> outputSpaces : docOutputSpaces) {
+			allOutputSpaces.addAll(outputSpaces);
 		}
 
 		return allOutputSpaces;
 	}
 
+	private List<DesignSpace> convertSBOLToSpaces(SBOLDocument sbolDoc) throws SBOLException{
+		List<DesignSpace> outputSpaces = new ArrayList<>();
+
+		Set<CombinatorialDerivation> derivations = sbolDoc.getCombinatorialDerivations();
+		if (derivations.isEmpty()){
+			outputSpaces.addAll(convertSBOL(sbolDoc));
+		}
+
+		outputSpaces.addAll(convertCombinatorialSBOL(sbolDoc));
+
+		return outputSpaces;
+	}
+
 	/**
 	 * Creates one outputSpace per root CombinatorialDerivation
 	 * @param sbolDoc
@@ -63,9 +118,12 @@ public class SBOLConversion {
 		List<DesignSpace> outputSpaces = new ArrayList<>();
 		Set<CombinatorialDerivation> rootCVs = getRootCombinatorialDerivation(sbolDoc);
 
+		// conversions of the derivations in this document, shared by all the roots that use them
+		Map<String, NodeSpace> derivationSpaces = new HashMap<>();
+
 		for(CombinatorialDerivation rootCV: rootCVs){
 			//iterate through variable components
-			List<NodeSpace> inputSpace = recurseVariableComponents(rootCV);
+			List<NodeSpace> inputSpace = recurseVariableComponents(rootCV, derivationSpaces);
 
 			DesignSpace outputSpace = new DesignSpace(rootCV.getDisplayId());
 			JoinOperator.apply(inputSpace, outputSpace);
@@ -79,7 +137,8 @@ public class SBOLConversion {
 		return outputSpaces;
 	}
 
-	private List<NodeSpace> recurseVariableComponents(CombinatorialDerivation combinatorialDerivation) throws SBOLException{
+	private List<NodeSpace> recurseVariableComponents(CombinatorialDerivation combinatorialDerivation,
+			Map<String, NodeSpace> derivationSpaces) throws SBOLException{
 		ComponentDefinition template = combinatorialDerivation.getTemplate();
 		List<NodeSpace> inputSpace = new LinkedList<>();
 
@@ -95,7 +154,7 @@ public class SBOLConversion {
 				//handle structure for just repeats
 				if (variantDerivs.size() == 1 && !hasVariants){
 					for (CombinatorialDerivation cv : variantDerivs) {
-						inputSpace.add(applyOperator(variableComponent.getOperator(), recurseVariableComponents(cv)));
+						inputSpace.add(convertDerivation(cv, variableComponent.getOperator(), derivationSpaces));
 					}
 				}
 
@@ -109,7 +168,7 @@ public class SBOLConversion {
 					}
 
 					for (CombinatorialDerivation cv : variantDerivs) {
-						orSpace.add(applyOperator(OperatorType.ONE, recurseVariableComponents(cv)));
+						orSpace.add(convertDerivation(cv, OperatorType.ONE, derivationSpaces));
 					}
 
 					OROperator.apply(orSpace, outputSpace); //"or" all the elements in the list
@@ -127,6 +186,26 @@ public class SBOLConversion {
 		return inputSpace;
 	}
 
+	/**
+	 * Converts a variant derivation and applies an operator to it. Results are memoised by the URI of
+	 * the derivation and the operator, so that a derivation which is referenced by many variable
+	 * components is only converted once, and each reference gets its own copy to build on.
+	 */
+	private NodeSpace convertDerivation(CombinatorialDerivation derivation, OperatorType operator,
+			Map<String, NodeSpace> derivationSpaces) throws SBOLException{
+		String key = derivation.getIdentity() + " " + operator;
+
+		NodeSpace derivationSpace = derivationSpaces.get(key);
+
+		if (derivationSpace == null) {
+			derivationSpace = applyOperator(operator, recurseVariableComponents(derivation, derivationSpaces));
+
+			derivationSpaces.put(key, derivationSpace);
+		}
+
+		return derivationSpace.copy();
+	}
+
 	private VariableComponent[] sortVariableComponents(CombinatorialDerivation combinatorialDerivation){
 		//make ordered components from sequence constraints
 		List<Component> orderedComponents = new ArrayList<>();
@@ -213,243 +292,6 @@ public class SBOLConversion {
 		return orderedVCs;
 	}
 	
-	private Set<String> getSOTermsByAccessionURI(URI accessionURI) {
-		Set<String> soTerms = new HashSet<String>();
-		
-		switch (accessionURI.toString()) {
-		case "http://identifiers.org/so/SO:0000031":
-			soTerms.add("aptamer");
-			break;
-		case "http://identifiers.org/so/SO:0001953":
-			soTerms.add("restriction_enzyme_assembly_scar");
-			break;
-		case "http://identifiers.org/so/SO:0001691":
-			soTerms.add("blunt_end_restriction_enzyme_cleavage_site");
-			break;
-		case "http://identifiers.org/so/SO:0000316":
-			soTerms.add("CDS");
-			break;
-		case "http://identifiers.org/so/SO:0001955":
-			soTerms.add("protein_stability_element");
-			break;
-		case "http://identifiers.org/so/SO:0000804":
-			soTerms.add("engineered_region");
-			break;
-		case "http://identifiers.org/so/SO:0001932":
-			soTerms.add("restriction_enzyme_five_prime_single_strand_overhang");
-			break;
-		case "http://identifiers.org/so/SO:0001975":
-			soTerms.add("five_prime_sticky_end_restriction_enzyme_cleavage_site");
-			break;
-		case "http://identifiers.org/so/SO:0000627":
-			soTerms.add("insulator");
-			break;
-		case "http://identifiers.org/so/SO:0001263":
-			soTerms.add("ncRNA_gene");
-			break;
-		case "http://identifiers.org/so/SO:0000834":
-			soTerms.add("mature_transcript_region");
-			break;
-		case "http://identifiers.org/so/SO:0001688":
-			soTerms.add("restriction_enzyme_cleavage_junction");
-			break;
-		case "http://identifiers.org/so/SO:0001687":
-			soTerms.add("restriction_enzyme_recognition_site");
-			break;
-		case "http://identifiers.org/so/SO:0000057":
-			soTerms.add("operator");
-			break;
-		case "http://identifiers.org/so/SO:0000409":
-			soTerms.add("binding_site");
-			break;
-		case "http://identifiers.org/so/SO:0000296":
-			soTerms.add("origin_of_replication");
-			break;
-		case "http://identifiers.org/so/SO:0000724":
-			soTerms.add("oriT");
-			break;
-		case "http://identifiers.org/so/SO:0000553":
-			soTerms.add("polyA_site");
-			break;
-		case "http://identifiers.org/so/SO:0005850":
-			soTerms.add("primer_binding_site");
-			break;
-		case "http://identifiers.org/so/SO:0000167":
-			soTerms.add("promoter");
-			break;
-		case "http://identifiers.org/so/SO:0001956":
-			soTerms.add("protease_site");
-			break;
-		case "http://identifiers.org/so/SO:0001546":
-			soTerms.add("transcript_stability_variant");
-			break;
-		case "http://identifiers.org/so/SO:0001977":
-			soTerms.add("ribonuclease_site");
-			break;
-		case "http://identifiers.org/so/SO:0000139":
-			soTerms.add("ribosome_entry_site");
-			break;
-		case "http://identifiers.org/so/SO:0000374":
-			soTerms.add("ribozyme");
-			break;
-		case "http://identifiers.org/so/SO:0001979":
-			soTerms.add("RNA_stability_element");
-			break;
-		case "http://identifiers.org/so/SO:0001978":
-			soTerms.add("signature");
-			break;
-		case "http://identifiers.org/so/SO:0000299":
-			soTerms.add("specific_recombination_site");
-			break;
-		case "http://identifiers.org/so/SO:0000141":
-			soTerms.add("terminator");
-			break;
-		case "http://identifiers.org/so/SO:0001933":
-			soTerms.add("restriction_enzyme_three_prime_single_strand_overhang");
-			break;
-		case "http://identifiers.org/so/SO:0001976":
-			soTerms.add("three_prime_sticky_end_restriction_enzyme_cleavage_site");
-			break;
-		case "http://identifiers.org/so/SO:0000616":
-			soTerms.add("transcription_end_site");
-			break;
-		case "http://identifiers.org/so/SO:0000319":
-			soTerms.add("stop_codon");
-			break;
-		case "http://identifiers.org/so/SO:0000327":
-			soTerms.add("coding_end");
-			break;
-		}
-		
-		return soTerms;
-	}
-	
-	private Set<URI> getAccessionURIsBySOTerm(String soTerm) {
-		Set<URI> accessionURIs = new HashSet<URI>();
-		
-		try {
-			switch (soTerm) {
-			case "aptamer":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000031"));
-				break;
-			case "restriction_enzyme_assembly_scar":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001953"));
-				break;
-			case "blunt_end_restriction_enzyme_cleavage_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001691"));
-				break;
-			case "CDS":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000316"));
-				break;
-			case "protein_stability_element":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001955"));
-				break;
-			case "engineered_region":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000804"));
-				break;
-			case "restriction_enzyme_five_prime_single_strand_overhang":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001932"));
-				break;
-			case "five_prime_sticky_end_restriction_enzyme_cleavage_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001975"));
-				break;
-			case "ribozyme":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000374"));
-				break;
-			case "insulator":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000627"));
-				break;
-			case "ncRNA_gene":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001263"));
-				break;
-			case "mature_transcript_region":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000834"));
-				break;
-			case "restriction_enzyme_cleavage_junction":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001688"));
-				break;
-			case "restriction_enzyme_recognition_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001687"));
-				break;
-			case "operator":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000057"));
-				break;
-			case "binding_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000409"));
-				break;
-			case "origin_of_replication":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000296"));
-				break;
-			case "oriT":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000724"));
-				break;
-			case "polyA_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000553"));
-				break;
-			case "primer_binding_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0005850"));
-				break;
-			case "promoter":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000167"));
-				break;
-			case "protease_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001956"));
-				break;
-			case "transcript_stability_variant":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001546"));
-				break;
-			case "ribonuclease_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001977"));
-				break;
-			case "ribosome_entry_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000139"));
-				break;
-			case "RNA_stability_element":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001979"));
-				break;
-			case "signature":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001978"));
-				break;
-			case "specific_recombination_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000299"));
-				break;
-			case "terminator":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000141"));
-				break;
-			case "restriction_enzyme_three_prime_single_strand_overhang":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001933"));
-				break;
-			case "three_prime_sticky_end_restriction_enzyme_cleavage_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0001976"));
-				break;
-			case "transcription_end_site":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000616"));
-				break;
-			case "stop_codon":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000319"));
-				break;
-			case "coding_end":
-				accessionURIs.add(new URI("http://identifiers.org/so/SO:0000327"));
-				break;
-			}
-		} catch (URISyntaxException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		
-		return accessionURIs;
-	}
-	
-	private Set<String> getSOTermsByAccessionURIs(Set<URI> accessionURIs) {
-		Set<String> soTerms = new HashSet<String>();
-		
-		for (URI accessionURI : accessionURIs) {
-			soTerms.addAll(getSOTermsByAccessionURI(accessionURI));
-		}
-		
-		return soTerms;
-	}
-
 	private NodeSpace createNodeSpaceFromVariableComponent(VariableComponent variableComponent, ComponentDefinition template) throws SBOLException{
 		ArrayList<String> atomIDs = new ArrayList<>();
 		ArrayList<String> atomRoles = new ArrayList<>();
@@ -460,12 +302,10 @@ public class SBOLConversion {
 		// Find variant roles
 		for (ComponentDefinition variant : variableComponent.getVariants()) {
 			Set<URI> roles = variant.getRoles().isEmpty()? variableDefinition.getRoles(): variant.getRoles();
-			Set<String> roleTerms = getSOTermsByAccessionURIs(roles);
+			Set<String> roleTerms = ontology.getNames(roles);
 			
 			if (roleTerms.contains(variant.getDisplayId()) && variant.getSequences().isEmpty()) {
-				for (URI role : getAccessionURIsBySOTerm(variant.getDisplayId())) {
-					atomRoles.add(role.toString());
-				}
+				atomRoles.add(ontology.getURI(variant.getDisplayId()).toString());
 			} else {
 				for (URI role : roles) {
 					atomIDs.add(variant.getIdentity().toString());
@@ -481,12 +321,10 @@ public class SBOLConversion {
 					ComponentDefinition def = (ComponentDefinition) member;
 					
 					Set<URI> roles = def.getRoles().isEmpty()? variableDefinition.getRoles(): def.getRoles();
-					Set<String> roleTerms = getSOTermsByAccessionURIs(roles);
+					Set<String> roleTerms = ontology.getNames(roles);
 					
 					if (roleTerms.contains(def.getDisplayId()) && def.getSequences().isEmpty()) {
-						for (URI role : getAccessionURIsBySOTerm(def.getDisplayId())) {
-							atomRoles.add(role.toString());
-						}
+						atomRoles.add(ontology.getURI(def.getDisplayId()).toString());
 					} else {
 						for (URI role : roles) {
 							atomIDs.add(def.getIdentity().toString());
@@ -0,0 +1,677 @@
+package knox.spring.data.neo4j.sbol;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.sbolstandard.core2.CombinatorialDerivation;
+import org.sbolstandard.core2.Component;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.AccessType;
+import org.sbolstandard.core2.OperatorType;
+import org.sbolstandard.core2.OrientationType;
+import org.sbolstandard.core2.RestrictionType;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.SequenceAnnotation;
+import org.sbolstandard.core2.SequenceOntology;
+import org.sbolstandard.core2.StrategyType;
+import org.sbolstandard.core2.VariableComponent;
+
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+/*
+ * Exports a design space as SBOL CombinatorialDerivations without enumerating its designs. The
+ * graph is first reduced to an expression: parallel edges become a choice, a node with one
+ * incoming and one outgoing edge becomes a sequence and a self-loop becomes a repeat. When no such
+ * reduction applies, the node with the fewest pairs of incoming and outgoing edges is eliminated,
+ * which refers to the expressions on its edges rather than copying them.
+ *
+ * Each sequence in the expression becomes a CombinatorialDerivation whose template orders one
+ * Component per element by SequenceConstraints. An edge, or a choice between edges, becomes a
+ * VariableComponent with its components as variants, repeats and optional elements become the
+ * ONEORMORE, ZEROORMORE and ZEROORONE operators, and any other element becomes a variant
+ * derivation. An expression that is referred to more than once is exported once and shared, so
+ * the document grows with the graph rather than with the number of designs. The result is read
+ * back by SBOLConversion as a design space with the same designs.
+ */
+public class SBOLExport {
+
+	public static final String URI_PREFIX = "http://knox.org/";
+
+	private final SequenceOntologyIndex ontology = SequenceOntologyIndex.getInstance();
+
+	private SBOLDocument sbolDoc;
+
+	private ComponentDefinition abstractDefinition;
+
+	private String rootDisplayID;
+
+	private int numDerivations;
+
+	private Map<Expression, Integer> expressionToRefs;
+
+	private Map<Expression, CombinatorialDerivation> expressionToDerivation;
+
+	private Map<Expression, Expression> expressionToWrapper;
+
+	private Map<String, ComponentDefinition> labelToDefinition;
+
+	private Set<String> displayIDs;
+
+	public SBOLDocument exportSpace(NodeSpace space, String spaceID) throws SBOLValidationException {
+		sbolDoc = new SBOLDocument();
+
+		sbolDoc.setDefaultURIprefix(URI_PREFIX);
+
+		numDerivations = 0;
+
+		expressionToDerivation = new HashMap<Expression, CombinatorialDerivation>();
+
+		expressionToWrapper = new HashMap<Expression, Expression>();
+
+		labelToDefinition = new HashMap<String, ComponentDefinition>();
+
+		displayIDs = new HashSet<String>();
+
+		Expression root = reduceSpace(space);
+
+		expressionToRefs = countReferences(root);
+
+		rootDisplayID = createDisplayID(spaceID);
+
+		abstractDefinition = sbolDoc.createComponentDefinition(createDisplayID(rootDisplayID + "_part"),
+				ComponentDefinition.DNA_REGION);
+
+		abstractDefinition.addRole(SequenceOntology.ENGINEERED_REGION);
+
+		createDerivation(root, rootDisplayID);
+
+		return sbolDoc;
+	}
+
+	/*
+	 * Reduces a design space to a single expression for the designs that lead from its start node to
+	 * its accept nodes. Edges into a node that is eliminated are joined to the edges out of it, with
+	 * any self-loop on the node repeated in between, and joined edges between the same nodes are
+	 * merged into a choice. A node whose elimination adds at most one edge is always eliminated
+	 * first, so series-parallel graphs are reduced without the expression on any edge being used
+	 * twice.
+	 */
+	private Expression reduceSpace(NodeSpace space) {
+		Map<Node, Integer> nodeToIndex = new HashMap<Node, Integer>();
+
+		for (Node node : space.getNodes()) {
+			nodeToIndex.put(node, nodeToIndex.size());
+		}
+
+		int numNodes = nodeToIndex.size();
+
+		int start = numNodes;
+
+		int accept = numNodes + 1;
+
+		List<Map<Integer, Expression>> outEdges = new ArrayList<Map<Integer, Expression>>(numNodes + 2);
+
+		List<Map<Integer, Expression>> inEdges = new ArrayList<Map<Integer, Expression>>(numNodes + 2);
+
+		for (int i = 0; i < numNodes + 2; i++) {
+			outEdges.add(new LinkedHashMap<Integer, Expression>());
+
+			inEdges.add(new LinkedHashMap<Integer, Expression>());
+		}
+
+		for (Node node : space.getNodes()) {
+			int i = nodeToIndex.get(node);
+
+			if (node.isStartNode()) {
+				addEdge(start, i, Expression.BLANK, outEdges, inEdges);
+			}
+
+			if (node.isAcceptNode()) {
+				addEdge(i, accept, Expression.BLANK, outEdges, inEdges);
+			}
+
+			if (node.hasEdges()) {
+				for (Edge edge : node.getEdges()) {
+					addEdge(i, nodeToIndex.get(edge.getHead()), Expression.createEdge(edge), outEdges, inEdges);
+				}
+			}
+		}
+
+		boolean[] isEliminated = new boolean[numNodes];
+
+		Deque<Integer> cheapNodes = new ArrayDeque<Integer>();
+
+		for (int i = 0; i < numNodes; i++) {
+			cheapNodes.add(i);
+		}
+
+		for (int k = 0; k < numNodes; k++) {
+			int node = -1;
+
+			while (node < 0 && !cheapNodes.isEmpty()) {
+				int i = cheapNodes.poll();
+
+				if (!isEliminated[i] && getEliminationCost(i, outEdges, inEdges) <= 1) {
+					node = i;
+				}
+			}
+
+			if (node < 0) {
+				long minCost = Long.MAX_VALUE;
+
+				for (int i = 0; i < numNodes; i++) {
+					if (!isEliminated[i]) {
+						long cost = getEliminationCost(i, outEdges, inEdges);
+
+						if (cost < minCost) {
+							node = i;
+
+							minCost = cost;
+						}
+					}
+				}
+			}
+
+			Expression loop = outEdges.get(node).remove(node);
+
+			inEdges.get(node).remove(node);
+
+			Expression repeat = loop == null ? Expression.BLANK : Expression.createStar(loop);
+
+			for (int tail : inEdges.get(node).keySet()) {
+				outEdges.get(tail).remove(node);
+
+				if (tail < numNodes) {
+					cheapNodes.add(tail);
+				}
+			}
+
+			for (int head : outEdges.get(node).keySet()) {
+				inEdges.get(head).remove(node);
+
+				if (head < numNodes) {
+					cheapNodes.add(head);
+				}
+			}
+
+			for (Map.Entry<Integer, Expression> inEdge : inEdges.get(node).entrySet()) {
+				Expression prefix = Expression.createSequence(inEdge.getValue(), repeat);
+
+				for (Map.Entry<Integer, Expression> outEdge : outEdges.get(node).entrySet()) {
+					addEdge(inEdge.getKey(), outEdge.getKey(), Expression.createSequence(prefix, outEdge.getValue()),
+							outEdges, inEdges);
+				}
+			}
+
+			outEdges.get(node).clear();
+
+			inEdges.get(node).clear();
+
+			isEliminated[node] = true;
+		}
+
+		return outEdges.get(start).get(accept);
+	}
+
+	private long getEliminationCost(int node, List<Map<Integer, Expression>> outEdges,
+			List<Map<Integer, Expression>> inEdges) {
+		int loops = outEdges.get(node).containsKey(node) ? 1 : 0;
+
+		return (long) (inEdges.get(node).size() - loops) * (outEdges.get(node).size() - loops);
+	}
+
+	private void addEdge(int tail, int head, Expression expression, List<Map<Integer, Expression>> outEdges,
+			List<Map<Integer, Expression>> inEdges) {
+		Expression parallel = outEdges.get(tail).get(head);
+
+		if (parallel != null) {
+			expression = Expression.createChoice(parallel, expression);
+		}
+
+		outEdges.get(tail).put(head, expression);
+
+		inEdges.get(head).put(tail, expression);
+	}
+
+	/*
+	 * Counts the number of times that each sub-expression is referred to, so that only the ones
+	 * referred to once are flattened into the sequences and choices that contain them.
+	 */
+	private Map<Expression, Integer> countReferences(Expression root) {
+		Map<Expression, Integer> expressionToRefs = new IdentityHashMap<Expression, Integer>();
+
+		if (root == null) {
+			return expressionToRefs;
+		}
+
+		Deque<Expression> expressions = new ArrayDeque<Expression>();
+
+		expressionToRefs.put(root, 1);
+
+		expressions.push(root);
+
+		while (!expressions.isEmpty()) {
+			for (Expression child : expressions.pop().children) {
+				Integer refs = expressionToRefs.get(child);
+
+				if (refs == null) {
+					expressionToRefs.put(child, 1);
+
+					expressions.push(child);
+				} else {
+					expressionToRefs.put(child, refs + 1);
+				}
+			}
+		}
+
+		return expressionToRefs;
+	}
+
+	private CombinatorialDerivation createDerivation(Expression expression, String displayID)
+			throws SBOLValidationException {
+		CombinatorialDerivation derivation = expressionToDerivation.get(expression);
+
+		if (derivation != null) {
+			return derivation;
+		}
+
+		ComponentDefinition template = sbolDoc.createComponentDefinition(createDisplayID(displayID + "_template"),
+				ComponentDefinition.DNA_REGION);
+
+		template.addRole(SequenceOntology.ENGINEERED_REGION);
+
+		derivation = sbolDoc.createCombinatorialDerivation(displayID, template.getIdentity());
+
+		derivation.setStrategy(StrategyType.ENUMERATE);
+
+		expressionToDerivation.put(expression, derivation);
+
+		List<Expression> elements = expression == null ? Collections.<Expression>emptyList()
+				: getElements(expression, Expression.SEQUENCE);
+
+		Component previous = null;
+
+		for (int i = 0; i < elements.size(); i++) {
+			Component component = template.createComponent("c" + i, AccessType.PUBLIC,
+					abstractDefinition.getIdentity());
+
+			if (previous != null) {
+				template.createSequenceConstraint("sc" + i, RestrictionType.PRECEDES, previous.getIdentity(),
+						component.getIdentity());
+			}
+
+			createVariableComponent(derivation, template, component, elements.get(i), i);
+
+			previous = component;
+		}
+
+		return derivation;
+	}
+
+	/*
+	 * A choice between edges of the same orientation is exported as the variants of a
+	 * VariableComponent and every other choice as a variant derivation. SBOLConversion joins the
+	 * elements of a lone variant derivation before repeating them, but makes each of them optional
+	 * in turn, so an optional sequence is wrapped in a derivation of its own first.
+	 */
+	private void createVariableComponent(CombinatorialDerivation derivation, ComponentDefinition template,
+			Component component, Expression element, int i) throws SBOLValidationException {
+		OperatorType operator = OperatorType.ONE;
+
+		Expression operand = element;
+
+		if (element.type == Expression.OPERATOR) {
+			operator = element.operator;
+
+			operand = element.children.get(0);
+		}
+
+		VariableComponent variableComponent = derivation.createVariableComponent("vc" + i, operator,
+				component.getIdentity());
+
+		List<Expression> choices;
+
+		if (operand.type == Expression.CHOICE) {
+			choices = getElements(operand, Expression.CHOICE);
+		} else {
+			choices = Collections.singletonList(operand);
+		}
+
+		Boolean isReverse = null;
+
+		List<Expression> derivedChoices = new ArrayList<Expression>();
+
+		for (Expression choice : choices) {
+			if (choice.type == Expression.EDGE
+					&& (isReverse == null || isReverse == choice.edge.isReverseComplement())) {
+				isReverse = choice.edge.isReverseComplement();
+
+				addVariants(variableComponent, choice.edge);
+			} else {
+				derivedChoices.add(choice);
+			}
+		}
+
+		if (operator == OperatorType.ZEROORONE && isReverse == null && derivedChoices.size() == 1
+				&& derivedChoices.get(0).type == Expression.SEQUENCE) {
+			Expression wrapper = expressionToWrapper.get(derivedChoices.get(0));
+
+			if (wrapper == null) {
+				wrapper = Expression.createOperator(OperatorType.ONE, derivedChoices.get(0));
+
+				expressionToWrapper.put(derivedChoices.get(0), wrapper);
+
+				expressionToRefs.put(wrapper, 1);
+			}
+
+			derivedChoices.set(0, wrapper);
+		}
+
+		for (Expression choice : derivedChoices) {
+			CombinatorialDerivation variantDerivation = expressionToDerivation.get(choice);
+
+			if (variantDerivation == null) {
+				numDerivations++;
+
+				variantDerivation = createDerivation(choice, createDisplayID(rootDisplayID + "_d" + numDerivations));
+			}
+
+			variableComponent.addVariantDerivation(variantDerivation.getIdentity());
+		}
+
+		if (isReverse != null && isReverse) {
+			SequenceAnnotation annotation = template.createSequenceAnnotation("sa" + i, "location",
+					OrientationType.REVERSECOMPLEMENT);
+
+			annotation.setComponent(component.getIdentity());
+		}
+	}
+
+	/*
+	 * Adds a ComponentDefinition for each component ID on an edge, with the roles that it has there.
+	 * Roles without a component ID are added as abstract ComponentDefinitions named after their
+	 * terms, which SBOLConversion reads back as roles rather than components.
+	 */
+	private void addVariants(VariableComponent variableComponent, Edge edge) throws SBOLValidationException {
+		ArrayList<String> compIDs = edge.getComponentIDs();
+
+		ArrayList<String> compRoles = edge.getComponentRoles();
+
+		Map<String, Set<String>> compIDToRoles = new LinkedHashMap<String, Set<String>>();
+
+		Set<String> abstractRoles = new TreeSet<String>();
+
+		for (int i = 0; i < compRoles.size(); i++) {
+			if (i < compIDs.size()) {
+				if (!compIDToRoles.containsKey(compIDs.get(i))) {
+					compIDToRoles.put(compIDs.get(i), new TreeSet<String>());
+				}
+
+				compIDToRoles.get(compIDs.get(i)).add(compRoles.get(i));
+			} else {
+				abstractRoles.add(compRoles.get(i));
+			}
+		}
+
+		for (int i = compRoles.size(); i < compIDs.size(); i++) {
+			if (!compIDToRoles.containsKey(compIDs.get(i))) {
+				compIDToRoles.put(compIDs.get(i), new TreeSet<String>());
+			}
+		}
+
+		for (Map.Entry<String, Set<String>> compIDAndRoles : compIDToRoles.entrySet()) {
+			String label = compIDAndRoles.getKey() + " " + compIDAndRoles.getValue();
+
+			ComponentDefinition variant = labelToDefinition.get(label);
+
+			if (variant == null) {
+				variant = sbolDoc.createComponentDefinition(createDisplayID(compIDAndRoles.getKey()),
+						ComponentDefinition.DNA_REGION);
+
+				for (String role : compIDAndRoles.getValue()) {
+					variant.addRole(getRoleURI(role));
+				}
+
+				labelToDefinition.put(label, variant);
+			}
+
+			variableComponent.addVariant(variant.getIdentity());
+		}
+
+		for (String role : abstractRoles) {
+			URI roleURI = getRoleURI(role);
+
+			String label = " " + roleURI;
+
+			ComponentDefinition variant = labelToDefinition.get(label);
+
+			if (variant == null) {
+				String termName = ontology.getName(roleURI);
+
+				variant = sbolDoc.createComponentDefinition(createDisplayID(termName != null ? termName : role),
+						ComponentDefinition.DNA_REGION);
+
+				variant.addRole(roleURI);
+
+				labelToDefinition.put(label, variant);
+			}
+
+			variableComponent.addVariant(variant.getIdentity());
+		}
+	}
+
+	/*
+	 * Flattens nested sequences or choices that are not referred to elsewhere, and merges a
+	 * ZEROORMORE repeat next to the same expression in a sequence into a ONEORMORE repeat.
+	 */
+	private List<Expression> getElements(Expression expression, int type) {
+		List<Expression> elements = new ArrayList<Expression>();
+
+		Deque<Expression> expressions = new ArrayDeque<Expression>();
+
+		expressions.push(expression);
+
+		while (!expressions.isEmpty()) {
+			Expression current = expressions.pop();
+
+			if (current.type == type && (current == expression || expressionToRefs.get(current) == 1)) {
+				for (int i = current.children.size() - 1; i >= 0; i--) {
+					expressions.push(current.children.get(i));
+				}
+			} else if (current != Expression.BLANK) {
+				int last = elements.size() - 1;
+
+				if (type == Expression.SEQUENCE && last >= 0
+						&& isRepeatOf(elements.get(last), current)) {
+					elements.set(last, Expression.createOperator(OperatorType.ONEORMORE, current));
+				} else if (type == Expression.SEQUENCE && last >= 0
+						&& isRepeatOf(current, elements.get(last))) {
+					elements.set(last, Expression.createOperator(OperatorType.ONEORMORE, elements.get(last)));
+				} else {
+					elements.add(current);
+				}
+			}
+		}
+
+		return elements;
+	}
+
+	private boolean isRepeatOf(Expression repeat, Expression expression) {
+		return repeat.type == Expression.OPERATOR && repeat.operator == OperatorType.ZEROORMORE
+				&& repeat.children.get(0) == expression;
+	}
+
+	private URI getRoleURI(String role) {
+		String termName = ontology.getTermName(role);
+
+		if (termName != null) {
+			return ontology.getURI(termName);
+		}
+
+		try {
+			URI roleURI = URI.create(role);
+
+			if (roleURI.isAbsolute()) {
+				return roleURI;
+			}
+		} catch (IllegalArgumentException ex) {
+			return SequenceOntology.SEQUENCE_FEATURE;
+		}
+
+		return SequenceOntology.SEQUENCE_FEATURE;
+	}
+
+	/*
+	 * Makes a display ID that is valid in SBOL and unique among the top levels of the document from
+	 * the last segment of a name, which may be a URI.
+	 */
+	private String createDisplayID(String name) {
+		int index = Math.max(name.lastIndexOf('/'), name.lastIndexOf('#'));
+
+		if (index >= 0 && index < name.length() - 1) {
+			name = name.substring(index + 1);
+		}
+
+		String baseDisplayID = name.replaceAll("[^a-zA-Z0-9_]", "_");
+
+		if (baseDisplayID.isEmpty() || Character.isDigit(baseDisplayID.charAt(0))) {
+			baseDisplayID = "_" + baseDisplayID;
+		}
+
+		String displayID = baseDisplayID;
+
+		for (int i = 1; !displayIDs.add(displayID); i++) {
+			displayID = baseDisplayID + "_" + i;
+		}
+
+		return displayID;
+	}
+
+	/*
+	 * An expression for a set of designs that is built bottom up while a design space is reduced.
+	 * Expressions are compared by identity, so that one referred to by several others is exported
+	 * once.
+	 */
+	private static class Expression {
+
+		private static final int BLANK_TYPE = 0;
+
+		private static final int EDGE = 1;
+
+		private static final int SEQUENCE = 2;
+
+		private static final int CHOICE = 3;
+
+		private static final int OPERATOR = 4;
+
+		private static final Expression BLANK = new Expression(BLANK_TYPE, null, null,
+				Collections.<Expression>emptyList());
+
+		private final int type;
+
+		private final Edge edge;
+
+		private final OperatorType operator;
+
+		private final List<Expression> children;
+
+		private Expression(int type, Edge edge, OperatorType operator, List<Expression> children) {
+			this.type = type;
+
+			this.edge = edge;
+
+			this.operator = operator;
+
+			this.children = children;
+		}
+
+		private static Expression createEdge(Edge edge) {
+			if (edge.hasComponentIDs() || edge.hasComponentRoles()) {
+				return new Expression(EDGE, edge, null, Collections.<Expression>emptyList());
+			} else {
+				return BLANK;
+			}
+		}
+
+		private static Expression createSequence(Expression first, Expression second) {
+			if (first == BLANK) {
+				return second;
+			} else if (second == BLANK) {
+				return first;
+			} else {
+				List<Expression> children = new ArrayList<Expression>(2);
+
+				children.add(first);
+
+				children.add(second);
+
+				return new Expression(SEQUENCE, null, null, children);
+			}
+		}
+
+		private static Expression createChoice(Expression first, Expression second) {
+			if (first == second) {
+				return first;
+			} else if (first == BLANK) {
+				return createOptional(second);
+			} else if (second == BLANK) {
+				return createOptional(first);
+			} else if (isOptional(first)) {
+				return createOptional(createChoice(first.children.get(0), second));
+			} else if (isOptional(second)) {
+				return createOptional(createChoice(first, second.children.get(0)));
+			} else {
+				List<Expression> children = new ArrayList<Expression>(2);
+
+				children.add(first);
+
+				children.add(second);
+
+				return new Expression(CHOICE, null, null, children);
+			}
+		}
+
+		private static Expression createOptional(Expression expression) {
+			if (expression == BLANK || isOptional(expression)
+					|| expression.type == OPERATOR && expression.operator == OperatorType.ZEROORMORE) {
+				return expression;
+			} else if (expression.type == OPERATOR && expression.operator == OperatorType.ONEORMORE) {
+				return createOperator(OperatorType.ZEROORMORE, expression.children.get(0));
+			} else {
+				return createOperator(OperatorType.ZEROORONE, expression);
+			}
+		}
+
+		private static Expression createStar(Expression expression) {
+			if (expression == BLANK) {
+				return BLANK;
+			} else if (expression.type == OPERATOR && expression.operator != OperatorType.ONE) {
+				return createStar(expression.children.get(0));
+			} else {
+				return createOperator(OperatorType.ZEROORMORE, expression);
+			}
+		}
+
+		private static Expression createOperator(OperatorType operator, Expression expression) {
+			return new Expression(OPERATOR, null, operator, Collections.singletonList(expression));
+		}
+
+		private static boolean isOptional(Expression expression) {
+			return expression.type == OPERATOR && expression.operator == OperatorType.ZEROORONE;
+		}
+	}
+}
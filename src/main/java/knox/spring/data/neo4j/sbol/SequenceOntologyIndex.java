@@ -0,0 +1,254 @@
+package knox.spring.data.neo4j.sbol;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sbolstandard.core2.SequenceOntology;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * An immutable index of the Sequence Ontology that maps the accession URIs of terms to their names
+ * and back, and holds the closure of the is_a hierarchy, so that each term knows all of its
+ * ancestors. It is built once, from the terms that SBOL conversion has always recognised and every
+ * descendant of sequence_feature, and is shared through getInstance.
+ *
+ * Roles on edges are either term names, as imported from CSV, or accession URIs, as imported from
+ * SBOL, so lookups by role accept both. Each term also has an index, by which the closures of its
+ * ancestors and descendants are kept as bitsets for matching roles without walking the hierarchy.
+ */
+public class SequenceOntologyIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SequenceOntologyIndex.class);
+
+	private static final String ACCESSION_PREFIX = "http://identifiers.org/so/";
+
+	/*
+	 * Terms whose names take precedence over those in the ontology.
+	 */
+	private static final String[][] KNOWN_TERMS = {
+		{ "SO:0000031", "aptamer" },
+		{ "SO:0001953", "restriction_enzyme_assembly_scar" },
+		{ "SO:0001691", "blunt_end_restriction_enzyme_cleavage_site" },
+		{ "SO:0000316", "CDS" },
+		{ "SO:0001955", "protein_stability_element" },
+		{ "SO:0000804", "engineered_region" },
+		{ "SO:0001932", "restriction_enzyme_five_prime_single_strand_overhang" },
+		{ "SO:0001975", "five_prime_sticky_end_restriction_enzyme_cleavage_site" },
+		{ "SO:0000627", "insulator" },
+		{ "SO:0001263", "ncRNA_gene" },
+		{ "SO:0000834", "mature_transcript_region" },
+		{ "SO:0001688", "restriction_enzyme_cleavage_junction" },
+		{ "SO:0001687", "restriction_enzyme_recognition_site" },
+		{ "SO:0000057", "operator" },
+		{ "SO:0000409", "binding_site" },
+		{ "SO:0000296", "origin_of_replication" },
+		{ "SO:0000724", "oriT" },
+		{ "SO:0000553", "polyA_site" },
+		{ "SO:0005850", "primer_binding_site" },
+		{ "SO:0000167", "promoter" },
+		{ "SO:0001956", "protease_site" },
+		{ "SO:0001546", "transcript_stability_variant" },
+		{ "SO:0001977", "ribonuclease_site" },
+		{ "SO:0000139", "ribosome_entry_site" },
+		{ "SO:0000374", "ribozyme" },
+		{ "SO:0001979", "RNA_stability_element" },
+		{ "SO:0001978", "signature" },
+		{ "SO:0000299", "specific_recombination_site" },
+		{ "SO:0000141", "terminator" },
+		{ "SO:0001933", "restriction_enzyme_three_prime_single_strand_overhang" },
+		{ "SO:0001976", "three_prime_sticky_end_restriction_enzyme_cleavage_site" },
+		{ "SO:0000616", "transcription_end_site" },
+		{ "SO:0000319", "stop_codon" },
+		{ "SO:0000327", "coding_end" }
+	};
+
+	private final Map<String, String> uriToName = new HashMap<String, String>();
+
+	private final Map<String, URI> nameToURI = new HashMap<String, URI>();
+
+	private final Map<String, Set<String>> nameToAncestors = new HashMap<String, Set<String>>();
+
+	private final Map<String, Integer> nameToIndex = new HashMap<String, Integer>();
+
+	private final BitSet[] ancestorBits;
+
+	private final BitSet[] descendantBits;
+
+	private SequenceOntologyIndex() {
+		long startTime = System.currentTimeMillis();
+
+		for (String[] term : KNOWN_TERMS) {
+			addTerm(URI.create(ACCESSION_PREFIX + term[0]), term[1]);
+		}
+
+		SequenceOntology so = new SequenceOntology();
+
+		addTerm(SequenceOntology.SEQUENCE_FEATURE, so.getName(SequenceOntology.SEQUENCE_FEATURE));
+
+		for (URI accessionURI : so.getDescendantURIsOf(SequenceOntology.SEQUENCE_FEATURE)) {
+			addTerm(accessionURI, so.getName(accessionURI));
+		}
+
+		for (URI accessionURI : new ArrayList<URI>(nameToURI.values())) {
+			String name = uriToName.get(accessionURI.toString());
+
+			nameToAncestors.get(name).add(name);
+
+			for (URI descendantURI : so.getDescendantURIsOf(accessionURI)) {
+				String descendantName = uriToName.get(descendantURI.toString());
+
+				if (descendantName != null) {
+					nameToAncestors.get(descendantName).add(name);
+				}
+			}
+		}
+
+		ancestorBits = new BitSet[nameToIndex.size()];
+
+		descendantBits = new BitSet[nameToIndex.size()];
+
+		for (int i = 0; i < nameToIndex.size(); i++) {
+			ancestorBits[i] = new BitSet(nameToIndex.size());
+
+			descendantBits[i] = new BitSet(nameToIndex.size());
+		}
+
+		for (Map.Entry<String, Set<String>> ancestors : nameToAncestors.entrySet()) {
+			int i = nameToIndex.get(ancestors.getKey());
+
+			for (String ancestorName : ancestors.getValue()) {
+				int j = nameToIndex.get(ancestorName);
+
+				ancestorBits[i].set(j);
+
+				descendantBits[j].set(i);
+			}
+
+			ancestors.setValue(Collections.unmodifiableSet(ancestors.getValue()));
+		}
+
+		LOG.info("indexed {} sequence ontology terms in {} ms", nameToURI.size(),
+				System.currentTimeMillis() - startTime);
+	}
+
+	public static SequenceOntologyIndex getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	private void addTerm(URI accessionURI, String name) {
+		if (name != null && !uriToName.containsKey(accessionURI.toString())
+				&& !nameToURI.containsKey(name)) {
+			uriToName.put(accessionURI.toString(), name);
+
+			nameToURI.put(name, accessionURI);
+
+			nameToAncestors.put(name, new HashSet<String>());
+
+			nameToIndex.put(name, nameToIndex.size());
+		}
+	}
+
+	public String getName(URI accessionURI) {
+		return uriToName.get(accessionURI.toString());
+	}
+
+	public Set<String> getNames(Set<URI> accessionURIs) {
+		Set<String> names = new HashSet<String>();
+
+		for (URI accessionURI : accessionURIs) {
+			String name = getName(accessionURI);
+
+			if (name != null) {
+				names.add(name);
+			}
+		}
+
+		return names;
+	}
+
+	public URI getURI(String name) {
+		return nameToURI.get(name);
+	}
+
+	/*
+	 * Returns the name of the term that a role refers to, whether the role is the name of the term
+	 * or its accession URI, or null if the role is not a term in the index.
+	 */
+	public String getTermName(String role) {
+		if (nameToURI.containsKey(role)) {
+			return role;
+		} else {
+			return uriToName.get(role);
+		}
+	}
+
+	/*
+	 * Returns the names of the terms that the term for a role is a descendant of, including the
+	 * term itself, or an empty set if the role is not a term in the index.
+	 */
+	public Set<String> getAncestorNames(String role) {
+		String name = getTermName(role);
+
+		if (name != null) {
+			return nameToAncestors.get(name);
+		} else {
+			return Collections.emptySet();
+		}
+	}
+
+	/*
+	 * Returns whether the term for the first role is the term for the second or one of its
+	 * descendants.
+	 */
+	public boolean isA(String role, String ancestorRole) {
+		String ancestorName = getTermName(ancestorRole);
+
+		return ancestorName != null && getAncestorNames(role).contains(ancestorName);
+	}
+
+	/*
+	 * Returns the index of the term that a role refers to, or -1 if the role is not a term in the
+	 * index. Indices run from 0 to size() - 1.
+	 */
+	public int getTermIndex(String role) {
+		String name = getTermName(role);
+
+		if (name != null) {
+			return nameToIndex.get(name);
+		} else {
+			return -1;
+		}
+	}
+
+	/*
+	 * Sets the bits for the term with the given index and all of its ancestors.
+	 */
+	public void addAncestorBits(int termIndex, BitSet bits) {
+		bits.or(ancestorBits[termIndex]);
+	}
+
+	/*
+	 * Sets the bits for the term with the given index and all of its descendants.
+	 */
+	public void addDescendantBits(int termIndex, BitSet bits) {
+		bits.or(descendantBits[termIndex]);
+	}
+
+	public int size() {
+		return nameToURI.size();
+	}
+
+	private static class Holder {
+
+		private static final SequenceOntologyIndex INSTANCE = new SequenceOntologyIndex();
+	}
+}
@@ -0,0 +1,203 @@
+package knox.spring.data.neo4j.sequence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Stores the sequences of components by ID, as imported from CSV files of components. Each
+ * distinct sequence is packed and kept once however many components have it, and a reverse
+ * complemented component shares the bases of its forward sequence. Sequences are written to a file
+ * under knox.storage.directory, whichever store design spaces are kept in, and read back at
+ * startup.
+ *
+ * Lookups do not lock, so that designs can be assembled by several threads while sequences are
+ * being imported.
+ */
+@Component
+public class ComponentSequenceStore {
+	@Value("${knox.storage.directory:knox-store}") String directory;
+
+	private static final String FILE_NAME = "component-sequences.bin";
+
+	private static final int VERSION = 1;
+
+	private static final Logger LOG = LoggerFactory.getLogger(ComponentSequenceStore.class);
+
+	private Path file;
+
+	private final Map<PackedSequence, PackedSequence> uniqueSequences = new HashMap<PackedSequence, PackedSequence>();
+
+	private final Map<String, PackedSequence> compIDToSequence = new ConcurrentHashMap<String, PackedSequence>();
+
+	@PostConstruct
+	public synchronized void open() {
+		file = Paths.get(directory, FILE_NAME);
+
+		if (Files.exists(file)) {
+			readSequences();
+		}
+
+		LOG.info("opened sequences of {} components in {}", compIDToSequence.size(), file.toAbsolutePath());
+	}
+
+	public PackedSequence getSequence(String compID) {
+		return compID != null ? compIDToSequence.get(compID) : null;
+	}
+
+	/*
+	 * Stores the sequence of a component, or its reverse complement. Throws an
+	 * IllegalArgumentException if the sequence has a character that is not an IUPAC code. Sequences
+	 * are only written to file by save.
+	 */
+	public synchronized void putSequence(String compID, String sequence, boolean isReverseComplement) {
+		PackedSequence packedSequence = internSequence(PackedSequence.pack(sequence));
+
+		compIDToSequence.put(compID, isReverseComplement ? packedSequence.reverseComplement() : packedSequence);
+	}
+
+	/*
+	 * Writes all sequences to a temporary file and moves it into place, so that the file is either
+	 * replaced whole or not at all.
+	 */
+	public synchronized void save() {
+		Map<PackedSequence, Integer> sequenceToIndex = new LinkedHashMap<PackedSequence, Integer>();
+
+		for (PackedSequence sequence : uniqueSequences.keySet()) {
+			sequenceToIndex.put(sequence, sequenceToIndex.size());
+		}
+
+		try {
+			Files.createDirectories(file.getParent());
+
+			Path tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(tempFile)))) {
+				output.writeInt(VERSION);
+
+				output.writeInt(sequenceToIndex.size());
+
+				for (PackedSequence sequence : sequenceToIndex.keySet()) {
+					output.writeByte(sequence.getBitsPerBase());
+
+					output.writeInt(sequence.length());
+
+					output.writeInt(sequence.getBases().length);
+
+					output.write(sequence.getBases());
+				}
+
+				output.writeInt(compIDToSequence.size());
+
+				for (Map.Entry<String, PackedSequence> compIDAndSequence : compIDToSequence.entrySet()) {
+					PackedSequence sequence = compIDAndSequence.getValue();
+
+					output.writeUTF(compIDAndSequence.getKey());
+
+					output.writeInt(sequenceToIndex.get(sequence.isReverseComplement()
+							? sequence.reverseComplement() : sequence));
+
+					output.writeBoolean(sequence.isReverseComplement());
+				}
+			}
+
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+		LOG.info("saved sequences: {}", getStats());
+	}
+
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+
+		long numBases = 0;
+
+		long numBytes = 0;
+
+		for (PackedSequence sequence : uniqueSequences.keySet()) {
+			numBases += sequence.length();
+
+			numBytes += sequence.getBases().length;
+		}
+
+		stats.put("components", compIDToSequence.size());
+
+		stats.put("uniqueSequences", uniqueSequences.size());
+
+		stats.put("bases", numBases);
+
+		stats.put("packedBytes", numBytes);
+
+		return stats;
+	}
+
+	private PackedSequence internSequence(PackedSequence sequence) {
+		PackedSequence uniqueSequence = uniqueSequences.get(sequence);
+
+		if (uniqueSequence == null) {
+			uniqueSequences.put(sequence, sequence);
+
+			uniqueSequence = sequence;
+		}
+
+		return uniqueSequence;
+	}
+
+	private void readSequences() {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			int version = input.readInt();
+
+			if (version != VERSION) {
+				throw new IllegalStateException("Unknown component sequence file version " + version + " in "
+						+ file + ".");
+			}
+
+			PackedSequence[] sequences = new PackedSequence[input.readInt()];
+
+			for (int i = 0; i < sequences.length; i++) {
+				int bitsPerBase = input.readByte();
+
+				int length = input.readInt();
+
+				byte[] bases = new byte[input.readInt()];
+
+				input.readFully(bases);
+
+				sequences[i] = internSequence(new PackedSequence(bitsPerBase, length, bases, false));
+			}
+
+			int numComps = input.readInt();
+
+			for (int i = 0; i < numComps; i++) {
+				String compID = input.readUTF();
+
+				PackedSequence sequence = sequences[input.readInt()];
+
+				compIDToSequence.put(compID, input.readBoolean() ? sequence.reverseComplement() : sequence);
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package knox.spring.data.neo4j.sequence;
+
+import java.util.Arrays;
+
+/*
+ * A DNA sequence packed into two bits per base if it only has A, C, G and T, or into four bits per
+ * base if it has other IUPAC codes. Sequences are immutable, so a sequence and its reverse
+ * complement share the same packed bases and differ only in the direction that they are read in.
+ */
+public final class PackedSequence {
+
+	private static final String CODES = "ACGTRYSWKMBDHVN-";
+
+	private static final String COMPLEMENTS = "TGCAYRSWMKVHDBN-";
+
+	private static final byte[] CODE_TO_COMPLEMENT = new byte[CODES.length()];
+
+	static {
+		for (int i = 0; i < CODES.length(); i++) {
+			CODE_TO_COMPLEMENT[i] = (byte) CODES.indexOf(COMPLEMENTS.charAt(i));
+		}
+	}
+
+	private final int bitsPerBase;
+
+	private final int length;
+
+	private final byte[] bases;
+
+	private final boolean isReverseComplement;
+
+	private int hash = 0;
+
+	PackedSequence(int bitsPerBase, int length, byte[] bases, boolean isReverseComplement) {
+		this.bitsPerBase = bitsPerBase;
+
+		this.length = length;
+
+		this.bases = bases;
+
+		this.isReverseComplement = isReverseComplement;
+	}
+
+	/*
+	 * Packs a sequence of IUPAC codes, in either case. Throws an IllegalArgumentException if it has
+	 * any other character.
+	 */
+	public static PackedSequence pack(CharSequence sequence) {
+		int[] codes = new int[sequence.length()];
+
+		int bitsPerBase = 2;
+
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = CODES.indexOf(Character.toUpperCase(sequence.charAt(i)));
+
+			if (codes[i] < 0) {
+				throw new IllegalArgumentException("Sequence has a character that is not an IUPAC code: '"
+						+ sequence.charAt(i) + "'.");
+			} else if (codes[i] > 3) {
+				bitsPerBase = 4;
+			}
+		}
+
+		int basesPerByte = 8/bitsPerBase;
+
+		byte[] bases = new byte[(codes.length + basesPerByte - 1)/basesPerByte];
+
+		for (int i = 0; i < codes.length; i++) {
+			bases[i/basesPerByte] |= codes[i] << (i%basesPerByte*bitsPerBase);
+		}
+
+		return new PackedSequence(bitsPerBase, codes.length, bases, false);
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int i) {
+		if (isReverseComplement) {
+			return CODES.charAt(CODE_TO_COMPLEMENT[getCode(length - 1 - i)]);
+		} else {
+			return CODES.charAt(getCode(i));
+		}
+	}
+
+	public PackedSequence reverseComplement() {
+		return new PackedSequence(bitsPerBase, length, bases, !isReverseComplement);
+	}
+
+	public boolean isReverseComplement() {
+		return isReverseComplement;
+	}
+
+	public void appendTo(StringBuilder builder) {
+		for (int i = 0; i < length; i++) {
+			builder.append(charAt(i));
+		}
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder(length);
+
+		appendTo(builder);
+
+		return builder.toString();
+	}
+
+	/*
+	 * Sequences are equal if they read as the same bases, however they are packed, so a sequence
+	 * equals the reverse complement of its reverse complement packed on its own.
+	 */
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		} else if (!(other instanceof PackedSequence)) {
+			return false;
+		}
+
+		PackedSequence sequence = (PackedSequence) other;
+
+		if (length != sequence.length) {
+			return false;
+		} else if (bitsPerBase == sequence.bitsPerBase && isReverseComplement == sequence.isReverseComplement) {
+			return Arrays.equals(bases, sequence.bases);
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (charAt(i) != sequence.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public int hashCode() {
+		int hash = this.hash;
+
+		if (hash == 0) {
+			for (int i = 0; i < length; i++) {
+				hash = 31*hash + charAt(i);
+			}
+
+			this.hash = hash;
+		}
+
+		return hash;
+	}
+
+	int getBitsPerBase() {
+		return bitsPerBase;
+	}
+
+	byte[] getBases() {
+		return bases;
+	}
+
+	private int getCode(int i) {
+		int basesPerByte = 8/bitsPerBase;
+
+		return (bases[i/basesPerByte] >> (i%basesPerByte*bitsPerBase)) & ((1 << bitsPerBase) - 1);
+	}
+}
@@ -0,0 +1,90 @@
+package knox.spring.data.neo4j.sequence;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/*
+ * The sequence of a design as a chain of the sequences of its components, each appended to the
+ * rope for the components before it. Appending makes one new link and copies no bases, and ropes
+ * are immutable, so designs that start with the same components can share the rope for them. The
+ * bases are only copied when the whole sequence is asked for.
+ *
+ * If a component has no sequence, then the design has no sequence either, which is given by the
+ * INCOMPLETE rope.
+ */
+public final class SequenceRope {
+
+	public static final SequenceRope EMPTY = new SequenceRope(null, null, 0, 0);
+
+	public static final SequenceRope INCOMPLETE = new SequenceRope(null, null, 0, 0);
+
+	private final SequenceRope prefix;
+
+	private final PackedSequence sequence;
+
+	private final long length;
+
+	private final int numLinks;
+
+	private SequenceRope(SequenceRope prefix, PackedSequence sequence, long length, int numLinks) {
+		this.prefix = prefix;
+
+		this.sequence = sequence;
+
+		this.length = length;
+
+		this.numLinks = numLinks;
+	}
+
+	/*
+	 * Appends the sequence of a component, or its reverse complement if the component is reverse
+	 * complemented in the design. A missing sequence makes the rope incomplete.
+	 */
+	public SequenceRope append(PackedSequence sequence, boolean isReverseComplement) {
+		if (this == INCOMPLETE || sequence == null) {
+			return INCOMPLETE;
+		} else {
+			return new SequenceRope(this, isReverseComplement ? sequence.reverseComplement() : sequence,
+					length + sequence.length(), numLinks + 1);
+		}
+	}
+
+	public boolean isComplete() {
+		return this != INCOMPLETE;
+	}
+
+	public long length() {
+		return length;
+	}
+
+	/*
+	 * Returns the assembled sequence, or null if the rope is incomplete.
+	 */
+	@JsonValue
+	public String getSequence() {
+		if (!isComplete()) {
+			return null;
+		}
+
+		PackedSequence[] sequences = new PackedSequence[numLinks];
+
+		SequenceRope rope = this;
+
+		for (int i = numLinks - 1; i >= 0; i--) {
+			sequences[i] = rope.sequence;
+
+			rope = rope.prefix;
+		}
+
+		StringBuilder builder = new StringBuilder((int) length);
+
+		for (PackedSequence sequence : sequences) {
+			sequence.appendTo(builder);
+		}
+
+		return builder.toString();
+	}
+
+	public String toString() {
+		return isComplete() ? getSequence() : "";
+	}
+}
@@ -1,15 +1,21 @@
 package knox.spring.data.neo4j.services;
 
+import knox.spring.data.neo4j.analysis.DesignAnalytics;
+import knox.spring.data.neo4j.analysis.DesignMatcher;
+import knox.spring.data.neo4j.analysis.LanguageComparator;
+import knox.spring.data.neo4j.cache.HeadSpaceCache;
+import knox.spring.data.neo4j.cache.OperatorCache;
+import knox.spring.data.neo4j.cache.ResponseCache;
 import knox.spring.data.neo4j.domain.Branch;
 import knox.spring.data.neo4j.domain.Commit;
 import knox.spring.data.neo4j.domain.DesignSpace;
 import knox.spring.data.neo4j.domain.Edge;
 import knox.spring.data.neo4j.domain.Node;
 import knox.spring.data.neo4j.domain.NodeSpace;
-import knox.spring.data.neo4j.domain.Snapshot;
 import knox.spring.data.neo4j.exception.*;
 import knox.spring.data.neo4j.operations.ANDOperator;
 import knox.spring.data.neo4j.operations.Concatenation;
+import knox.spring.data.neo4j.operations.DesignTrie;
 import knox.spring.data.neo4j.operations.JoinOperator;
 import knox.spring.data.neo4j.operations.MergeOperator;
 import knox.spring.data.neo4j.operations.OROperator;
@@ -17,15 +23,15 @@ import knox.spring.data.neo4j.operations.Product;
 import knox.spring.data.neo4j.operations.RepeatOperator;
 import knox.spring.data.neo4j.operations.Star;
 import knox.spring.data.neo4j.operations.Union;
-import knox.spring.data.neo4j.repositories.BranchRepository;
-import knox.spring.data.neo4j.repositories.CommitRepository;
-import knox.spring.data.neo4j.repositories.DesignSpaceRepository;
-import knox.spring.data.neo4j.repositories.EdgeRepository;
-import knox.spring.data.neo4j.repositories.NodeRepository;
-import knox.spring.data.neo4j.repositories.SnapshotRepository;
+import knox.spring.data.neo4j.sample.DesignEnumerator;
 import knox.spring.data.neo4j.sample.DesignSampler;
 import knox.spring.data.neo4j.sample.DesignSampler.EnumerateType;
 import knox.spring.data.neo4j.sbol.SBOLConversion;
+import knox.spring.data.neo4j.sbol.SBOLExport;
+import knox.spring.data.neo4j.sbol.SequenceOntologyIndex;
+import knox.spring.data.neo4j.sequence.ComponentSequenceStore;
+import knox.spring.data.neo4j.sequence.SequenceRope;
+import knox.spring.data.neo4j.storage.DesignSpaceStore;
 
 import org.sbolstandard.core2.SBOLConversionException;
 import org.sbolstandard.core2.SBOLValidationException;
@@ -37,36 +43,59 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 //@Transactional
 public class DesignSpaceService {
-	@Autowired BranchRepository branchRepository;
-	
-    @Autowired CommitRepository commitRepository;
+    @Autowired DesignSpaceStore designSpaceStore;
     
-    @Autowired DesignSpaceRepository designSpaceRepository;
+    @Autowired HeadSpaceCache headSpaceCache;
     
-    @Autowired EdgeRepository edgeRepository;
+    @Autowired ResponseCache responseCache;
     
-    @Autowired NodeRepository nodeRepository;
+    @Autowired OperatorCache operatorCache;
     
-    @Autowired SnapshotRepository snapshotRepository;
+    @Autowired ComponentSequenceStore componentSequences;
     
     private static final Logger LOG = LoggerFactory.getLogger(DesignSpaceService.class);
 
     public static final String RESERVED_ID = "knox";
     
+    public static final int IMPORT_BATCH_SIZE = 1000;
+    
+    /*
+     * Prefixes the IDs of components on reverse complement edges in CSV design rows. Component IDs
+     * prefixed with "r" instead name separate components with reverse complemented sequences, as 
+     * in processCSVComponents, so they are read as they are.
+     */
+    public static final String CSV_REVERSE_COMPLEMENT = "-";
+    
+    private final Map<String, ImportProgress> imports = new ConcurrentHashMap<String, ImportProgress>();
+    
+    /*
+     * Loaded when the service is created, so that the ontology is indexed at startup rather than 
+     * on the first import.
+     */
+    private final SequenceOntologyIndex ontology = SequenceOntologyIndex.getInstance();
+    
     public void joinDesignSpaces(List<String> inputSpaceIDs) 
     		throws ParameterEmptyException, DesignSpaceNotFoundException, 
     		DesignSpaceConflictException, DesignSpaceBranchesConflictException {
@@ -80,20 +109,21 @@ public class DesignSpaceService {
     		DesignSpaceConflictException, DesignSpaceBranchesConflictException {
     	validateCombinationalDesignSpaceOperator(inputSpaceIDs, outputSpaceID);
     	
-    	List<NodeSpace> inputSpaces = new ArrayList<NodeSpace>(inputSpaceIDs.size());
+    	String operatorKey = getSpaceOperatorKey(inputSpaceIDs, outputSpaceID, "join");
     	
-    	DesignSpace outputSpace = loadIOSpaces(inputSpaceIDs, outputSpaceID, inputSpaces);
-
-    	JoinOperator.apply(inputSpaces, outputSpace);
+    	NodeSpace outputSpace = loadOperatorResult(operatorKey);
     	
-    	List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputSpaces.size());
+    	if (outputSpace == null) {
+    		List<NodeSpace> inputSpaces = loadInputSpaces(inputSpaceIDs);
+    		
+    		outputSpace = selectOutputSpace(inputSpaceIDs, outputSpaceID, inputSpaces);
+    		
+    		JoinOperator.apply(inputSpaces, outputSpace);
+    		
+    		cacheOperatorResult(operatorKey, outputSpace);
+    	}
     	
-    	NodeSpace outputSnap = mergeVersionHistories(castNodeSpacesToDesignSpaces(inputSpaces), 
-    			outputSpace, inputSnaps);
-
-    	JoinOperator.apply(inputSnaps, outputSnap);
-
-    	saveDesignSpace(outputSpace);
+    	commitOutputSpace(inputSpaceIDs, outputSpaceID, outputSpace);
     }
     
     public void joinBranches(String targetSpaceID, List<String> inputBranchIDs) {
@@ -102,20 +132,24 @@ public class DesignSpaceService {
 
     public void joinBranches(String targetSpaceID, List<String> inputBranchIDs, 
     		String outputBranchID) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
-    	
-        List<Branch> inputBranches = new ArrayList<Branch>(inputBranchIDs.size());
+        List<Long> predecessorGraphIDs = new ArrayList<Long>(inputBranchIDs.size());
         
-        Branch outputBranch = loadIOBranches(targetSpace, inputBranchIDs, outputBranchID,
-        		inputBranches);
+        String operatorKey = getBranchOperatorKey(targetSpaceID, inputBranchIDs, predecessorGraphIDs, 
+        		"join");
         
-        List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputBranches.size());
+        NodeSpace outputSnap = loadOperatorResult(operatorKey);
         
-        NodeSpace outputSnap = mergeVersions(targetSpace, inputBranches, outputBranch, inputSnaps);
-
-        JoinOperator.apply(inputSnaps, outputSnap);
+        if (outputSnap == null) {
+        	List<NodeSpace> inputSnaps = loadInputBranches(targetSpaceID, inputBranchIDs);
+        	
+        	outputSnap = new NodeSpace(0);
+        	
+        	JoinOperator.apply(inputSnaps, outputSnap);
+        	
+        	cacheOperatorResult(operatorKey, outputSnap);
+        }
         
-        saveDesignSpace(targetSpace);
+        commitOutputBranch(targetSpaceID, outputBranchID, outputSnap, predecessorGraphIDs);
     }
     
     public void orDesignSpaces(List<String> inputSpaceIDs) 
@@ -131,20 +165,21 @@ public class DesignSpaceService {
     		DesignSpaceConflictException, DesignSpaceBranchesConflictException {
     	validateCombinationalDesignSpaceOperator(inputSpaceIDs, outputSpaceID);
     	
-    	List<NodeSpace> inputSpaces = new LinkedList<NodeSpace>();
+    	String operatorKey = getSpaceOperatorKey(inputSpaceIDs, outputSpaceID, "or");
     	
-    	DesignSpace outputSpace = loadIOSpaces(inputSpaceIDs, outputSpaceID, inputSpaces);
+    	NodeSpace outputSpace = loadOperatorResult(operatorKey);
     	
-    	OROperator.apply(inputSpaces, outputSpace);
-    	
-    	List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputSpaces.size());
-    	
-    	NodeSpace outputSnap = mergeVersionHistories(castNodeSpacesToDesignSpaces(inputSpaces), 
-    			outputSpace, inputSnaps);
+    	if (outputSpace == null) {
+    		List<NodeSpace> inputSpaces = loadInputSpaces(inputSpaceIDs);
+    		
+    		outputSpace = selectOutputSpace(inputSpaceIDs, outputSpaceID, inputSpaces);
+    		
+    		OROperator.apply(inputSpaces, outputSpace);
+    		
+    		cacheOperatorResult(operatorKey, outputSpace);
+    	}
     	
-    	OROperator.apply(inputSnaps, outputSnap);
-
-    	saveDesignSpace(outputSpace);
+    	commitOutputSpace(inputSpaceIDs, outputSpaceID, outputSpace);
     }
     
     public void orBranches(String targetSpaceID, List<String> inputBranchIDs) {
@@ -153,20 +188,24 @@ public class DesignSpaceService {
 
     public void orBranches(String targetSpaceID, List<String> inputBranchIDs, 
     		String outputBranchID) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
-    	
-        List<Branch> inputBranches = new ArrayList<Branch>(inputBranchIDs.size());
+        List<Long> predecessorGraphIDs = new ArrayList<Long>(inputBranchIDs.size());
         
-        Branch outputBranch = loadIOBranches(targetSpace, inputBranchIDs, outputBranchID,
-        		inputBranches);
+        String operatorKey = getBranchOperatorKey(targetSpaceID, inputBranchIDs, predecessorGraphIDs, 
+        		"or");
         
-        List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputBranches.size());
+        NodeSpace outputSnap = loadOperatorResult(operatorKey);
         
-        NodeSpace outputSnap = mergeVersions(targetSpace, inputBranches, outputBranch, inputSnaps);
-
-        OROperator.apply(inputSnaps, outputSnap);
+        if (outputSnap == null) {
+        	List<NodeSpace> inputSnaps = loadInputBranches(targetSpaceID, inputBranchIDs);
+        	
+        	outputSnap = new NodeSpace(0);
+        	
+        	OROperator.apply(inputSnaps, outputSnap);
+        	
+        	cacheOperatorResult(operatorKey, outputSnap);
+        }
         
-        saveDesignSpace(targetSpace);
+        commitOutputBranch(targetSpaceID, outputBranchID, outputSnap, predecessorGraphIDs);
     }
 	
 	public void repeatDesignSpaces(List<String> inputSpaceIDs, boolean isOptional) 
@@ -182,20 +221,21 @@ public class DesignSpaceService {
     		DesignSpaceConflictException, DesignSpaceBranchesConflictException {
     	validateCombinationalDesignSpaceOperator(inputSpaceIDs, outputSpaceID);
     	
-    	List<NodeSpace> inputSpaces = new LinkedList<NodeSpace>();
-    	
-    	DesignSpace outputSpace = loadIOSpaces(inputSpaceIDs, outputSpaceID, inputSpaces);
+    	String operatorKey = getSpaceOperatorKey(inputSpaceIDs, outputSpaceID, "repeat", isOptional);
     	
-    	RepeatOperator.apply(inputSpaces, outputSpace, isOptional);
+    	NodeSpace outputSpace = loadOperatorResult(operatorKey);
     	
-    	List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputSpaces.size());
-    	
-    	NodeSpace outputSnap = mergeVersionHistories(castNodeSpacesToDesignSpaces(inputSpaces), 
-    			outputSpace, inputSnaps);
+    	if (outputSpace == null) {
+    		List<NodeSpace> inputSpaces = loadInputSpaces(inputSpaceIDs);
+    		
+    		outputSpace = selectOutputSpace(inputSpaceIDs, outputSpaceID, inputSpaces);
+    		
+    		RepeatOperator.apply(inputSpaces, outputSpace, isOptional);
+    		
+    		cacheOperatorResult(operatorKey, outputSpace);
+    	}
     	
-    	RepeatOperator.apply(inputSnaps, outputSnap, isOptional);
-
-    	saveDesignSpace(outputSpace);
+    	commitOutputSpace(inputSpaceIDs, outputSpaceID, outputSpace);
     }
     
     public void repeatBranches(String targetSpaceID, List<String> inputBranchIDs, boolean isOptional) {
@@ -204,232 +244,333 @@ public class DesignSpaceService {
 
     public void repeatBranches(String targetSpaceID, List<String> inputBranchIDs, 
     		String outputBranchID, boolean isOptional) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
-    	
-        List<Branch> inputBranches = new ArrayList<Branch>(inputBranchIDs.size());
+        List<Long> predecessorGraphIDs = new ArrayList<Long>(inputBranchIDs.size());
         
-        Branch outputBranch = loadIOBranches(targetSpace, inputBranchIDs, outputBranchID,
-        		inputBranches);
+        String operatorKey = getBranchOperatorKey(targetSpaceID, inputBranchIDs, predecessorGraphIDs, 
+        		"repeat", isOptional);
         
-        List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputBranches.size());
+        NodeSpace outputSnap = loadOperatorResult(operatorKey);
         
-        NodeSpace outputSnap = mergeVersions(targetSpace, inputBranches, outputBranch, inputSnaps);
-
-        RepeatOperator.apply(inputSnaps, outputSnap, isOptional);
+        if (outputSnap == null) {
+        	List<NodeSpace> inputSnaps = loadInputBranches(targetSpaceID, inputBranchIDs);
+        	
+        	outputSnap = new NodeSpace(0);
+        	
+        	RepeatOperator.apply(inputSnaps, outputSnap, isOptional);
+        	
+        	cacheOperatorResult(operatorKey, outputSnap);
+        }
         
-        saveDesignSpace(targetSpace);
+        commitOutputBranch(targetSpaceID, outputBranchID, outputSnap, predecessorGraphIDs);
     }
     
     public void andDesignSpaces(List<String> inputSpaceIDs, int tolerance, boolean isComplete,
-    		Set<String> roles) 
+    		Set<String> roles, boolean subsumeRoles) 
     		throws ParameterEmptyException, DesignSpaceNotFoundException, 
     	    DesignSpaceConflictException, DesignSpaceBranchesConflictException{
-    	andDesignSpaces(inputSpaceIDs, inputSpaceIDs.get(0), tolerance, isComplete, roles);
+    	andDesignSpaces(inputSpaceIDs, inputSpaceIDs.get(0), tolerance, isComplete, roles, 
+    			subsumeRoles);
     }
     
     public void andDesignSpaces(List<String> inputSpaceIDs, String outputSpaceID, int tolerance,
-    		boolean isComplete, Set<String> roles)
+    		boolean isComplete, Set<String> roles, boolean subsumeRoles)
     		throws ParameterEmptyException, DesignSpaceNotFoundException, 
     		DesignSpaceConflictException, DesignSpaceBranchesConflictException {
     	validateCombinationalDesignSpaceOperator(inputSpaceIDs, outputSpaceID);
 
-    	List<NodeSpace> inputSpaces = new ArrayList<NodeSpace>(inputSpaceIDs.size());
-    	
-    	DesignSpace outputSpace = loadIOSpaces(inputSpaceIDs, outputSpaceID, inputSpaces);
-    	
-    	ANDOperator.apply(inputSpaces, outputSpace, tolerance, isComplete, roles);
+    	String operatorKey = getSpaceOperatorKey(inputSpaceIDs, outputSpaceID, 
+    			"and", tolerance, isComplete, roles, subsumeRoles);
     	
-    	List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputSpaces.size());
+    	NodeSpace outputSpace = loadOperatorResult(operatorKey);
     	
-    	NodeSpace outputSnap = mergeVersionHistories(castNodeSpacesToDesignSpaces(inputSpaces), 
-    			outputSpace, inputSnaps);
+    	if (outputSpace == null) {
+    		List<NodeSpace> inputSpaces = loadInputSpaces(inputSpaceIDs);
+    		
+    		outputSpace = selectOutputSpace(inputSpaceIDs, outputSpaceID, inputSpaces);
+    		
+    		ANDOperator.apply(inputSpaces, outputSpace, tolerance, isComplete, roles, subsumeRoles);
+    		
+    		cacheOperatorResult(operatorKey, outputSpace);
+    	}
     	
-    	ANDOperator.apply(inputSnaps, outputSnap, tolerance, isComplete, roles);
-
-    	saveDesignSpace(outputSpace);
+    	commitOutputSpace(inputSpaceIDs, outputSpaceID, outputSpace);
     }
     
     public void andBranches(String targetSpaceID, List<String> inputBranchIDs, 
-    		int tolerance, boolean isComplete, Set<String> roles) {
+    		int tolerance, boolean isComplete, Set<String> roles, boolean subsumeRoles) {
         andBranches(targetSpaceID, inputBranchIDs, inputBranchIDs.get(0), tolerance, 
-        		isComplete, roles);
+        		isComplete, roles, subsumeRoles);
     }
 
     public void andBranches(String targetSpaceID, List<String> inputBranchIDs, 
-    		String outputBranchID, int tolerance, boolean isComplete, Set<String> roles) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
-    	
-        List<Branch> inputBranches = new ArrayList<Branch>(inputBranchIDs.size());
+    		String outputBranchID, int tolerance, boolean isComplete, Set<String> roles, 
+    		boolean subsumeRoles) {
+        List<Long> predecessorGraphIDs = new ArrayList<Long>(inputBranchIDs.size());
         
-        Branch outputBranch = loadIOBranches(targetSpace, inputBranchIDs, outputBranchID,
-        		inputBranches);
+        String operatorKey = getBranchOperatorKey(targetSpaceID, inputBranchIDs, predecessorGraphIDs, 
+        		"and", tolerance, isComplete, roles, subsumeRoles);
         
-        List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputBranches.size());
+        NodeSpace outputSnap = loadOperatorResult(operatorKey);
         
-        NodeSpace outputSnap = mergeVersions(targetSpace, inputBranches, outputBranch, 
-        		inputSnaps);
-
-        ANDOperator.apply(inputSnaps, outputSnap, tolerance, isComplete, roles);
+        if (outputSnap == null) {
+        	List<NodeSpace> inputSnaps = loadInputBranches(targetSpaceID, inputBranchIDs);
+        	
+        	outputSnap = new NodeSpace(0);
+        	
+        	ANDOperator.apply(inputSnaps, outputSnap, tolerance, isComplete, roles, subsumeRoles);
+        	
+        	cacheOperatorResult(operatorKey, outputSnap);
+        }
         
-        saveDesignSpace(targetSpace);
+        commitOutputBranch(targetSpaceID, outputBranchID, outputSnap, predecessorGraphIDs);
     }
 	
-	public void mergeDesignSpaces(List<String> inputSpaceIDs, int tolerance, Set<String> roles) 
+	public void mergeDesignSpaces(List<String> inputSpaceIDs, int tolerance, Set<String> roles,
+			boolean subsumeRoles) 
     		throws ParameterEmptyException, DesignSpaceNotFoundException, 
     	    DesignSpaceConflictException, DesignSpaceBranchesConflictException{
-		mergeDesignSpaces(inputSpaceIDs, inputSpaceIDs.get(0), tolerance, roles);
+		mergeDesignSpaces(inputSpaceIDs, inputSpaceIDs.get(0), tolerance, roles, subsumeRoles);
     }
     
     public void mergeDesignSpaces(List<String> inputSpaceIDs, String outputSpaceID, int tolerance, 
-    		Set<String> roles)
+    		Set<String> roles, boolean subsumeRoles)
     		throws ParameterEmptyException, DesignSpaceNotFoundException, 
     		DesignSpaceConflictException, DesignSpaceBranchesConflictException {
     	validateCombinationalDesignSpaceOperator(inputSpaceIDs, outputSpaceID);
 
-    	List<NodeSpace> inputSpaces = new ArrayList<NodeSpace>(inputSpaceIDs.size());
-    	
-    	DesignSpace outputSpace = loadIOSpaces(inputSpaceIDs, outputSpaceID, inputSpaces);
+    	String operatorKey = getSpaceOperatorKey(inputSpaceIDs, outputSpaceID, 
+    			"merge", tolerance, roles, subsumeRoles);
     	
-    	MergeOperator.apply(inputSpaces, outputSpace, tolerance, roles);
+    	NodeSpace outputSpace = loadOperatorResult(operatorKey);
     	
-    	List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputSpaces.size());
-    	
-    	NodeSpace outputSnap = mergeVersionHistories(castNodeSpacesToDesignSpaces(inputSpaces), 
-    			outputSpace, inputSnaps);
+    	if (outputSpace == null) {
+    		List<NodeSpace> inputSpaces = loadInputSpaces(inputSpaceIDs);
+    		
+    		outputSpace = selectOutputSpace(inputSpaceIDs, outputSpaceID, inputSpaces);
+    		
+    		MergeOperator.apply(inputSpaces, outputSpace, tolerance, roles, subsumeRoles);
+    		
+    		cacheOperatorResult(operatorKey, outputSpace);
+    	}
     	
-    	MergeOperator.apply(inputSnaps, outputSnap, tolerance, roles);
-
-    	saveDesignSpace(outputSpace);
+    	commitOutputSpace(inputSpaceIDs, outputSpaceID, outputSpace);
     }
     
     public void mergeBranches(String targetSpaceID, List<String> inputBranchIDs, 
-    		int tolerance, Set<String> roles) {
-    	mergeBranches(targetSpaceID, inputBranchIDs, inputBranchIDs.get(0), tolerance, roles);
+    		int tolerance, Set<String> roles, boolean subsumeRoles) {
+    	mergeBranches(targetSpaceID, inputBranchIDs, inputBranchIDs.get(0), tolerance, roles, 
+    			subsumeRoles);
     }
 
     public void mergeBranches(String targetSpaceID, List<String> inputBranchIDs, 
-    		String outputBranchID, int tolerance, Set<String> roles) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
-    	
-        List<Branch> inputBranches = new ArrayList<Branch>(inputBranchIDs.size());
+    		String outputBranchID, int tolerance, Set<String> roles, boolean subsumeRoles) {
+        List<Long> predecessorGraphIDs = new ArrayList<Long>(inputBranchIDs.size());
         
-        Branch outputBranch = loadIOBranches(targetSpace, inputBranchIDs, outputBranchID,
-        		inputBranches);
+        String operatorKey = getBranchOperatorKey(targetSpaceID, inputBranchIDs, predecessorGraphIDs, 
+        		"merge", tolerance, roles, subsumeRoles);
         
-        List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputBranches.size());
+        NodeSpace outputSnap = loadOperatorResult(operatorKey);
         
-        NodeSpace outputSnap = mergeVersions(targetSpace, inputBranches, outputBranch, 
-        		inputSnaps);
-
-        MergeOperator.apply(inputSnaps, outputSnap, tolerance, roles);
+        if (outputSnap == null) {
+        	List<NodeSpace> inputSnaps = loadInputBranches(targetSpaceID, inputBranchIDs);
+        	
+        	outputSnap = new NodeSpace(0);
+        	
+        	MergeOperator.apply(inputSnaps, outputSnap, tolerance, roles, subsumeRoles);
+        	
+        	cacheOperatorResult(operatorKey, outputSnap);
+        }
         
-        saveDesignSpace(targetSpace);
+        commitOutputBranch(targetSpaceID, outputBranchID, outputSnap, predecessorGraphIDs);
     }
 	
-	private DesignSpace loadIOSpaces(List<String> inputSpaceIDs, String outputSpaceID,
-    		List<NodeSpace> inputSpaces) {
-    	for (String inputSpaceID : inputSpaceIDs) {
-    		inputSpaces.add(loadDesignSpace(inputSpaceID));
-    	}
-    	
-    	int outputIndex = inputSpaceIDs.indexOf(outputSpaceID);
-    	
-    	if (outputIndex < 0) {
-    		return new DesignSpace(outputSpaceID);
-    	} else {
-    		return (DesignSpace) inputSpaces.get(outputIndex);
-    	}
+	private List<NodeSpace> loadInputSpaces(List<String> inputSpaceIDs) {
+		List<NodeSpace> inputSpaces = new ArrayList<NodeSpace>(inputSpaceIDs.size());
+		
+		for (String inputSpaceID : inputSpaceIDs) {
+			inputSpaces.add(loadHeadSpace(inputSpaceID).copy());
+		}
+		
+		return inputSpaces;
 	}
 	
-	private Branch loadIOBranches(DesignSpace targetSpace, List<String> inputBranchIDs, 
-			String outputBranchID, List<Branch> inputBranches) {
-    	for (Branch branch : targetSpace.getBranches()) {
-    		if (inputBranchIDs.contains(branch.getBranchID())) {
-    			inputBranches.add(branch);
-    		}
-    	}
-    	
-    	int outputIndex = inputBranchIDs.indexOf(outputBranchID);
-    	
-    	if (outputIndex < 0) {
-    		return targetSpace.createBranch(outputBranchID);
-    	} else {
-    		return inputBranches.get(outputIndex);
-    	}
+	private NodeSpace selectOutputSpace(List<String> inputSpaceIDs, String outputSpaceID, 
+			List<NodeSpace> inputSpaces) {
+		int outputIndex = inputSpaceIDs.indexOf(outputSpaceID);
+		
+		if (outputIndex < 0) {
+			return new NodeSpace(0);
+		} else {
+			return inputSpaces.get(outputIndex);
+		}
 	}
 	
-	private List<DesignSpace> castNodeSpacesToDesignSpaces(List<NodeSpace> nodeSpaces) {
-		List<DesignSpace> designSpaces = new ArrayList<DesignSpace>(nodeSpaces.size());
-    	
-    	for (NodeSpace nodeSpace : nodeSpaces) {
-    		designSpaces.add((DesignSpace) nodeSpace);
-    	}
-    	
-    	return designSpaces;
+	/*
+	 * Writes the output of an operator on design spaces as the head of the output space and 
+	 * commits it. The new commit succeeds the latest commits on the head branches of the input 
+	 * spaces, which leaves their version histories where they are. A new output space gets a head 
+	 * branch named after that of the first input space.
+	 */
+	private void commitOutputSpace(List<String> inputSpaceIDs, String outputSpaceID, 
+			NodeSpace outputSpace) {
+		Set<Long> predecessorGraphIDs = new HashSet<Long>();
+		
+		for (String inputSpaceID : inputSpaceIDs) {
+			Long commitGraphID = getLatestCommitGraphID(inputSpaceID);
+			
+			if (commitGraphID != null) {
+				predecessorGraphIDs.add(commitGraphID);
+			}
+		}
+		
+		String headBranchID = designSpaceStore.getHeadBranchID(inputSpaceIDs.get(0));
+		
+		if (headBranchID == null) {
+			headBranchID = outputSpaceID;
+		}
+		
+		designSpaceStore.commitHead(outputSpaceID, headBranchID, outputSpace, predecessorGraphIDs);
+		
+		evictCaches(outputSpaceID);
+		
+		Long commitGraphID = getLatestCommitGraphID(outputSpaceID);
+		
+		if (commitGraphID != null) {
+			headSpaceCache.putHead(headSpaceCache.getKey(outputSpaceID, commitGraphID), 
+					outputSpace.copy());
+		}
+	}
+	
+	/*
+	 * Commits the output of an operator on branches. The head graph stays as it is, but the head
+	 * branch changes, so cached versions and responses of the design space are dropped.
+	 */
+	private void commitOutputBranch(String targetSpaceID, String outputBranchID, NodeSpace outputSnap,
+			List<Long> predecessorGraphIDs) {
+		designSpaceStore.commitBranch(targetSpaceID, outputBranchID, outputSnap, predecessorGraphIDs);
+		
+		evictCaches(targetSpaceID);
+	}
+	
+	/*
+	 * Loads the graphs of the latest commits on the given branches, skipping branches that do not 
+	 * exist.
+	 */
+	private List<NodeSpace> loadInputBranches(String targetSpaceID, List<String> inputBranchIDs) {
+		List<NodeSpace> inputSnaps = new ArrayList<NodeSpace>(inputBranchIDs.size());
+		
+		for (String inputBranchID : inputBranchIDs) {
+			NodeSpace inputSnap = designSpaceStore.loadBranchHead(targetSpaceID, inputBranchID);
+			
+			if (inputSnap != null) {
+				inputSnaps.add(inputSnap);
+			}
+		}
+		
+		return inputSnaps;
+	}
+	
+	/*
+	 * Fingerprints an operator on design spaces by the latest commits of its input spaces, the 
+	 * position of the output space among them and the parameters of the operator. Returns null if 
+	 * an input space has no commits, in which case its output is not cached.
+	 */
+	private String getSpaceOperatorKey(List<String> inputSpaceIDs, String outputSpaceID, 
+			String operator, Object... params) {
+		List<String> inputKeys = new ArrayList<String>(inputSpaceIDs.size());
+		
+		for (String inputSpaceID : inputSpaceIDs) {
+			Long commitGraphID = getLatestCommitGraphID(inputSpaceID);
+			
+			if (commitGraphID == null) {
+				return null;
+			}
+			
+			inputKeys.add(operatorCache.getInputKey(inputSpaceID, commitGraphID));
+		}
+		
+		return operatorCache.getKey(operator + inputSpaceIDs.indexOf(outputSpaceID), inputKeys, 
+				normalizeParameters(params));
+	}
+	
+	/*
+	 * Fingerprints an operator on branches by the latest commits of its input branches and the 
+	 * parameters of the operator, and collects the graph IDs of those commits, skipping branches 
+	 * that do not exist. Returns null if an input branch does not exist or has no commits, in 
+	 * which case its output is not cached.
+	 */
+	private String getBranchOperatorKey(String targetSpaceID, List<String> inputBranchIDs, 
+			List<Long> predecessorGraphIDs, String operator, Object... params) {
+		List<String> inputKeys = new ArrayList<String>(inputBranchIDs.size());
+		
+		for (String inputBranchID : inputBranchIDs) {
+			Long commitGraphID = designSpaceStore.getLatestCommitID(targetSpaceID, inputBranchID);
+			
+			if (commitGraphID != null) {
+				predecessorGraphIDs.add(commitGraphID);
+				
+				inputKeys.add(operatorCache.getInputKey(targetSpaceID, commitGraphID));
+			} else {
+				inputKeys = null;
+			}
+		}
+		
+		if (inputKeys == null) {
+			return null;
+		}
+		
+		return operatorCache.getKey(operator, inputKeys, normalizeParameters(params));
+	}
+	
+	/*
+	 * Sorts sets of roles, so that parameters that are equal give equal fingerprints.
+	 */
+	private static List<Object> normalizeParameters(Object... params) {
+		List<Object> normalParams = new ArrayList<Object>(params.length);
+		
+		for (Object param : params) {
+			if (param instanceof Set) {
+				normalParams.add(new TreeSet<Object>((Set<?>) param));
+			} else {
+				normalParams.add(param);
+			}
+		}
+		
+		return normalParams;
+	}
+	
+	private NodeSpace loadOperatorResult(String operatorKey) {
+		if (operatorKey == null) {
+			return null;
+		}
+		
+		NodeSpace outputSpace = operatorCache.get(operatorKey);
+		
+		return outputSpace != null ? outputSpace.copy() : null;
+	}
+	
+	/*
+	 * Outputs are committed after they are cached, and stores may keep the graphs that they are 
+	 * given, so the cache only ever hands out and keeps copies of them.
+	 */
+	private void cacheOperatorResult(String operatorKey, NodeSpace outputSpace) {
+		if (operatorKey != null) {
+			operatorCache.put(operatorKey, outputSpace.copy());
+		}
 	}
-    
-    private NodeSpace mergeVersionHistories(List<DesignSpace> inputSpaces, DesignSpace outputSpace,
-    		List<NodeSpace> outputSnaps) {
-    	List<Branch> outputBranches = new ArrayList<Branch>(inputSpaces.size());
-    	
-    	for (DesignSpace inputSpace : inputSpaces) {
-    		if (inputSpace.equals(outputSpace)) {
-    			outputBranches.add(outputSpace.getHeadBranch());
-    		} else {
-    			outputBranches.add(outputSpace.copyVersionHistory(inputSpace));
-    		}
-    	}
-    	
-    	int outputIndex = inputSpaces.indexOf(outputSpace);
-    	
-    	Branch headOutputBranch;
-    	
-    	if (outputIndex < 0) {
-    		headOutputBranch = outputBranches.get(0);
-    	} else {
-    		headOutputBranch = outputBranches.get(outputIndex);
-    	}
-    	
-    	outputSpace.updateCommitIDs();
-    	
-    	return mergeVersions(outputSpace, outputBranches, headOutputBranch, outputSnaps);
-    }
-    
-    private NodeSpace mergeVersions(DesignSpace targetSpace, List<Branch> inputBranches, 
-    		Branch outputBranch, List<NodeSpace> inputSnaps) {
-    	Set<Commit> inputCommits = new HashSet<Commit>();
-    	
-    	for (Branch inputBranch : inputBranches) {
-    		inputCommits.add(inputBranch.getLatestCommit());
-    		
-    		inputSnaps.add(inputBranch.getLatestCommit().getSnapshot());
-    	}
-    	
-    	Commit outputCommit = targetSpace.createCommit(outputBranch);
-    	
-    	outputBranch.setLatestCommit(outputCommit);
-    	
-    	outputCommit.createSnapshot();
-    	
-    	for (Branch inputBranch : inputBranches) {
-    		if (!inputBranch.equals(outputBranch)) {
-    			for (Commit inputCommit : inputBranch.getCommits()) {
-    				outputBranch.addCommit(inputCommit);
-    			}
-    		}
-    	}
-    	
-    	for (Commit inputCommit : inputCommits) {
-    		outputCommit.addPredecessor(inputCommit);
-    	}
-    	
-    	targetSpace.setHeadBranch(outputBranch);
-    	
-    	return outputBranch.getLatestCommit().getSnapshot();
-    }
 
     public void importCSV(List<InputStream> inputCSVStreams, String outputSpacePrefix, 
     		boolean isMerge) {
+    	importCSV(inputCSVStreams, outputSpacePrefix, isMerge, false);
+    }
+    
+    /*
+     * Same as importCSV(List, String, boolean), but if isExact is true then merged designs are 
+     * built into a design space that accepts exactly the imported rows, rather than merged at 
+     * tolerance 1.
+     */
+    public void importCSV(List<InputStream> inputCSVStreams, String outputSpacePrefix, 
+    		boolean isMerge, boolean isExact) {
     	List<BufferedReader> designReaders = new LinkedList<BufferedReader>();
     	
     	List<BufferedReader> compReaders = new LinkedList<BufferedReader>();
@@ -475,6 +616,25 @@ public class DesignSpaceService {
     		}
     	}
     	
+    	if (!compReaders.isEmpty()) {
+    		componentSequences.save();
+    	}
+    	
+    	if (isMerge && isExact) {
+    		buildCSVDesigns(designReaders, outputSpacePrefix, compIDToRole);
+    	} else if (isMerge) {
+    		mergeCSVDesigns(designReaders, outputSpacePrefix, compIDToRole);
+    	} else {
+    		importCSVDesigns(designReaders, outputSpacePrefix, compIDToRole);
+    	}
+    }
+    
+    /*
+     * Merges one linear design space per CSV row at tolerance 1 into a design space named after 
+     * the output prefix.
+     */
+    private void mergeCSVDesigns(List<BufferedReader> designReaders, String outputSpacePrefix, 
+    		HashMap<String, String> compIDToRole) {
     	List<NodeSpace> csvSpaces = new LinkedList<NodeSpace>();
     	
     	for (BufferedReader designReader : designReaders) {
@@ -484,9 +644,7 @@ public class DesignSpaceService {
     			e.printStackTrace();
     		} finally {
     			try {
-    				if (designReader != null) {
-    					designReader.close();
-    				}
+    				designReader.close();
     			} catch (IOException ex) {
     				ex.printStackTrace();
     			}
@@ -494,38 +652,166 @@ public class DesignSpaceService {
     	}
     	
     	if (!csvSpaces.isEmpty()) {
-    		if (isMerge) {
-    			DesignSpace csvSpace = (DesignSpace) csvSpaces.get(0);
-
-    			csvSpace.setSpaceID(outputSpacePrefix);
-
-    			MergeOperator.apply(csvSpaces, csvSpace, 1, new HashSet<String>());
-
-    			csvSpace.createHeadBranch(csvSpace.getSpaceID());
-
-    			saveDesignSpace(csvSpace);
+    		DesignSpace csvSpace = (DesignSpace) csvSpaces.get(0);
+    		
+    		csvSpace.setSpaceID(outputSpacePrefix);
+    		
+    		MergeOperator.apply(csvSpaces, csvSpace, 1, new HashSet<String>());
+    		
+    		csvSpace.createHeadBranch(csvSpace.getSpaceID());
+    		
+    		designSpaceStore.saveDesignSpace(csvSpace);
+    		
+    		commitToHeadBranch(csvSpace.getSpaceID());
+    	}
+    }
+    
+    /*
+     * Builds the CSV rows into one design space named after the output prefix that accepts exactly
+     * those rows. Rows are read as a stream into a DesignTrie, which builds the design space in time 
+     * linear in the number of components rather than taking a product with every row in turn.
+     */
+    private void buildCSVDesigns(List<BufferedReader> designReaders, String outputSpacePrefix, 
+    		HashMap<String, String> compIDToRole) {
+    	DesignTrie csvTrie = new DesignTrie();
+    	
+    	for (BufferedReader designReader : designReaders) {
+    		try {
+    			String csvLine;
     			
-    			commitToHeadBranch(csvSpace.getSpaceID());
-    		} else {
-    			for (int i = 0; i < csvSpaces.size(); i++) {
-    				DesignSpace csvSpace = (DesignSpace) csvSpaces.get(i);
-
-    				csvSpace.createHeadBranch(csvSpace.getSpaceID());
-
-    				saveDesignSpace(csvSpace);
-
-    				commitToHeadBranch(csvSpace.getSpaceID());
+    			while ((csvLine = designReader.readLine()) != null) {
+    				List<String> csvArray = csvToArrayList(csvLine);
+    				
+    				if (csvArray.size() > 0 && csvArray.get(0).length() > 0) {
+    					List<String> compIDs = new ArrayList<String>(csvArray.size());
+    					
+    					List<String> compRoles = new ArrayList<String>(csvArray.size());
+    					
+    					List<Edge.Orientation> orientations = new ArrayList<Edge.Orientation>(csvArray.size());
+    					
+    					for (String csvCell : csvArray) {
+    						if (csvCell.length() > 0) {
+    							compIDs.add(getCSVComponentID(csvCell));
+    							
+    							compRoles.add(getCSVRole(getCSVComponentID(csvCell), compIDToRole));
+    							
+    							orientations.add(getCSVOrientation(csvCell));
+    						}
+    					}
+    					
+    					csvTrie.insert(compIDs, compRoles, orientations);
+    				}
+    			}
+    		} catch (IOException e) {
+    			e.printStackTrace();
+    		} finally {
+    			try {
+    				designReader.close();
+    			} catch (IOException ex) {
+    				ex.printStackTrace();
     			}
     		}
     	}
+    	
+    	if (!csvTrie.isEmpty()) {
+    		DesignSpace csvSpace = new DesignSpace(outputSpacePrefix);
+    		
+    		csvTrie.apply(csvSpace);
+    		
+    		csvSpace.createHeadBranch(csvSpace.getSpaceID());
+    		
+    		designSpaceStore.saveDesignSpace(csvSpace);
+    		
+    		commitToHeadBranch(csvSpace.getSpaceID());
+    		
+    		LOG.info("built {} designs into {}", csvTrie.getNumDesigns(), outputSpacePrefix);
+    	}
+    }
+    
+    /*
+     * Imports one design space per CSV row, named after the output prefix and the number of the 
+     * row, with a head branch of the same name and one commit. Rows are read as a stream and the 
+     * design spaces are written in batches of IMPORT_BATCH_SIZE, so that memory use is bounded by 
+     * the batch size rather than the number of rows, and rows are numbered across all files. 
+     * Progress is reported by getImportProgress under the output prefix.
+     */
+    private void importCSVDesigns(List<BufferedReader> designReaders, String outputSpacePrefix, 
+    		HashMap<String, String> compIDToRole) {
+    	ImportProgress progress = new ImportProgress(outputSpacePrefix);
+    	
+    	imports.put(outputSpacePrefix, progress);
+    	
+    	List<DesignSpace> csvBatch = new ArrayList<DesignSpace>(IMPORT_BATCH_SIZE);
+    	
+    	int j = 0;
+    	
+    	try {
+    		for (BufferedReader designReader : designReaders) {
+    			try {
+    				String csvLine;
+    				
+    				while ((csvLine = designReader.readLine()) != null) {
+    					List<String> csvArray = csvToArrayList(csvLine);
+    					
+    					if (csvArray.size() > 0 && csvArray.get(0).length() > 0) {
+    						csvBatch.add(createCSVDesign(outputSpacePrefix + j, csvArray, compIDToRole));
+    						
+    						j++;
+    						
+    						if (csvBatch.size() == IMPORT_BATCH_SIZE) {
+    							importCSVBatch(csvBatch, progress);
+    							
+    							csvBatch.clear();
+    						}
+    					}
+    				}
+    			} catch (IOException e) {
+    				e.printStackTrace();
+    			} finally {
+    				try {
+    					designReader.close();
+    				} catch (IOException ex) {
+    					ex.printStackTrace();
+    				}
+    			}
+    		}
+    		
+    		if (!csvBatch.isEmpty()) {
+    			importCSVBatch(csvBatch, progress);
+    		}
+    		
+    		progress.finish();
+    	} catch (RuntimeException ex) {
+    		progress.fail(ex);
+    		
+    		throw ex;
+    	}
+    	
+    	LOG.info("imported {}: {}", outputSpacePrefix, progress.toMap());
+    }
+    
+    private void importCSVBatch(List<DesignSpace> csvBatch, ImportProgress progress) {
+    	List<String> createdSpaceIDs = designSpaceStore.importDesignSpaces(csvBatch);
+    	
+    	for (String createdSpaceID : createdSpaceIDs) {
+    		evictCaches(createdSpaceID);
+    	}
+    	
+    	progress.addBatch(csvBatch.size(), createdSpaceIDs.size());
+    	
+    	LOG.debug("imported batch: {}", progress.toMap());
+    }
+    
+    public Map<String, Object> getImportProgress(String outputSpacePrefix) {
+    	ImportProgress progress = imports.get(outputSpacePrefix);
+    	
+    	return progress != null ? progress.toMap() : null;
     }
     
     public List<DesignSpace> processCSVDesigns(BufferedReader csvReader, String outputSpacePrefix, 
     		HashMap<String, String> compIDToRole) throws IOException {
     	List<DesignSpace> csvSpaces = new LinkedList<DesignSpace>();
     	
-    	SequenceOntology so = new SequenceOntology();
-    	
     	String csvLine;
     	
 		int j = -1;
@@ -536,47 +822,85 @@ public class DesignSpaceService {
 			if (csvArray.size() > 0 && csvArray.get(0).length() > 0) {
 				j++;
 
-				DesignSpace outputSpace = new DesignSpace(outputSpacePrefix + j);
+				csvSpaces.add(createCSVDesign(outputSpacePrefix + j, csvArray, compIDToRole));
+			}
+		}
+		
+		return csvSpaces;
+    }
+    
+    /*
+     * Creates a design space with a single path through the components of a CSV row.
+     */
+    private DesignSpace createCSVDesign(String outputSpaceID, List<String> csvArray, 
+    		HashMap<String, String> compIDToRole) {
+    	DesignSpace outputSpace = new DesignSpace(outputSpaceID);
 
-				Node outputStart = outputSpace.createStartNode();
+    	Node outputStart = outputSpace.createStartNode();
 
-				Node outputPredecessor = outputStart;
+    	Node outputPredecessor = outputStart;
 
-				for (int i = 0; i < csvArray.size(); i++) {
-					if (csvArray.get(i).length() > 0) {
-						ArrayList<String> compIDs = new ArrayList<String>(1);
+    	for (int i = 0; i < csvArray.size(); i++) {
+    		if (csvArray.get(i).length() > 0) {
+    			ArrayList<String> compIDs = new ArrayList<String>(1);
 
-						compIDs.add(csvArray.get(i));
+    			compIDs.add(getCSVComponentID(csvArray.get(i)));
 
-						ArrayList<String> compRoles = new ArrayList<String>(1);
+    			ArrayList<String> compRoles = new ArrayList<String>(1);
 
-						if (compIDToRole.containsKey(csvArray.get(i))) {
-							compRoles.add(compIDToRole.get(csvArray.get(i)));
-						} else {
-							compRoles.add(so.getName(SequenceOntology.SEQUENCE_FEATURE));
-						}
-						
-						Node outputNode;
+    			compRoles.add(getCSVRole(compIDs.get(0), compIDToRole));
 
-						if (i < csvArray.size() - 1) {
-							outputNode = outputSpace.createNode();
-						} else {
-							outputNode = outputSpace.createAcceptNode();
-						}
+    			Node outputNode;
 
-						outputPredecessor.createEdge(outputNode, compIDs, compRoles);
+    			if (i < csvArray.size() - 1) {
+    				outputNode = outputSpace.createNode();
+    			} else {
+    				outputNode = outputSpace.createAcceptNode();
+    			}
 
-						outputPredecessor = outputNode;
-					}
-				}
+    			outputPredecessor.createEdge(outputNode, compIDs, compRoles, getCSVOrientation(csvArray.get(i)));
 
-				csvSpaces.add(outputSpace);
-			}
-		}
-		
-		return csvSpaces;
+    			outputPredecessor = outputNode;
+    		}
+    	}
+
+    	return outputSpace;
+    }
+    
+    private String getCSVRole(String compID, HashMap<String, String> compIDToRole) {
+    	if (compIDToRole.containsKey(compID)) {
+    		return compIDToRole.get(compID);
+    	} else {
+    		return ontology.getName(SequenceOntology.SEQUENCE_FEATURE);
+    	}
+    }
+    
+    private static boolean isCSVReverseComplement(String csvCell) {
+    	return csvCell.length() > CSV_REVERSE_COMPLEMENT.length() 
+    			&& csvCell.startsWith(CSV_REVERSE_COMPLEMENT);
+    }
+    
+    private static String getCSVComponentID(String csvCell) {
+    	if (isCSVReverseComplement(csvCell)) {
+    		return csvCell.substring(CSV_REVERSE_COMPLEMENT.length());
+    	} else {
+    		return csvCell;
+    	}
+    }
+    
+    private static Edge.Orientation getCSVOrientation(String csvCell) {
+    	if (isCSVReverseComplement(csvCell)) {
+    		return Edge.Orientation.REVERSE_COMPLEMENT;
+    	} else {
+    		return Edge.Orientation.INLINE;
+    	}
     }
     
+    /*
+     * Reads the roles of components from rows of ID, role and sequence. Sequences are stored for 
+     * both a component and its reverse complement, which CSV designs refer to by the component ID 
+     * prefixed with "r".
+     */
     public HashMap<String, String> processCSVComponents(BufferedReader csvReader) throws IOException {
     	HashMap<String, String> compIDToRole = new HashMap<String, String>();
     	
@@ -591,6 +915,16 @@ public class DesignSpaceService {
 				compIDToRole.put(csvArray.get(0), csvArray.get(1));
 				
 				compIDToRole.put("r" + csvArray.get(0), csvArray.get(1));
+				
+				if (csvArray.get(2).length() > 0) {
+					try {
+						componentSequences.putSequence(csvArray.get(0), csvArray.get(2), false);
+						
+						componentSequences.putSequence("r" + csvArray.get(0), csvArray.get(2), true);
+					} catch (IllegalArgumentException ex) {
+						LOG.warn("skipped sequence of {}: {}", csvArray.get(0), ex.getMessage());
+					}
+				}
 			}
 		}
 		
@@ -599,42 +933,58 @@ public class DesignSpaceService {
     
     public void importSBOL(List<SBOLDocument> sbolDocs, String outputSpaceID) 
     		throws SBOLValidationException, IOException, SBOLConversionException, SBOLException {
+    	importSBOL(sbolDocs, outputSpaceID, 1);
+    }
+    
+    /*
+     * Converts the documents on up to the given number of workers, then saves the design spaces 
+     * that they make in the order of the documents.
+     */
+    public void importSBOL(List<SBOLDocument> sbolDocs, String outputSpaceID, int parallelism) 
+    		throws SBOLValidationException, IOException, SBOLConversionException, SBOLException {
     	SBOLConversion sbolConv = new SBOLConversion();
 
     	sbolConv.setSbolDoc(sbolDocs);
 
-    	List<DesignSpace> outputSpaces = sbolConv.convertSBOLsToSpaces();
+    	List<DesignSpace> outputSpaces = sbolConv.convertSBOLsToSpaces(parallelism);
 
 		for (DesignSpace outputSpace: outputSpaces){
-			saveDesignSpace(outputSpace);
+			designSpaceStore.saveDesignSpace(outputSpace);
+			
+			evictCaches(outputSpace.getSpaceID());
 		}
     }
+
+    /*
+     * Exports the head of a design space as CombinatorialDerivations that enumerate the same 
+     * designs, without enumerating them.
+     */
+    public SBOLDocument exportSBOL(String targetSpaceID) throws SBOLValidationException {
+    	validateDesignSpaceOperator(targetSpaceID);
+    	
+    	return new SBOLExport().exportSpace(loadHeadSpace(targetSpaceID), targetSpaceID);
+    }
     
     public void deleteBranch(String targetSpaceID, String targetBranchID) {
-        designSpaceRepository.deleteBranch(targetSpaceID, targetBranchID);
+        designSpaceStore.deleteBranch(targetSpaceID, targetBranchID);
+        
+        evictCaches(targetSpaceID);
     }
 
     public void copyHeadBranch(String targetSpaceID, String outputBranchID) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
-
-    	Branch outputBranch = targetSpace.getHeadBranch().copy();
-		outputBranch.setBranchID(outputBranchID);
-
-		targetSpace.addBranch(outputBranch);
+    	designSpaceStore.copyHeadBranch(targetSpaceID, outputBranchID);
     	
-    	saveDesignSpace(targetSpace);
+    	evictCaches(targetSpaceID);
     }
 
     public void checkoutBranch(String targetSpaceID, String targetBranchID) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
+    	if (!hasBranch(targetSpaceID, targetBranchID)) {
+    		throw new BranchNotFoundException(targetSpaceID, targetBranchID);
+    	}
     	
-    	targetSpace.clearNodes();
-
-    	targetSpace.setHeadBranch(targetSpace.getBranch(targetBranchID));
-
-    	targetSpace.copyNodeSpace(targetSpace.getHeadSnapshot());
+    	designSpaceStore.checkoutBranch(targetSpaceID, targetBranchID);
     	
-    	saveDesignSpace(targetSpace);
+    	evictCaches(targetSpaceID);
     }
 
     public void commitToBranch(String targetSpaceID, String targetBranchID) {
@@ -643,12 +993,16 @@ public class DesignSpaceService {
     	Branch targetBranch = targetSpace.getBranch(targetBranchID);
     	
     	commitToBranch(targetSpace, targetBranch);
+    	
+    	evictCaches(targetSpaceID);
     }
 
     public void commitToHeadBranch(String targetSpaceID) {
     	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
     	
     	commitToBranch(targetSpace, targetSpace.getHeadBranch());
+    	
+    	evictCaches(targetSpaceID);
     }
     
     private void commitToBranch(DesignSpace targetSpace, Branch targetBranch) {
@@ -658,60 +1012,24 @@ public class DesignSpaceService {
 
 		targetBranch.setLatestCommit(commit);
     	
-    	saveDesignSpace(targetSpace);
+    	designSpaceStore.saveDesignSpace(targetSpace);
     }
     
     public void resetBranch(String targetSpaceID, String targetBranchID,
     		List<String> commitPath) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
-
-    	Branch targetBranch = targetSpace.getBranch(targetBranchID);
-
-    	resetBranch(targetSpace, targetBranch, commitPath);
+    	designSpaceStore.resetBranch(targetSpaceID, targetBranchID, commitPath);
+    	
+    	evictCaches(targetSpaceID);
     }
 
     public void resetHeadBranch(String targetSpaceID, List<String> commitPath) {
-    	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
-
-    	resetBranch(targetSpace, targetSpace.getHeadBranch(), commitPath);
-    }
-
-    private void resetBranch(DesignSpace targetSpace, Branch targetBranch,
-                            List<String> commitPath) {
-        if (targetBranch != null && targetBranch.getNumCommits() > 1) {
-            Commit targetCommit = targetBranch.getLatestCommit();
-
-            int i = 0;
-
-            if (targetCommit.getCommitID().equals(commitPath.get(i))) {
-                while (targetCommit != null && i + 1 < commitPath.size()) {
-                    targetCommit =
-                        targetCommit.findPredecessor(commitPath.get(i + 1));
-                    i++;
-                }
-
-                if (targetCommit != null) {
-                    targetBranch.setLatestCommit(targetCommit);
-
-                    Set<Commit> diffCommits =
-                        targetBranch.retainCommits(targetCommit.getHistory());
-
-                    Set<Commit> deletedCommits = new HashSet<Commit>();
-
-                    for (Commit diffCommit : diffCommits) {
-                        if (!targetSpace.containsCommit(diffCommit)) {
-                            deletedCommits.add(diffCommit);
-                        }
-                    }
-
-                    if (deletedCommits.size() > 0) {
-                        deleteCommits(deletedCommits);
-                    }
-                }
-            }
-
-            saveDesignSpace(targetSpace);
-        }
+    	String headBranchID = designSpaceStore.getHeadBranchID(targetSpaceID);
+    	
+    	if (headBranchID != null) {
+    		designSpaceStore.resetBranch(targetSpaceID, headBranchID, commitPath);
+    		
+    		evictCaches(targetSpaceID);
+    	}
     }
     
     public void revertBranch(String targetSpaceID, String targetBranchID,
@@ -721,12 +1039,16 @@ public class DesignSpaceService {
     	Branch targetBranch = targetSpace.getBranch(targetBranchID);
 
     	revertBranch(targetSpace, targetBranch, commitPath);
+    	
+    	evictCaches(targetSpaceID);
     }
 
     public void revertHeadBranch(String targetSpaceID, List<String> commitPath) {
     	DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
 
     	revertBranch(targetSpace, targetSpace.getHeadBranch(), commitPath);
+    	
+    	evictCaches(targetSpaceID);
     }
 
     private void revertBranch(DesignSpace targetSpace, Branch targetBranch,
@@ -751,58 +1073,391 @@ public class DesignSpaceService {
                 targetBranch.setLatestCommit(commitCopy);
             }
 
-            saveDesignSpace(targetSpace);
+            designSpaceStore.saveDesignSpace(targetSpace);
         }
     }
 
     public Map<String, Object> d3GraphBranches(String targetSpaceID) {
-    	return mapBranchesToD3Format(designSpaceRepository.mapBranches(targetSpaceID));
+    	return mapBranchesToD3Format(designSpaceStore.mapBranches(targetSpaceID));
     }
     
     public List<String> listDesignSpaces() {
-        return designSpaceRepository.listDesignSpaces();
+        return designSpaceStore.listDesignSpaces();
     }
 
     public void deleteDesignSpace(String targetSpaceID) {
         validateDesignSpaceOperator(targetSpaceID);
 
-        designSpaceRepository.deleteDesignSpace(targetSpaceID);
+        designSpaceStore.deleteDesignSpace(targetSpaceID);
+        
+        forgetCaches(targetSpaceID);
+    }
+
+    public Map<String, Object> getDeletionProgress(String targetSpaceID) {
+        Map<String, Object> progress = designSpaceStore.getDeletionProgress(targetSpaceID);
+
+        if (progress == null) {
+            throw new DesignSpaceNotFoundException(targetSpaceID);
+        }
+
+        return progress;
     }
 
     public void createDesignSpace(String outputSpaceID) {
         validateGenerativeDesignSpaceOperator(outputSpaceID);
 
-        designSpaceRepository.createDesignSpace(outputSpaceID);
+        designSpaceStore.createDesignSpace(outputSpaceID);
+        
+        evictCaches(outputSpaceID);
     }
 
     public void createDesignSpace(String outputSpaceID, List<String> compIDs,
                                   List<String> compRoles) {
         validateGenerativeDesignSpaceOperator(outputSpaceID);
 
-        designSpaceRepository.createDesignSpace(
+        designSpaceStore.createDesignSpace(
             outputSpaceID, new ArrayList<String>(compIDs),
             new ArrayList<String>(compRoles));
+        
+        evictCaches(outputSpaceID);
     }
 
     public Map<String, Object> d3GraphDesignSpace(String targetSpaceID) {
-        return mapDesignSpaceToD3Format(designSpaceRepository.mapDesignSpace(targetSpaceID));
+        return mapDesignSpaceToD3Format(designSpaceStore.mapDesignSpace(targetSpaceID));
     }
     
     public List<List<Map<String, Object>>> enumerateDesignSpace(String targetSpaceID, 
     		int numDesigns, int minLength, int maxLength, EnumerateType enumerateType) {
-    	DesignSpace designSpace = loadDesignSpace(targetSpaceID);
-    	
-        DesignSampler designSampler = new DesignSampler(designSpace);
+    	return enumerateDesignSpace(targetSpaceID, numDesigns, minLength, maxLength, enumerateType, 1);
+    }
+    
+    public List<List<Map<String, Object>>> enumerateDesignSpace(String targetSpaceID, 
+    		int numDesigns, int minLength, int maxLength, EnumerateType enumerateType, int parallelism) {
+        DesignSampler designSampler = loadDesignSampler(targetSpaceID);
         
-        return designSampler.enumerate(numDesigns, minLength, maxLength, enumerateType);
+        return designSampler.enumerate(numDesigns, minLength, maxLength, enumerateType, parallelism);
     }
     
-    public Set<List<String>> sampleDesignSpace(String targetSpaceID, int numDesigns) {
-    	DesignSpace designSpace = loadDesignSpace(targetSpaceID);
+    /*
+     * Same as enumerateDesignSpace, but each design is returned with its components and the 
+     * sequence assembled from theirs, which is null if any component has no sequence. Designs 
+     * that start with the same components share the rope for them.
+     */
+    public List<Map<String, Object>> enumerateDesignSequences(String targetSpaceID, int numDesigns, 
+    		int minLength, int maxLength, EnumerateType enumerateType, int parallelism) {
+    	List<List<Map<String, Object>>> designs = enumerateDesignSpace(targetSpaceID, numDesigns, minLength, 
+    			maxLength, enumerateType, parallelism);
+    	
+    	List<Map<String, Object>> designSequences = new ArrayList<Map<String, Object>>(designs.size());
+    	
+    	List<Map<String, Object>> prefix = new ArrayList<Map<String, Object>>();
+    	
+    	List<SequenceRope> prefixSequences = new ArrayList<SequenceRope>();
+    	
+    	for (List<Map<String, Object>> design : designs) {
+    		int i = 0;
+    		
+    		for (Map<String, Object> comp : design) {
+    			if (i < prefix.size() && prefix.get(i) == comp) {
+    				i++;
+    			} else {
+    				break;
+    			}
+    		}
+    		
+    		while (prefix.size() > i) {
+    			prefix.remove(prefix.size() - 1);
+    			
+    			prefixSequences.remove(prefixSequences.size() - 1);
+    		}
+    		
+    		for (Map<String, Object> comp : design.subList(i, design.size())) {
+    			SequenceRope prefixSequence = prefixSequences.isEmpty() ? SequenceRope.EMPTY 
+    					: prefixSequences.get(prefixSequences.size() - 1);
+    			
+    			prefix.add(comp);
+    			
+    			prefixSequences.add(prefixSequence.append(componentSequences.getSequence((String) comp.get("id")), 
+    					Edge.Orientation.REVERSE_COMPLEMENT.getValue().equals(comp.get("orientation"))));
+    		}
+    		
+    		Map<String, Object> designSequence = new LinkedHashMap<String, Object>();
+    		
+    		designSequence.put("components", design);
+    		
+    		designSequence.put("sequence", prefixSequences.isEmpty() ? SequenceRope.EMPTY 
+    				: prefixSequences.get(prefixSequences.size() - 1));
+    		
+    		designSequences.add(designSequence);
+    	}
+    	
+    	return designSequences;
+    }
+    
+    public DesignEnumerator enumerateDesignSpaceLazily(String targetSpaceID, int numDesigns, 
+    		int minLength, int maxLength) {
+    	DesignSampler designSampler = loadDesignSampler(targetSpaceID);
+    	
+    	return designSampler.enumerateLazily(numDesigns, minLength, maxLength);
+    }
+    
+    /*
+     * Writes designs as they are enumerated as CSV rows of component IDs under a "design" header, 
+     * which is how importCSV and matchCSVDesigns recognise a file of designs. Components on reverse
+     * complement edges are prefixed with CSV_REVERSE_COMPLEMENT.
+     */
+    public void writeCSVDesigns(DesignEnumerator designEnumerator, OutputStream outputStream) 
+    		throws IOException {
+    	Writer csvWriter = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    	
+    	csvWriter.write("design\n");
+    	
+    	while (designEnumerator.next()) {
+    		for (int i = 0; i < designEnumerator.getLength(); i++) {
+    			if (i > 0) {
+    				csvWriter.write(',');
+    			}
+    			
+    			if (designEnumerator.getEdge(i).isReverseComplement()) {
+    				csvWriter.write(CSV_REVERSE_COMPLEMENT);
+    			}
+    			
+    			csvWriter.write(designEnumerator.getComponentID(i));
+    		}
+    		
+    		csvWriter.write('\n');
+    	}
+    	
+    	csvWriter.flush();
+    	
+    	LOG.debug("wrote {} designs as CSV", designEnumerator.getNumEnumerated());
+    }
+    
+    public Map<String, Object> analyzeDesignSpace(String targetSpaceID, int maxLength) {
+    	NodeSpace headSpace = loadHeadSpace(targetSpaceID);
+    	
+    	DesignAnalytics designAnalytics = new DesignAnalytics(headSpace, maxLength);
+    	
+    	Map<String, Object> analytics = designAnalytics.analyze();
+    	
+    	analytics.put("spaceID", targetSpaceID);
+    	
+    	return analytics;
+    }
+    
+    public List<Boolean> matchDesigns(String targetSpaceID, List<List<Map<String, Object>>> designs,
+    		int parallelism) {
+    	NodeSpace headSpace = loadHeadSpace(targetSpaceID);
+    	
+    	DesignMatcher designMatcher = new DesignMatcher(headSpace);
+    	
+    	return designMatcher.match(designs, parallelism);
+    }
+    
+    /*
+     * Reads designs from CSV files with one design per row, as written by writeCSVDesigns, and 
+     * checks them in the order that they were read.
+     */
+    public List<Boolean> matchCSVDesigns(String targetSpaceID, List<InputStream> inputCSVStreams,
+    		int parallelism) {
+    	List<List<Map<String, Object>>> designs = new LinkedList<List<Map<String, Object>>>();
+    	
+    	for (InputStream inputCSVStream : inputCSVStreams) {
+    		BufferedReader csvReader = new BufferedReader(new InputStreamReader(inputCSVStream));
+    		
+    		try {
+    			String csvLine;
+    			
+    			boolean isFirstLine = true;
+    			
+    			while ((csvLine = csvReader.readLine()) != null) {
+    				List<String> csvArray = csvToArrayList(csvLine);
+    				
+    				if (csvArray.size() > 0 && csvArray.get(0).length() > 0 
+    						&& !(isFirstLine && csvArray.get(0).equals("design"))) {
+    					List<Map<String, Object>> design = new ArrayList<Map<String, Object>>(csvArray.size());
+    					
+    					for (String csvCell : csvArray) {
+    						if (csvCell.length() > 0) {
+    							Map<String, Object> comp = new HashMap<String, Object>();
+    							
+    							comp.put("id", getCSVComponentID(csvCell));
+    							
+    							comp.put("orientation", getCSVOrientation(csvCell).getValue());
+    							
+    							design.add(comp);
+    						}
+    					}
+    					
+    					designs.add(design);
+    				}
+    				
+    				isFirstLine = false;
+    			}
+    		} catch (IOException e) {
+    			e.printStackTrace();
+    		} finally {
+    			try {
+    				csvReader.close();
+    			} catch (IOException ex) {
+    				ex.printStackTrace();
+    			}
+    		}
+    	}
+    	
+    	return matchDesigns(targetSpaceID, new ArrayList<List<Map<String, Object>>>(designs), parallelism);
+    }
+    
+    /*
+     * Compares the head of the first design space with the head of the second, or with the latest
+     * commits of the given branches if their IDs are not null.
+     */
+    public Map<String, Object> compareDesignSpaces(String firstSpaceID, String firstBranchID,
+    		String secondSpaceID, String secondBranchID) 
+    		throws DesignSpaceNotFoundException, BranchNotFoundException {
+    	validateDesignSpaceOperator(firstSpaceID);
+    	
+    	validateDesignSpaceOperator(secondSpaceID);
+    	
+    	NodeSpace firstSpace = loadComparedSpace(firstSpaceID, firstBranchID);
+    	
+    	NodeSpace secondSpace = loadComparedSpace(secondSpaceID, secondBranchID);
+    	
+    	LanguageComparator comparator = new LanguageComparator(firstSpace, secondSpace);
+    	
+    	return comparator.compare();
+    }
+    
+    private NodeSpace loadComparedSpace(String targetSpaceID, String targetBranchID) {
+    	if (targetBranchID == null) {
+    		return loadHeadSpace(targetSpaceID);
+    	}
+    	
+    	NodeSpace branchSpace = designSpaceStore.loadBranchHead(targetSpaceID, targetBranchID);
     	
-        DesignSampler designSampler = new DesignSampler(designSpace);
+    	if (branchSpace == null) {
+    		throw new BranchNotFoundException(targetSpaceID, targetBranchID);
+    	}
+    	
+    	return branchSpace;
+    }
+    
+    public Set<List<String>> sampleDesignSpace(String targetSpaceID, int numDesigns) {
+    	return sampleDesignSpace(targetSpaceID, numDesigns, null, 1);
+    }
+    
+    public Set<List<String>> sampleDesignSpace(String targetSpaceID, int numDesigns, Long seed, 
+    		int parallelism) {
+        DesignSampler designSampler = loadDesignSampler(targetSpaceID);
         
-        return designSampler.sample(numDesigns);
+        if (seed != null) {
+        	return designSampler.sample(numDesigns, seed.longValue(), parallelism);
+        } else {
+        	return designSampler.sample(numDesigns, parallelism);
+        }
+    }
+    
+    /*
+     * Same as sampleDesignSpace, but designs are drawn as components rather than roles, and each 
+     * design is returned with its components and the sequence assembled from them, which is null if
+     * any of them has no sequence.
+     */
+    public List<Map<String, Object>> sampleDesignSequences(String targetSpaceID, int numDesigns, Long seed, 
+    		int parallelism) {
+    	DesignSampler designSampler = loadDesignSampler(targetSpaceID);
+    	
+    	List<Map<String, Object>> designSequences = new ArrayList<Map<String, Object>>(numDesigns);
+    	
+    	for (Map.Entry<List<Map<String, Object>>, SequenceRope> design : designSampler.sampleSequences(
+    			numDesigns, seed, parallelism, componentSequences).entrySet()) {
+    		Map<String, Object> designSequence = new LinkedHashMap<String, Object>();
+    		
+    		designSequence.put("components", design.getKey());
+    		
+    		designSequence.put("sequence", design.getValue());
+    		
+    		designSequences.add(designSequence);
+    	}
+    	
+    	return designSequences;
+    }
+    
+    /*
+     * Samplers are cached by the graph ID of the latest commit on the head branch, so that their 
+     * alias tables are only built once for each committed version of a design space.
+     */
+    private DesignSampler loadDesignSampler(String targetSpaceID) {
+    	Long commitGraphID = getLatestCommitGraphID(targetSpaceID);
+    	
+    	if (commitGraphID == null) {
+    		return new DesignSampler(loadHeadSpace(targetSpaceID));
+    	}
+    	
+    	String samplerKey = headSpaceCache.getKey(targetSpaceID, commitGraphID);
+    	
+    	DesignSampler designSampler = headSpaceCache.getSampler(samplerKey);
+    	
+    	if (designSampler == null) {
+    		designSampler = new DesignSampler(loadHeadSpace(targetSpaceID));
+    		
+    		headSpaceCache.putSampler(samplerKey, designSampler);
+    	}
+    	
+    	return designSampler;
+    }
+    
+    /*
+     * Returns the key under which the response of a read endpoint is cached, or null if the 
+     * design space has no commits, in which case its responses are not cached.
+     */
+    public String getResponseKey(String targetSpaceID, String endpoint, Map<String, Object> params) {
+    	Long commitGraphID = getLatestCommitGraphID(targetSpaceID);
+    	
+    	if (commitGraphID == null) {
+    		return null;
+    	}
+    	
+    	return responseCache.getKey(targetSpaceID, commitGraphID, endpoint, params);
+    }
+    
+    public String getResponseETag(String responseKey) {
+    	return responseCache.getETag(responseKey);
+    }
+    
+    public Object getCachedResponse(String responseKey) {
+    	return responseCache.get(responseKey);
+    }
+    
+    public void cacheResponse(String responseKey, Object response) {
+    	responseCache.put(responseKey, response);
+    }
+    
+    public Map<String, Object> getCacheStats() {
+    	Map<String, Object> stats = new LinkedHashMap<String, Object>();
+    	
+    	stats.put("headSpaces", headSpaceCache.getStats());
+    	
+    	stats.put("responses", responseCache.getStats());
+    	
+    	stats.put("operators", operatorCache.getStats());
+    	
+    	return stats;
+    }
+    
+    private void evictCaches(String targetSpaceID) {
+    	headSpaceCache.evict(targetSpaceID);
+    	
+    	responseCache.evict(targetSpaceID);
+    	
+    	operatorCache.evict(targetSpaceID);
+    }
+    
+    private void forgetCaches(String targetSpaceID) {
+    	headSpaceCache.forget(targetSpaceID);
+    	
+    	responseCache.forget(targetSpaceID);
+    	
+    	operatorCache.forget(targetSpaceID);
     }
 
 	// Utility which converts CSV to ArrayList using split operation
@@ -821,81 +1476,66 @@ public class DesignSpaceService {
 		return csvArray;
 	}
 	
-	private void deleteCommits(Set<Commit> deletedCommits) {
-		Set<Snapshot> deletedSnapshots = new HashSet<Snapshot>();
-		
-		for (Commit deletedCommit : deletedCommits) {
-			deletedSnapshots.add(deletedCommit.getSnapshot());
+	/*
+	 * Loads a design space with its version history, for operations that modify it.
+	 */
+	private DesignSpace loadDesignSpace(String targetSpaceID) {
+		DesignSpace targetSpace = designSpaceStore.loadDesignSpace(targetSpaceID);
+
+		if (targetSpace == null) {
+			throw new DesignSpaceNotFoundException(targetSpaceID);
 		}
-		
-		deleteSnapshots(deletedSnapshots);
-		
-		commitRepository.delete(deletedCommits);
-	}
-	
-	private void deleteNodes(Set<Node> deletedNodes) {
-		nodeRepository.delete(deletedNodes);
+
+		return targetSpace;
 	}
-	
-	private void deleteSnapshots(Set<Snapshot> deletedSnapshots) {
-		Set<Node> deletedNodes = new HashSet<Node>();
+
+	/*
+	 * Loads only the head graph of a design space, for operations that do not modify it. Graphs 
+	 * are cached by the latest commit on the head branch and shared between callers, so they must 
+	 * be copied before being modified.
+	 */
+	private NodeSpace loadHeadSpace(String targetSpaceID) {
+		Long commitGraphID = getLatestCommitGraphID(targetSpaceID);
 		
-		for (Snapshot deletedSnapshot : deletedSnapshots) {
-			deletedNodes.addAll(deletedSnapshot.getNodes());
-		}
+		String headKey = null;
 		
-		deleteNodes(deletedNodes);
+		NodeSpace headSpace = null;
 		
-		snapshotRepository.delete(deletedSnapshots);
-	}
-	
-	private Branch findBranch(String targetSpaceID, String targetBranchID) {
-		Set<Branch> targetBranches = designSpaceRepository.findBranch(targetSpaceID, targetBranchID);
-		if (targetBranches.size() > 0) {
-			return targetBranches.iterator().next();
-		} else {
-			return null;
+		if (commitGraphID != null) {
+			headKey = headSpaceCache.getKey(targetSpaceID, commitGraphID);
+			
+			headSpace = headSpaceCache.getHead(headKey);
 		}
-	}
-
-	private DesignSpace findDesignSpace(String targetSpaceID) {
-    	return designSpaceRepository.findBySpaceID(targetSpaceID);
-    }
-
-	private DesignSpace loadDesignSpace(String targetSpaceID) {
-		DesignSpace targetSpace = designSpaceRepository.findOne(getDesignSpaceGraphID(targetSpaceID), 3);
+		
+		if (headSpace == null) {
+			headSpace = designSpaceStore.loadHead(targetSpaceID);
 
-		for (Commit commit : targetSpace.getCommits()) {
-			commit.setSnapshot(reloadSnapshot(commit.getSnapshot()));
+			if (headSpace == null) {
+				throw new DesignSpaceNotFoundException(targetSpaceID);
+			}
+			
+			if (headKey != null) {
+				headSpaceCache.putHead(headKey, headSpace);
+			}
 		}
 
-		return targetSpace;
-	}
-
-	private Snapshot reloadSnapshot(Snapshot snap) {
-		return snapshotRepository.findOne(snap.getGraphID(), 2);
+		return headSpace;
 	}
 
 	private Set<String> getBranchIDs(String targetSpaceID) {
-		return designSpaceRepository.getBranchIDs(targetSpaceID);
+		return designSpaceStore.getBranchIDs(targetSpaceID);
 	}
 	
-	private Long getDesignSpaceGraphID(String targetSpaceID) {
-		Set<Integer> graphIDs = designSpaceRepository.getDesignSpaceGraphID(targetSpaceID);
-		
-		if (graphIDs.size() > 0) {
-			return new Long(graphIDs.iterator().next());
-		} else {
-			return null;
-		}
+	private Long getLatestCommitGraphID(String targetSpaceID) {
+		return designSpaceStore.getLatestCommitID(targetSpaceID);
 	}
 	
 	public boolean hasBranch(String targetSpaceID, String targetBranchID) {
-		return findBranch(targetSpaceID, targetBranchID) != null;
+		return designSpaceStore.hasBranch(targetSpaceID, targetBranchID);
 	}
 	
 	public boolean hasDesignSpace(String targetSpaceID) {
-		return findDesignSpace(targetSpaceID) != null;
+		return designSpaceStore.hasDesignSpace(targetSpaceID);
 	}
 	
 	private Map<String, Object> mapBranchesToD3Format(List<Map<String, Object>> branchMap) {
@@ -1095,34 +1735,6 @@ public class DesignSpaceService {
 	     return makeD3("source", source, "target", target);
 	}
 	
-	private void saveDesignSpace(DesignSpace space) {
-		HashMap<String, Set<Edge>> nodeIDToEdges = space.mapNodeIDsToEdges();
-
-		space.clearEdges();
-
-		Set<Commit> commits = space.getCommits();
-
-		HashMap<String, HashMap<String, Set<Edge>>> commitIDToEdges = new HashMap<String, HashMap<String, Set<Edge>>>();
-
-		for (Commit commit : commits) {
-			commitIDToEdges.put(commit.getCommitID(), 
-					commit.getSnapshot().mapNodeIDsToEdges());
-
-			commit.getSnapshot().clearEdges();
-		}
-		
-		designSpaceRepository.save(space);
-
-		space.loadEdges(nodeIDToEdges);
-
-		for (Commit commit : commits) {
-			commit.getSnapshot().loadEdges(commitIDToEdges.get(commit.getCommitID()));
-
-		}
-
-		designSpaceRepository.save(space);
-	}
-
     private void validateListParameter(String parameterName, List<String> parameter)
         throws ParameterEmptyException {
         if (parameter.isEmpty()) {
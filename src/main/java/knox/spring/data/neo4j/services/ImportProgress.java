@@ -0,0 +1,91 @@
+package knox.spring.data.neo4j.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Progress of a bulk import of designs, which is updated after every batch by the thread that
+ * runs the import and read by requests for its status.
+ */
+public class ImportProgress {
+
+	public static final String IMPORTING = "importing";
+
+	public static final String IMPORTED = "imported";
+
+	public static final String FAILED = "failed";
+
+	private final String outputSpacePrefix;
+
+	private final long startTime;
+
+	private long endTime;
+
+	private String status;
+
+	private long numDesignsRead;
+
+	private long numSpacesCreated;
+
+	private long numBatches;
+
+	private String error;
+
+	public ImportProgress(String outputSpacePrefix) {
+		this.outputSpacePrefix = outputSpacePrefix;
+
+		this.startTime = System.currentTimeMillis();
+
+		this.status = IMPORTING;
+	}
+
+	public synchronized void addBatch(int numDesigns, int numSpaces) {
+		numDesignsRead += numDesigns;
+
+		numSpacesCreated += numSpaces;
+
+		numBatches++;
+	}
+
+	public synchronized void finish() {
+		status = IMPORTED;
+
+		endTime = System.currentTimeMillis();
+	}
+
+	public synchronized void fail(Exception ex) {
+		status = FAILED;
+
+		error = ex.getMessage();
+
+		endTime = System.currentTimeMillis();
+	}
+
+	public synchronized Map<String, Object> toMap() {
+		Map<String, Object> progress = new LinkedHashMap<String, Object>();
+
+		long elapsedMillis = (status.equals(IMPORTING) ? System.currentTimeMillis() : endTime) - startTime;
+
+		progress.put("outputSpacePrefix", outputSpacePrefix);
+
+		progress.put("status", status);
+
+		progress.put("designsRead", numDesignsRead);
+
+		progress.put("spacesCreated", numSpacesCreated);
+
+		progress.put("spacesSkipped", numDesignsRead - numSpacesCreated);
+
+		progress.put("batches", numBatches);
+
+		progress.put("elapsedMillis", elapsedMillis);
+
+		progress.put("designsPerSecond", elapsedMillis > 0 ? numDesignsRead * 1000.0 / elapsedMillis : 0.0);
+
+		if (error != null) {
+			progress.put("error", error);
+		}
+
+		return progress;
+	}
+}
@@ -0,0 +1,95 @@
+package knox.spring.data.neo4j.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Progress of the deletion of a design space, which is updated by the thread that deletes it and
+ * read by requests for its status.
+ */
+public class DeletionProgress {
+
+	public static final String DELETING = "deleting";
+
+	public static final String DELETED = "deleted";
+
+	public static final String FAILED = "failed";
+
+	private final String spaceID;
+
+	private final long startTime;
+
+	private long endTime;
+
+	private String status;
+
+	private long numNodesDeleted;
+
+	private long numCommitsDeleted;
+
+	private long numSnapshotsDeleted;
+
+	private String error;
+
+	public DeletionProgress(String spaceID) {
+		this.spaceID = spaceID;
+
+		this.startTime = System.currentTimeMillis();
+
+		this.status = DELETING;
+	}
+
+	public String getSpaceID() {
+		return spaceID;
+	}
+
+	public synchronized boolean isDeleting() {
+		return status.equals(DELETING);
+	}
+
+	public synchronized void addDeletedNodes(long numNodes) {
+		numNodesDeleted += numNodes;
+	}
+
+	public synchronized void addDeletedCommits(long numCommits, long numSnapshots) {
+		numCommitsDeleted += numCommits;
+
+		numSnapshotsDeleted += numSnapshots;
+	}
+
+	public synchronized void finish() {
+		status = DELETED;
+
+		endTime = System.currentTimeMillis();
+	}
+
+	public synchronized void fail(Exception ex) {
+		status = FAILED;
+
+		error = ex.getMessage();
+
+		endTime = System.currentTimeMillis();
+	}
+
+	public synchronized Map<String, Object> toMap() {
+		Map<String, Object> progress = new LinkedHashMap<String, Object>();
+
+		progress.put("spaceID", spaceID);
+
+		progress.put("status", status);
+
+		progress.put("nodesDeleted", numNodesDeleted);
+
+		progress.put("commitsDeleted", numCommitsDeleted);
+
+		progress.put("snapshotsDeleted", numSnapshotsDeleted);
+
+		progress.put("elapsedMillis", (isDeleting() ? System.currentTimeMillis() : endTime) - startTime);
+
+		if (error != null) {
+			progress.put("error", error);
+		}
+
+		return progress;
+	}
+}
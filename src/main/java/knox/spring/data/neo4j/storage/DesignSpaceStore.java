@@ -0,0 +1,120 @@
+package knox.spring.data.neo4j.storage;
+
+import knox.spring.data.neo4j.domain.DesignSpace;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Storage for design spaces and their version histories, so that DesignSpaceService does not
+ * depend on where they are kept. The implementation is chosen with the knox.storage property:
+ * "neo4j" (the default) for Neo4jDesignSpaceStore or "mapped" for MappedDesignSpaceStore.
+ *
+ * Commits are referred to by IDs that the store assigns, which are passed back as predecessors
+ * when committing the output of an operator. Graphs returned by a store belong to the caller and
+ * can be modified freely.
+ */
+public interface DesignSpaceStore {
+
+	List<String> listDesignSpaces();
+
+	boolean hasDesignSpace(String targetSpaceID);
+
+	boolean hasBranch(String targetSpaceID, String targetBranchID);
+
+	Set<String> getBranchIDs(String targetSpaceID);
+
+	/*
+	 * Returns the ID of the head branch of a design space, or null if it has none.
+	 */
+	String getHeadBranchID(String targetSpaceID);
+
+	/*
+	 * Returns the ID of the latest commit on the head branch of a design space, or null if there
+	 * is none.
+	 */
+	Long getLatestCommitID(String targetSpaceID);
+
+	Long getLatestCommitID(String targetSpaceID, String targetBranchID);
+
+	/*
+	 * Returns the head graph of a design space, or null if there is no such design space.
+	 */
+	NodeSpace loadHead(String targetSpaceID);
+
+	/*
+	 * Returns the graph of the latest commit on a branch, which is empty if the branch has no
+	 * commits, or null if there is no such branch.
+	 */
+	NodeSpace loadBranchHead(String targetSpaceID, String targetBranchID);
+
+	/*
+	 * Returns a design space with its version history, or null if there is no such design space.
+	 */
+	DesignSpace loadDesignSpace(String targetSpaceID);
+
+	void saveDesignSpace(DesignSpace space);
+
+	void createDesignSpace(String outputSpaceID);
+
+	void createDesignSpace(String outputSpaceID, ArrayList<String> componentIDs,
+			ArrayList<String> componentRoles);
+
+	/*
+	 * Creates design spaces in bulk, each with a head branch named after it and one commit of its
+	 * head graph. Design spaces whose IDs are already taken are skipped. Returns the IDs of the
+	 * design spaces created.
+	 */
+	List<String> importDesignSpaces(List<DesignSpace> spaces);
+
+	/*
+	 * Deletes a design space, which may finish in the background. The design space can no longer
+	 * be found once this returns.
+	 */
+	void deleteDesignSpace(String targetSpaceID);
+
+	/*
+	 * Returns the progress of the latest deletion of a design space as a map with its status and
+	 * the numbers of nodes, commits and snapshots deleted so far, or null if it was not deleted
+	 * since startup.
+	 */
+	Map<String, Object> getDeletionProgress(String targetSpaceID);
+
+	/*
+	 * Replaces the head graph of a design space with the output of an operator and commits it to
+	 * the head branch, creating the design space and its head branch if needed.
+	 */
+	void commitHead(String targetSpaceID, String headBranchID, NodeSpace head,
+			Collection<Long> predecessorIDs);
+
+	/*
+	 * Commits the output of an operator to a branch, creating the branch if needed, and selects
+	 * the branch as head without changing the head graph.
+	 */
+	void commitBranch(String targetSpaceID, String targetBranchID, NodeSpace snapshotSpace,
+			Collection<Long> predecessorIDs);
+
+	void copyHeadBranch(String targetSpaceID, String outputBranchID);
+
+	void checkoutBranch(String targetSpaceID, String targetBranchID);
+
+	void resetBranch(String targetSpaceID, String targetBranchID, List<String> commitPath);
+
+	void deleteBranch(String targetSpaceID, String targetBranchID);
+
+	/*
+	 * Returns the version history of a design space as rows of branches and pairs of succeeding
+	 * commits, in the format of DesignSpaceRepository.mapBranches.
+	 */
+	List<Map<String, Object>> mapBranches(String targetSpaceID);
+
+	/*
+	 * Returns the head graph of a design space as rows of edges, in the format of
+	 * DesignSpaceRepository.mapDesignSpace.
+	 */
+	List<Map<String, Object>> mapDesignSpace(String targetSpaceID);
+}
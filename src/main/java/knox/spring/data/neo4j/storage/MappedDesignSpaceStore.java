@@ -0,0 +1,1050 @@
+package knox.spring.data.neo4j.storage;
+
+import knox.spring.data.neo4j.domain.Branch;
+import knox.spring.data.neo4j.domain.Commit;
+import knox.spring.data.neo4j.domain.DesignSpace;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.domain.Snapshot;
+import knox.spring.data.neo4j.repositories.NodeSpaceCodec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * Stores each design space with its version history in a memory-mapped file of its own, so that
+ * Knox can run without a database. Files are written to a temporary file and moved into place, so
+ * a design space is either saved whole or not at all. Every design space is decoded into memory
+ * when the store is opened; operations that only read a design space work from memory, while
+ * operations that modify one decode it afresh from its file, so that a failed operation leaves
+ * nothing behind.
+ *
+ * Graphs are encoded with NodeSpaceCodec. Commits get IDs that are unique across the store, so
+ * that a commit can succeed commits of other design spaces as it does in Neo4j. The next commit ID
+ * is kept in a file of its own, so that IDs are never reused after a design space is deleted.
+ *
+ * Snapshots are kept out of design space files, each in a segment file named after its content
+ * hash, which is written once when the first commit with that content is saved. Saving a design
+ * space therefore writes its head graph and commits but not the graphs of its history, and design
+ * spaces with identical snapshots share them, as they do in Neo4j. Snapshots are never modified
+ * once committed, so the design spaces that this store returns share them too. A segment is
+ * deleted once no design space refers to it.
+ */
+@Component
+@ConditionalOnProperty(name = "knox.storage", havingValue = "mapped")
+public class MappedDesignSpaceStore implements DesignSpaceStore {
+	@Value("${knox.storage.directory:knox-store}") String directory;
+
+	private static final String FILE_EXTENSION = ".knox";
+
+	private static final String SNAPSHOT_DIRECTORY = "snapshots";
+
+	private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+	private static final String COMMIT_ID_FILE = "next-commit-id";
+
+	private static final int VERSION = 2;
+
+	private static final Logger LOG = LoggerFactory.getLogger(MappedDesignSpaceStore.class);
+
+	private Path storePath;
+
+	private Path snapshotPath;
+
+	private Map<String, DesignSpace> idToSpace = new TreeMap<String, DesignSpace>();
+
+	private Map<Long, Commit> idToCommit = new HashMap<Long, Commit>();
+
+	private Map<String, Snapshot> hashToSnapshot = new HashMap<String, Snapshot>();
+
+	private Map<String, Integer> hashToNumSpaces = new HashMap<String, Integer>();
+
+	private long nextCommitID = 1;
+
+	private Map<String, DeletionProgress> deletions = new HashMap<String, DeletionProgress>();
+
+	/*
+	 * Reads every design space into memory and deletes the snapshot segments that none of them
+	 * refer to, which are left behind if Knox stops between writing a segment and the file of its
+	 * design space.
+	 */
+	@PostConstruct
+	public synchronized void open() {
+		storePath = Paths.get(directory);
+
+		snapshotPath = storePath.resolve(SNAPSHOT_DIRECTORY);
+
+		try {
+			Files.createDirectories(snapshotPath);
+
+			Path commitIDFile = storePath.resolve(COMMIT_ID_FILE);
+
+			if (Files.exists(commitIDFile)) {
+				nextCommitID = ByteBuffer.wrap(Files.readAllBytes(commitIDFile)).getLong();
+			}
+
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(storePath, "*" + FILE_EXTENSION)) {
+				for (Path file : files) {
+					cacheSpace(readSpace(file));
+				}
+			}
+
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(snapshotPath,
+					"*" + SNAPSHOT_EXTENSION)) {
+				for (Path file : files) {
+					String fileName = file.getFileName().toString();
+
+					if (!hashToNumSpaces.containsKey(fileName.substring(0,
+							fileName.length() - SNAPSHOT_EXTENSION.length()))) {
+						Files.delete(file);
+					}
+				}
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+		LOG.info("opened {} design spaces with {} snapshots in {}", idToSpace.size(),
+				hashToSnapshot.size(), storePath.toAbsolutePath());
+	}
+
+	public synchronized List<String> listDesignSpaces() {
+		return new ArrayList<String>(idToSpace.keySet());
+	}
+
+	public synchronized boolean hasDesignSpace(String targetSpaceID) {
+		return idToSpace.containsKey(targetSpaceID);
+	}
+
+	public synchronized boolean hasBranch(String targetSpaceID, String targetBranchID) {
+		return findBranch(targetSpaceID, targetBranchID) != null;
+	}
+
+	public synchronized Set<String> getBranchIDs(String targetSpaceID) {
+		Set<String> branchIDs = new HashSet<String>();
+
+		if (idToSpace.containsKey(targetSpaceID)) {
+			for (Branch branch : idToSpace.get(targetSpaceID).getBranches()) {
+				branchIDs.add(branch.getBranchID());
+			}
+		}
+
+		return branchIDs;
+	}
+
+	public synchronized String getHeadBranchID(String targetSpaceID) {
+		DesignSpace targetSpace = idToSpace.get(targetSpaceID);
+
+		if (targetSpace != null && targetSpace.hasHeadBranch()) {
+			return targetSpace.getHeadBranch().getBranchID();
+		} else {
+			return null;
+		}
+	}
+
+	public synchronized Long getLatestCommitID(String targetSpaceID) {
+		return getLatestCommitID(targetSpaceID, getHeadBranchID(targetSpaceID));
+	}
+
+	public synchronized Long getLatestCommitID(String targetSpaceID, String targetBranchID) {
+		Branch targetBranch = findBranch(targetSpaceID, targetBranchID);
+
+		if (targetBranch != null && targetBranch.hasLatestCommit()) {
+			return targetBranch.getLatestCommit().getGraphID();
+		} else {
+			return null;
+		}
+	}
+
+	public synchronized NodeSpace loadHead(String targetSpaceID) {
+		DesignSpace targetSpace = idToSpace.get(targetSpaceID);
+
+		return targetSpace != null ? targetSpace.copy() : null;
+	}
+
+	public synchronized NodeSpace loadBranchHead(String targetSpaceID, String targetBranchID) {
+		Branch targetBranch = findBranch(targetSpaceID, targetBranchID);
+
+		if (targetBranch == null) {
+			return null;
+		} else if (targetBranch.hasLatestCommit() && targetBranch.getLatestCommit().getSnapshot() != null) {
+			return targetBranch.getLatestCommit().getSnapshot().copy();
+		} else {
+			return new NodeSpace(0);
+		}
+	}
+
+	public synchronized DesignSpace loadDesignSpace(String targetSpaceID) {
+		if (!idToSpace.containsKey(targetSpaceID)) {
+			return null;
+		}
+
+		return readSpace(getFile(targetSpaceID));
+	}
+
+	public synchronized void saveDesignSpace(DesignSpace space) {
+		writeSpace(space);
+
+		cacheSpace(space);
+	}
+
+	public synchronized void createDesignSpace(String outputSpaceID) {
+		DesignSpace outputSpace = new DesignSpace(outputSpaceID);
+
+		outputSpace.createHeadBranch(outputSpaceID);
+
+		saveDesignSpace(outputSpace);
+	}
+
+	public synchronized void createDesignSpace(String outputSpaceID, ArrayList<String> componentIDs,
+			ArrayList<String> componentRoles) {
+		DesignSpace outputSpace = new DesignSpace(outputSpaceID, componentIDs, componentRoles);
+
+		outputSpace.createHeadBranch(outputSpaceID);
+
+		saveDesignSpace(outputSpace);
+	}
+
+	public synchronized List<String> importDesignSpaces(List<DesignSpace> spaces) {
+		List<String> createdSpaceIDs = new ArrayList<String>(spaces.size());
+
+		for (DesignSpace space : spaces) {
+			if (!idToSpace.containsKey(space.getSpaceID())) {
+				commitHead(space.getSpaceID(), space.getSpaceID(), space, Collections.<Long>emptyList());
+
+				createdSpaceIDs.add(space.getSpaceID());
+			}
+		}
+
+		return createdSpaceIDs;
+	}
+
+	/*
+	 * Deleting the file of a design space is quick, so deletion finishes before this returns.
+	 */
+	public synchronized void deleteDesignSpace(String targetSpaceID) {
+		DesignSpace targetSpace = idToSpace.get(targetSpaceID);
+
+		try {
+			Files.deleteIfExists(getFile(targetSpaceID));
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+		uncacheSpace(targetSpaceID);
+
+		if (targetSpace != null) {
+			DeletionProgress progress = new DeletionProgress(targetSpaceID);
+
+			progress.addDeletedNodes(targetSpace.getNumNodes());
+
+			Set<Commit> commits = new HashSet<Commit>();
+
+			if (targetSpace.hasBranches()) {
+				for (Branch branch : targetSpace.getBranches()) {
+					if (branch.hasCommits()) {
+						commits.addAll(branch.getCommits());
+					}
+				}
+			}
+
+			progress.addDeletedCommits(commits.size(), commits.size());
+
+			progress.finish();
+
+			deletions.put(targetSpaceID, progress);
+		}
+	}
+
+	public synchronized Map<String, Object> getDeletionProgress(String targetSpaceID) {
+		DeletionProgress progress = deletions.get(targetSpaceID);
+
+		return progress != null ? progress.toMap() : null;
+	}
+
+	public synchronized void commitHead(String targetSpaceID, String headBranchID, NodeSpace head,
+			Collection<Long> predecessorIDs) {
+		DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
+
+		if (targetSpace == null) {
+			targetSpace = new DesignSpace(targetSpaceID);
+		}
+
+		if (!targetSpace.hasHeadBranch()) {
+			targetSpace.createHeadBranch(headBranchID);
+		}
+
+		targetSpace.shallowCopyNodeSpace(head);
+
+		commit(targetSpace, targetSpace.getHeadBranch(), head, predecessorIDs);
+
+		saveDesignSpace(targetSpace);
+	}
+
+	public synchronized void commitBranch(String targetSpaceID, String targetBranchID,
+			NodeSpace snapshotSpace, Collection<Long> predecessorIDs) {
+		DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
+
+		if (targetSpace == null) {
+			return;
+		}
+
+		Branch targetBranch = targetSpace.getBranch(targetBranchID);
+
+		if (targetBranch == null) {
+			targetBranch = targetSpace.createBranch(targetBranchID);
+		}
+
+		commit(targetSpace, targetBranch, snapshotSpace, predecessorIDs);
+
+		targetSpace.setHeadBranch(targetBranch);
+
+		saveDesignSpace(targetSpace);
+	}
+
+	private void commit(DesignSpace targetSpace, Branch targetBranch, NodeSpace snapshotSpace,
+			Collection<Long> predecessorIDs) {
+		Map<Long, Commit> idToSpaceCommit = new HashMap<Long, Commit>();
+
+		for (Commit commit : getCommits(targetSpace)) {
+			idToSpaceCommit.put(commit.getGraphID(), commit);
+		}
+
+		Commit commit = targetSpace.createCommit(targetBranch);
+
+		commit.createSnapshot().copyNodeSpace(snapshotSpace);
+
+		for (Long predecessorID : predecessorIDs) {
+			if (idToSpaceCommit.containsKey(predecessorID)) {
+				commit.addPredecessor(idToSpaceCommit.get(predecessorID));
+			} else if (idToCommit.containsKey(predecessorID)) {
+				Commit predecessor = idToCommit.get(predecessorID);
+
+				commit.addPredecessor(createForeignCommit(predecessorID, predecessor.getCommitID(),
+						predecessor.getMergeID()));
+			}
+		}
+
+		targetBranch.setLatestCommit(commit);
+	}
+
+	public synchronized void copyHeadBranch(String targetSpaceID, String outputBranchID) {
+		DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
+
+		if (targetSpace == null || !targetSpace.hasHeadBranch()) {
+			return;
+		}
+
+		Branch headBranch = targetSpace.getHeadBranch();
+
+		Branch outputBranch = new Branch(outputBranchID, headBranch.getLatestCommit());
+
+		if (headBranch.hasCommits()) {
+			for (Commit commit : headBranch.getCommits()) {
+				outputBranch.addCommit(commit);
+			}
+		}
+
+		targetSpace.addBranch(outputBranch);
+
+		saveDesignSpace(targetSpace);
+	}
+
+	public synchronized void checkoutBranch(String targetSpaceID, String targetBranchID) {
+		DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
+
+		if (targetSpace == null || targetSpace.getBranch(targetBranchID) == null) {
+			return;
+		}
+
+		Branch targetBranch = targetSpace.getBranch(targetBranchID);
+
+		targetSpace.setHeadBranch(targetBranch);
+
+		targetSpace.clearNodes();
+
+		if (targetBranch.hasLatestCommit() && targetBranch.getLatestCommit().getSnapshot() != null) {
+			targetSpace.copyNodeSpace(targetBranch.getLatestCommit().getSnapshot());
+		}
+
+		saveDesignSpace(targetSpace);
+	}
+
+	public synchronized void resetBranch(String targetSpaceID, String targetBranchID,
+			List<String> commitPath) {
+		DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
+
+		Branch targetBranch = targetSpace != null ? targetSpace.getBranch(targetBranchID) : null;
+
+		if (targetBranch == null || targetBranch.getNumCommits() <= 1 || commitPath.isEmpty()
+				|| !targetBranch.hasLatestCommit()
+				|| !targetBranch.getLatestCommit().getCommitID().equals(commitPath.get(0))) {
+			return;
+		}
+
+		Set<Commit> spaceCommits = getCommits(targetSpace);
+
+		Commit targetCommit = targetBranch.getLatestCommit();
+
+		for (int i = 1; targetCommit != null && i < commitPath.size(); i++) {
+			targetCommit = targetCommit.findPredecessor(commitPath.get(i));
+
+			if (!spaceCommits.contains(targetCommit)) {
+				targetCommit = null;
+			}
+		}
+
+		if (targetCommit != null) {
+			targetBranch.setLatestCommit(targetCommit);
+
+			targetBranch.retainCommits(targetCommit.getHistory());
+
+			saveDesignSpace(targetSpace);
+		}
+	}
+
+	public synchronized void deleteBranch(String targetSpaceID, String targetBranchID) {
+		DesignSpace targetSpace = loadDesignSpace(targetSpaceID);
+
+		if (targetSpace == null || targetSpace.getBranch(targetBranchID) == null) {
+			return;
+		}
+
+		Branch targetBranch = targetSpace.getBranch(targetBranchID);
+
+		targetSpace.getBranches().remove(targetBranch);
+
+		if (targetSpace.getHeadBranch() == targetBranch) {
+			targetSpace.setHeadBranch(null);
+		}
+
+		saveDesignSpace(targetSpace);
+	}
+
+	public synchronized List<Map<String, Object>> mapBranches(String targetSpaceID) {
+		List<Map<String, Object>> branchMap = new LinkedList<Map<String, Object>>();
+
+		DesignSpace targetSpace = idToSpace.get(targetSpaceID);
+
+		if (targetSpace == null || !targetSpace.hasHeadBranch()) {
+			return branchMap;
+		}
+
+		Set<Commit> spaceCommits = getCommits(targetSpace);
+
+		for (Branch branch : targetSpace.getBranches()) {
+			Set<Commit> branchCommits = getCommits(branch);
+
+			boolean hasSuccession = false;
+
+			for (Commit commit : branchCommits) {
+				if (commit.hasPredecessors()) {
+					for (Commit predecessor : commit.getPredecessors()) {
+						if (spaceCommits.contains(predecessor)
+								&& (!commit.hasMergeID() && !predecessor.hasMergeID()
+										|| predecessor.hasMergeID() && branchCommits.contains(predecessor))) {
+							branchMap.add(mapBranch(targetSpace, branch, commit, predecessor));
+
+							hasSuccession = true;
+						}
+					}
+				}
+			}
+
+			if (!hasSuccession) {
+				branchMap.add(mapBranch(targetSpace, branch, null, null));
+			}
+		}
+
+		return branchMap;
+	}
+
+	private Map<String, Object> mapBranch(DesignSpace targetSpace, Branch branch, Commit tail,
+			Commit head) {
+		Map<String, Object> row = new HashMap<String, Object>();
+
+		row.put("spaceID", targetSpace.getSpaceID());
+
+		row.put("headBranchID", targetSpace.getHeadBranch().getBranchID());
+
+		row.put("branchID", branch.getBranchID());
+
+		Commit latestCommit = branch.getLatestCommit();
+
+		row.put("latestCommitID", latestCommit != null ? getHistoryID(latestCommit) : null);
+
+		row.put("latestCopyIndex", latestCommit != null ? latestCommit.getGraphID() : null);
+
+		row.put("tailID", tail != null ? getHistoryID(tail) : null);
+
+		row.put("tailCopyIndex", tail != null ? tail.getGraphID() : null);
+
+		row.put("headID", head != null ? getHistoryID(head) : null);
+
+		row.put("headCopyIndex", head != null ? head.getGraphID() : null);
+
+		return row;
+	}
+
+	private static String getHistoryID(Commit commit) {
+		return commit.hasMergeID() ? commit.getCommitID() + commit.getMergeID() : commit.getCommitID();
+	}
+
+	public synchronized List<Map<String, Object>> mapDesignSpace(String targetSpaceID) {
+		List<Map<String, Object>> spaceMap = new LinkedList<Map<String, Object>>();
+
+		DesignSpace targetSpace = idToSpace.get(targetSpaceID);
+
+		if (targetSpace == null || !targetSpace.hasNodes()) {
+			return spaceMap;
+		}
+
+		for (Node node : targetSpace.getNodes()) {
+			if (node.hasEdges()) {
+				for (Edge edge : node.getEdges()) {
+					Map<String, Object> row = new HashMap<String, Object>();
+
+					row.put("spaceID", targetSpaceID);
+
+					row.put("tailID", edge.getTailID());
+
+					row.put("tailTypes", edge.getTail().getNodeTypes());
+
+					row.put("componentRoles", edge.getComponentRoles());
+
+					row.put("componentIDs", edge.getComponentIDs());
+
+					row.put("orientation", edge.getOrientation() != null ? edge.getOrientation().name() : null);
+
+					row.put("headID", edge.getHeadID());
+
+					row.put("headTypes", edge.getHead().getNodeTypes());
+
+					spaceMap.add(row);
+				}
+			}
+		}
+
+		return spaceMap;
+	}
+
+	private Branch findBranch(String targetSpaceID, String targetBranchID) {
+		DesignSpace targetSpace = idToSpace.get(targetSpaceID);
+
+		return targetSpace != null && targetBranchID != null ? targetSpace.getBranch(targetBranchID) : null;
+	}
+
+	/*
+	 * Replaces the cached copy of a design space. The snapshots of the new copy are counted before
+	 * those of the old copy are released, so that the segments they share are not deleted.
+	 */
+	private void cacheSpace(DesignSpace space) {
+		Set<Snapshot> snapshots = getSnapshots(space);
+
+		for (Snapshot snapshot : snapshots) {
+			Integer numSpaces = hashToNumSpaces.get(snapshot.getContentHash());
+
+			if (numSpaces == null) {
+				hashToSnapshot.put(snapshot.getContentHash(), snapshot);
+
+				hashToNumSpaces.put(snapshot.getContentHash(), 1);
+			} else {
+				hashToNumSpaces.put(snapshot.getContentHash(), numSpaces + 1);
+			}
+		}
+
+		uncacheSpace(space.getSpaceID());
+
+		idToSpace.put(space.getSpaceID(), space);
+
+		for (Commit commit : getCommits(space)) {
+			idToCommit.put(commit.getGraphID(), commit);
+
+			nextCommitID = Math.max(nextCommitID, commit.getGraphID() + 1);
+		}
+	}
+
+	/*
+	 * Removes the cached copy of a design space and deletes the snapshot segments that no other
+	 * design space refers to. The file of the design space must already have been replaced or
+	 * deleted.
+	 */
+	private void uncacheSpace(String spaceID) {
+		DesignSpace space = idToSpace.remove(spaceID);
+
+		if (space != null) {
+			for (Commit commit : getCommits(space)) {
+				idToCommit.remove(commit.getGraphID());
+			}
+
+			for (Snapshot snapshot : getSnapshots(space)) {
+				int numSpaces = hashToNumSpaces.get(snapshot.getContentHash());
+
+				if (numSpaces > 1) {
+					hashToNumSpaces.put(snapshot.getContentHash(), numSpaces - 1);
+				} else {
+					hashToNumSpaces.remove(snapshot.getContentHash());
+
+					hashToSnapshot.remove(snapshot.getContentHash());
+
+					try {
+						Files.deleteIfExists(getSnapshotFile(snapshot.getContentHash()));
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns the snapshots of the commits of a design space, with one snapshot for each content
+	 * hash.
+	 */
+	private static Set<Snapshot> getSnapshots(DesignSpace space) {
+		Map<String, Snapshot> hashToSpaceSnapshot = new HashMap<String, Snapshot>();
+
+		for (Commit commit : getCommits(space)) {
+			if (commit.getSnapshot() != null) {
+				hashToSpaceSnapshot.put(commit.getSnapshot().getContentHash(), commit.getSnapshot());
+			}
+		}
+
+		return new HashSet<Snapshot>(hashToSpaceSnapshot.values());
+	}
+
+	/*
+	 * Returns the commits on the branches of a design space, as opposed to the commits of other
+	 * design spaces that they succeed.
+	 */
+	private static Set<Commit> getCommits(DesignSpace space) {
+		Set<Commit> commits = Collections.newSetFromMap(new LinkedHashMap<Commit, Boolean>());
+
+		if (space.hasBranches()) {
+			for (Branch branch : space.getBranches()) {
+				commits.addAll(getCommits(branch));
+			}
+		}
+
+		return commits;
+	}
+
+	private static Set<Commit> getCommits(Branch branch) {
+		Set<Commit> commits = Collections.newSetFromMap(new LinkedHashMap<Commit, Boolean>());
+
+		if (branch.hasCommits()) {
+			commits.addAll(branch.getCommits());
+		}
+
+		if (branch.hasLatestCommit()) {
+			commits.add(branch.getLatestCommit());
+		}
+
+		return commits;
+	}
+
+	private static Commit createForeignCommit(Long commitID, String historyID, String mergeID) {
+		Commit foreignCommit = new Commit(historyID);
+
+		foreignCommit.setGraphID(commitID);
+
+		foreignCommit.setMergeID(mergeID);
+
+		return foreignCommit;
+	}
+
+	private Path getFile(String spaceID) {
+		try {
+			return storePath.resolve(URLEncoder.encode(spaceID, "UTF-8") + FILE_EXTENSION);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private Path getSnapshotFile(String contentHash) {
+		return snapshotPath.resolve(contentHash + SNAPSHOT_EXTENSION);
+	}
+
+	/*
+	 * A design space file holds the ID, commit index and head graph of the design space, followed
+	 * by the commits of other design spaces that its commits succeed, its own commits with the
+	 * content hashes of their snapshots, its branches and the ID of its head branch. The snapshots
+	 * of new commits are written to segments of their own first, and the next commit ID is saved
+	 * before any commit is written with an ID drawn from it.
+	 */
+	private void writeSpace(DesignSpace space) {
+		Set<Commit> commits = getCommits(space);
+
+		long firstCommitID = nextCommitID;
+
+		for (Commit commit : commits) {
+			if (commit.getGraphID() == null) {
+				commit.setGraphID(nextCommitID++);
+			}
+		}
+
+		Map<Long, Commit> idToForeignCommit = new LinkedHashMap<Long, Commit>();
+
+		try {
+			if (nextCommitID > firstCommitID) {
+				writeFile(storePath.resolve(COMMIT_ID_FILE),
+						ByteBuffer.allocate(Long.BYTES).putLong(nextCommitID).array());
+			}
+
+			for (Commit commit : commits) {
+				if (commit.getSnapshot() != null) {
+					writeSnapshot(commit.getSnapshot());
+				}
+
+				if (commit.hasPredecessors()) {
+					for (Commit predecessor : commit.getPredecessors()) {
+						if (!commits.contains(predecessor) && predecessor.getGraphID() != null) {
+							idToForeignCommit.put(predecessor.getGraphID(), predecessor);
+						}
+					}
+				}
+			}
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+			DataOutputStream output = new DataOutputStream(bytes);
+
+			output.writeInt(VERSION);
+
+			writeString(output, space.getSpaceID());
+
+			output.writeInt(space.getCommitIndex());
+
+			writeBlob(output, NodeSpaceCodec.encode(space));
+
+			output.writeInt(idToForeignCommit.size());
+
+			for (Commit foreignCommit : idToForeignCommit.values()) {
+				output.writeLong(foreignCommit.getGraphID());
+
+				writeString(output, foreignCommit.getCommitID());
+
+				writeString(output, foreignCommit.getMergeID());
+			}
+
+			output.writeInt(commits.size());
+
+			for (Commit commit : commits) {
+				output.writeLong(commit.getGraphID());
+
+				writeString(output, commit.getCommitID());
+
+				writeString(output, commit.getMergeID());
+
+				writeString(output, commit.getSnapshot() != null ? commit.getSnapshot().getContentHash() : null);
+
+				List<Long> predecessorIDs = new LinkedList<Long>();
+
+				if (commit.hasPredecessors()) {
+					for (Commit predecessor : commit.getPredecessors()) {
+						if (predecessor.getGraphID() != null) {
+							predecessorIDs.add(predecessor.getGraphID());
+						}
+					}
+				}
+
+				output.writeInt(predecessorIDs.size());
+
+				for (Long predecessorID : predecessorIDs) {
+					output.writeLong(predecessorID);
+				}
+			}
+
+			List<Branch> branches = space.hasBranches()
+					? new ArrayList<Branch>(space.getBranches()) : new ArrayList<Branch>();
+
+			output.writeInt(branches.size());
+
+			for (Branch branch : branches) {
+				writeString(output, branch.getBranchID());
+
+				output.writeLong(branch.hasLatestCommit() ? branch.getLatestCommit().getGraphID() : 0);
+
+				Set<Commit> branchCommits = getCommits(branch);
+
+				output.writeInt(branchCommits.size());
+
+				for (Commit commit : branchCommits) {
+					output.writeLong(commit.getGraphID());
+				}
+			}
+
+			writeString(output, space.hasHeadBranch() ? space.getHeadBranch().getBranchID() : null);
+
+			output.close();
+
+			writeFile(getFile(space.getSpaceID()), bytes.toByteArray());
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/*
+	 * Writes the segment of a snapshot unless there already is one with the same content hash.
+	 * Only snapshots that were committed since their design space was read need their content
+	 * hashed.
+	 */
+	private void writeSnapshot(Snapshot snapshot) throws IOException {
+		if (snapshot.getContentHash() == null) {
+			snapshot.setContentHash(snapshot.computeContentHash());
+		}
+
+		Path snapshotFile = getSnapshotFile(snapshot.getContentHash());
+
+		if (!hashToSnapshot.containsKey(snapshot.getContentHash()) && !Files.exists(snapshotFile)) {
+			writeFile(snapshotFile, NodeSpaceCodec.encode(snapshot));
+		}
+	}
+
+	/*
+	 * Writes a file through a memory-mapped temporary file that is moved into place, so that the
+	 * file is either replaced whole or not at all.
+	 */
+	private static void writeFile(Path file, byte[] bytes) throws IOException {
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, bytes.length);
+
+			buffer.put(bytes);
+
+			buffer.force();
+		}
+
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static ByteBuffer readFile(Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return channel.map(MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/*
+	 * Snapshots that are already cached are shared rather than read again from their segments.
+	 * Files of version 1 hold their snapshots inline, and are rewritten in the current version as
+	 * soon as they are read.
+	 */
+	private DesignSpace readSpace(Path file) {
+		ByteBuffer input = readFile(file);
+
+		int version = input.getInt();
+
+		if (version != VERSION && version != 1) {
+			throw new IllegalStateException("Unknown design space file version " + version + " in "
+					+ file + ".");
+		}
+
+		DesignSpace space = new DesignSpace(readString(input));
+
+		space.setCommitIndex(input.getInt());
+
+		space.shallowCopyNodeSpace(NodeSpaceCodec.decode(readBlob(input)));
+
+		Snapshot[] snapshots = new Snapshot[version == 1 ? input.getInt() : 0];
+
+		for (int i = 0; i < snapshots.length; i++) {
+			snapshots[i] = decodeSnapshot(readBlob(input));
+
+			snapshots[i].setContentHash(snapshots[i].computeContentHash());
+		}
+
+		Map<String, Snapshot> hashToSpaceSnapshot = new HashMap<String, Snapshot>();
+
+		Map<Long, Commit> idToSpaceCommit = new HashMap<Long, Commit>();
+
+		int numForeignCommits = input.getInt();
+
+		for (int i = 0; i < numForeignCommits; i++) {
+			Long commitID = input.getLong();
+
+			idToSpaceCommit.put(commitID, createForeignCommit(commitID, readString(input),
+					readString(input)));
+		}
+
+		Map<Commit, long[]> commitToPredecessorIDs = new LinkedHashMap<Commit, long[]>();
+
+		int numCommits = input.getInt();
+
+		for (int i = 0; i < numCommits; i++) {
+			Long commitID = input.getLong();
+
+			Commit commit = new Commit(readString(input));
+
+			commit.setGraphID(commitID);
+
+			commit.setMergeID(readString(input));
+
+			if (version == 1) {
+				int snapshotIndex = input.getInt();
+
+				if (snapshotIndex >= 0) {
+					commit.setSnapshot(snapshots[snapshotIndex]);
+				}
+			} else {
+				String contentHash = readString(input);
+
+				if (contentHash != null) {
+					if (!hashToSpaceSnapshot.containsKey(contentHash)) {
+						hashToSpaceSnapshot.put(contentHash, readSnapshot(contentHash));
+					}
+
+					commit.setSnapshot(hashToSpaceSnapshot.get(contentHash));
+				}
+			}
+
+			long[] predecessorIDs = new long[input.getInt()];
+
+			for (int j = 0; j < predecessorIDs.length; j++) {
+				predecessorIDs[j] = input.getLong();
+			}
+
+			idToSpaceCommit.put(commitID, commit);
+
+			commitToPredecessorIDs.put(commit, predecessorIDs);
+		}
+
+		for (Commit commit : commitToPredecessorIDs.keySet()) {
+			for (long predecessorID : commitToPredecessorIDs.get(commit)) {
+				if (idToSpaceCommit.containsKey(predecessorID)) {
+					commit.addPredecessor(idToSpaceCommit.get(predecessorID));
+				}
+			}
+		}
+
+		int numBranches = input.getInt();
+
+		for (int i = 0; i < numBranches; i++) {
+			Branch branch = space.createBranch(readString(input));
+
+			long latestCommitID = input.getLong();
+
+			if (latestCommitID > 0) {
+				branch.setLatestCommit(idToSpaceCommit.get(latestCommitID));
+			}
+
+			int numBranchCommits = input.getInt();
+
+			for (int j = 0; j < numBranchCommits; j++) {
+				branch.addCommit(idToSpaceCommit.get(input.getLong()));
+			}
+		}
+
+		String headBranchID = readString(input);
+
+		if (headBranchID != null) {
+			space.setHeadBranch(space.getBranch(headBranchID));
+		}
+
+		if (version == 1) {
+			writeSpace(space);
+		}
+
+		return space;
+	}
+
+	private Snapshot readSnapshot(String contentHash) {
+		if (hashToSnapshot.containsKey(contentHash)) {
+			return hashToSnapshot.get(contentHash);
+		}
+
+		ByteBuffer input = readFile(getSnapshotFile(contentHash));
+
+		byte[] blob = new byte[input.remaining()];
+
+		input.get(blob);
+
+		Snapshot snapshot = decodeSnapshot(blob);
+
+		snapshot.setContentHash(contentHash);
+
+		return snapshot;
+	}
+
+	private static Snapshot decodeSnapshot(byte[] blob) {
+		Snapshot snapshot = new Snapshot(0);
+
+		snapshot.shallowCopyNodeSpace(NodeSpaceCodec.decode(blob));
+
+		return snapshot;
+	}
+
+	private static void writeBlob(DataOutputStream output, byte[] blob) throws IOException {
+		output.writeInt(blob.length);
+
+		output.write(blob);
+	}
+
+	private static byte[] readBlob(ByteBuffer input) {
+		byte[] blob = new byte[input.getInt()];
+
+		input.get(blob);
+
+		return blob;
+	}
+
+	private static void writeString(DataOutputStream output, String string) throws IOException {
+		if (string == null) {
+			output.writeInt(-1);
+		} else {
+			writeBlob(output, string.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static String readString(ByteBuffer input) {
+		int length = input.getInt();
+
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] stringBytes = new byte[length];
+
+		input.get(stringBytes);
+
+		return new String(stringBytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,284 @@
+package knox.spring.data.neo4j.storage;
+
+import knox.spring.data.neo4j.domain.Branch;
+import knox.spring.data.neo4j.domain.Commit;
+import knox.spring.data.neo4j.domain.DesignSpace;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.domain.Snapshot;
+import knox.spring.data.neo4j.repositories.DesignSpaceRepository;
+import knox.spring.data.neo4j.repositories.NodeSpaceLoader;
+import knox.spring.data.neo4j.repositories.NodeSpaceWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Stores design spaces in Neo4j. Graphs are read by NodeSpaceLoader and written by
+ * NodeSpaceWriter, version histories are loaded through OGM, and metadata is read and updated with
+ * the queries of DesignSpaceRepository.
+ *
+ * Design spaces are deleted in the background on a single thread. A deleted design space is
+ * relabelled at once so that it can no longer be found, and its nodes and commits are then deleted
+ * in batches that each run in their own transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "knox.storage", havingValue = "neo4j", matchIfMissing = true)
+public class Neo4jDesignSpaceStore implements DesignSpaceStore {
+	@Autowired DesignSpaceRepository designSpaceRepository;
+
+	@Autowired NodeSpaceLoader nodeSpaceLoader;
+
+	@Autowired NodeSpaceWriter nodeSpaceWriter;
+
+	public static final int COMMIT_BATCH_SIZE = 100;
+
+	private static final Logger LOG = LoggerFactory.getLogger(Neo4jDesignSpaceStore.class);
+
+	private final ExecutorService deletionExecutor = Executors.newSingleThreadExecutor();
+
+	private final Map<String, DeletionProgress> deletions = new ConcurrentHashMap<String, DeletionProgress>();
+
+	/*
+	 * Deletions that were interrupted by a shutdown are resumed on startup.
+	 */
+	@PostConstruct
+	public void initialize() {
+		nodeSpaceWriter.createIndexes();
+
+		try {
+			for (Map.Entry<String, Long> deletedSpace : nodeSpaceWriter.findDeletedDesignSpaces().entrySet()) {
+				startDeletion(deletedSpace.getKey(), deletedSpace.getValue());
+			}
+		} catch (RuntimeException ex) {
+			LOG.warn("could not resume deletion of design spaces: {}", ex.getMessage());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		deletionExecutor.shutdownNow();
+	}
+
+	public List<String> listDesignSpaces() {
+		return designSpaceRepository.listDesignSpaces();
+	}
+
+	public boolean hasDesignSpace(String targetSpaceID) {
+		return getDesignSpaceGraphID(targetSpaceID) != null;
+	}
+
+	public boolean hasBranch(String targetSpaceID, String targetBranchID) {
+		return !designSpaceRepository.findBranch(targetSpaceID, targetBranchID).isEmpty();
+	}
+
+	public Set<String> getBranchIDs(String targetSpaceID) {
+		return designSpaceRepository.getBranchIDs(targetSpaceID);
+	}
+
+	public String getHeadBranchID(String targetSpaceID) {
+		Set<String> headBranchIDs = designSpaceRepository.getHeadBranchID(targetSpaceID);
+
+		return headBranchIDs.isEmpty() ? null : headBranchIDs.iterator().next();
+	}
+
+	public Long getLatestCommitID(String targetSpaceID) {
+		return toGraphID(designSpaceRepository.getLatestCommitGraphID(targetSpaceID));
+	}
+
+	public Long getLatestCommitID(String targetSpaceID, String targetBranchID) {
+		return toGraphID(designSpaceRepository.getLatestCommitGraphID(targetSpaceID, targetBranchID));
+	}
+
+	public NodeSpace loadHead(String targetSpaceID) {
+		return nodeSpaceLoader.loadHead(targetSpaceID);
+	}
+
+	public NodeSpace loadBranchHead(String targetSpaceID, String targetBranchID) {
+		return nodeSpaceLoader.loadBranchHead(targetSpaceID, targetBranchID);
+	}
+
+	/*
+	 * The graphs of all snapshots are read in one query instead of reloading each snapshot through
+	 * OGM. Changes to the design space are tracked from here on, so that saving it only writes what
+	 * has changed.
+	 */
+	public DesignSpace loadDesignSpace(String targetSpaceID) {
+		Long spaceGraphID = getDesignSpaceGraphID(targetSpaceID);
+
+		if (spaceGraphID == null) {
+			return null;
+		}
+
+		DesignSpace targetSpace = designSpaceRepository.findOne(spaceGraphID, 3);
+
+		Map<Long, NodeSpace> graphIDToSnapshot = nodeSpaceLoader.loadSnapshots(targetSpace.getGraphID());
+
+		if (targetSpace.hasBranches()) {
+			for (Branch branch : targetSpace.getBranches()) {
+				if (branch.hasCommits()) {
+					for (Commit commit : branch.getCommits()) {
+						Snapshot snapshot = commit.getSnapshot();
+
+						if (snapshot != null && graphIDToSnapshot.containsKey(snapshot.getGraphID())) {
+							snapshot.setNodes(graphIDToSnapshot.get(snapshot.getGraphID()).getNodes());
+						} else if (snapshot != null) {
+							snapshot.setNodes(new HashSet<Node>());
+						}
+					}
+				}
+			}
+		}
+
+		targetSpace.trackChanges();
+
+		return targetSpace;
+	}
+
+	public void saveDesignSpace(DesignSpace space) {
+		nodeSpaceWriter.saveDesignSpace(space);
+	}
+
+	public void createDesignSpace(String outputSpaceID) {
+		designSpaceRepository.createDesignSpace(outputSpaceID);
+	}
+
+	public void createDesignSpace(String outputSpaceID, ArrayList<String> componentIDs,
+			ArrayList<String> componentRoles) {
+		designSpaceRepository.createDesignSpace(outputSpaceID, componentIDs, componentRoles);
+	}
+
+	public List<String> importDesignSpaces(List<DesignSpace> spaces) {
+		return nodeSpaceWriter.importDesignSpaces(spaces);
+	}
+
+	public void deleteDesignSpace(String targetSpaceID) {
+		Long spaceGraphID = nodeSpaceWriter.markDesignSpaceDeleted(targetSpaceID);
+
+		if (spaceGraphID != null) {
+			startDeletion(targetSpaceID, spaceGraphID);
+		}
+	}
+
+	public Map<String, Object> getDeletionProgress(String targetSpaceID) {
+		DeletionProgress progress = deletions.get(targetSpaceID);
+
+		return progress != null ? progress.toMap() : null;
+	}
+
+	private void startDeletion(String targetSpaceID, final Long spaceGraphID) {
+		final DeletionProgress progress = new DeletionProgress(targetSpaceID);
+
+		deletions.put(targetSpaceID, progress);
+
+		deletionExecutor.execute(new Runnable() {
+			public void run() {
+				try {
+					if (deleteDesignSpace(spaceGraphID, progress)) {
+						progress.finish();
+					}
+				} catch (RuntimeException ex) {
+					LOG.error("could not delete design space " + progress.getSpaceID(), ex);
+
+					progress.fail(ex);
+				}
+			}
+		});
+	}
+
+	/*
+	 * Deletes the head graph first, then the commits in batches together with the snapshots that no
+	 * other commit shares, and finally the branches and the design space itself. Commits that are
+	 * part of the history of another design space are kept. Every step only touches what is left,
+	 * so a deletion that was interrupted can be run again. Returns false if it was interrupted.
+	 */
+	private boolean deleteDesignSpace(Long spaceGraphID, DeletionProgress progress) {
+		progress.addDeletedNodes(nodeSpaceWriter.clearNodes(spaceGraphID));
+
+		Set<Long> referencedGraphIDs = nodeSpaceWriter.findReferencedCommits(spaceGraphID);
+
+		List<Long> commitGraphIDs;
+
+		do {
+			commitGraphIDs = nodeSpaceWriter.findArchivedCommits(spaceGraphID, referencedGraphIDs,
+					COMMIT_BATCH_SIZE);
+
+			progress.addDeletedCommits(commitGraphIDs.size(),
+					nodeSpaceWriter.deleteArchivedCommits(commitGraphIDs));
+		} while (!commitGraphIDs.isEmpty() && !Thread.currentThread().isInterrupted());
+
+		if (!commitGraphIDs.isEmpty()) {
+			return false;
+		}
+
+		nodeSpaceWriter.deleteArchive(spaceGraphID);
+
+		return true;
+	}
+
+	public void commitHead(String targetSpaceID, String headBranchID, NodeSpace head,
+			Collection<Long> predecessorIDs) {
+		nodeSpaceWriter.commitHead(targetSpaceID, headBranchID, head, predecessorIDs);
+	}
+
+	public void commitBranch(String targetSpaceID, String targetBranchID, NodeSpace snapshotSpace,
+			Collection<Long> predecessorIDs) {
+		nodeSpaceWriter.commitBranch(targetSpaceID, targetBranchID, snapshotSpace, predecessorIDs);
+	}
+
+	public void copyHeadBranch(String targetSpaceID, String outputBranchID) {
+		designSpaceRepository.copyHeadBranch(targetSpaceID, outputBranchID);
+	}
+
+	public void checkoutBranch(String targetSpaceID, String targetBranchID) {
+		NodeSpace branchHead = nodeSpaceLoader.loadBranchHead(targetSpaceID, targetBranchID);
+
+		if (branchHead != null) {
+			nodeSpaceWriter.checkoutBranch(targetSpaceID, targetBranchID, branchHead);
+		}
+	}
+
+	public void resetBranch(String targetSpaceID, String targetBranchID, List<String> commitPath) {
+		nodeSpaceWriter.resetBranch(targetSpaceID, targetBranchID, commitPath);
+	}
+
+	public void deleteBranch(String targetSpaceID, String targetBranchID) {
+		designSpaceRepository.deleteBranch(targetSpaceID, targetBranchID);
+	}
+
+	public List<Map<String, Object>> mapBranches(String targetSpaceID) {
+		return designSpaceRepository.mapBranches(targetSpaceID);
+	}
+
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID) {
+		return designSpaceRepository.mapDesignSpace(targetSpaceID);
+	}
+
+	private Long getDesignSpaceGraphID(String targetSpaceID) {
+		return toGraphID(designSpaceRepository.getDesignSpaceGraphID(targetSpaceID));
+	}
+
+	private static Long toGraphID(Set<Integer> graphIDs) {
+		if (graphIDs.size() > 0) {
+			return new Long(graphIDs.iterator().next());
+		} else {
+			return null;
+		}
+	}
+}
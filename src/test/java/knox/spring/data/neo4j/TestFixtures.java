@@ -0,0 +1,25 @@
+package knox.spring.data.neo4j;
+
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Helpers for building the design spaces that tests run on.
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {}
+
+    public static ArrayList<String> list(String... strings) {
+        return new ArrayList<>(Arrays.asList(strings));
+    }
+
+    /*
+     * A design space with a single edge for one component.
+     */
+    public static NodeSpace createSpace(String compID, String compRole) {
+        return new NodeSpace(list(compID), list(compRole));
+    }
+}
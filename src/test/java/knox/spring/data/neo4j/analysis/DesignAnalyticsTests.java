@@ -0,0 +1,157 @@
+package knox.spring.data.neo4j.analysis;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+/*
+ * Checks the counts of DesignAnalytics against those found by walking every path of a design
+ * space and every choice of component on it.
+ */
+
+public class DesignAnalyticsTests extends TestCase {
+
+    /*
+     * Promoters, then either a reverse CDS or nothing, then terminators, with designs ending
+     * either after the CDS or after the terminators.
+     */
+    private static NodeSpace createAcyclicSpace() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node coded = space.createAcceptNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, list("p1", "p2"), list("promoter"), Edge.Orientation.INLINE);
+        promoted.createEdge(coded, list("c1"), list("CDS"), Edge.Orientation.REVERSE_COMPLEMENT);
+        promoted.createEdge(coded);
+        coded.createEdge(accept, list("t1", "t2", "t3"), list("terminator"), Edge.Orientation.INLINE);
+
+        return space;
+    }
+
+    private static NodeSpace createCyclicSpace() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node repeated = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(repeated, list("x1", "x2"), list("promoter", "ribozyme"), Edge.Orientation.INLINE);
+        repeated.createEdge(repeated, list("y1"), list("CDS"), Edge.Orientation.INLINE);
+        repeated.createEdge(accept, list("z1", "z2"), list("terminator"), Edge.Orientation.REVERSE_COMPLEMENT);
+        repeated.createEdge(accept);
+
+        return space;
+    }
+
+    private static class Counts {
+        BigInteger numDesigns = BigInteger.ZERO;
+
+        Map<Integer, BigInteger> lengths = new TreeMap<>();
+
+        Map<String, BigInteger> componentIDs = new TreeMap<>();
+
+        Map<String, BigInteger> componentRoles = new TreeMap<>();
+
+        Map<String, BigInteger> orientations = new TreeMap<>();
+    }
+
+    private static void addCount(Map<String, BigInteger> keyToCount, String key) {
+        keyToCount.put(key, keyToCount.containsKey(key) ? keyToCount.get(key).add(BigInteger.ONE) : BigInteger.ONE);
+    }
+
+    private static Counts enumerate(NodeSpace space, int maxLength) {
+        Counts counts = new Counts();
+
+        for (Node start : space.getStartNodes()) {
+            enumerate(start, new LinkedList<Edge>(), new LinkedList<String>(), maxLength, counts);
+        }
+
+        return counts;
+    }
+
+    private static void enumerate(Node node, LinkedList<Edge> edges, LinkedList<String> compIDs, int maxLength,
+            Counts counts) {
+        if (node.isAcceptNode() && !compIDs.isEmpty()) {
+            counts.numDesigns = counts.numDesigns.add(BigInteger.ONE);
+
+            Integer length = compIDs.size();
+            counts.lengths.put(length, counts.lengths.containsKey(length)
+                    ? counts.lengths.get(length).add(BigInteger.ONE) : BigInteger.ONE);
+
+            for (int i = 0; i < edges.size(); i++) {
+                addCount(counts.componentIDs, compIDs.get(i));
+
+                for (String compRole : new HashSet<>(edges.get(i).getComponentRoles())) {
+                    addCount(counts.componentRoles, compRole);
+                }
+
+                addCount(counts.orientations, edges.get(i).getOrientation().getValue());
+            }
+        }
+
+        if (node.hasEdges()) {
+            for (Edge edge : node.getEdges()) {
+                if (!edge.hasComponentIDs()) {
+                    enumerate(edge.getHead(), edges, compIDs, maxLength, counts);
+                } else if (compIDs.size() < maxLength) {
+                    for (String compID : edge.getComponentIDs()) {
+                        edges.addLast(edge);
+                        compIDs.addLast(compID);
+
+                        enumerate(edge.getHead(), edges, compIDs, maxLength, counts);
+
+                        edges.removeLast();
+                        compIDs.removeLast();
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertCounts(Counts expected, Map<String, Object> analytics) {
+        assertEquals(expected.numDesigns, analytics.get("numDesigns"));
+        assertEquals(expected.lengths, analytics.get("lengths"));
+        assertEquals(expected.componentIDs, analytics.get("componentIDs"));
+        assertEquals(expected.componentRoles, analytics.get("componentRoles"));
+        assertEquals(expected.orientations, analytics.get("orientations"));
+    }
+
+    public void testAcyclicSpace() {
+        NodeSpace space = createAcyclicSpace();
+
+        Map<String, Object> analytics = new DesignAnalytics(space, 0).analyze();
+
+        assertEquals(3, analytics.get("maxLength"));
+        assertEquals(Boolean.FALSE, analytics.get("hasCycles"));
+        assertEquals(BigInteger.valueOf(16), analytics.get("numDesigns"));
+        assertCounts(enumerate(space, 3), analytics);
+    }
+
+    public void testAcyclicSpaceWithinMaxLength() {
+        NodeSpace space = createAcyclicSpace();
+
+        assertCounts(enumerate(space, 2), new DesignAnalytics(space, 2).analyze());
+    }
+
+    public void testCyclicSpace() {
+        NodeSpace space = createCyclicSpace();
+
+        Map<String, Object> analytics = new DesignAnalytics(space, 6).analyze();
+
+        assertEquals(6, analytics.get("maxLength"));
+        assertEquals(Boolean.TRUE, analytics.get("hasCycles"));
+        assertCounts(enumerate(space, 6), analytics);
+    }
+}
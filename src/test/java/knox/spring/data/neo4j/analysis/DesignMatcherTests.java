@@ -0,0 +1,106 @@
+package knox.spring.data.neo4j.analysis;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.sample.DesignSampler;
+import knox.spring.data.neo4j.sample.DesignSampler.EnumerateType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+public class DesignMatcherTests extends TestCase {
+    private NodeSpace space;
+
+    private DesignMatcher matcher;
+
+    protected void setUp() {
+        space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node coded = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, list("p1", "p2"), list("promoter"), Edge.Orientation.INLINE);
+        promoted.createEdge(coded, list("c1"), list("CDS"), Edge.Orientation.REVERSE_COMPLEMENT);
+        promoted.createEdge(coded);
+        coded.createEdge(coded, list("c2"), list("CDS"), Edge.Orientation.INLINE);
+        coded.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+
+        matcher = new DesignMatcher(space);
+    }
+
+    private static Map<String, Object> component(String compID, String orientation) {
+        Map<String, Object> comp = new HashMap<>();
+        comp.put("id", compID);
+
+        if (orientation != null) {
+            comp.put("orientation", orientation);
+        }
+
+        return comp;
+    }
+
+    private static List<Map<String, Object>> design(String... compIDs) {
+        List<Map<String, Object>> design = new ArrayList<>();
+
+        for (String compID : compIDs) {
+            if (compID.startsWith("-")) {
+                design.add(component(compID.substring(1), "reverseComplement"));
+            } else {
+                design.add(component(compID, null));
+            }
+        }
+
+        return design;
+    }
+
+    public void testEnumeratedDesignsMatch() {
+        List<List<Map<String, Object>>> designs = new DesignSampler(space).enumerate(0, 0, 6, EnumerateType.BFS);
+
+        assertFalse(designs.isEmpty());
+
+        for (List<Map<String, Object>> design : designs) {
+            assertTrue(design.toString(), matcher.matches(design));
+        }
+    }
+
+    public void testMatches() {
+        assertTrue(matcher.matches(design("p1", "t1")));
+        assertTrue(matcher.matches(design("p2", "-c1", "t1")));
+        assertTrue(matcher.matches(design("p2", "c2", "c2", "c2", "t1")));
+        assertTrue(matcher.matches(design("p1", "-c1", "c2", "t1")));
+    }
+
+    public void testMismatches() {
+        assertFalse(matcher.matches(design("p1")));
+        assertFalse(matcher.matches(design("p1", "c1", "t1")));
+        assertFalse(matcher.matches(design("p1", "c2", "-c1", "t1")));
+        assertFalse(matcher.matches(design("p1", "t1", "t1")));
+        assertFalse(matcher.matches(design("p3", "t1")));
+        assertFalse(matcher.matches(Collections.<Map<String, Object>>emptyList()));
+    }
+
+    public void testParallelMatchKeepsOrder() {
+        List<List<Map<String, Object>>> designs = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            designs.add(i % 3 == 0 ? design("p1", "c1", "t1") : design("p2", "-c1", "c2", "t1"));
+        }
+
+        List<Boolean> isMatching = matcher.match(designs, 4);
+
+        assertEquals(matcher.match(designs), isMatching);
+
+        for (int i = 0; i < designs.size(); i++) {
+            assertEquals(i % 3 != 0, isMatching.get(i).booleanValue());
+        }
+    }
+}
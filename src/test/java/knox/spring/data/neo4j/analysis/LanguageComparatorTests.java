@@ -0,0 +1,128 @@
+package knox.spring.data.neo4j.analysis;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+public class LanguageComparatorTests extends TestCase {
+
+    /*
+     * Promoters followed by any number of CDSs and a terminator, with each CDS on a path of its own
+     * when unrolled is true, so that the same designs are spelled by a different graph.
+     */
+    private static NodeSpace createSpace(List<String> promoterIDs, int maxCDSs, boolean unrolled) {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, new ArrayList<>(promoterIDs), list("promoter"), Edge.Orientation.INLINE);
+
+        if (maxCDSs < 0) {
+            promoted.createEdge(promoted, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+            promoted.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+        } else if (unrolled) {
+            for (int i = 0; i <= maxCDSs; i++) {
+                Node tail = promoted;
+
+                for (int j = 0; j < i; j++) {
+                    Node head = space.createNode();
+                    tail.createEdge(head, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+                    tail = head;
+                }
+
+                tail.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+            }
+        } else {
+            Node tail = promoted;
+
+            for (int j = 0; j < maxCDSs; j++) {
+                tail.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+
+                Node head = space.createNode();
+                tail.createEdge(head, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+                tail = head;
+            }
+
+            tail.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+        }
+
+        return space;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> getCounterexampleIDs(Map<String, Object> comparison) {
+        List<String> compIDs = new ArrayList<>();
+
+        for (Map<String, Object> comp : (List<Map<String, Object>>) comparison.get("counterexample")) {
+            compIDs.add((String) comp.get("id"));
+        }
+
+        return compIDs;
+    }
+
+    public void testEqualSpaces() {
+        Map<String, Object> comparison = new LanguageComparator(createSpace(list("p1", "p2"), 3, false),
+                createSpace(list("p2", "p1"), 3, true)).compare();
+
+        assertEquals("equal", comparison.get("relation"));
+        assertFalse(comparison.containsKey("counterexample"));
+    }
+
+    public void testSubset() {
+        Map<String, Object> comparison = new LanguageComparator(createSpace(list("p1"), 2, true),
+                createSpace(list("p1", "p2"), -1, false)).compare();
+
+        assertEquals("subset", comparison.get("relation"));
+        assertEquals("second", comparison.get("counterexampleSpace"));
+        assertEquals(list("p2", "t1"), getCounterexampleIDs(comparison));
+    }
+
+    public void testSuperset() {
+        Map<String, Object> comparison = new LanguageComparator(createSpace(list("p1"), -1, false),
+                createSpace(list("p1"), 2, false)).compare();
+
+        assertEquals("superset", comparison.get("relation"));
+        assertEquals("first", comparison.get("counterexampleSpace"));
+        assertEquals(list("p1", "c1", "c1", "c1", "t1"), getCounterexampleIDs(comparison));
+    }
+
+    public void testOverlap() {
+        Map<String, Object> comparison = new LanguageComparator(createSpace(list("p1", "p2"), 1, false),
+                createSpace(list("p2", "p3"), 1, true)).compare();
+
+        assertEquals("overlap", comparison.get("relation"));
+        assertEquals("first", comparison.get("counterexampleSpace"));
+        assertEquals("p1", getCounterexampleIDs(comparison).get(0));
+    }
+
+    public void testDisjoint() {
+        Map<String, Object> comparison = new LanguageComparator(createSpace(list("p1"), -1, false),
+                createSpace(list("p2"), -1, false)).compare();
+
+        assertEquals("disjoint", comparison.get("relation"));
+        assertEquals(list("p1", "t1"), getCounterexampleIDs(comparison));
+    }
+
+    public void testOrientationDistinguishesDesigns() {
+        NodeSpace first = createSpace(list("p1"), 0, false);
+        NodeSpace second = new NodeSpace(0);
+
+        Node start = second.createStartNode();
+        Node promoted = second.createNode();
+        Node accept = second.createAcceptNode();
+
+        start.createEdge(promoted, list("p1"), list("promoter"), Edge.Orientation.REVERSE_COMPLEMENT);
+        promoted.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+
+        assertEquals("disjoint", new LanguageComparator(first, second).compare().get("relation"));
+    }
+}
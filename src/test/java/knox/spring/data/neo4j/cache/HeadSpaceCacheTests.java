@@ -0,0 +1,55 @@
+package knox.spring.data.neo4j.cache;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.sample.DesignSampler;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+public class HeadSpaceCacheTests extends TestCase {
+
+    private static NodeSpace createSpace(int length) {
+        NodeSpace space = new NodeSpace(0);
+
+        Node predecessor = space.createStartNode();
+
+        for (int i = 0; i < length; i++) {
+            Node node = i < length - 1 ? space.createNode() : space.createAcceptNode();
+
+            predecessor.createEdge(node, list("c" + i), list("CDS"));
+
+            predecessor = node;
+        }
+
+        return space;
+    }
+
+    public void testSamplersAreWeighedBySize() {
+        NodeSpace space = createSpace(10);
+
+        long samplerSize = HeadSpaceCache.estimateSize(new DesignSampler(space));
+
+        assertTrue(samplerSize > HeadSpaceCache.estimateSize(space));
+        assertTrue(HeadSpaceCache.estimateSize(new DesignSampler(createSpace(100))) > 5 * samplerSize);
+    }
+
+    public void testSamplersOverBudgetAreNotCached() {
+        DesignSampler sampler = new DesignSampler(createSpace(10));
+
+        HeadSpaceCache cache = new HeadSpaceCache();
+        cache.maxSamplerBytes = HeadSpaceCache.estimateSize(sampler) - 1;
+        cache.initialize();
+
+        cache.putSampler(cache.getKey("a", 1L), sampler);
+
+        assertNull(cache.getSampler(cache.getKey("a", 1L)));
+
+        cache.maxSamplerBytes = HeadSpaceCache.estimateSize(sampler);
+        cache.initialize();
+
+        cache.putSampler(cache.getKey("a", 1L), sampler);
+
+        assertSame(sampler, cache.getSampler(cache.getKey("a", 1L)));
+    }
+}
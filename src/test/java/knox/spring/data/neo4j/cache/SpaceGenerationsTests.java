@@ -0,0 +1,33 @@
+package knox.spring.data.neo4j.cache;
+
+import junit.framework.TestCase;
+
+public class SpaceGenerationsTests extends TestCase {
+
+    public void testRemovedSpacesAreNotKept() {
+        SpaceGenerations generations = new SpaceGenerations();
+
+        generations.increment("a");
+        generations.increment("b");
+        generations.remove("a");
+
+        assertEquals(1, generations.size());
+        assertEquals(0, generations.get("a"));
+    }
+
+    /*
+     * A design space that is deleted and created again does not go back to a generation that keys
+     * were taken under before.
+     */
+    public void testRecreatedSpacesMoveOnToNewGenerations() {
+        SpaceGenerations generations = new SpaceGenerations();
+
+        generations.increment("a");
+        generations.increment("a");
+        long deletedGeneration = generations.get("a");
+        generations.remove("a");
+        generations.increment("a");
+
+        assertTrue(generations.get("a") > deletedGeneration);
+    }
+}
@@ -0,0 +1,189 @@
+package knox.spring.data.neo4j.domain;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+public class ChangeTrackerTests extends TestCase {
+    private DesignSpace space;
+
+    private Node start;
+
+    private Node accept;
+
+    private Edge edge;
+
+    private long nextGraphID;
+
+    protected void setUp() {
+        space = new DesignSpace("space");
+
+        start = space.createStartNode();
+        accept = space.createAcceptNode();
+
+        edge = start.createEdge(accept, list("p1"), list("promoter"), Edge.Orientation.INLINE);
+
+        space.createHeadBranch("space");
+        space.commitToHead();
+
+        nextGraphID = 0;
+    }
+
+    /*
+     * Gives graph IDs to every entity of the design space that does not have one yet, as if the
+     * changes to it had been written, and takes a new baseline.
+     */
+    private void save() {
+        ChangeTracker tracker = space.getChangeTracker();
+
+        Map<Object, Long> createdGraphIDs = new IdentityHashMap<>();
+
+        if (tracker.getGraphID(space) == null) {
+            createdGraphIDs.put(space, nextGraphID++);
+        }
+
+        for (Node node : space.getNodes()) {
+            if (tracker.getNodeGraphID(node.getNodeID()) == null) {
+                createdGraphIDs.put(node, nextGraphID++);
+            }
+        }
+
+        for (Edge edge : tracker.diff(space).createdEdges) {
+            createdGraphIDs.put(edge, nextGraphID++);
+        }
+
+        for (Branch branch : space.getBranches()) {
+            if (tracker.getGraphID(branch) == null) {
+                createdGraphIDs.put(branch, nextGraphID++);
+            }
+
+            for (Commit commit : branch.getCommits()) {
+                if (tracker.getGraphID(commit) == null) {
+                    createdGraphIDs.put(commit, nextGraphID++);
+                }
+            }
+        }
+
+        tracker.commit(space, createdGraphIDs);
+    }
+
+    public void testNewSpaceIsCreated() {
+        ChangeSet changes = space.getChangeTracker().diff(space);
+
+        assertTrue(changes.isSpaceCreated());
+        assertEquals(2, changes.createdNodes.size());
+        assertEquals(Collections.singletonList(edge), changes.createdEdges);
+        assertEquals(1, changes.createdBranches.size());
+        assertEquals(1, changes.createdCommits.size());
+        assertEquals(space.getHeadBranch(), changes.selectedBranch);
+    }
+
+    public void testNoChangesAfterSave() {
+        save();
+
+        assertTrue(space.getChangeTracker().diff(space).isEmpty());
+    }
+
+    public void testEqualEdgeCopiesAreUnchanged() {
+        save();
+
+        start.deleteEdge(edge);
+        start.createEdge(accept, list("p1"), list("promoter"), Edge.Orientation.INLINE);
+
+        assertTrue(space.getChangeTracker().diff(space).isEmpty());
+    }
+
+    public void testModifiedEdgeIsReplaced() {
+        save();
+
+        Long edgeGraphID = space.getChangeTracker().getGraphID(edge);
+
+        start.deleteEdge(edge);
+        Edge modifiedEdge = start.createEdge(accept, list("p2"), list("promoter"), Edge.Orientation.INLINE);
+
+        ChangeSet changes = space.getChangeTracker().diff(space);
+
+        assertEquals(Collections.singletonList(modifiedEdge), changes.createdEdges);
+        assertEquals(Collections.singletonList(edgeGraphID), changes.deletedEdgeGraphIDs);
+        assertTrue(changes.createdNodes.isEmpty());
+        assertTrue(changes.deletedNodeGraphIDs.isEmpty());
+    }
+
+    public void testNodeChanges() {
+        save();
+
+        Long acceptGraphID = space.getChangeTracker().getNodeGraphID(accept.getNodeID());
+        Long startGraphID = space.getChangeTracker().getNodeGraphID(start.getNodeID());
+
+        Node middle = space.createNode();
+        start.deleteEdge(edge);
+        start.createEdge(middle, list("p1"), list("promoter"), Edge.Orientation.INLINE);
+        middle.addNodeType(Node.NodeType.ACCEPT.getValue());
+        space.deleteNode(accept);
+        start.addNodeType(Node.NodeType.ACCEPT.getValue());
+
+        ChangeSet changes = space.getChangeTracker().diff(space);
+
+        assertTrue(changes.isSpaceModified());
+        assertEquals(Collections.singletonList(middle), changes.createdNodes);
+        assertEquals(Collections.singletonList(acceptGraphID), changes.deletedNodeGraphIDs);
+        assertEquals(Collections.singleton(startGraphID), changes.modifiedNodeTypes.keySet());
+        assertEquals(new HashSet<>(start.getNodeTypes()), new HashSet<>(changes.modifiedNodeTypes.get(startGraphID)));
+        assertEquals(1, changes.createdEdges.size());
+        assertEquals(1, changes.deletedEdgeGraphIDs.size());
+    }
+
+    public void testCommitChanges() {
+        save();
+
+        Branch headBranch = space.getHeadBranch();
+        Commit firstCommit = headBranch.getLatestCommit();
+
+        space.commitToHead();
+
+        Commit secondCommit = headBranch.getLatestCommit();
+
+        ChangeSet changes = space.getChangeTracker().diff(space);
+
+        assertTrue(changes.isSpaceModified());
+        assertEquals(Collections.singletonList(secondCommit), changes.createdCommits);
+        assertEquals(Collections.singletonList(secondCommit), changes.addedBranchCommits.get(headBranch));
+        assertEquals(Collections.singletonList(headBranch), changes.modifiedLatestCommits);
+        assertTrue(changes.removedBranchCommits.isEmpty());
+        assertTrue(changes.createdBranches.isEmpty());
+
+        save();
+
+        Long firstCommitGraphID = space.getChangeTracker().getGraphID(firstCommit);
+
+        headBranch.deleteCommits(Collections.singleton(firstCommit));
+
+        changes = space.getChangeTracker().diff(space);
+
+        assertEquals(Collections.singletonList(firstCommit), changes.removedBranchCommits.get(headBranch));
+        assertEquals(Collections.singletonList(firstCommitGraphID), changes.deletedCommitGraphIDs);
+    }
+
+    public void testBranchChanges() {
+        save();
+
+        Branch headBranch = space.getHeadBranch();
+        Long headBranchGraphID = space.getChangeTracker().getGraphID(headBranch);
+
+        Branch otherBranch = space.createBranch("other");
+        space.setHeadBranch(otherBranch);
+        space.getBranches().remove(headBranch);
+
+        ChangeSet changes = space.getChangeTracker().diff(space);
+
+        assertEquals(Collections.singletonList(otherBranch), changes.createdBranches);
+        assertEquals(otherBranch, changes.selectedBranch);
+        assertEquals(Collections.singletonList(headBranchGraphID), changes.deletedBranchGraphIDs);
+        assertEquals(1, changes.deletedCommitGraphIDs.size());
+    }
+}
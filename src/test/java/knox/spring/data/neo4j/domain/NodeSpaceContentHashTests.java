@@ -0,0 +1,91 @@
+package knox.spring.data.neo4j.domain;
+
+import junit.framework.TestCase;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+public class NodeSpaceContentHashTests extends TestCase {
+
+    private static NodeSpace createSpace(boolean isReversed) {
+        return createSpace(isReversed, 3);
+    }
+
+    private static NodeSpace createSpace(boolean isReversed, int nodeIndex) {
+        NodeSpace space = new NodeSpace(nodeIndex);
+
+        Node start = space.createTypedNode("n0", Node.NodeType.START.getValue());
+        Node middle = space.createNode("n1");
+        Node accept = space.createTypedNode("n2", Node.NodeType.ACCEPT.getValue());
+
+        if (isReversed) {
+            middle.createEdge(accept);
+            middle.createEdge(accept, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+            start.createEdge(middle, list("p1", "p2"), list("promoter"), Edge.Orientation.INLINE);
+        } else {
+            start.createEdge(middle, list("p1", "p2"), list("promoter"), Edge.Orientation.INLINE);
+            middle.createEdge(accept, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+            middle.createEdge(accept);
+        }
+
+        return space;
+    }
+
+    private static Edge getEdge(NodeSpace space, String componentID) {
+        for (Edge edge : space.getEdges()) {
+            if (edge.hasComponentIDs() && edge.getComponentIDs().contains(componentID)) {
+                return edge;
+            }
+        }
+
+        return null;
+    }
+
+    public void testEqualSpacesHashTheSame() {
+        assertEquals(createSpace(false).computeContentHash(), createSpace(true).computeContentHash());
+    }
+
+    public void testCopiesHashTheSame() {
+        NodeSpace space = createSpace(false);
+
+        assertEquals(space.computeContentHash(), space.copy().computeContentHash());
+        assertEquals(space.computeContentHash(), space.shallowCopy().computeContentHash());
+    }
+
+    public void testHashIsHex() {
+        assertTrue(createSpace(false).computeContentHash().matches("[0-9a-f]{64}"));
+    }
+
+    public void testComponentChangesHashDifferently() {
+        String contentHash = createSpace(false).computeContentHash();
+
+        NodeSpace space = createSpace(false);
+        getEdge(space, "c1").getComponentIDs().set(0, "c2");
+        assertFalse(contentHash.equals(space.computeContentHash()));
+
+        space = createSpace(false);
+        getEdge(space, "c1").getComponentRoles().set(0, "terminator");
+        assertFalse(contentHash.equals(space.computeContentHash()));
+
+        space = createSpace(false);
+        getEdge(space, "c1").setOrientation(Edge.Orientation.REVERSE_COMPLEMENT);
+        assertFalse(contentHash.equals(space.computeContentHash()));
+
+        space = createSpace(false);
+        getEdge(space, "c1").setWeight(0.5);
+        assertFalse(contentHash.equals(space.computeContentHash()));
+    }
+
+    public void testStructureChangesHashDifferently() {
+        String contentHash = createSpace(false).computeContentHash();
+
+        NodeSpace space = createSpace(false);
+        space.getStartNodes().iterator().next().addNodeType(Node.NodeType.ACCEPT.getValue());
+        assertFalse(contentHash.equals(space.computeContentHash()));
+
+        space = createSpace(false);
+        space.createNode("n3");
+        assertFalse(contentHash.equals(space.computeContentHash()));
+
+        assertFalse(contentHash.equals(createSpace(false, 4).computeContentHash()));
+    }
+}
@@ -0,0 +1,166 @@
+package knox.spring.data.neo4j.operations;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.analysis.LanguageComparator;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.sample.DesignSampler;
+import knox.spring.data.neo4j.sample.DesignSampler.EnumerateType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Compares design spaces built by DesignTrie with those that CSV imports build by default, by
+ * merging one linear design space per row at tolerance 1.
+ */
+
+public class DesignTrieTests extends TestCase {
+
+    private static List<String> getRoles(List<String> compIDs) {
+        List<String> compRoles = new ArrayList<>(compIDs.size());
+
+        for (String compID : compIDs) {
+            compRoles.add(compID.startsWith("p") ? "promoter" : compID.startsWith("c") ? "CDS" : "terminator");
+        }
+
+        return compRoles;
+    }
+
+    private static NodeSpace buildTrie(List<List<String>> designs) {
+        DesignTrie trie = new DesignTrie();
+
+        for (List<String> design : designs) {
+            trie.insert(design, getRoles(design));
+        }
+
+        NodeSpace space = new NodeSpace(0);
+        trie.apply(space);
+
+        return space;
+    }
+
+    private static NodeSpace buildMerge(List<List<String>> designs) {
+        List<NodeSpace> rowSpaces = new LinkedList<>();
+
+        for (List<String> design : designs) {
+            NodeSpace rowSpace = new NodeSpace(0);
+            List<String> compRoles = getRoles(design);
+
+            Node predecessor = rowSpace.createStartNode();
+
+            for (int i = 0; i < design.size(); i++) {
+                Node node = i < design.size() - 1 ? rowSpace.createNode() : rowSpace.createAcceptNode();
+
+                predecessor.createEdge(node, new ArrayList<>(Arrays.asList(design.get(i))),
+                        new ArrayList<>(Arrays.asList(compRoles.get(i))));
+
+                predecessor = node;
+            }
+
+            rowSpaces.add(rowSpace);
+        }
+
+        NodeSpace space = new NodeSpace(0);
+        MergeOperator.apply(rowSpaces, space, 1, new HashSet<String>());
+
+        return space;
+    }
+
+    private static Set<List<String>> enumerate(NodeSpace space) {
+        Set<List<String>> designs = new HashSet<>();
+
+        for (List<Map<String, Object>> design : new DesignSampler(space).enumerate(0, 0, 0, EnumerateType.BFS)) {
+            List<String> compIDs = new ArrayList<>();
+
+            for (Map<String, Object> comp : design) {
+                compIDs.add((String) comp.get("id"));
+            }
+
+            designs.add(compIDs);
+        }
+
+        return designs;
+    }
+
+    private static List<List<String>> designs(String... designs) {
+        List<List<String>> designList = new ArrayList<>();
+
+        for (String design : designs) {
+            designList.add(Arrays.asList(design.split(" ")));
+        }
+
+        return designList;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> getCounterexample(Map<String, Object> comparison) {
+        List<String> compIDs = new ArrayList<>();
+
+        for (Map<String, Object> comp : (List<Map<String, Object>>) comparison.get("counterexample")) {
+            compIDs.add((String) comp.get("id"));
+        }
+
+        return compIDs;
+    }
+
+    /*
+     * The trie accepts exactly the imported designs, all of which the merge accepts too, while the
+     * merge also recombines the components of different rows into designs that were not imported.
+     */
+    private static void assertNarrowsMerge(List<List<String>> designs) {
+        NodeSpace trieSpace = buildTrie(designs);
+
+        assertEquals(new HashSet<>(designs), enumerate(trieSpace));
+
+        Map<String, Object> comparison = new LanguageComparator(trieSpace, buildMerge(designs)).compare();
+
+        assertEquals("subset", comparison.get("relation"));
+        assertEquals("second", comparison.get("counterexampleSpace"));
+        assertFalse(designs.contains(getCounterexample(comparison)));
+    }
+
+    public void testImportedDesignsAreNotRecombined() {
+        assertNarrowsMerge(designs("p1 c1 t1", "p1 c2 t1", "p2 c1 t1", "p2 c1 t2"));
+    }
+
+    public void testSharedSuffixesAreMerged() {
+        NodeSpace trieSpace = buildTrie(designs("p1 c1 t1", "p2 c1 t1", "p3 c1 t1", "p1 c2 t1"));
+
+        // Start, after p1, after p2 or p3, after either CDS and accept
+
+        assertEquals(5, trieSpace.getNumNodes());
+        assertEquals(7, trieSpace.getEdges().size());
+        assertEquals(1, trieSpace.getStartNodes().size());
+        assertEquals(1, trieSpace.getAcceptNodes().size());
+    }
+
+    public void testRecurringComponentsAreNotRecombined() {
+        assertNarrowsMerge(designs("p1 c1 c2 t1", "p2 c2 c1 t2"));
+    }
+
+    public void testDesignsThatArePrefixesOfOthers() {
+        List<List<String>> designs = designs("p1 c1", "p1 c1 t1", "p1");
+
+        NodeSpace trieSpace = buildTrie(designs);
+
+        assertEquals(new HashSet<>(designs), enumerate(trieSpace));
+        assertEquals("equal", new LanguageComparator(trieSpace, buildMerge(designs)).compare().get("relation"));
+    }
+
+    public void testEmptyTrieLeavesSpaceEmpty() {
+        DesignTrie trie = new DesignTrie();
+
+        assertTrue(trie.isEmpty());
+
+        NodeSpace space = new NodeSpace(0);
+        trie.apply(space);
+
+        assertEquals(0, space.getNumNodes());
+    }
+}
@@ -0,0 +1,90 @@
+package knox.spring.data.neo4j.operations;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.operations.RoleSubsumption.Profile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+public class RoleSubsumptionTests extends TestCase {
+
+    private static Edge createEdge(ArrayList<String> compIDs, ArrayList<String> compRoles) {
+        return new Edge(new Node("n0"), new Node("n1"), compIDs, compRoles);
+    }
+
+    private static boolean isMatching(RoleSubsumption subsumption, String role, String otherRole) {
+        Profile profile = subsumption.getProfile(createEdge(list("a"), list(role)));
+        Profile otherProfile = subsumption.getProfile(createEdge(list("b"), list(otherRole)));
+
+        return subsumption.isMatching(profile, otherProfile);
+    }
+
+    public void testRolesMatchAncestorsAndDescendants() {
+        RoleSubsumption subsumption = new RoleSubsumption(Collections.<String>emptySet());
+
+        assertTrue(isMatching(subsumption, "promoter", "promoter"));
+        assertTrue(isMatching(subsumption, "promoter", "constitutive_promoter"));
+        assertTrue(isMatching(subsumption, "constitutive_promoter", "promoter"));
+        assertTrue(isMatching(subsumption, "sequence_feature", "constitutive_promoter"));
+    }
+
+    public void testUnrelatedRolesDoNotMatch() {
+        RoleSubsumption subsumption = new RoleSubsumption(Collections.<String>emptySet());
+
+        assertFalse(isMatching(subsumption, "promoter", "terminator"));
+        assertFalse(isMatching(subsumption, "constitutive_promoter", "CDS"));
+    }
+
+    public void testRolesOutsideOntologyOnlyMatchThemselves() {
+        RoleSubsumption subsumption = new RoleSubsumption(Collections.<String>emptySet());
+
+        assertTrue(isMatching(subsumption, "custom_part", "custom_part"));
+        assertFalse(isMatching(subsumption, "custom_part", "other_part"));
+        assertFalse(isMatching(subsumption, "custom_part", "promoter"));
+        assertFalse(isMatching(subsumption, "sequence_feature", "custom_part"));
+    }
+
+    public void testFilterKeepsDescendantsOfRoles() {
+        RoleSubsumption subsumption = new RoleSubsumption(new HashSet<>(Arrays.asList("promoter")));
+
+        assertTrue(isMatching(subsumption, "promoter", "constitutive_promoter"));
+        assertFalse(isMatching(subsumption, "terminator", "terminator"));
+        assertFalse(isMatching(subsumption, "sequence_feature", "promoter"));
+    }
+
+    public void testIntersectionKeepsMoreSpecificLabels() {
+        RoleSubsumption subsumption = new RoleSubsumption(Collections.<String>emptySet());
+
+        Edge productEdge = createEdge(list("p1", "p2"), list("promoter", "promoter"));
+        Edge edge = createEdge(list("p2", "p3"), list("promoter", "constitutive_promoter"));
+
+        Profile productProfile = subsumption.getProfile(productEdge);
+        Profile profile = subsumption.getProfile(edge);
+
+        subsumption.intersectWithEdge(productEdge, productProfile, edge, profile);
+
+        assertEquals(list("p1", "p2", "p3"), productEdge.getComponentIDs());
+        assertEquals(list("promoter", "promoter", "constitutive_promoter"), productEdge.getComponentRoles());
+    }
+
+    public void testIntersectionDropsMoreGeneralLabels() {
+        RoleSubsumption subsumption = new RoleSubsumption(Collections.<String>emptySet());
+
+        Edge productEdge = createEdge(list("p1"), list("promoter"));
+        Edge edge = createEdge(list("p2"), list("constitutive_promoter"));
+
+        Profile productProfile = subsumption.getProfile(productEdge);
+        Profile profile = subsumption.getProfile(edge);
+
+        subsumption.intersectWithEdge(productEdge, productProfile, edge, profile);
+
+        assertEquals(list("p2"), productEdge.getComponentIDs());
+        assertEquals(list("constitutive_promoter"), productEdge.getComponentRoles());
+    }
+}
@@ -0,0 +1,100 @@
+package knox.spring.data.neo4j.repositories;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+public class NodeSpaceCodecTests extends TestCase {
+
+    private static NodeSpace roundTrip(NodeSpace space) {
+        return NodeSpaceCodec.decode(NodeSpaceCodec.encode(space));
+    }
+
+    public void testRoundTrip() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node middle = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(middle, list("p1", "p2"), list("promoter"), Edge.Orientation.INLINE);
+        start.createEdge(middle, list("p3"), list("promoter"), Edge.Orientation.REVERSE_COMPLEMENT).setWeight(0.25);
+        middle.createEdge(middle, list("c1"), list("CDS", "engineered_region"), Edge.Orientation.UNDECLARED);
+        middle.createEdge(accept, list("t1"), list("terminator"));
+        middle.createEdge(accept);
+
+        NodeSpace decoded = roundTrip(space);
+
+        assertEquals(space.getNodeIndex(), decoded.getNodeIndex());
+        assertEquals(3, decoded.getNumNodes());
+        assertEquals(5, decoded.getEdges().size());
+        assertEquals(space.computeContentHash(), decoded.computeContentHash());
+
+        for (Edge edge : decoded.getEdges()) {
+            assertTrue(decoded.getNodes().contains(edge.getTail()));
+            assertTrue(decoded.getNodes().contains(edge.getHead()));
+        }
+    }
+
+    public void testEmptySpace() {
+        NodeSpace space = new NodeSpace(7);
+
+        NodeSpace decoded = roundTrip(space);
+
+        assertEquals(7, decoded.getNodeIndex());
+        assertEquals(0, decoded.getNumNodes());
+        assertEquals(space.computeContentHash(), decoded.computeContentHash());
+    }
+
+    public void testLargeIndicesAndUnicode() {
+        NodeSpace space = new NodeSpace(300000);
+
+        Node start = space.createTypedNode("n299998", Node.NodeType.START.getValue());
+        Node accept = space.createTypedNode("n299999", Node.NodeType.ACCEPT.getValue());
+
+        ArrayList<String> compIDs = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            compIDs.add("c" + i + "\u00b5\u03b2");
+        }
+
+        start.createEdge(accept, compIDs, list("CDS"), Edge.Orientation.INLINE);
+
+        assertEquals(space.computeContentHash(), roundTrip(space).computeContentHash());
+    }
+
+    public void testUnknownVersionIsRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        DeflaterOutputStream output = new DeflaterOutputStream(bytes);
+        output.write(99);
+        output.close();
+
+        try {
+            NodeSpaceCodec.decode(bytes.toByteArray());
+            fail();
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("99"));
+        }
+    }
+
+    public void testCorruptBlobIsRejected() {
+        byte[] blob = NodeSpaceCodec.encode(new NodeSpace(new ArrayList<>(Arrays.asList("p1")),
+                new ArrayList<>(Arrays.asList("promoter"))));
+
+        try {
+            NodeSpaceCodec.decode(Arrays.copyOf(blob, blob.length / 2));
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package knox.spring.data.neo4j.repositories;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/*
+ * Writes snapshots with NodeSpaceWriter to an embedded database and reads them back with
+ * NodeSpaceLoader, in both snapshot storage modes.
+ */
+
+public class NodeSpaceLoaderTests extends TestCase {
+    private Session session;
+    private NodeSpaceWriter writer;
+    private NodeSpaceLoader loader;
+
+    protected void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.driverConfiguration()
+                .setDriverClassName("org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver");
+
+        session = new SessionFactory(configuration, "knox.spring.data.neo4j.domain").openSession();
+
+        writer = new NodeSpaceWriter();
+        writer.session = session;
+
+        loader = new NodeSpaceLoader();
+        loader.session = session;
+    }
+
+    protected void tearDown() {
+        session.purgeDatabase();
+    }
+
+    private NodeSpace createSpace() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node middle = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(middle, new ArrayList<>(Arrays.asList("p1", "p2")),
+                new ArrayList<>(Arrays.asList("promoter")));
+        middle.createEdge(accept, new ArrayList<>(Arrays.asList("c1")),
+                new ArrayList<>(Arrays.asList("CDS")), Edge.Orientation.REVERSE_COMPLEMENT).setWeight(0.5);
+        middle.createEdge(accept);
+
+        return space;
+    }
+
+    private Map<String, Object> readSnapshot() {
+        for (Map<String, Object> row : session.query(
+                "MATCH (s:Snapshot) "
+                + "RETURN s.edgeBlob IS NOT NULL as hasBlob, size((s)-[:CONTAINS]->(:Node)) as numNodes",
+                Collections.<String, Object>emptyMap()).queryResults()) {
+            return row;
+        }
+
+        return null;
+    }
+
+    public void testBlobSnapshotRoundTrip() {
+        writer.snapshotStorage = NodeSpaceWriter.SNAPSHOT_BLOB_STORAGE;
+
+        NodeSpace space = createSpace();
+
+        writer.commitHead("space", "space", space, Collections.<Long>emptyList());
+
+        Map<String, Object> snapshot = readSnapshot();
+        assertEquals(Boolean.TRUE, snapshot.get("hasBlob"));
+        assertEquals(0, ((Number) snapshot.get("numNodes")).intValue());
+
+        NodeSpace branchHead = loader.loadBranchHead("space", "space");
+        assertEquals(3, branchHead.getNumNodes());
+        assertEquals(3, branchHead.getEdges().size());
+        assertEquals(space.computeContentHash(), branchHead.computeContentHash());
+
+        Map<Long, NodeSpace> snapshots = loader.loadSnapshots(
+                ((Number) session.query("MATCH (target:DesignSpace) RETURN ID(target) as graphID",
+                        Collections.<String, Object>emptyMap()).queryResults().iterator().next()
+                        .get("graphID")).longValue());
+        assertEquals(1, snapshots.size());
+        assertEquals(space.computeContentHash(),
+                snapshots.values().iterator().next().computeContentHash());
+    }
+
+    public void testGraphSnapshotRoundTrip() {
+        writer.snapshotStorage = "graph";
+
+        NodeSpace space = createSpace();
+
+        writer.commitHead("space", "space", space, Collections.<Long>emptyList());
+
+        Map<String, Object> snapshot = readSnapshot();
+        assertEquals(Boolean.FALSE, snapshot.get("hasBlob"));
+        assertEquals(3, ((Number) snapshot.get("numNodes")).intValue());
+
+        assertEquals(space.computeContentHash(),
+                loader.loadBranchHead("space", "space").computeContentHash());
+        assertEquals(space.computeContentHash(), loader.loadHead("space").computeContentHash());
+    }
+}
@@ -0,0 +1,178 @@
+package knox.spring.data.neo4j.repositories;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.storage.DeletionProgress;
+import knox.spring.data.neo4j.storage.Neo4jDesignSpaceStore;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static knox.spring.data.neo4j.TestFixtures.createSpace;
+
+/*
+ * Checks that the version histories that operator outputs share with their inputs survive the
+ * deletion and reset of the inputs, and that identical snapshots are shared between commits,
+ * against an embedded database.
+ */
+
+public class NodeSpaceWriterTests extends TestCase {
+    private Session session;
+    private NodeSpaceWriter writer;
+    private Neo4jDesignSpaceStore store;
+
+    protected void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.driverConfiguration()
+                .setDriverClassName("org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver");
+
+        session = new SessionFactory(configuration, "knox.spring.data.neo4j.domain").openSession();
+
+        writer = new NodeSpaceWriter();
+        writer.session = session;
+        writer.snapshotStorage = "graph";
+
+        store = new Neo4jDesignSpaceStore();
+        ReflectionTestUtils.setField(store, "nodeSpaceWriter", writer);
+    }
+
+    protected void tearDown() {
+        store.shutdown();
+        session.purgeDatabase();
+    }
+
+    private Long getLatestCommit(String spaceID) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("spaceID", spaceID);
+
+        return ((Number) session.query(
+                "MATCH (:DesignSpace {spaceID: {spaceID}})-[:SELECTS]->(:Branch)-[:LATEST]->(c:Commit) "
+                + "RETURN ID(c) as graphID", params).queryResults().iterator().next().get("graphID")).longValue();
+    }
+
+    private int count(String query, String spaceID) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("spaceID", spaceID);
+
+        return ((Number) session.query(query, params).queryResults().iterator().next().get("count")).intValue();
+    }
+
+    private int countCommits() {
+        return count("MATCH (c:Commit) RETURN count(c) as count", null);
+    }
+
+    private int countSnapshots() {
+        return count("MATCH (s:Snapshot) RETURN count(s) as count", null);
+    }
+
+    private int countHistory(String spaceID) {
+        return count("MATCH (:DesignSpace {spaceID: {spaceID}})-[:SELECTS]->(:Branch)-[:LATEST]->(:Commit)"
+                + "-[:SUCCEEDS*0..]->(c:Commit)-[:CONTAINS]->(:Snapshot) "
+                + "RETURN count(DISTINCT c) as count", spaceID);
+    }
+
+    /*
+     * Deletes a design space through the store and waits for the deletion to finish in the
+     * background.
+     */
+    private void deleteDesignSpace(String spaceID) {
+        store.deleteDesignSpace(spaceID);
+
+        Map<String, Object> progress;
+
+        while (DeletionProgress.DELETING.equals((progress = store.getDeletionProgress(spaceID)).get("status"))) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                fail();
+            }
+        }
+
+        assertEquals(DeletionProgress.DELETED, progress.get("status"));
+    }
+
+    public void testDeletionKeepsHistoryOfOutputs() {
+        writer.commitHead("a", "a", createSpace("p1", "promoter"), Collections.<Long>emptyList());
+        writer.commitHead("a", "a", createSpace("p2", "promoter"), Arrays.asList(getLatestCommit("a")));
+        writer.commitHead("c", "c", createSpace("t1", "terminator"), Collections.<Long>emptyList());
+        writer.commitHead("b", "b", createSpace("c1", "CDS"), Arrays.asList(getLatestCommit("a")));
+        assertEquals(4, countCommits());
+        assertEquals(3, countHistory("b"));
+
+        deleteDesignSpace("a");
+        assertEquals(4, countCommits());
+        assertEquals(3, countHistory("b"));
+
+        deleteDesignSpace("b");
+        assertEquals(1, countCommits());
+        assertEquals(1, countSnapshots());
+
+        deleteDesignSpace("c");
+        assertEquals(0, countCommits());
+        assertEquals(0, countSnapshots());
+    }
+
+    public void testIdenticalSnapshotsAreShared() {
+        writer.commitHead("a", "a", createSpace("p1", "promoter"), Collections.<Long>emptyList());
+        writer.commitHead("b", "b", createSpace("p1", "promoter"), Collections.<Long>emptyList());
+        writer.commitHead("b", "b", createSpace("p1", "promoter"), Arrays.asList(getLatestCommit("b")));
+        assertEquals(3, countCommits());
+        assertEquals(1, countSnapshots());
+
+        deleteDesignSpace("a");
+        assertEquals(2, countCommits());
+        assertEquals(1, countSnapshots());
+
+        deleteDesignSpace("b");
+        assertEquals(0, countCommits());
+        assertEquals(0, countSnapshots());
+    }
+
+    public void testReferencedSnapshotsAreNotDeleted() {
+        writer.commitHead("a", "a", createSpace("p1", "promoter"), Collections.<Long>emptyList());
+        writer.commitHead("b", "b", createSpace("p1", "promoter"), Collections.<Long>emptyList());
+
+        Long snapshotGraphID = ((Number) session.query("MATCH (s:Snapshot) RETURN ID(s) as graphID",
+                Collections.<String, Object>emptyMap()).queryResults().iterator().next().get("graphID")).longValue();
+
+        assertEquals(0, writer.deleteSnapshots(Arrays.asList(snapshotGraphID)));
+        assertEquals(1, countSnapshots());
+        assertEquals(0, count("MATCH (s:Snapshot) WHERE exists(s._LOCK_) RETURN count(s) as count", null));
+    }
+
+    public void testResetKeepsHistoryOfOutputs() {
+        writer.commitHead("a", "a", createSpace("p1", "promoter"), Collections.<Long>emptyList());
+        writer.commitHead("a", "a", createSpace("p2", "promoter"), Arrays.asList(getLatestCommit("a")));
+        writer.commitHead("b", "b", createSpace("c1", "CDS"), Arrays.asList(getLatestCommit("a")));
+
+        writer.resetBranch("a", "a", Arrays.asList("c1", "c0"));
+        assertEquals(1, countHistory("a"));
+        assertEquals(3, countHistory("b"));
+        assertEquals(3, countCommits());
+
+        deleteDesignSpace("b");
+        assertEquals(1, countCommits());
+        assertEquals(1, countHistory("a"));
+    }
+
+    public void testResetStaysWithinDesignSpace() {
+        writer.commitHead("a", "a", createSpace("p1", "promoter"), Collections.<Long>emptyList());
+        writer.commitHead("b", "b", createSpace("c1", "CDS"), Arrays.asList(getLatestCommit("a")));
+        writer.commitHead("b", "b", createSpace("c2", "CDS"), Arrays.asList(getLatestCommit("b")));
+        Long latestCommit = getLatestCommit("b");
+
+        writer.resetBranch("b", "b", Arrays.asList("c1", "c0", "c0"));
+        assertEquals(latestCommit, getLatestCommit("b"));
+        assertEquals(3, countHistory("b"));
+
+        writer.resetBranch("b", "b", Arrays.asList("c1", "c0"));
+        assertEquals(2, countHistory("b"));
+        assertEquals(2, countCommits());
+    }
+}
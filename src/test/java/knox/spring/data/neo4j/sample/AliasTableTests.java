@@ -0,0 +1,66 @@
+package knox.spring.data.neo4j.sample;
+
+import junit.framework.TestCase;
+
+import java.util.SplittableRandom;
+
+public class AliasTableTests extends TestCase {
+    private static final int NUM_DRAWS = 200000;
+
+    private static int[] draw(AliasTable table, long seed) {
+        SplittableRandom rand = new SplittableRandom(seed);
+
+        int[] counts = new int[table.size()];
+
+        for (int i = 0; i < NUM_DRAWS; i++) {
+            counts[table.sample(rand)]++;
+        }
+
+        return counts;
+    }
+
+    public void testDistribution() {
+        double[] weights = {1.0, 2.0, 3.0, 4.0};
+
+        int[] counts = draw(new AliasTable(weights), 7L);
+
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals("outcome " + i, weights[i] / 10.0, ((double) counts[i]) / NUM_DRAWS, 0.01);
+        }
+    }
+
+    public void testSkewedDistribution() {
+        double[] weights = {0.001, 1000.0, 0.5};
+
+        int[] counts = draw(new AliasTable(weights), 11L);
+
+        double totalWeight = 1000.501;
+
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals("outcome " + i, weights[i] / totalWeight, ((double) counts[i]) / NUM_DRAWS, 0.005);
+        }
+    }
+
+    public void testZeroAndNegativeWeightsAreNeverDrawn() {
+        int[] counts = draw(new AliasTable(new double[] {0.0, 1.0, -1.0, 1.0}), 13L);
+
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[2]);
+        assertEquals(0.5, ((double) counts[1]) / NUM_DRAWS, 0.01);
+    }
+
+    public void testAllZeroWeightsAreUniform() {
+        int[] counts = draw(new AliasTable(new double[] {0.0, 0.0, 0.0}), 17L);
+
+        for (int count : counts) {
+            assertEquals(1.0 / 3.0, ((double) count) / NUM_DRAWS, 0.01);
+        }
+    }
+
+    public void testSingleOutcome() {
+        AliasTable table = new AliasTable(new double[] {5.0});
+
+        assertEquals(1, table.size());
+        assertEquals(NUM_DRAWS, draw(table, 19L)[0]);
+    }
+}
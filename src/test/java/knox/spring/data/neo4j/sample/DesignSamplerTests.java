@@ -0,0 +1,263 @@
+package knox.spring.data.neo4j.sample;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.sequence.ComponentSequenceStore;
+import knox.spring.data.neo4j.sequence.SequenceRope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+public class DesignSamplerTests extends TestCase {
+
+    private static Map<String, Object> comp(String compID, Edge.Orientation orientation) {
+        Map<String, Object> comp = new HashMap<>();
+        comp.put("id", compID);
+        comp.put("orientation", orientation.getValue());
+
+        return comp;
+    }
+
+    private static Map<List<Map<String, Object>>, String> getSequences(
+            Map<List<Map<String, Object>>, SequenceRope> designs) {
+        Map<List<Map<String, Object>>, String> sequences = new LinkedHashMap<>();
+
+        for (Map.Entry<List<Map<String, Object>>, SequenceRope> design : designs.entrySet()) {
+            sequences.put(design.getKey(), design.getValue().getSequence());
+        }
+
+        return sequences;
+    }
+
+    /*
+     * Two coding sequences with the same role, one of them also reverse complemented.
+     */
+    public void testSequencesAreSampledByComponent() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, list("p1"), list("promoter"), Edge.Orientation.INLINE);
+        promoted.createEdge(accept, list("c1", "c2"), list("CDS"), Edge.Orientation.INLINE);
+        promoted.createEdge(accept, list("c1"), list("CDS"), Edge.Orientation.REVERSE_COMPLEMENT);
+
+        ComponentSequenceStore sequences = new ComponentSequenceStore();
+        sequences.putSequence("p1", "TTGACA", false);
+        sequences.putSequence("c1", "ATGAAC", false);
+        sequences.putSequence("c2", "ATGCCC", false);
+
+        Map<List<Map<String, Object>>, String> expected = new HashMap<>();
+        expected.put(Arrays.asList(comp("p1", Edge.Orientation.INLINE), comp("c1", Edge.Orientation.INLINE)),
+                "TTGACAATGAAC");
+        expected.put(Arrays.asList(comp("p1", Edge.Orientation.INLINE), comp("c2", Edge.Orientation.INLINE)),
+                "TTGACAATGCCC");
+        expected.put(Arrays.asList(comp("p1", Edge.Orientation.INLINE),
+                comp("c1", Edge.Orientation.REVERSE_COMPLEMENT)), "TTGACAGTTCAT");
+
+        assertEquals(expected, getSequences(new DesignSampler(space).sampleSequences(3, 5L, 1, sequences)));
+    }
+
+    public void testMissingSequenceLeavesDesignIncomplete() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, list("p1"), list("promoter"), Edge.Orientation.INLINE);
+        promoted.createEdge(accept, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+
+        ComponentSequenceStore sequences = new ComponentSequenceStore();
+        sequences.putSequence("p1", "TTGACA", false);
+
+        Map<List<Map<String, Object>>, SequenceRope> designs = new DesignSampler(space).sampleSequences(1, 5L, 1,
+                sequences);
+
+        assertEquals(1, designs.size());
+        assertFalse(designs.values().iterator().next().isComplete());
+    }
+
+    /*
+     * Five promoters on edges of their own, so that enumeration splits into five subtrees, then five
+     * coding sequences and optionally one of five terminators or a repeat of the coding sequences.
+     * Components are their own roles, so that sampled role lists tell designs apart.
+     */
+    private static NodeSpace createBranchingSpace() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node coded = space.createAcceptNode();
+        Node accept = space.createAcceptNode();
+
+        for (int i = 1; i <= 5; i++) {
+            start.createEdge(promoted, list("p" + i), list("p" + i), Edge.Orientation.INLINE);
+        }
+
+        promoted.createEdge(coded, list("c1", "c2", "c3", "c4", "c5"), list("c1", "c2", "c3", "c4", "c5"),
+                Edge.Orientation.INLINE);
+        coded.createEdge(promoted);
+        coded.createEdge(accept, list("t1", "t2", "t3", "t4", "t5"), list("t1", "t2", "t3", "t4", "t5"),
+                Edge.Orientation.REVERSE_COMPLEMENT);
+
+        return space;
+    }
+
+    public void testSeededSampleDoesNotDependOnParallelism() {
+        DesignSampler sampler = new DesignSampler(createBranchingSpace());
+
+        List<List<String>> serial = new ArrayList<>(sampler.sample(300, 23L, 1));
+
+        assertEquals(300, serial.size());
+
+        for (int parallelism : new int[] {2, 3, 8}) {
+            assertEquals(serial, new ArrayList<>(sampler.sample(300, 23L, parallelism)));
+        }
+    }
+
+    public void testSeededSequenceSampleDoesNotDependOnParallelism() {
+        DesignSampler sampler = new DesignSampler(createBranchingSpace());
+
+        ComponentSequenceStore sequences = new ComponentSequenceStore();
+        sequences.putSequence("p1", "TTGACA", false);
+
+        Map<List<Map<String, Object>>, String> serial = getSequences(sampler.sampleSequences(200, 29L, 1, sequences));
+
+        assertEquals(new ArrayList<>(serial.entrySet()),
+                new ArrayList<>(getSequences(sampler.sampleSequences(200, 29L, 4, sequences)).entrySet()));
+    }
+
+    public void testEnumerationDoesNotDependOnParallelism() {
+        DesignSampler sampler = new DesignSampler(createBranchingSpace());
+
+        for (DesignSampler.EnumerateType type : DesignSampler.EnumerateType.values()) {
+            List<List<Map<String, Object>>> serial = sampler.enumerate(0, 0, 4, type, 1);
+
+            assertFalse(serial.isEmpty());
+
+            for (int parallelism : new int[] {2, 5, 8}) {
+                assertEquals(type.name(), serial, sampler.enumerate(0, 0, 4, type, parallelism));
+                assertEquals(type.name(), sampler.enumerate(40, 3, 4, type, 1),
+                        sampler.enumerate(40, 3, 4, type, parallelism));
+            }
+        }
+    }
+
+    /*
+     * Blank edges go back and forth between two nodes, one of which can repeat a component.
+     */
+    private static NodeSpace createBlankCycleSpace() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node first = space.createNode();
+        Node second = space.createAcceptNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(first, list("p1", "p2"), list("promoter"), Edge.Orientation.INLINE);
+        first.createEdge(second);
+        second.createEdge(first);
+        second.createEdge(second, list("c1"), list("CDS"), Edge.Orientation.REVERSE_COMPLEMENT);
+        first.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+
+        return space;
+    }
+
+    private static List<List<Map<String, Object>>> getComponents(List<List<Map<String, Object>>> designs) {
+        List<List<Map<String, Object>>> compLists = new ArrayList<>();
+
+        for (List<Map<String, Object>> design : designs) {
+            List<Map<String, Object>> comps = new ArrayList<>();
+
+            for (Map<String, Object> comp : design) {
+                comps.add(comp((String) comp.get("id"), comp.get("orientation").equals(
+                        Edge.Orientation.REVERSE_COMPLEMENT.getValue())
+                        ? Edge.Orientation.REVERSE_COMPLEMENT : Edge.Orientation.INLINE));
+            }
+
+            compLists.add(comps);
+        }
+
+        return compLists;
+    }
+
+    private static List<List<Map<String, Object>>> getComponents(DesignEnumerator designEnumerator) {
+        List<List<Map<String, Object>>> compLists = new ArrayList<>();
+
+        while (designEnumerator.next()) {
+            List<Map<String, Object>> comps = new ArrayList<>();
+
+            for (int i = 0; i < designEnumerator.getLength(); i++) {
+                comps.add(comp(designEnumerator.getComponentID(i), designEnumerator.getEdge(i).getOrientation()));
+            }
+
+            compLists.add(comps);
+        }
+
+        return compLists;
+    }
+
+    /*
+     * Numbers of designs and minimum and maximum lengths, with zero for no bound.
+     */
+    private static final int[][] BOUNDS = {{0, 0, 0}, {0, 0, 5}, {0, 3, 5}, {7, 0, 5}, {0, 2, 0}, {3, 2, 0}};
+
+    private static void assertLazyEnumerationIsDepthFirst(NodeSpace space) {
+        DesignSampler sampler = new DesignSampler(space);
+
+        for (int[] bounds : BOUNDS) {
+            List<List<Map<String, Object>>> expected = getComponents(sampler.enumerate(bounds[0], bounds[1],
+                    bounds[2], DesignSampler.EnumerateType.DFS));
+
+            assertFalse(Arrays.toString(bounds), expected.isEmpty());
+            assertEquals(Arrays.toString(bounds), expected,
+                    getComponents(sampler.enumerateLazily(bounds[0], bounds[1], bounds[2])));
+        }
+    }
+
+    public void testLazyEnumerationIsDepthFirst() {
+        assertLazyEnumerationIsDepthFirst(createBranchingSpace());
+    }
+
+    public void testLazyEnumerationOfBlankCyclesIsDepthFirst() {
+        assertLazyEnumerationIsDepthFirst(createBlankCycleSpace());
+    }
+
+    /*
+     * Going around the blank cycle adds no components, so only the cycle through the CDS repeats
+     * components, and no design is found twice.
+     */
+    public void testBlankCyclesAreNotRepeated() {
+        List<List<Map<String, Object>>> designs = getComponents(new DesignSampler(createBlankCycleSpace())
+                .enumerate(0, 0, 3, DesignSampler.EnumerateType.DFS));
+
+        Map<String, Object> cds = comp("c1", Edge.Orientation.REVERSE_COMPLEMENT);
+        Map<String, Object> terminator = comp("t1", Edge.Orientation.INLINE);
+        Set<List<Map<String, Object>>> expected = new HashSet<>();
+
+        for (String promoterID : list("p1", "p2")) {
+            Map<String, Object> promoter = comp(promoterID, Edge.Orientation.INLINE);
+
+            expected.add(Arrays.asList(promoter));
+            expected.add(Arrays.asList(promoter, terminator));
+            expected.add(Arrays.asList(promoter, cds));
+            expected.add(Arrays.asList(promoter, cds, cds));
+            expected.add(Arrays.asList(promoter, cds, terminator));
+        }
+
+        assertEquals(expected.size(), designs.size());
+        assertEquals(expected, new HashSet<>(designs));
+    }
+}
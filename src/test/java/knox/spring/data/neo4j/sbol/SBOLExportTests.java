@@ -0,0 +1,103 @@
+package knox.spring.data.neo4j.sbol;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.analysis.LanguageComparator;
+import knox.spring.data.neo4j.domain.DesignSpace;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import org.sbolstandard.core2.SBOLDocument;
+
+import java.util.Collections;
+import java.util.List;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+/*
+ * Exports design spaces with SBOLExport, converts them back with SBOLConversion and checks that
+ * the design space read back has the same designs.
+ */
+
+public class SBOLExportTests extends TestCase {
+
+    private static NodeSpace roundTrip(NodeSpace space) throws Exception {
+        SBOLDocument sbolDoc = new SBOLExport().exportSpace(space, "space");
+
+        SBOLConversion sbolConv = new SBOLConversion();
+        sbolConv.setSbolDoc(Collections.singletonList(sbolDoc));
+
+        List<DesignSpace> outputSpaces = sbolConv.convertSBOLsToSpaces();
+
+        assertEquals(1, outputSpaces.size());
+
+        return outputSpaces.get(0);
+    }
+
+    private static void assertRoundTrip(NodeSpace space) throws Exception {
+        assertEquals("equal", new LanguageComparator(space, roundTrip(space)).compare().get("relation"));
+    }
+
+    public void testSequenceOfChoices() throws Exception {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node coded = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, list("p1", "p2"), list("promoter"), Edge.Orientation.INLINE);
+        promoted.createEdge(coded, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+        promoted.createEdge(coded, list("c2"), list("CDS"), Edge.Orientation.REVERSE_COMPLEMENT);
+        coded.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+
+        assertRoundTrip(space);
+    }
+
+    public void testOptionalComponent() throws Exception {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node coded = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, list("p1"), list("promoter"), Edge.Orientation.INLINE);
+        promoted.createEdge(coded, list("r1"), list("ribosome_entry_site"), Edge.Orientation.INLINE);
+        promoted.createEdge(coded);
+        coded.createEdge(accept, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+
+        assertRoundTrip(space);
+    }
+
+    public void testRepeatedComponent() throws Exception {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, list("p1"), list("promoter"), Edge.Orientation.INLINE);
+        promoted.createEdge(promoted, list("c1", "c2"), list("CDS"), Edge.Orientation.INLINE);
+        promoted.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+
+        assertRoundTrip(space);
+    }
+
+    public void testChoiceBetweenSequences() throws Exception {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node first = space.createNode();
+        Node second = space.createNode();
+        Node joined = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(first, list("p1"), list("promoter"), Edge.Orientation.INLINE);
+        first.createEdge(joined, list("c1"), list("CDS"), Edge.Orientation.INLINE);
+        start.createEdge(second, list("p2"), list("promoter"), Edge.Orientation.INLINE);
+        second.createEdge(joined, list("c2", "c3"), list("CDS"), Edge.Orientation.INLINE);
+        joined.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+
+        assertRoundTrip(space);
+    }
+}
@@ -0,0 +1,78 @@
+package knox.spring.data.neo4j.sequence;
+
+import junit.framework.TestCase;
+
+public class PackedSequenceTests extends TestCase {
+
+    public void testPackTwoBitSequence() {
+        PackedSequence sequence = PackedSequence.pack("acgTTGCAa");
+
+        assertEquals(2, sequence.getBitsPerBase());
+        assertEquals(9, sequence.length());
+        assertEquals("ACGTTGCAA", sequence.toString());
+    }
+
+    public void testPackFourBitSequence() {
+        PackedSequence sequence = PackedSequence.pack("ACGTRYSWKMBDHVN-");
+
+        assertEquals(4, sequence.getBitsPerBase());
+        assertEquals("ACGTRYSWKMBDHVN-", sequence.toString());
+    }
+
+    public void testPackRejectsOtherCharacters() {
+        try {
+            PackedSequence.pack("ACGU");
+
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    public void testReverseComplement() {
+        PackedSequence sequence = PackedSequence.pack("AACGTTG");
+
+        PackedSequence reverse = sequence.reverseComplement();
+
+        assertTrue(reverse.isReverseComplement());
+        assertEquals("CAACGTT", reverse.toString());
+        assertSame(sequence.getBases(), reverse.getBases());
+        assertEquals(sequence, reverse.reverseComplement());
+    }
+
+    public void testReverseComplementOfAmbiguousCodes() {
+        assertEquals("-NBDHVKMWSRYACGT", PackedSequence.pack("ACGTRYSWKMBDHVN-").reverseComplement().toString());
+    }
+
+    public void testEquality() {
+        PackedSequence sequence = PackedSequence.pack("ACGTA");
+
+        assertEquals(sequence, PackedSequence.pack("acgta"));
+        assertEquals(sequence.hashCode(), PackedSequence.pack("acgta").hashCode());
+        assertFalse(sequence.equals(PackedSequence.pack("ACGT")));
+        assertFalse(sequence.equals(sequence.reverseComplement()));
+    }
+
+    public void testEqualityOfReverseComplements() {
+        PackedSequence sequence = PackedSequence.pack("TACGT");
+
+        assertEquals(sequence, PackedSequence.pack("ACGTA").reverseComplement());
+        assertEquals(sequence.hashCode(), PackedSequence.pack("ACGTA").reverseComplement().hashCode());
+        assertEquals(PackedSequence.pack("ACGT"), PackedSequence.pack("ACGT").reverseComplement());
+    }
+
+    public void testEqualityOfPackings() {
+        PackedSequence sequence = new PackedSequence(4, 4, new byte[] {0x10, 0x32}, false);
+
+        assertEquals("ACGT", sequence.toString());
+        assertEquals(PackedSequence.pack("ACGT"), sequence);
+        assertEquals(PackedSequence.pack("ACGT").hashCode(), sequence.hashCode());
+        assertEquals(PackedSequence.pack("ACGT"), sequence.reverseComplement());
+    }
+
+    public void testEmptySequence() {
+        PackedSequence sequence = PackedSequence.pack("");
+
+        assertEquals(0, sequence.length());
+        assertEquals("", sequence.reverseComplement().toString());
+    }
+}
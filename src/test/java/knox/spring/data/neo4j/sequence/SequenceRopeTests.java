@@ -0,0 +1,50 @@
+package knox.spring.data.neo4j.sequence;
+
+import junit.framework.TestCase;
+
+public class SequenceRopeTests extends TestCase {
+
+    public void testEmptyRope() {
+        assertTrue(SequenceRope.EMPTY.isComplete());
+        assertEquals(0, SequenceRope.EMPTY.length());
+        assertEquals("", SequenceRope.EMPTY.getSequence());
+    }
+
+    public void testAssembly() {
+        SequenceRope rope = SequenceRope.EMPTY
+                .append(PackedSequence.pack("AAC"), false)
+                .append(PackedSequence.pack("GGT"), true)
+                .append(PackedSequence.pack("RN"), false);
+
+        assertTrue(rope.isComplete());
+        assertEquals(8, rope.length());
+        assertEquals("AACACCRN", rope.getSequence());
+        assertEquals("AACACCRN", rope.toString());
+    }
+
+    public void testReverseComplementOfReverseComplement() {
+        PackedSequence sequence = PackedSequence.pack("ATGC").reverseComplement();
+
+        assertEquals("ATGC", SequenceRope.EMPTY.append(sequence, true).getSequence());
+    }
+
+    public void testSharedPrefix() {
+        SequenceRope prefix = SequenceRope.EMPTY.append(PackedSequence.pack("TTG"), false);
+
+        SequenceRope first = prefix.append(PackedSequence.pack("A"), false);
+        SequenceRope second = prefix.append(PackedSequence.pack("A"), true);
+
+        assertEquals("TTG", prefix.getSequence());
+        assertEquals("TTGA", first.getSequence());
+        assertEquals("TTGT", second.getSequence());
+    }
+
+    public void testMissingSequenceMakesRopeIncomplete() {
+        SequenceRope rope = SequenceRope.EMPTY.append(PackedSequence.pack("ACG"), false).append(null, false);
+
+        assertFalse(rope.isComplete());
+        assertSame(SequenceRope.INCOMPLETE, rope.append(PackedSequence.pack("T"), false));
+        assertNull(rope.getSequence());
+        assertEquals("", rope.toString());
+    }
+}
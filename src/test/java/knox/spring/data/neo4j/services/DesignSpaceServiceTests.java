@@ -0,0 +1,208 @@
+package knox.spring.data.neo4j.services;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.analysis.LanguageComparator;
+import knox.spring.data.neo4j.cache.HeadSpaceCache;
+import knox.spring.data.neo4j.cache.OperatorCache;
+import knox.spring.data.neo4j.cache.ResponseCache;
+import knox.spring.data.neo4j.domain.Edge;
+import knox.spring.data.neo4j.domain.Node;
+import knox.spring.data.neo4j.domain.NodeSpace;
+import knox.spring.data.neo4j.sample.DesignSampler;
+import knox.spring.data.neo4j.sequence.ComponentSequenceStore;
+import knox.spring.data.neo4j.storage.MappedDesignSpaceStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static knox.spring.data.neo4j.TestFixtures.list;
+
+/*
+ * Runs DesignSpaceService over a MappedDesignSpaceStore in a temporary directory.
+ */
+
+public class DesignSpaceServiceTests extends TestCase {
+    private Path directory;
+    private MappedDesignSpaceStore store;
+    private DesignSpaceService service;
+
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("knox-service");
+
+        store = new MappedDesignSpaceStore();
+        ReflectionTestUtils.setField(store, "directory", directory.toString());
+        store.open();
+
+        ComponentSequenceStore componentSequences = new ComponentSequenceStore();
+        ReflectionTestUtils.setField(componentSequences, "directory", directory.toString());
+        componentSequences.open();
+
+        service = new DesignSpaceService();
+        service.designSpaceStore = store;
+        service.componentSequences = componentSequences;
+
+        service.headSpaceCache = new HeadSpaceCache();
+        service.headSpaceCache.initialize();
+
+        service.responseCache = new ResponseCache();
+        service.responseCache.initialize();
+
+        service.operatorCache = new OperatorCache();
+        service.operatorCache.initialize();
+    }
+
+    protected void tearDown() throws IOException {
+        List<Path> files = new LinkedList<>();
+        listFiles(directory, files);
+        Collections.reverse(files);
+
+        for (Path file : files) {
+            Files.delete(file);
+        }
+    }
+
+    private static void listFiles(Path path, List<Path> files) throws IOException {
+        files.add(path);
+
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                for (Path child : children) {
+                    listFiles(child, files);
+                }
+            }
+        }
+    }
+
+    private static NodeSpace createSpace() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node promoted = space.createNode();
+        Node coded = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(promoted, list("p1", "p2"), list("promoter"), Edge.Orientation.INLINE);
+        promoted.createEdge(coded, list("c1", "c2"), list("CDS"), Edge.Orientation.INLINE);
+        coded.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.INLINE);
+
+        return space;
+    }
+
+    /*
+     * Reverse complements a CDS and terminators between components whose IDs start with "r".
+     */
+    private static NodeSpace createReverseSpace() {
+        NodeSpace space = new NodeSpace(0);
+
+        Node start = space.createStartNode();
+        Node bound = space.createNode();
+        Node coded = space.createNode();
+        Node accept = space.createAcceptNode();
+
+        start.createEdge(bound, list("rbs1", "rbs2"), list("ribosome_entry_site"), Edge.Orientation.INLINE);
+        bound.createEdge(coded, list("c1"), list("CDS"), Edge.Orientation.REVERSE_COMPLEMENT);
+        coded.createEdge(accept, list("t1"), list("terminator"), Edge.Orientation.REVERSE_COMPLEMENT);
+        coded.createEdge(accept, list("t2"), list("terminator"), Edge.Orientation.INLINE);
+
+        return space;
+    }
+
+    private byte[] exportCSV(NodeSpace space) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        service.writeCSVDesigns(new DesignSampler(space).enumerateLazily(0, 0, 0), outputStream);
+
+        return outputStream.toByteArray();
+    }
+
+    private static List<InputStream> streams(byte[] csv) {
+        return Collections.<InputStream>singletonList(new ByteArrayInputStream(csv));
+    }
+
+    public void testExportedCSVHasDesignHeader() throws IOException {
+        String csv = new String(exportCSV(createSpace()), StandardCharsets.UTF_8);
+
+        String[] rows = csv.split("\n");
+
+        assertEquals("design", rows[0]);
+        assertEquals(5, rows.length);
+    }
+
+    public void testExportedCSVIsMerged() throws IOException {
+        NodeSpace space = createSpace();
+
+        service.importCSV(streams(exportCSV(space)), "merged", true);
+
+        NodeSpace merged = store.loadHead("merged");
+
+        assertNotNull(merged);
+        assertEquals("equal", new LanguageComparator(space, merged).compare().get("relation"));
+    }
+
+    public void testExportedCSVIsImported() throws IOException {
+        service.importCSV(streams(exportCSV(createSpace())), "design", false);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(store.hasDesignSpace("design" + i));
+        }
+
+        assertFalse(store.hasDesignSpace("design4"));
+    }
+
+    public void testExportedReverseComplementsAreMatched() throws IOException {
+        NodeSpace space = createReverseSpace();
+
+        store.commitHead("space", "space", space, Collections.<Long>emptyList());
+
+        List<Boolean> isMatching = service.matchCSVDesigns("space", streams(exportCSV(space)), 1);
+
+        assertEquals(Collections.nCopies(4, Boolean.TRUE), isMatching);
+    }
+
+    public void testInlineComponentsDoNotMatchReverseComplements() {
+        store.commitHead("space", "space", createReverseSpace(), Collections.<Long>emptyList());
+
+        byte[] csv = "design\nrbs1,-c1,-t1\nrbs1,c1,-t1\nrbs1,-c1,-t2\n".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(Arrays.asList(true, false, false), service.matchCSVDesigns("space", streams(csv), 1));
+    }
+
+    public void testExportedReverseComplementsAreMerged() throws IOException {
+        NodeSpace space = createReverseSpace();
+
+        service.importCSV(streams(exportCSV(space)), "merged", true);
+
+        assertEquals("equal", new LanguageComparator(space, store.loadHead("merged")).compare().get("relation"));
+    }
+
+    /*
+     * Merging at tolerance 1 recombines rows that share components, which is still what imports do
+     * unless they ask for exactly the imported rows.
+     */
+    public void testMergeIsExactOnlyWhenAsked() {
+        byte[] csv = "design\np1,c1,t1\np1,c2,t1\np2,c1,t1\np2,c1,t2\n".getBytes(StandardCharsets.UTF_8);
+
+        service.importCSV(streams(csv), "merged", true);
+        service.importCSV(streams(csv), "exact", true, true);
+
+        NodeSpace merged = store.loadHead("merged");
+        NodeSpace exact = store.loadHead("exact");
+
+        assertEquals("subset", new LanguageComparator(exact, merged).compare().get("relation"));
+
+        DesignSampler exactSampler = new DesignSampler(exact);
+
+        assertEquals(4, exactSampler.enumerate(0, 0, 0, DesignSampler.EnumerateType.DFS).size());
+    }
+}
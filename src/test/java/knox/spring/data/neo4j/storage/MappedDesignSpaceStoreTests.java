@@ -0,0 +1,119 @@
+package knox.spring.data.neo4j.storage;
+
+import junit.framework.TestCase;
+import knox.spring.data.neo4j.domain.NodeSpace;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static knox.spring.data.neo4j.TestFixtures.createSpace;
+
+public class MappedDesignSpaceStoreTests extends TestCase {
+    private Path directory;
+
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("knox-store");
+    }
+
+    protected void tearDown() throws IOException {
+        List<Path> files = new LinkedList<>();
+        listFiles(directory, files);
+        Collections.reverse(files);
+
+        for (Path file : files) {
+            Files.delete(file);
+        }
+    }
+
+    private static void listFiles(Path path, List<Path> files) throws IOException {
+        files.add(path);
+
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                for (Path child : children) {
+                    listFiles(child, files);
+                }
+            }
+        }
+    }
+
+    private MappedDesignSpaceStore openStore() {
+        MappedDesignSpaceStore store = new MappedDesignSpaceStore();
+        store.directory = directory.toString();
+        store.open();
+
+        return store;
+    }
+
+    private int countSnapshotFiles() throws IOException {
+        int numFiles = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.resolve("snapshots"))) {
+            for (Path file : files) {
+                numFiles++;
+            }
+        }
+
+        return numFiles;
+    }
+
+    public void testCommitIDsAreNotReusedAfterDeletion() {
+        MappedDesignSpaceStore store = openStore();
+
+        store.commitHead("a", "a", createSpace("p1", "promoter"), Collections.<Long>emptyList());
+        Long aCommitID = store.getLatestCommitID("a");
+
+        store.commitHead("b", "b", createSpace("c1", "CDS"), Arrays.asList(aCommitID));
+        Long bCommitID = store.getLatestCommitID("b");
+        assertTrue(bCommitID > aCommitID);
+
+        store.deleteDesignSpace("b");
+
+        store = openStore();
+
+        store.commitHead("c", "c", createSpace("t1", "terminator"), Arrays.asList(aCommitID));
+        assertTrue(store.getLatestCommitID("c") > bCommitID);
+    }
+
+    public void testSnapshotsAreSharedAndReleased() throws IOException {
+        MappedDesignSpaceStore store = openStore();
+
+        NodeSpace space = createSpace("p1", "promoter");
+
+        store.commitHead("a", "a", space, Collections.<Long>emptyList());
+        store.commitHead("b", "b", space, Collections.<Long>emptyList());
+        assertEquals(1, countSnapshotFiles());
+
+        store.commitHead("a", "a", createSpace("c1", "CDS"), Collections.<Long>emptyList());
+        assertEquals(2, countSnapshotFiles());
+
+        store.deleteDesignSpace("b");
+        assertEquals(2, countSnapshotFiles());
+
+        store.deleteDesignSpace("a");
+        assertEquals(0, countSnapshotFiles());
+    }
+
+    public void testReopenedStoreLoadsHistory() {
+        MappedDesignSpaceStore store = openStore();
+
+        NodeSpace first = createSpace("p1", "promoter");
+        NodeSpace second = createSpace("c1", "CDS");
+
+        store.commitHead("a", "a", first, Collections.<Long>emptyList());
+        store.commitBranch("a", "b", second, Arrays.asList(store.getLatestCommitID("a")));
+
+        store = openStore();
+
+        assertEquals(first.computeContentHash(), store.loadBranchHead("a", "a").computeContentHash());
+        assertEquals(second.computeContentHash(), store.loadBranchHead("a", "b").computeContentHash());
+        assertEquals(first.computeContentHash(), store.loadHead("a").computeContentHash());
+        assertEquals(2, store.loadDesignSpace("a").getBranches().size());
+    }
+}